@@ -56,6 +56,7 @@ public class BlackjackManager {
 
     // Callback for opening games menu (set by plugin)
     private java.util.function.Consumer<Player> openGamesMenuCallback;
+    private LeaderboardService leaderboardService;
 
     // Card values for display
     private static final String[] CARD_SUITS = {"♠", "♥", "♦", "♣"};
@@ -76,6 +77,13 @@ public class BlackjackManager {
         this.openGamesMenuCallback = callback;
     }
 
+    /**
+     * Set the service that records finished rounds for the leaderboards.
+     */
+    public void setLeaderboardService(LeaderboardService leaderboardService) {
+        this.leaderboardService = leaderboardService;
+    }
+
     private void loadConfig() {
         YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
         enabled = config.getBoolean("game.enabled", true);
@@ -589,6 +597,12 @@ public class BlackjackManager {
         }
         // else it's a tie
 
+        if (leaderboardService != null) {
+            // PvP rounds carry no bet: they count towards games and wins only.
+            leaderboardService.record("blackjack", session.getPlayer1Name(), 0, session.getPlayer1Name().equals(winner));
+            leaderboardService.record("blackjack", session.getPlayer2Name(), 0, session.getPlayer2Name().equals(winner));
+        }
+
         Player player1 = Bukkit.getPlayer(session.getPlayer1Name());
         Player player2 = Bukkit.getPlayer(session.getPlayer2Name());
 
@@ -1243,6 +1257,9 @@ public class BlackjackManager {
         }
 
         session.setPayout(payout);
+        if (leaderboardService != null) {
+            leaderboardService.record("blackjack", player.getName(), payout - bet, payout > bet);
+        }
 
         // Grant rewards if player won
         if (payout > bet) {
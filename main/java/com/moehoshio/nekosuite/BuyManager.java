@@ -11,9 +11,9 @@ import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
-import net.milkbowl.vault.permission.Permission;
 
 import java.io.File;
 import java.io.IOException;
@@ -22,12 +22,18 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
 
 public class BuyManager {
 
     private static final long MS_PER_DAY = 24L * 60L * 60L * 1000L;
+    // Re-arm at least once a minute so a long wait cannot drift with server lag.
+    private static final long MAX_EXPIRY_DELAY_TICKS = 1200L;
     
     private final JavaPlugin plugin;
     private final Messages messages;
@@ -35,14 +41,20 @@ public class BuyManager {
     private final Map<String, Product> products = new HashMap<String, Product>();
     private final MenuLayout layout;
     private final Economy economy;
-    private final Permission permission;
+    private final PermissionSyncService permissionSync;
 
-    BuyManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout layout, Economy economy, Permission permission) {
+    // Timed perks of online players, earliest expiry first. Main thread only.
+    private final PriorityQueue<ExpiryEntry> expiries = new PriorityQueue<ExpiryEntry>();
+    private final Set<String> scheduledKeys = new HashSet<String>();
+    private BukkitTask expiryTask;
+    private long expiryTaskDueAt = Long.MAX_VALUE;
+
+    BuyManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout layout, Economy economy, PermissionSyncService permissionSync) {
         this.plugin = plugin;
         this.messages = messages;
         this.layout = layout == null ? new MenuLayout(plugin) : layout;
         this.economy = economy;
-        this.permission = permission;
+        this.permissionSync = permissionSync;
         YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
         String dataDir = config.getString("storage.data_dir", "userdata");
         storageDir = new File(plugin.getDataFolder(), dataDir);
@@ -50,6 +62,19 @@ public class BuyManager {
             plugin.getLogger().warning("無法創建數據目錄: " + storageDir.getAbsolutePath());
         }
         loadProducts(config.getConfigurationSection("products"));
+        // After a reload the join hook will not run again for players already online.
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            scheduleExpiries(online, loadUserData(online.getName()));
+        }
+    }
+
+    void shutdown() {
+        if (expiryTask != null) {
+            expiryTask.cancel();
+            expiryTask = null;
+        }
+        expiries.clear();
+        scheduledKeys.clear();
     }
 
     private void loadProducts(ConfigurationSection section) {
@@ -170,6 +195,7 @@ public class BuyManager {
         }
 
         data.set(key + ".owned", true);
+        data.set(key + ".synced_grant", grantFingerprint(product));
         if (product.getDurationDays() > 0) {
             // Add converted days from old subscription + new duration
             long totalDays = product.getDurationDays() + convertedDays;
@@ -181,6 +207,10 @@ public class BuyManager {
         saveUserData(player.getName(), data);
 
         syncPermissions(player, data);
+        long newExpiry = data.getLong(key + ".expiry", 0L);
+        if (newExpiry > 0L) {
+            schedule(player, product.getId(), newExpiry);
+        }
 
         List<String> granted = new ArrayList<String>();
         granted.add(product.getId());
@@ -439,37 +469,148 @@ public class BuyManager {
         return true;
     }
 
+    /**
+     * Join-time reconciliation. Revokes perks that ended while the player was offline and
+     * grants only what was never applied (or whose grant commands changed in the config);
+     * perks already in effect are left alone and just scheduled for their expiry.
+     */
     public void check(Player player) {
         YamlConfiguration data = loadUserData(player.getName());
+        ConfigurationSection buy = data.getConfigurationSection("buy");
+        if (buy == null) {
+            return;
+        }
         boolean changed = false;
         long now = System.currentTimeMillis();
-        Map<String, Boolean> active = new HashMap<String, Boolean>();
-        for (String key : data.getConfigurationSection("buy") != null ? data.getConfigurationSection("buy").getKeys(false) : new ArrayList<String>()) {
-            long expiry = data.getLong("buy." + key + ".expiry", 0L);
+        Map<String, Boolean> touched = new HashMap<String, Boolean>();
+        for (String key : new ArrayList<String>(buy.getKeys(false))) {
+            String base = "buy." + key;
+            long expiry = data.getLong(base + ".expiry", 0L);
+            Product product = products.get(key.toLowerCase());
             if (expiry > 0 && now > expiry) {
-                Product product = products.get(key.toLowerCase());
                 if (product != null) {
                     for (String cmd : product.getRevokeCommands()) {
                         dispatch(cmd, player, product.getDurationDays());
                     }
                     player.sendMessage(messages.format(player, "buy.expired", singleton("product", product.getId())));
+                    touched.put(product.getId().toLowerCase(), false);
                 }
-                data.set("buy." + key, null);
+                data.set(base, null);
                 changed = true;
-            } else {
-                Product product = products.get(key.toLowerCase());
-                if (product != null) {
-                    for (String cmd : product.getGrantCommands()) {
-                        dispatch(cmd, player, product.getDurationDays());
-                    }
-                    active.put(product.getId().toLowerCase(), true);
+                continue;
+            }
+            if (product == null || !data.getBoolean(base + ".owned", false)) {
+                continue;
+            }
+            int fingerprint = grantFingerprint(product);
+            if (!data.isInt(base + ".synced_grant") || data.getInt(base + ".synced_grant") != fingerprint) {
+                for (String cmd : product.getGrantCommands()) {
+                    dispatch(cmd, player, product.getDurationDays());
                 }
+                data.set(base + ".synced_grant", fingerprint);
+                touched.put(product.getId().toLowerCase(), true);
+                changed = true;
+            }
+            if (expiry > 0) {
+                schedule(player, product.getId(), expiry);
             }
         }
         if (changed) {
             saveUserData(player.getName(), data);
         }
-        syncPermissions(player, data, active);
+        if (!touched.isEmpty()) {
+            syncPermissions(player, data, touched);
+        }
+    }
+
+    private int grantFingerprint(Product product) {
+        return product.getGrantCommands().hashCode();
+    }
+
+    private void scheduleExpiries(Player player, YamlConfiguration data) {
+        ConfigurationSection buy = data.getConfigurationSection("buy");
+        if (buy == null) {
+            return;
+        }
+        for (String key : buy.getKeys(false)) {
+            long expiry = buy.getLong(key + ".expiry", 0L);
+            if (expiry > 0L && buy.getBoolean(key + ".owned", false) && products.containsKey(key.toLowerCase())) {
+                schedule(player, key, expiry);
+            }
+        }
+    }
+
+    private void schedule(Player player, String productId, long expiry) {
+        ExpiryEntry entry = new ExpiryEntry(expiry, player.getUniqueId(), productId);
+        if (!scheduledKeys.add(entry.key())) {
+            return;
+        }
+        expiries.add(entry);
+        armExpiryTask();
+    }
+
+    /**
+     * Make sure a one-shot task is due no later than the earliest queued expiry.
+     */
+    private void armExpiryTask() {
+        ExpiryEntry head = expiries.peek();
+        if (head == null) {
+            return;
+        }
+        if (expiryTask != null && expiryTaskDueAt <= head.expiry) {
+            return;
+        }
+        if (expiryTask != null) {
+            expiryTask.cancel();
+        }
+        long delayMs = Math.max(0L, head.expiry - System.currentTimeMillis());
+        // The perk is still valid at the expiry instant itself, so fire one tick after it.
+        long delayTicks = Math.min(MAX_EXPIRY_DELAY_TICKS, delayMs / 50L + 1L);
+        expiryTaskDueAt = System.currentTimeMillis() + delayTicks * 50L;
+        expiryTask = Bukkit.getScheduler().runTaskLater(plugin, new Runnable() {
+            public void run() {
+                expiryTask = null;
+                expiryTaskDueAt = Long.MAX_VALUE;
+                processExpiries();
+            }
+        }, delayTicks);
+    }
+
+    private void processExpiries() {
+        long now = System.currentTimeMillis();
+        while (!expiries.isEmpty() && expiries.peek().expiry < now) {
+            ExpiryEntry entry = expiries.poll();
+            scheduledKeys.remove(entry.key());
+            Player player = Bukkit.getPlayer(entry.playerId);
+            // Offline players are handled by check() on their next join.
+            if (player != null) {
+                expire(player, entry);
+            }
+        }
+        armExpiryTask();
+    }
+
+    private void expire(Player player, ExpiryEntry entry) {
+        YamlConfiguration data = loadUserData(player.getName());
+        String base = "buy." + entry.productId;
+        // The perk was renewed, converted or removed since it was queued.
+        if (!data.getBoolean(base + ".owned", false) || data.getLong(base + ".expiry", 0L) != entry.expiry) {
+            return;
+        }
+        Product product = products.get(entry.productId.toLowerCase());
+        if (product != null) {
+            for (String cmd : product.getRevokeCommands()) {
+                dispatch(cmd, player, product.getDurationDays());
+            }
+            player.sendMessage(messages.format(player, "buy.expired", singleton("product", product.getId())));
+        }
+        data.set(base, null);
+        saveUserData(player.getName(), data);
+        if (product != null) {
+            Map<String, Boolean> touched = new HashMap<String, Boolean>();
+            touched.put(product.getId().toLowerCase(), false);
+            syncPermissions(player, data, touched);
+        }
     }
 
     private void dispatch(String raw, Player player, long durationDays) {
@@ -509,12 +650,15 @@ public class BuyManager {
 
     private void syncPermissions(Player player, YamlConfiguration data) {
         Map<String, Boolean> active = new HashMap<String, Boolean>();
+        for (String id : products.keySet()) {
+            active.put(id, false);
+        }
         ConfigurationSection buy = data.getConfigurationSection("buy");
         if (buy != null) {
             long now = System.currentTimeMillis();
             for (String key : buy.getKeys(false)) {
                 long expiry = buy.getLong(key + ".expiry", 0L);
-                if (expiry == 0L || now <= expiry) {
+                if (buy.getBoolean(key + ".owned", false) && (expiry == 0L || now <= expiry)) {
                     active.put(key.toLowerCase(), true);
                 }
             }
@@ -522,37 +666,27 @@ public class BuyManager {
         syncPermissions(player, data, active);
     }
 
+    /**
+     * Request the permissions and groups of the given products (lower-case id -> should have).
+     * Products not in the map are not touched; the sync service skips nodes already in place.
+     */
     private void syncPermissions(Player player, YamlConfiguration data, Map<String, Boolean> activeProducts) {
-        if (permission == null) {
+        if (permissionSync == null || !permissionSync.isAvailable()) {
             return;
         }
         String world = player.getWorld().getName();
-        boolean groupSupported;
-        try {
-            groupSupported = permission.hasGroupSupport();
-        } catch (UnsupportedOperationException e) {
-            groupSupported = false;
-        }
 
-        for (Product product : products.values()) {
-            boolean shouldHave = activeProducts.getOrDefault(product.getId().toLowerCase(), false);
+        for (Map.Entry<String, Boolean> entry : activeProducts.entrySet()) {
+            Product product = products.get(entry.getKey());
+            if (product == null) {
+                continue;
+            }
+            boolean shouldHave = entry.getValue();
             for (String node : product.getPermissions()) {
-                boolean has = permission.playerHas(world, player, node);
-                if (shouldHave && !has) {
-                    permission.playerAdd(world, player, node);
-                } else if (!shouldHave && has) {
-                    permission.playerRemove(world, player, node);
-                }
+                permissionSync.setNode(player, world, node, shouldHave);
             }
-            if (groupSupported) {
-                for (String group : product.getGroups()) {
-                    boolean inGroup = permission.playerInGroup(world, player, group);
-                    if (shouldHave && !inGroup) {
-                        permission.playerAddGroup(world, player, group);
-                    } else if (!shouldHave && inGroup) {
-                        permission.playerRemoveGroup(world, player, group);
-                    }
-                }
+            for (String group : product.getGroups()) {
+                permissionSync.setGroup(player, world, group, shouldHave);
             }
         }
     }
@@ -652,6 +786,26 @@ public class BuyManager {
         }
     }
 
+    private static class ExpiryEntry implements Comparable<ExpiryEntry> {
+        private final long expiry;
+        private final UUID playerId;
+        private final String productId;
+
+        ExpiryEntry(long expiry, UUID playerId, String productId) {
+            this.expiry = expiry;
+            this.playerId = playerId;
+            this.productId = productId;
+        }
+
+        String key() {
+            return playerId + "|" + productId.toLowerCase() + "|" + expiry;
+        }
+
+        public int compareTo(ExpiryEntry other) {
+            return Long.compare(expiry, other.expiry);
+        }
+    }
+
     static class BuyException extends Exception {
         BuyException(String message) {
             super(message);
@@ -0,0 +1,227 @@
+package com.moehoshio.nekosuite;
+
+import com.moehoshio.nekosuite.CardBattleManager.BattleRules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Move search for the PvE card battle AI (player 2).
+ *
+ * <p>Open-loop Monte Carlo tree search: a tree node stands for a sequence of moves (a card or
+ * ending the turn) rather than a concrete state, and every iteration replays its path from the
+ * root state with fresh draws, so draws and forced discards are sampled instead of enumerated.
+ * The player's hand is hidden from the AI: each iteration deals the player a random hand of the
+ * same size. A move that is not legal in the sampled state is skipped, and UCB counts how often
+ * a child was available instead of how often its parent was visited. Leaves are scored by a
+ * random playout a few turns deep.</p>
+ *
+ * <p>Meant for a worker thread: {@link CardBattleState} and the rules are immutable, so the
+ * search works straight from the live state.</p>
+ */
+final class CardBattleAI {
+
+    // Tree key for ending the turn; every other key is an interned card index.
+    private static final int END = -1;
+    private static final double EXPLORATION = 0.7;
+    private static final int HORIZON_TURNS = 6;
+    private static final int MAX_ITERATIONS = 200000;
+    private static final double PLAYOUT_PLAY_CHANCE = 0.85;
+
+    private CardBattleAI() {
+    }
+
+    /**
+     * Pick the AI's next move within roughly {@code budgetMillis}.
+     *
+     * @return the hand index of the card to play, or {@link CardBattleState#END_TURN}
+     */
+    static int chooseMove(BattleRules rules, CardBattleState state, int maxPlaysPerTurn, long budgetMillis, Random random) {
+        Search search = new Search(rules, maxPlaysPerTurn, state.turn() + HORIZON_TURNS);
+        int[] rootMoves = search.legalMoves(state);
+        if (rootMoves.length == 1) {
+            return CardBattleState.END_TURN;
+        }
+
+        Node root = new Node(null, END, false);
+        long deadline = System.nanoTime() + budgetMillis * 1000000L;
+        int iterations = 0;
+        do {
+            search.iterate(root, state, random);
+            iterations++;
+        } while (iterations < MAX_ITERATIONS && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted());
+
+        Node best = null;
+        for (int move : rootMoves) {
+            Node child = root.child(move);
+            if (child != null && (best == null || child.visits > best.visits)) {
+                best = child;
+            }
+        }
+        return best == null || best.move == END ? CardBattleState.END_TURN : state.indexOf(best.move);
+    }
+
+    private static final class Search {
+        private final BattleRules rules;
+        private final int maxPlaysPerTurn;
+        private final int horizonTurn;
+        private final int[] moveBuffer;
+
+        Search(BattleRules rules, int maxPlaysPerTurn, int horizonTurn) {
+            this.rules = rules;
+            this.maxPlaysPerTurn = maxPlaysPerTurn;
+            this.horizonTurn = horizonTurn;
+            // Moves are distinct cards plus END
+            this.moveBuffer = new int[rules.cardCount() + 1];
+        }
+
+        void iterate(Node root, CardBattleState rootState, Random random) {
+            CardBattleState state = dealHiddenHand(rootState, random);
+
+            // Selection and expansion
+            Node node = root;
+            while (!isTerminal(state)) {
+                int[] legal = legalMoves(state);
+                int untried = 0;
+                for (int move : legal) {
+                    if (node.child(move) == null) {
+                        legal[untried++] = move;
+                    }
+                }
+                if (untried > 0) {
+                    int move = legal[random.nextInt(untried)];
+                    Node child = new Node(node, move, !state.isPlayer1Turn());
+                    node.children.add(child);
+                    state = apply(state, move, random);
+                    node = child;
+                    break;
+                }
+                Node best = null;
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (int move : legal) {
+                    Node child = node.child(move);
+                    child.availability++;
+                    double score = child.reward / child.visits
+                            + EXPLORATION * Math.sqrt(Math.log(child.availability) / child.visits);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = child;
+                    }
+                }
+                state = apply(state, best.move, random);
+                node = best;
+            }
+
+            // Simulation
+            while (!isTerminal(state)) {
+                state = apply(state, randomMove(state, random), random);
+            }
+            double value = evaluate(state);
+
+            // Backpropagation, each node scored for the side that made its move
+            for (Node n = node; n != root; n = n.parent) {
+                n.visits++;
+                n.reward += n.aiMove ? value : 1.0 - value;
+            }
+            root.visits++;
+        }
+
+        boolean isTerminal(CardBattleState state) {
+            return state.isOver() || state.turn() >= horizonTurn;
+        }
+
+        /**
+         * Replace the player's hand, which the AI can't see, with random cards.
+         */
+        CardBattleState dealHiddenHand(CardBattleState state, Random random) {
+            return state.withHand(true, rules.dealHand(state.handSize(true), random));
+        }
+
+        /**
+         * Distinct playable cards for the side to move, then {@link #END}; a fresh array.
+         */
+        int[] legalMoves(CardBattleState state) {
+            int count = collectMoves(state);
+            int[] moves = new int[count];
+            System.arraycopy(moveBuffer, 0, moves, 0, count);
+            return moves;
+        }
+
+        private int collectMoves(CardBattleState state) {
+            int count = 0;
+            if (state.playsThisTurn() < maxPlaysPerTurn) {
+                boolean isPlayer1 = state.isPlayer1Turn();
+                for (int i = 0; i < state.handSize(isPlayer1); i++) {
+                    int card = state.handCard(isPlayer1, i);
+                    if (state.canPlay(rules, i) && !contains(moveBuffer, count, card)) {
+                        moveBuffer[count++] = card;
+                    }
+                }
+            }
+            moveBuffer[count++] = END;
+            return count;
+        }
+
+        int randomMove(CardBattleState state, Random random) {
+            int count = collectMoves(state);
+            if (count == 1 || random.nextDouble() >= PLAYOUT_PLAY_CHANCE) {
+                return END;
+            }
+            return moveBuffer[random.nextInt(count - 1)];
+        }
+
+        CardBattleState apply(CardBattleState state, int move, Random random) {
+            return move == END ? state.endTurn(rules, random) : state.play(rules, state.indexOf(move), random);
+        }
+
+        /**
+         * How good the position is for the AI, from 0 (lost) to 1 (won).
+         */
+        double evaluate(CardBattleState state) {
+            if (state.health(true) <= 0) {
+                return 1.0;
+            }
+            if (state.health(false) <= 0) {
+                return 0.0;
+            }
+            double edge = state.health(false) - state.health(true)
+                    + 0.5 * (state.handSize(false) - state.handSize(true));
+            return 0.5 + 0.5 * Math.tanh(edge / 10.0);
+        }
+
+        private static boolean contains(int[] values, int count, int value) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Node {
+        private final Node parent;
+        private final int move;
+        private final boolean aiMove;
+        private final List<Node> children = new ArrayList<Node>(4);
+        private int visits;
+        private int availability;
+        private double reward;
+
+        Node(Node parent, int move, boolean aiMove) {
+            this.parent = parent;
+            this.move = move;
+            this.aiMove = aiMove;
+        }
+
+        Node child(int childMove) {
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i).move == childMove) {
+                    return children.get(i);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -18,11 +18,19 @@ import org.bukkit.scheduler.BukkitTask;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 /**
  * Card Battle Game Module - A virtual card battle game with PvP and PvE modes.
@@ -48,16 +56,19 @@ public class CardBattleManager {
     private boolean enabled = true;
     private int startingHealth = 30;
     private int startingHandSize = 5;
-    private int maxHandSize = 7;
-    private int drawPerTurn = 1;
     private int startingMana = 3;
-    private int manaPerTurn = 1;
-    private int maxMana = 10;
     private int turnTimeLimit = 60; // seconds
     private List<String> winRewardCommands = new ArrayList<String>();
 
-    // Card definitions
-    private final Map<String, CardDefinition> cards = new HashMap<String, CardDefinition>();
+    // AI search: think time per difficulty (ms), and a cap on cards per AI turn
+    private final Map<String, Long> aiThinkMillis = new HashMap<String, Long>();
+    private int aiMaxPlaysPerTurn = 8;
+    private final ExecutorService aiPool;
+    // Set once this manager is replaced (reload) or disabled; late AI answers are dropped then
+    private volatile boolean shutdown;
+
+    // Card definitions (interned to int indices) and the rule numbers, shared with AI searches
+    private BattleRules rules;
 
     // AI opponent definitions
     private final Map<String, AIOpponent> aiOpponents = new HashMap<String, AIOpponent>();
@@ -70,6 +81,7 @@ public class CardBattleManager {
 
     // Callback for opening games menu (set by plugin)
     private java.util.function.Consumer<Player> openGamesMenuCallback;
+    private LeaderboardService leaderboardService;
 
     public CardBattleManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout menuLayout) {
         this.plugin = plugin;
@@ -83,6 +95,27 @@ public class CardBattleManager {
             plugin.getLogger().warning("無法創建數據目錄: " + storageDir.getAbsolutePath());
         }
         loadConfig(config);
+        int threads = config.getInt("ai.threads", 0);
+        if (threads <= 0) {
+            threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        }
+        aiPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "NekoSuite-CardAI-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Stop the AI workers; searches still running are abandoned.
+     */
+    public void shutdown() {
+        shutdown = true;
+        aiPool.shutdownNow();
     }
 
     /**
@@ -92,32 +125,28 @@ public class CardBattleManager {
         this.openGamesMenuCallback = callback;
     }
 
+    /**
+     * Set the service that records finished rounds for the leaderboards.
+     */
+    public void setLeaderboardService(LeaderboardService leaderboardService) {
+        this.leaderboardService = leaderboardService;
+    }
+
     private void loadConfig(YamlConfiguration config) {
         enabled = config.getBoolean("game.enabled", true);
         startingHealth = config.getInt("game.starting_health", 30);
         startingHandSize = config.getInt("game.starting_hand_size", 5);
-        maxHandSize = config.getInt("game.max_hand_size", 7);
-        drawPerTurn = config.getInt("game.draw_per_turn", 1);
         startingMana = config.getInt("game.starting_mana", 3);
-        manaPerTurn = config.getInt("game.mana_per_turn", 1);
-        maxMana = config.getInt("game.max_mana", 10);
         turnTimeLimit = config.getInt("game.turn_time_limit", 60);
         winRewardCommands = config.getStringList("rewards.win_commands");
+        aiThinkMillis.clear();
+        aiThinkMillis.put("easy", config.getLong("ai.think_ms.easy", 40L));
+        aiThinkMillis.put("normal", config.getLong("ai.think_ms.normal", 150L));
+        aiThinkMillis.put("hard", config.getLong("ai.think_ms.hard", 400L));
+        aiMaxPlaysPerTurn = Math.max(1, config.getInt("ai.max_plays_per_turn", 8));
 
         // Load cards
-        cards.clear();
-        ConfigurationSection cardsSection = config.getConfigurationSection("cards");
-        if (cardsSection != null) {
-            for (String cardId : cardsSection.getKeys(false)) {
-                ConfigurationSection cardSection = cardsSection.getConfigurationSection(cardId);
-                if (cardSection != null) {
-                    CardDefinition card = CardDefinition.fromSection(cardId, cardSection);
-                    if (card != null) {
-                        cards.put(cardId, card);
-                    }
-                }
-            }
-        }
+        rules = BattleRules.load(config);
 
         // Load AI opponents
         aiOpponents.clear();
@@ -216,9 +245,7 @@ public class CardBattleManager {
             opponent = getDefaultAI();
         }
 
-        BattleSession session = new BattleSession(player.getName(), null, opponent, startingHealth, startingMana);
-        initializePlayerHand(session, true);
-        initializeAIHand(session);
+        BattleSession session = newSession(player.getName(), null, opponent);
         activeSessions.put(player.getName(), session);
 
         Map<String, String> map = new HashMap<String, String>();
@@ -294,9 +321,7 @@ public class CardBattleManager {
         pendingInvitations.remove(inviter);
 
         // Create PvP session
-        BattleSession session = new BattleSession(inviter, player.getName(), null, startingHealth, startingMana);
-        initializePlayerHand(session, true);
-        initializePlayerHand(session, false);
+        BattleSession session = newSession(inviter, player.getName(), null);
         activeSessions.put(inviter, session);
         activeSessions.put(player.getName(), session);
 
@@ -355,35 +380,21 @@ public class CardBattleManager {
             return;
         }
 
-        List<String> hand = isPlayer1 ? session.getPlayer1Hand() : session.getPlayer2Hand();
-        if (handIndex < 0 || handIndex >= hand.size()) {
-            player.sendMessage(messages.format(player, "cardbattle.invalid_card"));
-            return;
-        }
-
-        String cardId = hand.get(handIndex);
-        CardDefinition card = cards.get(cardId);
-        if (card == null) {
+        CardBattleState state = session.getState();
+        if (handIndex < 0 || handIndex >= state.handSize(isPlayer1)) {
             player.sendMessage(messages.format(player, "cardbattle.invalid_card"));
             return;
         }
 
-        int currentMana = isPlayer1 ? session.getPlayer1Mana() : session.getPlayer2Mana();
-        if (card.getManaCost() > currentMana) {
+        if (!state.canPlay(rules, handIndex)) {
             player.sendMessage(messages.format(player, "cardbattle.not_enough_mana"));
             return;
         }
 
-        // Remove card from hand and deduct mana
-        hand.remove(handIndex);
-        if (isPlayer1) {
-            session.setPlayer1Mana(currentMana - card.getManaCost());
-        } else {
-            session.setPlayer2Mana(currentMana - card.getManaCost());
-        }
-
-        // Apply card effect
-        applyCardEffect(player, session, card, isPlayer1);
+        // Remove card from hand, deduct mana and apply its effect
+        int card = state.handCard(isPlayer1, handIndex);
+        session.setState(state.play(rules, handIndex, random));
+        announceCard(player, session, card, isPlayer1);
 
         // Check for game end
         if (checkGameEnd(session)) {
@@ -411,58 +422,30 @@ public class CardBattleManager {
             return;
         }
 
-        // Switch turn
-        session.setPlayer1Turn(!session.isPlayer1Turn());
-        session.incrementTurnCount();
-
-        // Give mana to next player
-        if (session.isPlayer1Turn()) {
-            int newMana = Math.min(maxMana, session.getPlayer1Mana() + manaPerTurn);
-            session.setPlayer1Mana(newMana);
-            drawCards(session, true, drawPerTurn);
-        } else {
-            int newMana = Math.min(maxMana, session.getPlayer2Mana() + manaPerTurn);
-            session.setPlayer2Mana(newMana);
-            drawCards(session, false, drawPerTurn);
-        }
+        // Switch turn; the next player gets mana and draws
+        session.setState(session.getState().endTurn(rules, random));
 
         player.sendMessage(messages.format(player, "cardbattle.turn_ended"));
 
-        // If PvE and it's AI turn, process AI turn
-        if (session.isPvE() && !session.isPlayer1Turn()) {
-            processAITurn(session);
-            // After AI turn, switch back to player
-            session.setPlayer1Turn(true);
-            session.incrementTurnCount();
-            int newMana = Math.min(maxMana, session.getPlayer1Mana() + manaPerTurn);
-            session.setPlayer1Mana(newMana);
-            drawCards(session, true, drawPerTurn);
-
-            if (checkGameEnd(session)) {
-                endGame(session);
-                return;
-            }
-
-            Player p1 = Bukkit.getPlayer(session.getPlayer1Name());
-            if (p1 != null && p1.isOnline()) {
-                openBattleMenu(p1, session);
-            }
-        } else if (!session.isPvE()) {
-            // PvP - notify other player about turn end and that it's their turn
-            String otherName = session.isPlayer1Turn() ? session.getPlayer1Name() : session.getPlayer2Name();
-            Player other = Bukkit.getPlayer(otherName);
-            if (other != null && other.isOnline()) {
-                Map<String, String> endTurnMap = new HashMap<String, String>();
-                endTurnMap.put("player", player.getName());
-                other.sendMessage(messages.format(other, "cardbattle.opponent_end_turn", endTurnMap));
-                other.sendMessage(messages.format(other, "cardbattle.your_turn"));
-                openBattleMenu(other, session);
-            }
+        // PvE: the AI plays its turn from a worker thread and hands the turn back when done
+        if (session.isPvE()) {
+            openBattleMenu(player, session);
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("opponent", resolveI18n(player, session.getAiOpponent().getName()));
+            player.sendMessage(messages.format(player, "cardbattle.ai_thinking", map));
+            requestAIMove(session);
+            return;
         }
 
-        // Save session for PvE games
-        if (session.isPvE()) {
-            saveSession(session);
+        // PvP - notify other player about turn end and that it's their turn
+        String otherName = session.getState().isPlayer1Turn() ? session.getPlayer1Name() : session.getPlayer2Name();
+        Player other = Bukkit.getPlayer(otherName);
+        if (other != null && other.isOnline()) {
+            Map<String, String> endTurnMap = new HashMap<String, String>();
+            endTurnMap.put("player", player.getName());
+            other.sendMessage(messages.format(other, "cardbattle.opponent_end_turn", endTurnMap));
+            other.sendMessage(messages.format(other, "cardbattle.your_turn"));
+            openBattleMenu(other, session);
         }
 
         openBattleMenu(player, session);
@@ -479,11 +462,7 @@ public class CardBattleManager {
         }
 
         boolean isPlayer1 = player.getName().equals(session.getPlayer1Name());
-        if (isPlayer1) {
-            session.setPlayer1Health(0);
-        } else {
-            session.setPlayer2Health(0);
-        }
+        session.setState(session.getState().withHealth(isPlayer1, 0));
 
         player.sendMessage(messages.format(player, "cardbattle.surrendered"));
         
@@ -517,18 +496,16 @@ public class CardBattleManager {
             return;
         }
 
-        List<String> hand = isPlayer1 ? session.getPlayer1Hand() : session.getPlayer2Hand();
-        if (handIndex < 0 || handIndex >= hand.size()) {
+        CardBattleState state = session.getState();
+        if (handIndex < 0 || handIndex >= state.handSize(isPlayer1)) {
             player.sendMessage(messages.format(player, "cardbattle.invalid_card"));
             return;
         }
 
-        String cardId = hand.get(handIndex);
-        CardDefinition card = cards.get(cardId);
-        String cardName = card != null ? resolveI18n(player, card.getName()) : cardId;
+        String cardName = resolveI18n(player, rules.card(state.handCard(isPlayer1, handIndex)).getName());
 
         // Remove card from hand
-        hand.remove(handIndex);
+        session.setState(state.discard(handIndex));
 
         Map<String, String> map = new HashMap<String, String>();
         map.put("card", cardName);
@@ -753,10 +730,10 @@ public class CardBattleManager {
         Inventory inv = Bukkit.createInventory(new CardBattleMenuHolder(MenuType.BATTLE), 54, title);
 
         boolean isPlayer1 = player.getName().equals(session.getPlayer1Name());
-        int myHealth = isPlayer1 ? session.getPlayer1Health() : session.getPlayer2Health();
-        int myMana = isPlayer1 ? session.getPlayer1Mana() : session.getPlayer2Mana();
-        int oppHealth = isPlayer1 ? session.getPlayer2Health() : session.getPlayer1Health();
-        List<String> myHand = isPlayer1 ? session.getPlayer1Hand() : session.getPlayer2Hand();
+        CardBattleState state = session.getState();
+        int myHealth = state.health(isPlayer1);
+        int myMana = state.mana(isPlayer1);
+        int oppHealth = state.health(!isPlayer1);
         boolean isMyTurn = session.isPlayerTurn(isPlayer1);
 
         String oppName = session.isPvE() ? resolveI18n(player, session.getAiOpponent().getName()) 
@@ -793,7 +770,7 @@ public class CardBattleManager {
 
         // Turn indicator (top center)
         Map<String, String> turnMap = new HashMap<String, String>();
-        turnMap.put("turn", String.valueOf(session.getTurnCount()));
+        turnMap.put("turn", String.valueOf(state.turn()));
         ItemStack turnItem = createItem(isMyTurn ? Material.LIME_WOOL : Material.RED_WOOL,
             isMyTurn ? messages.format(player, "menu.cardbattle.your_turn") 
                      : messages.format(player, "menu.cardbattle.opponent_turn"),
@@ -804,10 +781,8 @@ public class CardBattleManager {
 
         // Hand cards (middle row, slots 18-26)
         int[] handSlots = {18, 19, 20, 21, 22, 23, 24, 25, 26};
-        for (int i = 0; i < myHand.size() && i < handSlots.length; i++) {
-            String cardId = myHand.get(i);
-            CardDefinition card = cards.get(cardId);
-            if (card == null) continue;
+        for (int i = 0; i < state.handSize(isPlayer1) && i < handSlots.length; i++) {
+            CardDefinition card = rules.card(state.handCard(isPlayer1, i));
 
             boolean canPlay = isMyTurn && myMana >= card.getManaCost();
             List<String> lore = new ArrayList<String>();
@@ -869,40 +844,18 @@ public class CardBattleManager {
 
     // ============ Game Logic ============
 
-    private void initializePlayerHand(BattleSession session, boolean isPlayer1) {
-        List<String> deck = new ArrayList<String>(cards.keySet());
-        List<String> hand = isPlayer1 ? session.getPlayer1Hand() : session.getPlayer2Hand();
-        hand.clear();
-
-        for (int i = 0; i < startingHandSize && !deck.isEmpty(); i++) {
-            int idx = random.nextInt(deck.size());
-            hand.add(deck.get(idx));
-        }
-    }
-
-    private void initializeAIHand(BattleSession session) {
-        List<String> deck = new ArrayList<String>(cards.keySet());
-        session.getPlayer2Hand().clear();
-
-        for (int i = 0; i < startingHandSize && !deck.isEmpty(); i++) {
-            int idx = random.nextInt(deck.size());
-            session.getPlayer2Hand().add(deck.get(idx));
-        }
+    private BattleSession newSession(String player1Name, String player2Name, AIOpponent aiOpponent) {
+        int opponentHealth = aiOpponent != null ? aiOpponent.getHealth() : startingHealth;
+        CardBattleState state = CardBattleState.start(rules, startingHealth, opponentHealth, startingMana, startingHandSize, random);
+        return new BattleSession(player1Name, player2Name, aiOpponent, state);
     }
 
-    private void drawCards(BattleSession session, boolean isPlayer1, int count) {
-        List<String> deck = new ArrayList<String>(cards.keySet());
-        List<String> hand = isPlayer1 ? session.getPlayer1Hand() : session.getPlayer2Hand();
-
-        for (int i = 0; i < count && hand.size() < maxHandSize && !deck.isEmpty(); i++) {
-            int idx = random.nextInt(deck.size());
-            hand.add(deck.get(idx));
-        }
-    }
-
-    private void applyCardEffect(Player player, BattleSession session, CardDefinition card, boolean isPlayer1) {
-        String type = card.getType().toLowerCase();
-        int value = card.getValue();
+    /**
+     * Tell the player (and a PvP opponent) what the card they just played did.
+     */
+    private void announceCard(Player player, BattleSession session, int cardIndex, boolean isPlayer1) {
+        CardDefinition card = rules.card(cardIndex);
+        int value = rules.shownValue(cardIndex);
 
         Map<String, String> map = new HashMap<String, String>();
         map.put("card", resolveI18n(player, card.getName()));
@@ -919,65 +872,9 @@ public class CardBattleManager {
             }
         }
 
-        switch (type) {
-            case "attack":
-                if (isPlayer1) {
-                    session.setPlayer2Health(session.getPlayer2Health() - value);
-                } else {
-                    session.setPlayer1Health(session.getPlayer1Health() - value);
-                }
-                player.sendMessage(messages.format(player, "cardbattle.card_attack", map));
-                notifyOpponent(opponent, player.getName(), opponentCardName, value, "cardbattle.opponent_attack");
-                break;
-            case "heal":
-                if (isPlayer1) {
-                    session.setPlayer1Health(Math.min(startingHealth, session.getPlayer1Health() + value));
-                } else {
-                    session.setPlayer2Health(Math.min(startingHealth, session.getPlayer2Health() + value));
-                }
-                player.sendMessage(messages.format(player, "cardbattle.card_heal", map));
-                notifyOpponent(opponent, player.getName(), opponentCardName, value, "cardbattle.opponent_heal");
-                break;
-            case "defense":
-                // Defense could add temporary shield (simplified: heals half the value)
-                int healAmount = value / 2;
-                if (isPlayer1) {
-                    session.setPlayer1Health(Math.min(startingHealth, session.getPlayer1Health() + healAmount));
-                } else {
-                    session.setPlayer2Health(Math.min(startingHealth, session.getPlayer2Health() + healAmount));
-                }
-                map.put("value", String.valueOf(healAmount));
-                player.sendMessage(messages.format(player, "cardbattle.card_defense", map));
-                notifyOpponent(opponent, player.getName(), opponentCardName, healAmount, "cardbattle.opponent_defense");
-                break;
-            case "draw":
-                drawCards(session, isPlayer1, value);
-                player.sendMessage(messages.format(player, "cardbattle.card_draw", map));
-                notifyOpponent(opponent, player.getName(), opponentCardName, value, "cardbattle.opponent_draw");
-                break;
-            case "mana":
-                if (isPlayer1) {
-                    session.setPlayer1Mana(Math.min(maxMana, session.getPlayer1Mana() + value));
-                } else {
-                    session.setPlayer2Mana(Math.min(maxMana, session.getPlayer2Mana() + value));
-                }
-                player.sendMessage(messages.format(player, "cardbattle.card_mana", map));
-                notifyOpponent(opponent, player.getName(), opponentCardName, value, "cardbattle.opponent_mana");
-                break;
-            case "discard":
-                // Force opponent to discard cards
-                List<String> oppHand = isPlayer1 ? session.getPlayer2Hand() : session.getPlayer1Hand();
-                for (int i = 0; i < value && !oppHand.isEmpty(); i++) {
-                    oppHand.remove(random.nextInt(oppHand.size()));
-                }
-                player.sendMessage(messages.format(player, "cardbattle.card_discard", map));
-                notifyOpponent(opponent, player.getName(), opponentCardName, value, "cardbattle.opponent_discard");
-                break;
-            default:
-                player.sendMessage(messages.format(player, "cardbattle.card_played", map));
-                notifyOpponent(opponent, player.getName(), opponentCardName, value, "cardbattle.opponent_played");
-                break;
-        }
+        String effect = rules.effectName(cardIndex);
+        player.sendMessage(messages.format(player, "cardbattle.card_" + effect, map));
+        notifyOpponent(opponent, player.getName(), opponentCardName, value, "cardbattle.opponent_" + effect);
     }
 
     /**
@@ -994,104 +891,131 @@ public class CardBattleManager {
         opponent.sendMessage(messages.format(opponent, messageKey, map));
     }
 
-    private void processAITurn(BattleSession session) {
-        AIOpponent ai = session.getAiOpponent();
-        List<String> aiHand = session.getPlayer2Hand();
-        int aiMana = session.getPlayer2Mana();
-
-        // Simple AI: play cards until out of mana
-        List<String> playableCards = new ArrayList<String>();
-        for (String cardId : aiHand) {
-            CardDefinition card = cards.get(cardId);
-            if (card != null && card.getManaCost() <= aiMana) {
-                playableCards.add(cardId);
-            }
+    /**
+     * Ask for the AI's next move. The search runs on the AI pool from the current state and its
+     * answer is applied on the main thread; an AI with no think time plays one random card per
+     * turn, as the AI used to.
+     */
+    private void requestAIMove(final BattleSession session) {
+        final CardBattleState state = session.getState();
+        Long configured = aiThinkMillis.get(session.getAiOpponent().getDifficulty());
+        final long thinkMillis = configured != null ? configured : aiThinkMillis.get("normal");
+        if (thinkMillis <= 0) {
+            applyAIMove(session, state, state.playsThisTurn() == 0 ? randomPlayableIndex(state) : CardBattleState.END_TURN);
+            return;
+        }
+        if (state.playsThisTurn() >= aiMaxPlaysPerTurn) {
+            applyAIMove(session, state, CardBattleState.END_TURN);
+            return;
         }
 
-        // Play one card based on AI difficulty
-        if (!playableCards.isEmpty()) {
-            String cardToPlay;
-            if ("hard".equals(ai.getDifficulty())) {
-                // Hard: prioritize attack cards
-                cardToPlay = findBestCard(playableCards, "attack");
-            } else if ("easy".equals(ai.getDifficulty())) {
-                // Easy: random card
-                cardToPlay = playableCards.get(random.nextInt(playableCards.size()));
-            } else {
-                // Normal: balanced
-                cardToPlay = playableCards.get(random.nextInt(playableCards.size()));
-            }
-
-            CardDefinition card = cards.get(cardToPlay);
-            if (card != null) {
-                aiHand.remove(cardToPlay);
-                session.setPlayer2Mana(aiMana - card.getManaCost());
-                applyAICardEffect(session, card);
-            }
+        final BattleRules searchRules = rules;
+        final int maxPlays = aiMaxPlaysPerTurn;
+        try {
+            aiPool.execute(new Runnable() {
+                public void run() {
+                    int move;
+                    try {
+                        move = CardBattleAI.chooseMove(searchRules, state, maxPlays, thinkMillis, ThreadLocalRandom.current());
+                    } catch (RuntimeException e) {
+                        plugin.getLogger().log(Level.WARNING, "Card battle AI search failed", e);
+                        move = CardBattleState.END_TURN;
+                    }
+                    if (shutdown || !plugin.isEnabled()) {
+                        return;
+                    }
+                    final int chosen = move;
+                    Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                        public void run() {
+                            applyAIMove(session, state, chosen);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool already shut down (reload/disable): the saved game resumes the AI turn on
+            // the manager that replaced this one.
         }
     }
 
-    private String findBestCard(List<String> hand, String preferredType) {
-        for (String cardId : hand) {
-            CardDefinition card = cards.get(cardId);
-            if (card != null && card.getType().equalsIgnoreCase(preferredType)) {
-                return cardId;
+    private int randomPlayableIndex(CardBattleState state) {
+        List<Integer> playable = new ArrayList<Integer>();
+        for (int i = 0; i < state.handSize(false); i++) {
+            if (state.canPlay(rules, i)) {
+                playable.add(i);
             }
         }
-        return hand.get(0);
+        return playable.isEmpty() ? CardBattleState.END_TURN : playable.get(random.nextInt(playable.size()));
     }
 
-    private void applyAICardEffect(BattleSession session, CardDefinition card) {
-        String type = card.getType().toLowerCase();
-        int value = card.getValue();
-
-        switch (type) {
-            case "attack":
-                session.setPlayer1Health(session.getPlayer1Health() - value);
-                break;
-            case "heal":
-                session.setPlayer2Health(Math.min(startingHealth, session.getPlayer2Health() + value));
-                break;
-            case "defense":
-                session.setPlayer2Health(Math.min(startingHealth, session.getPlayer2Health() + value / 2));
-                break;
-            case "draw":
-                drawCards(session, false, value);
-                break;
-            case "mana":
-                session.setPlayer2Mana(Math.min(maxMana, session.getPlayer2Mana() + value));
-                break;
-            case "discard":
-                List<String> p1Hand = session.getPlayer1Hand();
-                for (int i = 0; i < value && !p1Hand.isEmpty(); i++) {
-                    p1Hand.remove(random.nextInt(p1Hand.size()));
-                }
-                break;
+    /**
+     * Play the move the AI chose from {@code searched} (a hand index, or end its turn) if the
+     * game is still waiting on it.
+     */
+    private void applyAIMove(BattleSession session, CardBattleState searched, int move) {
+        // The player may have surrendered or left while the AI was thinking, or this manager
+        // was replaced by a reload; the saved game resumes the AI turn on the new one.
+        if (shutdown || session.isEnded() || activeSessions.get(session.getPlayer1Name()) != session
+                || session.getState() != searched || searched.isPlayer1Turn()) {
+            return;
+        }
+        if (move == CardBattleState.END_TURN || !searched.canPlay(rules, move)) {
+            finishAITurn(session);
+            return;
         }
 
+        int cardIndex = searched.handCard(false, move);
+        session.setState(searched.play(rules, move, random));
+
         // Notify player about AI action
         Player p1 = Bukkit.getPlayer(session.getPlayer1Name());
         if (p1 != null && p1.isOnline()) {
+            CardDefinition card = rules.card(cardIndex);
             Map<String, String> map = new HashMap<String, String>();
             map.put("card", resolveI18n(p1, card.getName()));
-            map.put("value", String.valueOf(value));
+            map.put("value", String.valueOf(card.getValue()));
             p1.sendMessage(messages.format(p1, "cardbattle.ai_played", map));
         }
+
+        if (checkGameEnd(session)) {
+            endGame(session);
+            return;
+        }
+        requestAIMove(session);
+    }
+
+    private void finishAITurn(BattleSession session) {
+        session.setState(session.getState().endTurn(rules, random));
+        saveSession(session);
+
+        Player p1 = Bukkit.getPlayer(session.getPlayer1Name());
+        if (p1 != null && p1.isOnline()) {
+            p1.sendMessage(messages.format(p1, "cardbattle.your_turn"));
+            openBattleMenu(p1, session);
+        }
     }
 
     private boolean checkGameEnd(BattleSession session) {
-        return session.getPlayer1Health() <= 0 || session.getPlayer2Health() <= 0;
+        return session.getState().isOver();
     }
 
     private void endGame(BattleSession session) {
         session.setEnded(true);
 
-        boolean player1Won = session.getPlayer1Health() > 0;
+        CardBattleState state = session.getState();
+        boolean player1Won = state.health(true) > 0;
         String winnerName = player1Won ? session.getPlayer1Name() : 
             (session.isPvE() ? "AI" : session.getPlayer2Name());
         String loserName = player1Won ? 
             (session.isPvE() ? "AI" : session.getPlayer2Name()) : session.getPlayer1Name();
 
+        if (leaderboardService != null) {
+            leaderboardService.record("cardbattle", session.getPlayer1Name(), state.health(true), player1Won);
+            if (!session.isPvE()) {
+                leaderboardService.record("cardbattle", session.getPlayer2Name(), state.health(false), !player1Won);
+            }
+        }
+
         // Notify players
         Player p1 = Bukkit.getPlayer(session.getPlayer1Name());
         if (p1 != null && p1.isOnline()) {
@@ -1325,14 +1249,15 @@ public class CardBattleManager {
 
         data.set("cardbattle.active", !session.isEnded());
         data.set("cardbattle.ai_opponent", session.getAiOpponent().getId());
-        data.set("cardbattle.player_health", session.getPlayer1Health());
-        data.set("cardbattle.ai_health", session.getPlayer2Health());
-        data.set("cardbattle.player_mana", session.getPlayer1Mana());
-        data.set("cardbattle.ai_mana", session.getPlayer2Mana());
-        data.set("cardbattle.player_hand", session.getPlayer1Hand());
-        data.set("cardbattle.ai_hand", session.getPlayer2Hand());
-        data.set("cardbattle.player_turn", session.isPlayer1Turn());
-        data.set("cardbattle.turn_count", session.getTurnCount());
+        CardBattleState state = session.getState();
+        data.set("cardbattle.player_health", state.health(true));
+        data.set("cardbattle.ai_health", state.health(false));
+        data.set("cardbattle.player_mana", state.mana(true));
+        data.set("cardbattle.ai_mana", state.mana(false));
+        data.set("cardbattle.player_hand", cardIds(state, true));
+        data.set("cardbattle.ai_hand", cardIds(state, false));
+        data.set("cardbattle.player_turn", state.isPlayer1Turn());
+        data.set("cardbattle.turn_count", state.turn());
 
         try {
             data.save(file);
@@ -1364,25 +1289,39 @@ public class CardBattleManager {
             ai = getDefaultAI();
         }
 
-        BattleSession session = new BattleSession(playerName, null, ai, startingHealth, startingMana);
-        session.setPlayer1Health(data.getInt("cardbattle.player_health", startingHealth));
-        session.setPlayer2Health(data.getInt("cardbattle.ai_health", ai.getHealth()));
-        session.setPlayer1Mana(data.getInt("cardbattle.player_mana", startingMana));
-        session.setPlayer2Mana(data.getInt("cardbattle.ai_mana", startingMana));
-        session.setPlayer1Turn(data.getBoolean("cardbattle.player_turn", true));
-
-        List<String> playerHand = data.getStringList("cardbattle.player_hand");
-        List<String> aiHand = data.getStringList("cardbattle.ai_hand");
-        session.getPlayer1Hand().addAll(playerHand);
-        session.getPlayer2Hand().addAll(aiHand);
+        CardBattleState state = new CardBattleState(
+                data.getInt("cardbattle.player_health", startingHealth),
+                data.getInt("cardbattle.ai_health", ai.getHealth()),
+                data.getInt("cardbattle.player_mana", startingMana),
+                data.getInt("cardbattle.ai_mana", startingMana),
+                cardIndexes(data.getStringList("cardbattle.player_hand")),
+                cardIndexes(data.getStringList("cardbattle.ai_hand")),
+                data.getBoolean("cardbattle.player_turn", true),
+                Math.max(1, data.getInt("cardbattle.turn_count", 1)));
+        return new BattleSession(playerName, null, ai, state);
+    }
 
-        // Restore turn count
-        int turnCount = data.getInt("cardbattle.turn_count", 1);
-        while (session.getTurnCount() < turnCount) {
-            session.incrementTurnCount();
+    private List<String> cardIds(CardBattleState state, boolean isPlayer1) {
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < state.handSize(isPlayer1); i++) {
+            ids.add(rules.card(state.handCard(isPlayer1, i)).getId());
         }
+        return ids;
+    }
 
-        return session;
+    /**
+     * Saved card ids back to interned indices; cards removed from the config since are dropped.
+     */
+    private int[] cardIndexes(List<String> ids) {
+        int[] hand = new int[ids.size()];
+        int size = 0;
+        for (String id : ids) {
+            int index = rules.indexOf(id);
+            if (index >= 0) {
+                hand[size++] = index;
+            }
+        }
+        return Arrays.copyOf(hand, size);
     }
 
     /**
@@ -1437,6 +1376,9 @@ public class CardBattleManager {
         activeSessions.put(playerName, session);
         player.sendMessage(messages.format(player, "cardbattle.game_resumed"));
         openBattleMenu(player, session);
+        if (!session.getState().isPlayer1Turn()) {
+            requestAIMove(session);
+        }
     }
 
     // ============ Inner Classes ============
@@ -1462,32 +1404,132 @@ public class CardBattleManager {
         }
     }
 
-    private static class BattleSession {
+    /**
+     * The card pool interned to {@code int} indices plus the rule numbers, for {@link CardBattleState}.
+     * Built once per config load and immutable, so AI searches on worker threads share it freely.
+     */
+    static final class BattleRules {
+        static final byte EFFECT_NONE = 0;
+        static final byte EFFECT_ATTACK = 1;
+        static final byte EFFECT_HEAL = 2;
+        static final byte EFFECT_DEFENSE = 3;
+        static final byte EFFECT_DRAW = 4;
+        static final byte EFFECT_MANA = 5;
+        static final byte EFFECT_DISCARD = 6;
+        // Message suffix per effect: cardbattle.card_<name> / cardbattle.opponent_<name>
+        private static final String[] EFFECT_NAMES = {"played", "attack", "heal", "defense", "draw", "mana", "discard"};
+
+        private final CardDefinition[] cards;
+        private final Map<String, Integer> indexById;
+        private final byte[] effects;
+        private final int[] costs;
+        private final int[] values;
+        final int startingHealth;
+        final int maxHandSize;
+        final int drawPerTurn;
+        final int manaPerTurn;
+        final int maxMana;
+
+        BattleRules(List<CardDefinition> cards, int startingHealth, int maxHandSize, int drawPerTurn, int manaPerTurn, int maxMana) {
+            this.cards = cards.toArray(new CardDefinition[0]);
+            this.indexById = new HashMap<String, Integer>();
+            this.effects = new byte[this.cards.length];
+            this.costs = new int[this.cards.length];
+            this.values = new int[this.cards.length];
+            for (int i = 0; i < this.cards.length; i++) {
+                CardDefinition card = this.cards[i];
+                indexById.put(card.getId(), i);
+                effects[i] = effectOf(card.getType());
+                costs[i] = card.getManaCost();
+                values[i] = card.getValue();
+            }
+            this.startingHealth = startingHealth;
+            this.maxHandSize = maxHandSize;
+            this.drawPerTurn = drawPerTurn;
+            this.manaPerTurn = manaPerTurn;
+            this.maxMana = maxMana;
+        }
+
+        /**
+         * Read the card pool and the {@code game.*} rule numbers from a card battle config.
+         */
+        static BattleRules load(ConfigurationSection config) {
+            List<CardDefinition> cards = new ArrayList<CardDefinition>();
+            ConfigurationSection cardsSection = config.getConfigurationSection("cards");
+            if (cardsSection != null) {
+                for (String cardId : cardsSection.getKeys(false)) {
+                    ConfigurationSection cardSection = cardsSection.getConfigurationSection(cardId);
+                    if (cardSection != null) {
+                        CardDefinition card = CardDefinition.fromSection(cardId, cardSection);
+                        if (card != null) {
+                            cards.add(card);
+                        }
+                    }
+                }
+            }
+            return new BattleRules(cards,
+                    config.getInt("game.starting_health", 30),
+                    config.getInt("game.max_hand_size", 7),
+                    config.getInt("game.draw_per_turn", 1),
+                    config.getInt("game.mana_per_turn", 1),
+                    config.getInt("game.max_mana", 10));
+        }
+
+        private static byte effectOf(String type) {
+            switch (type.toLowerCase()) {
+                case "attack": return EFFECT_ATTACK;
+                case "heal": return EFFECT_HEAL;
+                case "defense": return EFFECT_DEFENSE;
+                case "draw": return EFFECT_DRAW;
+                case "mana": return EFFECT_MANA;
+                case "discard": return EFFECT_DISCARD;
+                default: return EFFECT_NONE;
+            }
+        }
+
+        int cardCount() { return cards.length; }
+        CardDefinition card(int index) { return cards[index]; }
+        byte effect(int index) { return effects[index]; }
+        int cost(int index) { return costs[index]; }
+        int value(int index) { return values[index]; }
+        String effectName(int index) { return EFFECT_NAMES[effects[index]]; }
+
+        /**
+         * The interned index of a card id, or -1 if the card no longer exists.
+         */
+        int indexOf(String cardId) {
+            Integer index = indexById.get(cardId);
+            return index != null ? index : -1;
+        }
+
+        /**
+         * The amount a played card shows in chat (defense heals half its value).
+         */
+        int shownValue(int index) {
+            return effects[index] == EFFECT_DEFENSE ? values[index] / 2 : values[index];
+        }
+
+        int[] dealHand(int size, Random random) {
+            int[] hand = new int[cards.length == 0 ? 0 : Math.max(0, size)];
+            for (int i = 0; i < hand.length; i++) {
+                hand[i] = random.nextInt(cards.length);
+            }
+            return hand;
+        }
+    }
+
+    static class BattleSession {
         private final String player1Name;
         private final String player2Name; // null for PvE
         private final AIOpponent aiOpponent; // null for PvP
-        private int player1Health;
-        private int player2Health;
-        private int player1Mana;
-        private int player2Mana;
-        private final List<String> player1Hand;
-        private final List<String> player2Hand;
-        private boolean player1Turn;
-        private int turnCount;
+        private CardBattleState state;
         private boolean ended;
 
-        BattleSession(String player1Name, String player2Name, AIOpponent aiOpponent, int startingHealth, int startingMana) {
+        BattleSession(String player1Name, String player2Name, AIOpponent aiOpponent, CardBattleState state) {
             this.player1Name = player1Name;
             this.player2Name = player2Name;
             this.aiOpponent = aiOpponent;
-            this.player1Health = startingHealth;
-            this.player2Health = aiOpponent != null ? aiOpponent.getHealth() : startingHealth;
-            this.player1Mana = startingMana;
-            this.player2Mana = startingMana;
-            this.player1Hand = new ArrayList<String>();
-            this.player2Hand = new ArrayList<String>();
-            this.player1Turn = true;
-            this.turnCount = 1;
+            this.state = state;
             this.ended = false;
         }
 
@@ -1495,26 +1537,14 @@ public class CardBattleManager {
         String getPlayer1Name() { return player1Name; }
         String getPlayer2Name() { return player2Name; }
         AIOpponent getAiOpponent() { return aiOpponent; }
-        int getPlayer1Health() { return player1Health; }
-        void setPlayer1Health(int health) { this.player1Health = Math.max(0, health); }
-        int getPlayer2Health() { return player2Health; }
-        void setPlayer2Health(int health) { this.player2Health = Math.max(0, health); }
-        int getPlayer1Mana() { return player1Mana; }
-        void setPlayer1Mana(int mana) { this.player1Mana = mana; }
-        int getPlayer2Mana() { return player2Mana; }
-        void setPlayer2Mana(int mana) { this.player2Mana = mana; }
-        List<String> getPlayer1Hand() { return player1Hand; }
-        List<String> getPlayer2Hand() { return player2Hand; }
-        boolean isPlayer1Turn() { return player1Turn; }
-        void setPlayer1Turn(boolean turn) { this.player1Turn = turn; }
-        boolean isPlayerTurn(boolean isPlayer1) { return isPlayer1 == player1Turn; }
-        int getTurnCount() { return turnCount; }
-        void incrementTurnCount() { turnCount++; }
+        CardBattleState getState() { return state; }
+        void setState(CardBattleState state) { this.state = state; }
+        boolean isPlayerTurn(boolean isPlayer1) { return isPlayer1 == state.isPlayer1Turn(); }
         boolean isEnded() { return ended; }
         void setEnded(boolean ended) { this.ended = ended; }
     }
 
-    private static class CardDefinition {
+    static class CardDefinition {
         private final String id;
         private final String name;
         private final String description;
@@ -1553,7 +1583,7 @@ public class CardBattleManager {
         Material getMaterial() { return material; }
     }
 
-    private static class AIOpponent {
+    static class AIOpponent {
         private final String id;
         private final String name;
         private final String description;
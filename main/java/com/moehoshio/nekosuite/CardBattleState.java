@@ -0,0 +1,243 @@
+package com.moehoshio.nekosuite;
+
+import com.moehoshio.nekosuite.CardBattleManager.BattleRules;
+
+import java.util.Random;
+
+/**
+ * The board of one card battle: health, mana and hands of both sides, whose turn it is.
+ *
+ * <p>Immutable. Cards are the interned indices of {@link BattleRules}, hands are exact-size
+ * {@code int} arrays, and every move returns a new state that shares whatever did not change
+ * (an attack copies no hand at all). Snapshotting a game for an AI search is just passing
+ * the reference, and the search can branch from any state without copying it first.</p>
+ */
+final class CardBattleState {
+
+    /** Move that ends the current turn; any other move is a hand index. */
+    static final int END_TURN = -1;
+
+    private static final int[] EMPTY = new int[0];
+
+    private int health1;
+    private int health2;
+    private int mana1;
+    private int mana2;
+    private int[] hand1;
+    private int[] hand2;
+    private boolean player1Turn;
+    private int turn;
+    private int playsThisTurn;
+
+    CardBattleState(int health1, int health2, int mana1, int mana2, int[] hand1, int[] hand2,
+                    boolean player1Turn, int turn) {
+        this.health1 = Math.max(0, health1);
+        this.health2 = Math.max(0, health2);
+        this.mana1 = mana1;
+        this.mana2 = mana2;
+        this.hand1 = hand1.clone();
+        this.hand2 = hand2.clone();
+        this.player1Turn = player1Turn;
+        this.turn = turn;
+    }
+
+    private CardBattleState(CardBattleState other) {
+        this.health1 = other.health1;
+        this.health2 = other.health2;
+        this.mana1 = other.mana1;
+        this.mana2 = other.mana2;
+        this.hand1 = other.hand1;
+        this.hand2 = other.hand2;
+        this.player1Turn = other.player1Turn;
+        this.turn = other.turn;
+        this.playsThisTurn = other.playsThisTurn;
+    }
+
+    /**
+     * A new game: both sides start with {@code mana} and a random hand of {@code handSize}, player 1 moves first.
+     */
+    static CardBattleState start(BattleRules rules, int health1, int health2, int mana, int handSize, Random random) {
+        int[] hand1 = rules.dealHand(handSize, random);
+        int[] hand2 = rules.dealHand(handSize, random);
+        return new CardBattleState(health1, health2, mana, mana, hand1, hand2, true, 1);
+    }
+
+    // ============ Reading ============
+
+    int health(boolean isPlayer1) { return isPlayer1 ? health1 : health2; }
+    int mana(boolean isPlayer1) { return isPlayer1 ? mana1 : mana2; }
+    int handSize(boolean isPlayer1) { return hand(isPlayer1).length; }
+    int handCard(boolean isPlayer1, int handIndex) { return hand(isPlayer1)[handIndex]; }
+    boolean isPlayer1Turn() { return player1Turn; }
+    int turn() { return turn; }
+    int playsThisTurn() { return playsThisTurn; }
+
+    boolean isOver() {
+        return health1 <= 0 || health2 <= 0;
+    }
+
+    /**
+     * Whether the side to move can pay for the card at {@code handIndex}.
+     */
+    boolean canPlay(BattleRules rules, int handIndex) {
+        int[] hand = hand(player1Turn);
+        return handIndex >= 0 && handIndex < hand.length && rules.cost(hand[handIndex]) <= mana(player1Turn);
+    }
+
+    /**
+     * First hand index of {@code card} for the side to move, or -1.
+     */
+    int indexOf(int card) {
+        int[] hand = hand(player1Turn);
+        for (int i = 0; i < hand.length; i++) {
+            if (hand[i] == card) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ============ Moves ============
+
+    /**
+     * Play a card ({@link #canPlay}) or {@link #END_TURN} for the side to move.
+     */
+    CardBattleState apply(BattleRules rules, int move, Random random) {
+        return move == END_TURN ? endTurn(rules, random) : play(rules, move, random);
+    }
+
+    /**
+     * The side to move plays the card at {@code handIndex}: it leaves the hand, is paid for and takes effect.
+     */
+    CardBattleState play(BattleRules rules, int handIndex, Random random) {
+        boolean me = player1Turn;
+        int card = hand(me)[handIndex];
+        CardBattleState next = new CardBattleState(this);
+        next.setHand(me, remove(hand(me), handIndex));
+        next.setMana(me, mana(me) - rules.cost(card));
+        next.playsThisTurn++;
+        next.applyEffect(rules, card, me, random);
+        return next;
+    }
+
+    /**
+     * Hand the turn over; the next player gains mana and draws.
+     */
+    CardBattleState endTurn(BattleRules rules, Random random) {
+        CardBattleState next = new CardBattleState(this);
+        next.player1Turn = !player1Turn;
+        next.turn++;
+        next.playsThisTurn = 0;
+        boolean mover = next.player1Turn;
+        next.setMana(mover, Math.min(rules.maxMana, next.mana(mover) + rules.manaPerTurn));
+        next.draw(rules, mover, rules.drawPerTurn, random);
+        return next;
+    }
+
+    /**
+     * The side to move throws away the card at {@code handIndex}.
+     */
+    CardBattleState discard(int handIndex) {
+        CardBattleState next = new CardBattleState(this);
+        next.setHand(player1Turn, remove(hand(player1Turn), handIndex));
+        return next;
+    }
+
+    CardBattleState withHealth(boolean isPlayer1, int health) {
+        CardBattleState next = new CardBattleState(this);
+        next.setHealth(isPlayer1, health);
+        return next;
+    }
+
+    CardBattleState withHand(boolean isPlayer1, int[] hand) {
+        CardBattleState next = new CardBattleState(this);
+        next.setHand(isPlayer1, hand.clone());
+        return next;
+    }
+
+    // ============ Internals (only ever applied to a fresh copy) ============
+
+    private void applyEffect(BattleRules rules, int card, boolean me, Random random) {
+        int value = rules.value(card);
+        switch (rules.effect(card)) {
+            case BattleRules.EFFECT_ATTACK:
+                setHealth(!me, health(!me) - value);
+                break;
+            case BattleRules.EFFECT_HEAL:
+                setHealth(me, Math.min(rules.startingHealth, health(me) + value));
+                break;
+            case BattleRules.EFFECT_DEFENSE:
+                // Defense could add temporary shield (simplified: heals half the value)
+                setHealth(me, Math.min(rules.startingHealth, health(me) + value / 2));
+                break;
+            case BattleRules.EFFECT_DRAW:
+                draw(rules, me, value, random);
+                break;
+            case BattleRules.EFFECT_MANA:
+                setMana(me, Math.min(rules.maxMana, mana(me) + value));
+                break;
+            case BattleRules.EFFECT_DISCARD:
+                // Force opponent to discard cards
+                int[] oppHand = hand(!me);
+                for (int i = 0; i < value && oppHand.length > 0; i++) {
+                    oppHand = remove(oppHand, random.nextInt(oppHand.length));
+                }
+                setHand(!me, oppHand);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void draw(BattleRules rules, boolean isPlayer1, int count, Random random) {
+        int[] hand = hand(isPlayer1);
+        int drawn = Math.min(count, rules.maxHandSize - hand.length);
+        if (drawn <= 0 || rules.cardCount() == 0) {
+            return;
+        }
+        int[] grown = new int[hand.length + drawn];
+        System.arraycopy(hand, 0, grown, 0, hand.length);
+        for (int i = hand.length; i < grown.length; i++) {
+            grown[i] = random.nextInt(rules.cardCount());
+        }
+        setHand(isPlayer1, grown);
+    }
+
+    private static int[] remove(int[] hand, int index) {
+        if (hand.length == 1) {
+            return EMPTY;
+        }
+        int[] shrunk = new int[hand.length - 1];
+        System.arraycopy(hand, 0, shrunk, 0, index);
+        System.arraycopy(hand, index + 1, shrunk, index, hand.length - index - 1);
+        return shrunk;
+    }
+
+    private int[] hand(boolean isPlayer1) {
+        return isPlayer1 ? hand1 : hand2;
+    }
+
+    private void setHand(boolean isPlayer1, int[] hand) {
+        if (isPlayer1) {
+            hand1 = hand;
+        } else {
+            hand2 = hand;
+        }
+    }
+
+    private void setHealth(boolean isPlayer1, int health) {
+        if (isPlayer1) {
+            health1 = Math.max(0, health);
+        } else {
+            health2 = Math.max(0, health);
+        }
+    }
+
+    private void setMana(boolean isPlayer1, int mana) {
+        if (isPlayer1) {
+            mana1 = mana;
+        } else {
+            mana2 = mana;
+        }
+    }
+}
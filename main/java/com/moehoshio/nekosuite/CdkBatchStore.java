@@ -0,0 +1,445 @@
+package com.moehoshio.nekosuite;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * On-disk store for bulk-generated single-use CDK codes.
+ *
+ * <p>Each batch lives in {@code <id>.idx}: a header (template code id, count, Bloom filter)
+ * followed by the codes as sorted 60-bit longs. Only the header and the Bloom filter are
+ * kept in the heap; a lookup that passes the filter binary-searches the sorted section
+ * on disk, and the position found is the code's bit in the batch's redemption bitmap
+ * ({@code <id>.used}). Codes are 12 characters from an unambiguous 32-letter alphabet,
+ * so every code maps to exactly one long and back.</p>
+ *
+ * <p>Lookups and bitmap changes happen on the main thread; {@link #snapshotDirty(boolean)} hands
+ * copies to whichever thread writes them. Every copy carries a per-batch version and
+ * {@link #write(List)} drops copies older than the one already on disk, so writers that run
+ * out of order can never bring back an older bitmap.</p>
+ */
+class CdkBatchStore {
+
+    static final int CODE_LENGTH = 12;
+    private static final String ALPHABET = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+    private static final int MAGIC = 0x4E4B4344; // "NKCD"
+    private static final int VERSION = 1;
+    private static final int BLOOM_BITS_PER_CODE = 10;
+    private static final int BLOOM_HASHES = 7;
+    private static final long CODE_MASK = (1L << (CODE_LENGTH * 5)) - 1;
+
+    private final File dir;
+    private final Logger logger;
+    private final Map<String, Batch> batches = new LinkedHashMap<String, Batch>();
+
+    CdkBatchStore(File dir, Logger logger) {
+        this.dir = dir;
+        this.logger = logger;
+    }
+
+    void load() {
+        close();
+        batches.clear();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.isFile() || !name.endsWith(".idx")) {
+                continue;
+            }
+            try {
+                Batch batch = openBatch(name.substring(0, name.length() - 4), file);
+                batches.put(batch.id.toLowerCase(), batch);
+            } catch (IOException e) {
+                logger.warning("無法讀取CDK批次 " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    void close() {
+        for (Batch batch : batches.values()) {
+            try {
+                batch.index.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    Collection<Batch> getBatches() {
+        return batches.values();
+    }
+
+    boolean hasBatch(String id) {
+        return batches.containsKey(id.toLowerCase()) || new File(dir, id + ".idx").exists();
+    }
+
+    /**
+     * Find a generated code. Returns null when the text is not a code of any loaded batch.
+     */
+    Hit find(String codeRaw) {
+        long value = decode(codeRaw);
+        if (value < 0) {
+            return null;
+        }
+        for (Batch batch : batches.values()) {
+            if (!batch.mightContain(value)) {
+                continue;
+            }
+            try {
+                int position = batch.search(value);
+                if (position >= 0) {
+                    return new Hit(batch, position);
+                }
+            } catch (IOException e) {
+                logger.warning("讀取CDK批次失敗 " + batch.id + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mint {@code count} unique codes and write the batch files. Safe to call off the main
+     * thread; the batch becomes visible after {@link #register(String)} on the main thread.
+     * The plain code list is written next to the index as {@code <id>.txt} for distribution.
+     */
+    File generate(String id, String templateId, int count) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir.getAbsolutePath());
+        }
+        SecureRandom random = new SecureRandom();
+        long[] values = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            while (filled < count) {
+                values[filled++] = random.nextLong() & CODE_MASK;
+            }
+            Arrays.sort(values);
+            // Drop duplicates and refill the tail until all values are unique.
+            int unique = 1;
+            for (int i = 1; i < count; i++) {
+                if (values[i] != values[unique - 1]) {
+                    values[unique++] = values[i];
+                }
+            }
+            filled = unique;
+        }
+
+        int bloomBits = Math.max(64, count * BLOOM_BITS_PER_CODE);
+        long[] bloom = new long[(bloomBits + 63) >>> 6];
+        bloomBits = bloom.length << 6;
+        for (long value : values) {
+            long h1 = mix(value);
+            long h2 = mix(h1) | 1L;
+            for (int k = 0; k < BLOOM_HASHES; k++) {
+                int bit = (int) Long.remainderUnsigned(h1 + k * h2, bloomBits);
+                bloom[bit >>> 6] |= 1L << (bit & 63);
+            }
+        }
+
+        File index = new File(dir, id + ".idx");
+        File tmp = new File(dir, id + ".idx.tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(templateId);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(count);
+            out.writeInt(bloom.length);
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+            for (long value : values) {
+                out.writeLong(value);
+            }
+        } finally {
+            out.close();
+        }
+
+        File list = new File(dir, id + ".txt");
+        PrintWriter writer = new PrintWriter(Files.newBufferedWriter(list.toPath(), StandardCharsets.UTF_8));
+        try {
+            // Shuffle the output so consecutive codes in the list are unrelated.
+            long[] shuffled = values.clone();
+            for (int i = shuffled.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long swap = shuffled[i];
+                shuffled[i] = shuffled[j];
+                shuffled[j] = swap;
+            }
+            for (long value : shuffled) {
+                writer.println(encode(value));
+            }
+        } finally {
+            writer.close();
+        }
+        move(tmp, index);
+        return list;
+    }
+
+    /**
+     * Load a freshly generated batch into the store. Main thread.
+     */
+    Batch register(String id) throws IOException {
+        Batch batch = openBatch(id, new File(dir, id + ".idx"));
+        batches.put(id.toLowerCase(), batch);
+        return batch;
+    }
+
+    /**
+     * Copy the bitmaps of all batches changed since the last call. With {@code unwritten}, also
+     * copy batches whose last copy has not reached the disk yet, so a synchronous write leaves
+     * every bitmap current even while earlier async writes are still queued.
+     */
+    List<BitmapSnapshot> snapshotDirty(boolean unwritten) {
+        List<BitmapSnapshot> result = new ArrayList<BitmapSnapshot>();
+        for (Batch batch : batches.values()) {
+            if (batch.dirty || (unwritten && isUnwritten(batch))) {
+                batch.dirty = false;
+                batch.savedVersion++;
+                result.add(new BitmapSnapshot(batch, new File(dir, batch.id + ".used"), batch.redeemed.clone(), batch.savedVersion));
+            }
+        }
+        return result;
+    }
+
+    private synchronized boolean isUnwritten(Batch batch) {
+        return batch.writtenVersion < batch.savedVersion;
+    }
+
+    synchronized void write(List<BitmapSnapshot> snapshots) {
+        for (BitmapSnapshot snapshot : snapshots) {
+            if (snapshot.version <= snapshot.batch.writtenVersion) {
+                continue;
+            }
+            snapshot.batch.writtenVersion = snapshot.version;
+            File tmp = new File(snapshot.file.getPath() + ".tmp");
+            try {
+                Files.write(tmp.toPath(), snapshot.bytes);
+                move(tmp, snapshot.file);
+            } catch (IOException e) {
+                logger.warning("保存CDK批次狀態失敗 " + snapshot.file.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Batch openBatch(String id, File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        String templateId;
+        long createdAt;
+        int count;
+        long[] bloom;
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unknown format");
+            }
+            templateId = in.readUTF();
+            createdAt = in.readLong();
+            count = in.readInt();
+            bloom = new long[in.readInt()];
+            for (int i = 0; i < bloom.length; i++) {
+                bloom[i] = in.readLong();
+            }
+        } finally {
+            in.close();
+        }
+        long dataOffset = file.length() - (long) count * 8L;
+        byte[] redeemed = new byte[(count + 7) >>> 3];
+        File used = new File(dir, id + ".used");
+        if (used.exists()) {
+            byte[] stored = Files.readAllBytes(used.toPath());
+            System.arraycopy(stored, 0, redeemed, 0, Math.min(stored.length, redeemed.length));
+        }
+        return new Batch(id, templateId, createdAt, count, bloom, new RandomAccessFile(file, "r"), dataOffset, redeemed);
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static String encode(long value) {
+        char[] chars = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (value & 31));
+            value >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parse a code back to its value, or -1 if it cannot be a generated code.
+     */
+    static long decode(String code) {
+        if (code == null || code.length() != CODE_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            int digit = ALPHABET.indexOf(Character.toUpperCase(code.charAt(i)));
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static class Batch {
+        private final String id;
+        private final String templateId;
+        private final long createdAt;
+        private final int count;
+        private final long[] bloom;
+        private final RandomAccessFile index;
+        private final long dataOffset;
+        private final byte[] redeemed;
+        private int redeemedCount;
+        private boolean dirty;
+        // Version of the latest copy handed out (main thread) and of the one on disk (under the store lock).
+        private long savedVersion;
+        private long writtenVersion;
+
+        Batch(String id, String templateId, long createdAt, int count, long[] bloom,
+              RandomAccessFile index, long dataOffset, byte[] redeemed) {
+            this.id = id;
+            this.templateId = templateId;
+            this.createdAt = createdAt;
+            this.count = count;
+            this.bloom = bloom;
+            this.index = index;
+            this.dataOffset = dataOffset;
+            this.redeemed = redeemed;
+            for (byte b : redeemed) {
+                redeemedCount += Integer.bitCount(b & 0xFF);
+            }
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getTemplateId() {
+            return templateId;
+        }
+
+        long getCreatedAt() {
+            return createdAt;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        int getRedeemedCount() {
+            return redeemedCount;
+        }
+
+        private boolean mightContain(long value) {
+            int bits = bloom.length << 6;
+            long h1 = mix(value);
+            long h2 = mix(h1) | 1L;
+            for (int k = 0; k < BLOOM_HASHES; k++) {
+                int bit = (int) Long.remainderUnsigned(h1 + k * h2, bits);
+                if ((bloom[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int search(long value) throws IOException {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                index.seek(dataOffset + (long) mid * 8L);
+                long found = index.readLong();
+                if (found < value) {
+                    low = mid + 1;
+                } else if (found > value) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+
+    static class Hit {
+        private final Batch batch;
+        private final int position;
+
+        Hit(Batch batch, int position) {
+            this.batch = batch;
+            this.position = position;
+        }
+
+        Batch getBatch() {
+            return batch;
+        }
+
+        boolean isRedeemed() {
+            return (batch.redeemed[position >>> 3] & (1 << (position & 7))) != 0;
+        }
+
+        /**
+         * Set the redemption bit. Returns false if it was already set.
+         */
+        boolean markRedeemed() {
+            if (isRedeemed()) {
+                return false;
+            }
+            batch.redeemed[position >>> 3] |= (byte) (1 << (position & 7));
+            batch.redeemedCount++;
+            batch.dirty = true;
+            return true;
+        }
+    }
+
+    static class BitmapSnapshot {
+        private final Batch batch;
+        private final File file;
+        private final byte[] bytes;
+        private final long version;
+
+        BitmapSnapshot(Batch batch, File file, byte[] bytes, long version) {
+            this.batch = batch;
+            this.file = file;
+            this.bytes = bytes;
+            this.version = version;
+        }
+    }
+}
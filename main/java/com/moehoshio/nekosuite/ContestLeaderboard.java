@@ -0,0 +1,202 @@
+package com.moehoshio.nekosuite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Order-statistics ranking of contest scores.
+ *
+ * <p>Entries live in a treap ordered by score (high first), ties going to whoever reached
+ * the score first, with subtree sizes kept on every node. An update, a rank lookup and
+ * picking the k-th entry are all O(log n) expected, so ranks and top-N lists never need a
+ * copy-and-sort of every participant. Not thread-safe.</p>
+ */
+class ContestLeaderboard {
+
+    private final Random random = new Random();
+    private final Map<String, Node> nodes = new HashMap<String, Node>();
+    private Node root;
+    private long sequence;
+
+    /**
+     * Set a player's score, adding them if they are new.
+     */
+    void update(String name, int score) {
+        Node old = nodes.get(name);
+        if (old != null) {
+            if (old.score == score) {
+                return;
+            }
+            root = delete(root, old);
+        }
+        Node node = new Node(name, score, sequence++, random.nextInt());
+        nodes.put(name, node);
+        root = insert(root, node);
+    }
+
+    void remove(String name) {
+        Node old = nodes.remove(name);
+        if (old != null) {
+            root = delete(root, old);
+        }
+    }
+
+    void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * 1-based rank of a player, or -1 if they have no entry.
+     */
+    int rank(String name) {
+        Node target = nodes.get(name);
+        if (target == null) {
+            return -1;
+        }
+        int before = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(target, node);
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left);
+                if (cmp == 0) {
+                    return before + 1;
+                }
+                before++;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    int score(String name) {
+        Node node = nodes.get(name);
+        return node == null ? 0 : node.score;
+    }
+
+    /**
+     * Names of the best {@code limit} players, best first.
+     */
+    List<String> top(int limit) {
+        List<String> out = new ArrayList<String>(Math.min(limit, nodes.size()));
+        collect(root, out, limit);
+        return out;
+    }
+
+    private void collect(Node node, List<String> out, int limit) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+        collect(node.left, out, limit);
+        if (out.size() < limit) {
+            out.add(node.name);
+            collect(node.right, out, limit);
+        }
+    }
+
+    // Higher score first, then earlier sequence.
+    private static int compare(Node a, Node b) {
+        if (a.score != b.score) {
+            return a.score > b.score ? -1 : 1;
+        }
+        return Long.compare(a.seq, b.seq);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node fix(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    private static Node insert(Node root, Node node) {
+        if (root == null) {
+            return fix(node);
+        }
+        if (compare(node, root) < 0) {
+            root.left = insert(root.left, node);
+            if (root.left.priority > root.priority) {
+                root = rotateRight(root);
+            }
+        } else {
+            root.right = insert(root.right, node);
+            if (root.right.priority > root.priority) {
+                root = rotateLeft(root);
+            }
+        }
+        return fix(root);
+    }
+
+    private static Node delete(Node root, Node node) {
+        if (root == null) {
+            return null;
+        }
+        int cmp = compare(node, root);
+        if (cmp < 0) {
+            root.left = delete(root.left, node);
+        } else if (cmp > 0) {
+            root.right = delete(root.right, node);
+        } else {
+            return merge(root.left, root.right);
+        }
+        return fix(root);
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return fix(left);
+        }
+        right.left = merge(left, right.left);
+        return fix(right);
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = fix(node);
+        return fix(left);
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = fix(node);
+        return fix(right);
+    }
+
+    private static class Node {
+        private final String name;
+        private final int score;
+        private final long seq;
+        private final int priority;
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        Node(String name, int score, long seq, int priority) {
+            this.name = name;
+            this.score = score;
+            this.seq = seq;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journaled ledger for experience bank balances.
+ *
+ * <p>Balances live in memory in a primitive UUID-to-long map, so reads never touch
+ * disk. Every mutation is applied in memory and appended as one checksummed line to
+ * {@code journal.log}; lines are buffered and written by an async group-commit task
+ * that forces the channel once per batch. A transfer is a single journal record, so
+ * after a crash it is either fully replayed or not at all. Periodic checkpoints write
+ * the full balance table atomically and truncate the journal; recovery loads the
+ * checkpoint and replays the remaining records up to the first torn line.</p>
+ *
+ * <p>A change is only crash-safe once its batch has been forced, so callers that pay out
+ * or report a change wait for {@link #whenDurable(Runnable)} instead of acting right away.</p>
+ *
+ * <p>All mutating and reading methods are main-thread only; the writer only sees
+ * immutable lines and snapshots.</p>
+ */
+class ExpLedger {
+
+    private final JavaPlugin plugin;
+    private final File journalFile;
+    private final File checkpointFile;
+    private final long groupCommitTicks;
+    private final int checkpointEveryRecords;
+    private final long checkpointIntervalMs;
+
+    private final UuidLongMap balances = new UuidLongMap(256);
+    private long seq;
+    private int recordsSinceCheckpoint;
+    private long lastCheckpointAt;
+
+    /** Journal lines and checkpoint requests waiting for the writer, in order. */
+    private List<Object> pending = new ArrayList<Object>();
+    private final Object pendingLock = new Object();
+    private final Object ioLock = new Object();
+    private FileChannel journal;
+    private BukkitTask writerTask;
+
+    ExpLedger(JavaPlugin plugin, File dir, long groupCommitTicks, int checkpointEveryRecords, long checkpointIntervalMs) {
+        this.plugin = plugin;
+        if (!dir.exists() && !dir.mkdirs()) {
+            plugin.getLogger().warning("Failed to create exp ledger directory: " + dir.getAbsolutePath());
+        }
+        this.journalFile = new File(dir, "journal.log");
+        this.checkpointFile = new File(dir, "checkpoint.dat");
+        this.groupCommitTicks = Math.max(1L, groupCommitTicks);
+        this.checkpointEveryRecords = Math.max(1, checkpointEveryRecords);
+        this.checkpointIntervalMs = Math.max(1000L, checkpointIntervalMs);
+    }
+
+    /**
+     * Recover from the last checkpoint plus journal, compact into a fresh checkpoint,
+     * and start the group-commit writer.
+     */
+    void open() {
+        int replayed = recover();
+        synchronized (ioLock) {
+            boolean compacted = writeCheckpoint(new Checkpoint(seq, balances.copy()));
+            try {
+                journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                if (compacted) {
+                    journal.truncate(0L);
+                }
+                journal.position(journal.size());
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to open exp ledger journal: " + e.getMessage());
+            }
+        }
+        lastCheckpointAt = System.currentTimeMillis();
+        if (replayed > 0) {
+            plugin.getLogger().info("Exp ledger recovered " + balances.size() + " balances, replayed " + replayed + " journal records.");
+        }
+        writerTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, new Runnable() {
+            public void run() {
+                flush();
+            }
+        }, groupCommitTicks, groupCommitTicks);
+    }
+
+    /**
+     * Stop the writer, flush everything synchronously and leave a checkpoint behind.
+     */
+    void close() {
+        if (writerTask != null) {
+            writerTask.cancel();
+            writerTask = null;
+        }
+        enqueue(new Checkpoint(seq, balances.copy()));
+        flush();
+        synchronized (ioLock) {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException ignored) {
+                }
+                journal = null;
+            }
+        }
+    }
+
+    boolean contains(UUID id) {
+        return balances.containsKey(id);
+    }
+
+    long get(UUID id) {
+        return balances.get(id);
+    }
+
+    /**
+     * Set a balance outright (used to import legacy {@code exp.balance} values).
+     */
+    void set(UUID id, long value) {
+        balances.put(id, value);
+        append("S " + id + " " + value);
+    }
+
+    /**
+     * Apply a delta unless it would make the balance negative.
+     */
+    boolean tryAdd(UUID id, long delta) {
+        long next = balances.get(id) + delta;
+        if (next < 0) {
+            return false;
+        }
+        balances.put(id, next);
+        append("A " + id + " " + delta);
+        return true;
+    }
+
+    /**
+     * Move experience between two accounts as one journal record.
+     */
+    boolean transfer(UUID from, UUID to, long amount) {
+        if (amount <= 0 || from.equals(to)) {
+            return false;
+        }
+        long fromBalance = balances.get(from);
+        if (fromBalance < amount) {
+            return false;
+        }
+        balances.put(from, fromBalance - amount);
+        balances.put(to, balances.get(to) + amount);
+        append("T " + from + " " + to + " " + amount);
+        return true;
+    }
+
+    /**
+     * Run {@code action} on the main thread once every record appended so far is forced to
+     * disk (right away if the writer is not running).
+     */
+    void whenDurable(Runnable action) {
+        enqueue(action);
+        if (writerTask == null) {
+            flush();
+        }
+    }
+
+    private void append(String body) {
+        String line = (++seq) + " " + body;
+        enqueue(line + " " + crc(line));
+        recordsSinceCheckpoint++;
+        long now = System.currentTimeMillis();
+        if (recordsSinceCheckpoint >= checkpointEveryRecords || now - lastCheckpointAt >= checkpointIntervalMs) {
+            enqueue(new Checkpoint(seq, balances.copy()));
+            recordsSinceCheckpoint = 0;
+            lastCheckpointAt = now;
+        }
+    }
+
+    private void enqueue(Object entry) {
+        synchronized (pendingLock) {
+            pending.add(entry);
+        }
+    }
+
+    /**
+     * Group commit: write every queued line with a single force per batch, then hand the
+     * batch's durability callbacks to the main thread.
+     */
+    private void flush() {
+        final List<Runnable> durable = new ArrayList<Runnable>();
+        // Hold the io lock across the swap so concurrent flushes cannot reorder batches.
+        synchronized (ioLock) {
+            List<Object> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<Object>();
+            }
+            StringBuilder lines = new StringBuilder();
+            for (Object entry : batch) {
+                if (entry instanceof String) {
+                    lines.append((String) entry).append('\n');
+                    continue;
+                }
+                if (entry instanceof Runnable) {
+                    // Every line queued before it is forced at the end of this batch.
+                    durable.add((Runnable) entry);
+                    continue;
+                }
+                writeJournal(lines);
+                lines.setLength(0);
+                // Everything up to the checkpoint seq is durable in the journal; swap it for the snapshot.
+                if (writeCheckpoint((Checkpoint) entry) && journal != null) {
+                    try {
+                        journal.truncate(0L);
+                        journal.position(0L);
+                    } catch (IOException e) {
+                        plugin.getLogger().warning("Failed to truncate exp ledger journal: " + e.getMessage());
+                    }
+                }
+            }
+            writeJournal(lines);
+            if (!durable.isEmpty() && !Bukkit.isPrimaryThread()) {
+                try {
+                    Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                        public void run() {
+                            runAll(durable);
+                        }
+                    });
+                } catch (IllegalPluginAccessException e) {
+                    // Disabling: close() flushes again on the main thread and runs them there.
+                    synchronized (pendingLock) {
+                        pending.addAll(0, durable);
+                    }
+                }
+                return;
+            }
+        }
+        runAll(durable);
+    }
+
+    private static void runAll(List<Runnable> actions) {
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    private void writeJournal(StringBuilder lines) {
+        if (lines.length() == 0 || journal == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to write exp ledger journal: " + e.getMessage());
+        }
+    }
+
+    private boolean writeCheckpoint(Checkpoint checkpoint) {
+        File tmp = new File(checkpointFile.getParentFile(), checkpointFile.getName() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                writer.write("seq " + checkpoint.seq + "\n");
+                UuidLongMap map = checkpoint.balances;
+                for (int i = 0; i < map.capacity(); i++) {
+                    if (map.isUsed(i)) {
+                        writer.write(new UUID(map.msbAt(i), map.lsbAt(i)) + " " + map.valueAt(i) + "\n");
+                    }
+                }
+                writer.write("end\n");
+                writer.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), checkpointFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to write exp ledger checkpoint: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Load the checkpoint and replay newer journal records.
+     *
+     * @return number of journal records replayed
+     */
+    private int recover() {
+        long checkpointSeq = 0L;
+        if (checkpointFile.exists()) {
+            UuidLongMap loaded = new UuidLongMap(256);
+            boolean complete = false;
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), StandardCharsets.UTF_8));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith("seq ")) {
+                            checkpointSeq = Long.parseLong(line.substring(4).trim());
+                        } else if ("end".equals(line)) {
+                            complete = true;
+                        } else if (!line.isEmpty()) {
+                            int space = line.indexOf(' ');
+                            loaded.put(UUID.fromString(line.substring(0, space)), Long.parseLong(line.substring(space + 1)));
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().severe("Failed to read exp ledger checkpoint: " + e.getMessage());
+            }
+            if (!complete) {
+                plugin.getLogger().severe("Exp ledger checkpoint is incomplete; balances may be missing.");
+            }
+            balances.putAll(loaded);
+        }
+        seq = checkpointSeq;
+
+        int replayed = 0;
+        if (!journalFile.exists()) {
+            return replayed;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int lastSpace = line.lastIndexOf(' ');
+                    if (lastSpace <= 0 || !crc(line.substring(0, lastSpace)).equals(line.substring(lastSpace + 1))) {
+                        // Torn write from a crash: nothing after this line was acknowledged.
+                        plugin.getLogger().warning("Exp ledger journal ends with a damaged record; ignoring the tail.");
+                        break;
+                    }
+                    String[] parts = line.substring(0, lastSpace).split(" ");
+                    long recordSeq = Long.parseLong(parts[0]);
+                    if (recordSeq <= checkpointSeq) {
+                        continue;
+                    }
+                    applyRecord(parts);
+                    seq = recordSeq;
+                    replayed++;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().severe("Failed to replay exp ledger journal: " + e.getMessage());
+        }
+        return replayed;
+    }
+
+    private void applyRecord(String[] parts) {
+        String op = parts[1];
+        if ("S".equals(op)) {
+            balances.put(UUID.fromString(parts[2]), Long.parseLong(parts[3]));
+        } else if ("A".equals(op)) {
+            UUID id = UUID.fromString(parts[2]);
+            balances.put(id, balances.get(id) + Long.parseLong(parts[3]));
+        } else if ("T".equals(op)) {
+            UUID from = UUID.fromString(parts[2]);
+            UUID to = UUID.fromString(parts[3]);
+            long amount = Long.parseLong(parts[4]);
+            balances.put(from, balances.get(from) - amount);
+            balances.put(to, balances.get(to) + amount);
+        }
+    }
+
+    private static String crc(String text) {
+        CRC32 crc = new CRC32();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static class Checkpoint {
+        private final long seq;
+        private final UuidLongMap balances;
+
+        Checkpoint(long seq, UuidLongMap balances) {
+            this.seq = seq;
+            this.balances = balances;
+        }
+    }
+
+    /**
+     * Open-addressing UUID to long map with linear probing; no boxing per entry.
+     */
+    static class UuidLongMap {
+        private long[] msb;
+        private long[] lsb;
+        private long[] values;
+        private boolean[] used;
+        private int size;
+
+        UuidLongMap(int initialCapacity) {
+            int capacity = 16;
+            while (capacity < initialCapacity) {
+                capacity <<= 1;
+            }
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            msb = new long[capacity];
+            lsb = new long[capacity];
+            values = new long[capacity];
+            used = new boolean[capacity];
+            size = 0;
+        }
+
+        private int indexOf(long hi, long lo) {
+            long h = hi ^ lo;
+            h ^= (h >>> 33);
+            h *= 0xff51afd7ed558ccdL;
+            h ^= (h >>> 33);
+            int mask = used.length - 1;
+            int i = (int) h & mask;
+            while (used[i] && (msb[i] != hi || lsb[i] != lo)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        boolean containsKey(UUID id) {
+            return used[indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits())];
+        }
+
+        long get(UUID id) {
+            int i = indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return used[i] ? values[i] : 0L;
+        }
+
+        void put(UUID id, long value) {
+            put(id.getMostSignificantBits(), id.getLeastSignificantBits(), value);
+        }
+
+        private void put(long hi, long lo, long value) {
+            if ((size + 1) * 2 > used.length) {
+                grow();
+            }
+            int i = indexOf(hi, lo);
+            if (!used[i]) {
+                used[i] = true;
+                msb[i] = hi;
+                lsb[i] = lo;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        private void grow() {
+            long[] oldMsb = msb;
+            long[] oldLsb = lsb;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            allocate(oldUsed.length * 2);
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldMsb[i], oldLsb[i], oldValues[i]);
+                }
+            }
+        }
+
+        void putAll(UuidLongMap other) {
+            for (int i = 0; i < other.used.length; i++) {
+                if (other.used[i]) {
+                    put(other.msb[i], other.lsb[i], other.values[i]);
+                }
+            }
+        }
+
+        UuidLongMap copy() {
+            UuidLongMap copy = new UuidLongMap(16);
+            copy.msb = msb.clone();
+            copy.lsb = lsb.clone();
+            copy.values = values.clone();
+            copy.used = used.clone();
+            copy.size = size;
+            return copy;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return used.length;
+        }
+
+        boolean isUsed(int i) {
+            return used[i];
+        }
+
+        long msbAt(int i) {
+            return msb[i];
+        }
+
+        long lsbAt(int i) {
+            return lsb[i];
+        }
+
+        long valueAt(int i) {
+            return values[i];
+        }
+    }
+}
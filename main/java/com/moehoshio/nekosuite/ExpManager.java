@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public class ExpManager {
 
@@ -32,6 +33,7 @@ public class ExpManager {
     private final List<Integer> depositAmounts = new ArrayList<Integer>();
     private final List<Integer> withdrawAmounts = new ArrayList<Integer>();
     private final List<ExchangeItem> exchanges = new ArrayList<ExchangeItem>();
+    private final ExpLedger ledger;
 
     ExpManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout layout) {
         this.plugin = plugin;
@@ -44,6 +46,19 @@ public class ExpManager {
             plugin.getLogger().warning("無法創建數據目錄: " + storageDir.getAbsolutePath());
         }
         loadConfig(config);
+        ledger = new ExpLedger(plugin,
+                new File(plugin.getDataFolder(), config.getString("ledger.dir", "exp_ledger")),
+                config.getLong("ledger.group_commit_ticks", 1L),
+                config.getInt("ledger.checkpoint_every_records", 5000),
+                config.getLong("ledger.checkpoint_interval_seconds", 300L) * 1000L);
+        ledger.open();
+    }
+
+    /**
+     * Flush the ledger journal and write a final checkpoint. Call before reload and on disable.
+     */
+    public void shutdown() {
+        ledger.close();
     }
 
     private void loadConfig(YamlConfiguration config) {
@@ -74,15 +89,63 @@ public class ExpManager {
         }
     }
 
+    /**
+     * Stored balance; accounts the ledger has not seen yet still read the legacy
+     * {@code exp.balance} without importing it.
+     */
     public long getStored(String playerName) {
-        YamlConfiguration data = loadUserData(playerName);
-        return data.getLong("exp.balance", 0L);
+        UUID id = resolveAccount(playerName);
+        if (ledger.contains(id)) {
+            return ledger.get(id);
+        }
+        return loadUserData(playerName).getLong("exp.balance", 0L);
     }
 
     public void setStored(String playerName, long value) {
-        YamlConfiguration data = loadUserData(playerName);
-        data.set("exp.balance", value);
-        saveUserData(playerName, data);
+        UUID id = resolveAccount(playerName);
+        boolean imported = ledger.contains(id);
+        ledger.set(id, Math.max(0L, value));
+        if (!imported) {
+            clearLegacyBalance(playerName);
+        }
+    }
+
+    /**
+     * Resolve the ledger account about to be changed, importing the legacy
+     * {@code exp.balance} from the userdata file the first time.
+     */
+    private UUID accountOf(String playerName) {
+        UUID id = resolveAccount(playerName);
+        if (!ledger.contains(id)) {
+            YamlConfiguration data = loadUserData(playerName);
+            ledger.set(id, data.getLong("exp.balance", 0L));
+            clearLegacyBalance(playerName);
+        }
+        return id;
+    }
+
+    /**
+     * Drop the legacy balance once the import record is on disk, so a lost or reset ledger
+     * can never bring an old balance back.
+     */
+    private void clearLegacyBalance(final String playerName) {
+        ledger.whenDurable(new Runnable() {
+            public void run() {
+                YamlConfiguration data = loadUserData(playerName);
+                if (data.contains("exp.balance")) {
+                    data.set("exp.balance", null);
+                    saveUserData(playerName, data);
+                }
+            }
+        });
+    }
+
+    private UUID resolveAccount(String playerName) {
+        Player online = Bukkit.getPlayerExact(playerName);
+        if (online != null) {
+            return online.getUniqueId();
+        }
+        return Bukkit.getOfflinePlayer(playerName).getUniqueId();
     }
 
     List<String> getExchangeIds() {
@@ -107,13 +170,31 @@ public class ExpManager {
                 player.sendMessage(messages.format(player, "exp.not_enough_player"));
             return false;
         }
-        player.giveExp((int) -amount);
-        long stored = getStored(player.getName()) + amount;
-        setStored(player.getName(), stored);
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("amount", String.valueOf(amount));
-        map.put("stored", String.valueOf(stored));
-        player.sendMessage(messages.format(player, "exp.deposit.success", map));
+        final UUID id = accountOf(player.getName());
+        if (!ledger.tryAdd(id, amount)) {
+            player.sendMessage(messages.format(player, "exp.amount_invalid"));
+            return false;
+        }
+        // Take the exp once the deposit is on disk; if it was spent meanwhile, undo the deposit.
+        final UUID playerId = player.getUniqueId();
+        final int taken = (int) amount;
+        ledger.whenDurable(new Runnable() {
+            public void run() {
+                Player online = Bukkit.getPlayer(playerId);
+                if (online == null || online.getTotalExperience() < taken) {
+                    ledger.tryAdd(id, -taken);
+                    if (online != null) {
+                        online.sendMessage(messages.format(online, "exp.not_enough_player"));
+                    }
+                    return;
+                }
+                online.giveExp(-taken);
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("amount", String.valueOf(taken));
+                map.put("stored", String.valueOf(ledger.get(id)));
+                online.sendMessage(messages.format(online, "exp.deposit.success", map));
+            }
+        });
         return true;
     }
 
@@ -126,18 +207,32 @@ public class ExpManager {
                 player.sendMessage(messages.format(player, "exp.amount_invalid"));
             return false;
         }
-        long stored = getStored(player.getName());
-        if (amount > stored) {
+        if (amount > getStored(player.getName())) {
                 player.sendMessage(messages.format(player, "exp.not_enough_stored"));
             return false;
         }
-        stored -= amount;
-        setStored(player.getName(), stored);
-        player.giveExp((int) amount);
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("amount", String.valueOf(amount));
-        map.put("stored", String.valueOf(stored));
-        player.sendMessage(messages.format(player, "exp.withdraw.success", map));
+        final UUID id = accountOf(player.getName());
+        if (!ledger.tryAdd(id, -amount)) {
+                player.sendMessage(messages.format(player, "exp.not_enough_stored"));
+            return false;
+        }
+        // Pay out only once the withdrawal is on disk; a player gone by then gets it back in the bank.
+        final UUID playerId = player.getUniqueId();
+        final int given = (int) amount;
+        ledger.whenDurable(new Runnable() {
+            public void run() {
+                Player online = Bukkit.getPlayer(playerId);
+                if (online == null) {
+                    ledger.tryAdd(id, given);
+                    return;
+                }
+                online.giveExp(given);
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("amount", String.valueOf(given));
+                map.put("stored", String.valueOf(ledger.get(id)));
+                online.sendMessage(messages.format(online, "exp.withdraw.success", map));
+            }
+        });
         return true;
     }
 
@@ -150,34 +245,46 @@ public class ExpManager {
                 player.sendMessage(messages.format(player, "exp.transfer.self"));
             return false;
         }
-        long stored = getStored(player.getName());
-        if (amount > stored) {
+        if (amount > getStored(player.getName())) {
                 player.sendMessage(messages.format(player, "exp.not_enough_stored"));
             return false;
         }
-        OfflinePlayer target = Bukkit.getOfflinePlayer(targetName);
+        final OfflinePlayer target = Bukkit.getOfflinePlayer(targetName);
         if (target.getName() == null || target.getName().trim().isEmpty()) {
                 player.sendMessage(messages.format(player, "exp.transfer.invalid_target"));
             return false;
         }
-        setStored(player.getName(), stored - amount);
-        long targetStored = getStored(target.getName()) + amount;
-        setStored(target.getName(), targetStored);
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("target", target.getName());
-        map.put("amount", String.valueOf(amount));
-        map.put("stored", String.valueOf(stored - amount));
-        player.sendMessage(messages.format(player, "exp.transfer.success", map));
-        if (target.isOnline()) {
-            Player online = target.getPlayer();
-            if (online != null) {
-                Map<String, String> rev = new HashMap<String, String>();
-                rev.put("target", player.getName());
-                rev.put("amount", String.valueOf(amount));
-                rev.put("stored", String.valueOf(targetStored));
-                online.sendMessage(messages.format(online, "exp.transfer.success", rev));
-            }
+        final UUID fromId = accountOf(player.getName());
+        final UUID toId = accountOf(target.getName());
+        // Both sides move in one journal record, so a crash can never apply only half.
+        if (!ledger.transfer(fromId, toId, amount)) {
+                player.sendMessage(messages.format(player, "exp.not_enough_stored"));
+            return false;
         }
+        // Report the transfer once it is on disk.
+        final UUID playerId = player.getUniqueId();
+        final String playerName = player.getName();
+        final long moved = amount;
+        ledger.whenDurable(new Runnable() {
+            public void run() {
+                Player sender = Bukkit.getPlayer(playerId);
+                if (sender != null) {
+                    Map<String, String> map = new HashMap<String, String>();
+                    map.put("target", target.getName());
+                    map.put("amount", String.valueOf(moved));
+                    map.put("stored", String.valueOf(ledger.get(fromId)));
+                    sender.sendMessage(messages.format(sender, "exp.transfer.success", map));
+                }
+                Player online = target.getPlayer();
+                if (online != null) {
+                    Map<String, String> rev = new HashMap<String, String>();
+                    rev.put("target", playerName);
+                    rev.put("amount", String.valueOf(moved));
+                    rev.put("stored", String.valueOf(ledger.get(toId)));
+                    online.sendMessage(messages.format(online, "exp.transfer.success", rev));
+                }
+            }
+        });
         return true;
     }
 
@@ -186,8 +293,7 @@ public class ExpManager {
         if (item == null) {
             return false;
         }
-        YamlConfiguration data = loadUserData(player.getName());
-        long stored = data.getLong("exp.balance", 0L);
+        long stored = getStored(player.getName());
         if (stored < item.getCost()) {
             Map<String, String> map = new HashMap<String, String>();
             map.put("cost", String.valueOf(item.getCost()));
@@ -196,6 +302,7 @@ public class ExpManager {
                 player.sendMessage(messages.format(player, "exp.exchange.insufficient", map));
             return false;
         }
+        YamlConfiguration data = loadUserData(player.getName());
         String base = "exp.exchange." + item.getId();
         int totalUsed = data.getInt(base + ".total", 0);
         int dailyUsed = data.getInt(base + ".daily.count", 0);
@@ -212,26 +319,39 @@ public class ExpManager {
               player.sendMessage(messages.format(player, "exp.exchange.limit_total"));
             return false;
         }
-        stored -= item.getCost();
-        data.set("exp.balance", stored);
+        final UUID account = accountOf(player.getName());
+        if (!ledger.tryAdd(account, -item.getCost())) {
+            player.sendMessage(messages.format(player, "exp.not_enough_stored"));
+            return false;
+        }
         data.set(base + ".total", totalUsed + 1);
         data.set(base + ".daily.count", dailyUsed + 1);
         data.set(base + ".daily.date", today);
         saveUserData(player.getName(), data);
 
-        for (String raw : item.getCommands()) {
-            if (raw == null || raw.trim().isEmpty()) {
-                continue;
+        // Hand out the rewards once the payment is on disk.
+        final ExchangeItem bought = item;
+        final String playerName = player.getName();
+        final UUID playerId = player.getUniqueId();
+        ledger.whenDurable(new Runnable() {
+            public void run() {
+                for (String raw : bought.getCommands()) {
+                    if (raw == null || raw.trim().isEmpty()) {
+                        continue;
+                    }
+                    String cmd = raw.replace("{player}", playerName).replace("{id}", bought.getId());
+                    Bukkit.dispatchCommand(Bukkit.getConsoleSender(), cmd);
+                }
+                Player online = Bukkit.getPlayer(playerId);
+                if (online != null) {
+                    Map<String, String> map = new HashMap<String, String>();
+                    map.put("id", bought.getId());
+                    map.put("cost", String.valueOf(bought.getCost()));
+                    map.put("stored", String.valueOf(ledger.get(account)));
+                    online.sendMessage(messages.format(online, "exp.exchange.success", map));
+                }
             }
-            String cmd = raw.replace("{player}", player.getName()).replace("{id}", item.getId());
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), cmd);
-        }
-
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("id", item.getId());
-        map.put("cost", String.valueOf(item.getCost()));
-        map.put("stored", String.valueOf(stored));
-            player.sendMessage(messages.format(player, "exp.exchange.success", map));
+        });
         return true;
     }
 
@@ -13,14 +13,13 @@ import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.scoreboard.DisplaySlot;
+import org.bukkit.scoreboard.Objective;
+import org.bukkit.scoreboard.Scoreboard;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +34,10 @@ import java.util.Random;
  * - Leaderboard and rankings
  * - Rewards for top players
  * - Support for custom fish with configurable points
+ * - Live sidebar with the current top players
+ *
+ * Rankings come from an order-statistics tree updated on every catch, so rank lookups,
+ * top-N lists and the sidebar never sort all participants.
  */
 public class FishingContestManager {
 
@@ -69,9 +72,21 @@ public class FishingContestManager {
     private ContestSession activeContest = null;
     // Player scores in current contest
     private final Map<String, PlayerScore> playerScores = new HashMap<String, PlayerScore>();
+    private final ContestLeaderboard leaderboard = new ContestLeaderboard();
+
+    // Live sidebar for participants
+    private boolean sidebarEnabled = true;
+    private int sidebarLines = 10;
+    private Scoreboard sidebar;
+    private Objective sidebarObjective;
+    private boolean sidebarDirty;
+    private List<String> sidebarShown = new ArrayList<String>();
+    private final Map<String, Scoreboard> previousScoreboards = new HashMap<String, Scoreboard>();
 
     // Callback for opening games menu (set by plugin)
     private java.util.function.Consumer<Player> openGamesMenuCallback;
+    private LeaderboardService leaderboardService;
+    private GameLoopScheduler gameLoop;
 
     public FishingContestManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout menuLayout) {
         this.plugin = plugin;
@@ -123,6 +138,9 @@ public class FishingContestManager {
         secondPlaceRewards = config.getStringList("rewards.second_place");
         thirdPlaceRewards = config.getStringList("rewards.third_place");
         participationRewards = config.getStringList("rewards.participation");
+
+        sidebarEnabled = config.getBoolean("scoreboard.enabled", true);
+        sidebarLines = Math.max(1, Math.min(15, config.getInt("scoreboard.lines", 10)));
     }
 
     public boolean isEnabled() {
@@ -136,6 +154,20 @@ public class FishingContestManager {
         this.openGamesMenuCallback = callback;
     }
 
+    /**
+     * Set the shared game loop that drives this game's timers.
+     */
+    public void setGameLoop(GameLoopScheduler gameLoop) {
+        this.gameLoop = gameLoop;
+    }
+
+    /**
+     * Set the service that records finished rounds for the leaderboards.
+     */
+    public void setLeaderboardService(LeaderboardService leaderboardService) {
+        this.leaderboardService = leaderboardService;
+    }
+
     // ============ Public API ============
 
     /**
@@ -154,6 +186,8 @@ public class FishingContestManager {
 
         activeContest = new ContestSession(contestDuration);
         playerScores.clear();
+        leaderboard.clear();
+        createSidebar(starter);
 
         // Broadcast contest start
         Map<String, String> map = new HashMap<String, String>();
@@ -189,7 +223,7 @@ public class FishingContestManager {
             return;
         }
 
-        playerScores.put(playerName, new PlayerScore(playerName));
+        addParticipant(player);
         player.sendMessage(messages.format(player, "fishing.joined"));
 
         Map<String, String> map = new HashMap<String, String>();
@@ -211,8 +245,7 @@ public class FishingContestManager {
         if (score == null) {
             // Player not in contest, auto-join if enabled
             if (playerScores.size() < maxPlayers) {
-                playerScores.put(playerName, new PlayerScore(playerName));
-                score = playerScores.get(playerName);
+                score = addParticipant(player);
                 player.sendMessage(messages.format(player, "fishing.auto_joined"));
             } else {
                 return;
@@ -224,6 +257,10 @@ public class FishingContestManager {
         if (points > 0) {
             score.addScore(points);
             score.incrementCatches();
+            leaderboard.update(playerName, score.getScore());
+            if (leaderboard.rank(playerName) <= sidebarLines) {
+                sidebarDirty = true;
+            }
 
             // Track largest catch
             if (points > score.getLargestCatch()) {
@@ -254,13 +291,8 @@ public class FishingContestManager {
         }
 
         // Calculate rankings
-        List<PlayerScore> rankings = new ArrayList<PlayerScore>(playerScores.values());
-        Collections.sort(rankings, new Comparator<PlayerScore>() {
-            @Override
-            public int compare(PlayerScore a, PlayerScore b) {
-                return Integer.compare(b.getScore(), a.getScore());
-            }
-        });
+        List<PlayerScore> rankings = topScores(leaderboard.size());
+        removeSidebar();
 
         // Broadcast results - use null for server-wide messages
         Bukkit.broadcastMessage(messages.format((org.bukkit.command.CommandSender) null, "fishing.contest_ended"));
@@ -274,6 +306,9 @@ public class FishingContestManager {
             map.put("score", String.valueOf(score.getScore()));
             map.put("catches", String.valueOf(score.getCatches()));
             Bukkit.broadcastMessage(messages.format((org.bukkit.command.CommandSender) null, "fishing.results_entry", map));
+            if (leaderboardService != null) {
+                leaderboardService.record("fishing", score.getPlayerName(), score.getScore(), rank == 1);
+            }
 
             // Grant rewards
             Player player = Bukkit.getPlayer(score.getPlayerName());
@@ -286,6 +321,7 @@ public class FishingContestManager {
         // Clear contest
         activeContest = null;
         playerScores.clear();
+        leaderboard.clear();
     }
 
     /**
@@ -323,18 +359,11 @@ public class FishingContestManager {
             return;
         }
 
-        List<PlayerScore> rankings = new ArrayList<PlayerScore>(playerScores.values());
-        Collections.sort(rankings, new Comparator<PlayerScore>() {
-            @Override
-            public int compare(PlayerScore a, PlayerScore b) {
-                return Integer.compare(b.getScore(), a.getScore());
-            }
-        });
+        List<PlayerScore> rankings = topScores(10);
 
         player.sendMessage(messages.format(player, "fishing.leaderboard_header"));
         int rank = 1;
         for (PlayerScore score : rankings) {
-            if (rank > 10) break;
             Map<String, String> map = new HashMap<String, String>();
             map.put("rank", String.valueOf(rank));
             map.put("player", score.getPlayerName());
@@ -377,31 +406,31 @@ public class FishingContestManager {
     // ============ Internal Methods ============
 
     private void startContestTimer() {
-        BukkitTask task = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (activeContest == null || activeContest.isEnded()) {
-                    cancel();
-                    return;
-                }
+        GameLoopScheduler.Handle task = gameLoop.every("fishing", 20L, self -> {
+            if (activeContest == null || activeContest.isEnded()) {
+                self.cancel();
+                return;
+            }
 
-                activeContest.decrementTime();
+            activeContest.decrementTime();
+            if (sidebarDirty) {
+                refreshSidebar();
+            }
 
-                // Broadcast time warnings
-                int remaining = activeContest.getRemainingTime();
-                if (remaining == 300 || remaining == 60 || remaining == 30 || remaining == 10) {
-                    Map<String, String> map = new HashMap<String, String>();
-                    map.put("time", formatTime(remaining));
-                    Bukkit.broadcastMessage(messages.format((org.bukkit.command.CommandSender) null, "fishing.time_warning", map));
-                }
+            // Broadcast time warnings
+            int remaining = activeContest.getRemainingTime();
+            if (remaining == 300 || remaining == 60 || remaining == 30 || remaining == 10) {
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("time", formatTime(remaining));
+                Bukkit.broadcastMessage(messages.format((org.bukkit.command.CommandSender) null, "fishing.time_warning", map));
+            }
 
-                // Check timeout
-                if (remaining <= 0) {
-                    endContest();
-                    cancel();
-                }
+            // Check timeout
+            if (remaining <= 0) {
+                endContest();
+                self.cancel();
             }
-        }.runTaskTimer(plugin, 20L, 20L);
+        });
 
         activeContest.setTimerTask(task);
     }
@@ -438,22 +467,82 @@ public class FishingContestManager {
     }
 
     private int getRank(String playerName) {
-        List<PlayerScore> rankings = new ArrayList<PlayerScore>(playerScores.values());
-        Collections.sort(rankings, new Comparator<PlayerScore>() {
-            @Override
-            public int compare(PlayerScore a, PlayerScore b) {
-                return Integer.compare(b.getScore(), a.getScore());
+        return leaderboard.rank(playerName);
+    }
+
+    private List<PlayerScore> topScores(int limit) {
+        List<PlayerScore> rankings = new ArrayList<PlayerScore>();
+        for (String name : leaderboard.top(limit)) {
+            rankings.add(playerScores.get(name));
+        }
+        return rankings;
+    }
+
+    private PlayerScore addParticipant(Player player) {
+        PlayerScore score = new PlayerScore(player.getName());
+        playerScores.put(player.getName(), score);
+        leaderboard.update(player.getName(), 0);
+        if (sidebar != null) {
+            previousScoreboards.put(player.getName(), player.getScoreboard());
+            player.setScoreboard(sidebar);
+            if (leaderboard.rank(player.getName()) <= sidebarLines) {
+                sidebarDirty = true;
             }
-        });
+        }
+        return score;
+    }
 
-        int rank = 1;
-        for (PlayerScore score : rankings) {
-            if (score.getPlayerName().equals(playerName)) {
-                return rank;
+    // ============ Sidebar ============
+
+    private void createSidebar(Player starter) {
+        sidebarShown = new ArrayList<String>();
+        sidebarDirty = false;
+        if (!sidebarEnabled || Bukkit.getScoreboardManager() == null) {
+            sidebar = null;
+            return;
+        }
+        sidebar = Bukkit.getScoreboardManager().getNewScoreboard();
+        sidebarObjective = sidebar.registerNewObjective("nekofishing", "dummy",
+                messages.format(starter, "fishing.sidebar_title"));
+        sidebarObjective.setDisplaySlot(DisplaySlot.SIDEBAR);
+    }
+
+    /**
+     * Bring the sidebar in line with the current top entries; only names that dropped out
+     * are reset, the rest just get their score set.
+     */
+    private void refreshSidebar() {
+        sidebarDirty = false;
+        if (sidebar == null) {
+            return;
+        }
+        List<String> top = leaderboard.top(sidebarLines);
+        for (String name : sidebarShown) {
+            if (!top.contains(name)) {
+                sidebar.resetScores(name);
+            }
+        }
+        for (String name : top) {
+            sidebarObjective.getScore(name).setScore(leaderboard.score(name));
+        }
+        sidebarShown = top;
+    }
+
+    private void removeSidebar() {
+        if (sidebar == null) {
+            return;
+        }
+        for (String name : playerScores.keySet()) {
+            Player player = Bukkit.getPlayerExact(name);
+            if (player != null && player.getScoreboard() == sidebar) {
+                Scoreboard previous = previousScoreboards.get(name);
+                player.setScoreboard(previous != null ? previous : Bukkit.getScoreboardManager().getMainScoreboard());
             }
-            rank++;
         }
-        return -1;
+        previousScoreboards.clear();
+        sidebar = null;
+        sidebarObjective = null;
+        sidebarShown = new ArrayList<String>();
     }
 
     private void grantRewards(Player player, int rank, PlayerScore score) {
@@ -727,7 +816,7 @@ public class FishingContestManager {
     private static class ContestSession {
         private int remainingTime;
         private boolean ended;
-        private BukkitTask timerTask;
+        private GameLoopScheduler.Handle timerTask;
 
         ContestSession(int duration) {
             this.remainingTime = duration;
@@ -738,8 +827,8 @@ public class FishingContestManager {
         void decrementTime() { remainingTime--; }
         boolean isEnded() { return ended; }
         void setEnded(boolean ended) { this.ended = ended; }
-        BukkitTask getTimerTask() { return timerTask; }
-        void setTimerTask(BukkitTask task) { this.timerTask = task; }
+        GameLoopScheduler.Handle getTimerTask() { return timerTask; }
+        void setTimerTask(GameLoopScheduler.Handle task) { this.timerTask = task; }
     }
 
     private static class PlayerScore {
@@ -0,0 +1,254 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+
+/**
+ * One tick task that drives every mini-game timer.
+ *
+ * <p>Sessions register periodic callbacks ({@link #every}) or one-shot deadlines
+ * ({@link #after}); both sit in a single priority queue ordered by the tick they are due, so a
+ * tick only touches the entries that are actually due, however many sessions are running.
+ * Each tick stops running callbacks once {@code budgetNanos} is spent; whatever is left stays
+ * at the head of the queue and runs first on the next tick. Run counts and callback times are
+ * aggregated per category and logged now and then and on shutdown. The task only runs while
+ * something is scheduled. Main thread only.</p>
+ */
+public class GameLoopScheduler {
+
+    private static final int PURGE_THRESHOLD = 64;
+
+    private final JavaPlugin plugin;
+    private long budgetNanos;
+    private long metricsLogTicks;
+
+    private final PriorityQueue<Handle> queue = new PriorityQueue<Handle>();
+    private final Map<String, Metrics> metrics = new LinkedHashMap<String, Metrics>();
+    private BukkitTask task;
+    private long currentTick;
+    private long sequence;
+    // Cancelled entries still sitting in the queue; purged in bulk once they pile up.
+    private int cancelledInQueue;
+
+    private long ticks;
+    private long overBudgetTicks;
+    private long maxLateTicks;
+    private long lastLogTick;
+
+    public GameLoopScheduler(JavaPlugin plugin, long budgetNanos, long metricsLogTicks) {
+        this.plugin = plugin;
+        configure(budgetNanos, metricsLogTicks);
+    }
+
+    /**
+     * Apply new settings; scheduled entries are kept.
+     */
+    public void configure(long budgetNanos, long metricsLogTicks) {
+        this.budgetNanos = Math.max(100000L, budgetNanos);
+        this.metricsLogTicks = Math.max(0L, metricsLogTicks);
+    }
+
+    /**
+     * Run {@code callback} every {@code periodTicks}, starting one period from now.
+     */
+    public Handle every(String category, long periodTicks, Callback callback) {
+        return schedule(category, Math.max(1L, periodTicks), Math.max(1L, periodTicks), callback);
+    }
+
+    /**
+     * Run {@code callback} once, {@code delayTicks} from now.
+     */
+    public Handle after(String category, long delayTicks, Callback callback) {
+        return schedule(category, Math.max(1L, delayTicks), 0L, callback);
+    }
+
+    /**
+     * Drop everything still scheduled and log the timing summary.
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (Handle handle : queue) {
+            handle.cancelled = true;
+            handle.queued = false;
+        }
+        queue.clear();
+        cancelledInQueue = 0;
+        logMetrics();
+    }
+
+    private Handle schedule(String category, long delay, long period, Callback callback) {
+        Handle handle = new Handle(category, currentTick + delay, period, callback, sequence++);
+        offer(handle);
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+                public void run() {
+                    tick();
+                }
+            }, 1L, 1L);
+        }
+        return handle;
+    }
+
+    private void offer(Handle handle) {
+        handle.queued = true;
+        queue.add(handle);
+    }
+
+    private void tick() {
+        currentTick++;
+        ticks++;
+        long tickStart = System.nanoTime();
+        Handle head;
+        while ((head = queue.peek()) != null && head.due <= currentTick) {
+            if (System.nanoTime() - tickStart >= budgetNanos) {
+                overBudgetTicks++;
+                break;
+            }
+            queue.poll();
+            head.queued = false;
+            if (head.cancelled) {
+                cancelledInQueue--;
+                continue;
+            }
+            maxLateTicks = Math.max(maxLateTicks, currentTick - head.due);
+            long start = System.nanoTime();
+            try {
+                head.callback.run(head);
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Game loop task '" + head.category + "' failed and was dropped", e);
+                head.cancelled = true;
+            }
+            metricsFor(head.category).add(System.nanoTime() - start);
+            if (head.period > 0 && !head.cancelled) {
+                // Keep the cadence, but never schedule into a tick that already passed.
+                head.due = Math.max(head.due + head.period, currentTick + 1);
+                offer(head);
+            }
+        }
+        if (cancelledInQueue > PURGE_THRESHOLD && cancelledInQueue * 2 > queue.size()) {
+            purgeCancelled();
+        }
+        if (metricsLogTicks > 0 && currentTick - lastLogTick >= metricsLogTicks) {
+            lastLogTick = currentTick;
+            logMetrics();
+        }
+        if (queue.size() == cancelledInQueue) {
+            queue.clear();
+            cancelledInQueue = 0;
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void purgeCancelled() {
+        PriorityQueue<Handle> live = new PriorityQueue<Handle>(Math.max(1, queue.size() - cancelledInQueue));
+        for (Handle handle : queue) {
+            if (handle.cancelled) {
+                handle.queued = false;
+            } else {
+                live.add(handle);
+            }
+        }
+        queue.clear();
+        queue.addAll(live);
+        cancelledInQueue = 0;
+    }
+
+    private Metrics metricsFor(String category) {
+        Metrics entry = metrics.get(category);
+        if (entry == null) {
+            entry = new Metrics();
+            metrics.put(category, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Log the timing summary collected so far; called on reload, on shutdown and every
+     * {@code metricsLogTicks}.
+     */
+    public void logMetrics() {
+        if (metrics.isEmpty()) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("Game loop: ").append(ticks).append(" ticks, ")
+                .append(overBudgetTicks).append(" over budget, max ").append(maxLateTicks).append(" ticks late");
+        for (Map.Entry<String, Metrics> entry : metrics.entrySet()) {
+            Metrics m = entry.getValue();
+            line.append("; ").append(entry.getKey()).append(' ').append(m.runs).append(" runs avg ")
+                    .append(m.totalNanos / m.runs / 1000L).append("us max ").append(m.maxNanos / 1000L).append("us");
+        }
+        plugin.getLogger().info(line.toString());
+    }
+
+    /**
+     * A scheduled callback; receives its own handle so it can cancel itself.
+     */
+    public interface Callback {
+        void run(Handle handle);
+    }
+
+    /**
+     * A scheduled entry. Cancelling is O(1); the entry is skipped when it comes due.
+     */
+    public final class Handle implements Comparable<Handle> {
+        private final String category;
+        private final long period;
+        private final Callback callback;
+        private final long seq;
+        private long due;
+        private boolean cancelled;
+        private boolean queued;
+
+        private Handle(String category, long due, long period, Callback callback, long seq) {
+            this.category = category;
+            this.due = due;
+            this.period = period;
+            this.callback = callback;
+            this.seq = seq;
+        }
+
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (queued) {
+                cancelledInQueue++;
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Handle other) {
+            if (due != other.due) {
+                return due < other.due ? -1 : 1;
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    private static class Metrics {
+        private long runs;
+        private long totalNanos;
+        private long maxNanos;
+
+        void add(long nanos) {
+            runs++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+}
@@ -522,11 +522,26 @@ public class InventoryHistoryManager {
     // Trim: enforce capacity and expiry on the change log.
     // =====================================================
 
-    private void trim(YamlConfiguration data) {
+    /**
+     * Apply the age/capacity trim to an already-loaded user file. Used by the
+     * background userdata sweeper for offline players; touches only the given
+     * data, so it is safe to call off the main thread.
+     *
+     * @return true if any change record or keyframe was removed
+     */
+    boolean compactHistory(YamlConfiguration data) {
+        if (!enabled) {
+            return false;
+        }
+        return trim(data);
+    }
+
+    private boolean trim(YamlConfiguration data) {
         ConfigurationSection sec = data.getConfigurationSection("inventory_history.changes");
         if (sec == null) {
-            return;
+            return false;
         }
+        boolean changed = false;
         long now = System.currentTimeMillis();
         long expiryMs = expiryMinutes > 0 ? expiryMinutes * 60L * 1000L : 0L;
 
@@ -567,6 +582,7 @@ public class InventoryHistoryManager {
                 if (now - ts > expiryMs && hasKeyframeAtOrAfter(keyframeSeqs, kfSeq)) {
                     sec.set(String.valueOf(s), null);
                     seqs.remove(s);
+                    changed = true;
                 }
             }
         }
@@ -582,6 +598,7 @@ public class InventoryHistoryManager {
                 }
                 sec.set(String.valueOf(oldest), null);
                 seqs.remove(0);
+                changed = true;
             }
         }
 
@@ -608,9 +625,11 @@ public class InventoryHistoryManager {
             for (Long k : new ArrayList<Long>(keyframeSeqs)) {
                 if (k < minKeyframeSeqStillNeeded && k != newest) {
                     kfSec.set(String.valueOf(k), null);
+                    changed = true;
                 }
             }
         }
+        return changed;
     }
 
     private boolean hasKeyframeAtOrAfter(Set<Long> keyframeSeqs, long target) {
@@ -20,15 +20,17 @@ public class JoinQuitManager {
     private final JavaPlugin plugin;
     private final Messages messages;
     private final BuyManager buyManager;
+    private final PermissionSyncService permissionSync;
     private final YamlConfiguration config;
     private boolean enabled;
     private final List<JoinAction> joinActions = new ArrayList<JoinAction>();
     private final List<QuitAction> quitActions = new ArrayList<QuitAction>();
 
-    public JoinQuitManager(JavaPlugin plugin, Messages messages, BuyManager buyManager) {
+    public JoinQuitManager(JavaPlugin plugin, Messages messages, BuyManager buyManager, PermissionSyncService permissionSync) {
         this.plugin = plugin;
         this.messages = messages;
         this.buyManager = buyManager;
+        this.permissionSync = permissionSync;
 
         File configFile = new File(plugin.getDataFolder(), "join_quit_config.yml");
         if (!configFile.exists()) {
@@ -169,14 +171,28 @@ public class JoinQuitManager {
                 }
                 Bukkit.dispatchCommand(Bukkit.getConsoleSender(), cmd);
             }
-        } else if (action instanceof PermissionAddAction || action instanceof PermissionRemoveAction) {
-            // Permission add/remove actions require Vault integration
-            // Use 'command' action type with permission plugin commands as a workaround
-            // Example: type: command, command: "lp user {player} permission set example.permission true"
-            plugin.getLogger().fine("Permission add/remove actions are reserved for future Vault integration.");
+        } else if (action instanceof PermissionAddAction) {
+            PermissionAddAction addAction = (PermissionAddAction) action;
+            syncPermission(player, addAction.getPermission(), addAction.getWorld(), true);
+        } else if (action instanceof PermissionRemoveAction) {
+            PermissionRemoveAction removeAction = (PermissionRemoveAction) action;
+            syncPermission(player, removeAction.getPermission(), removeAction.getWorld(), false);
         }
     }
 
+    private void syncPermission(Player player, String node, String world, boolean present) {
+        if (node == null || node.isEmpty()) {
+            return;
+        }
+        if (permissionSync == null || !permissionSync.isAvailable()) {
+            plugin.getLogger().fine("Vault permission provider missing; skipping permission action for " + node);
+            return;
+        }
+        // "*" or no world means a global node.
+        String target = world == null || world.isEmpty() || "*".equals(world) ? null : world;
+        permissionSync.setNode(player, target, node, present);
+    }
+
     private void executeQuitAction(Player player, QuitAction action) {
         if (action instanceof QuitCommandAction) {
             QuitCommandAction cmdAction = (QuitCommandAction) action;
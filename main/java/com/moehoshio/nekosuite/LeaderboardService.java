@@ -0,0 +1,913 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemFlag;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent leaderboards and history for the mini-games.
+ *
+ * <p>Every finished round is appended as one line to a per-game results log
+ * ({@code <dir>/<game>.log}); the log is never rewritten. Per-player aggregates are kept in
+ * memory for three windows (today, this week, all time) and updated as results come in, and
+ * each window keeps a sorted top-N cache that is patched on every result, so browsing a board
+ * never sorts every player and never reads userdata files. Only when a cached player's value
+ * drops (e.g. blackjack net winnings) is the cache rebuilt from the in-memory aggregates.</p>
+ *
+ * <p>Log lines are written by an async group-commit task. Now and then, and on shutdown, the
+ * aggregates are also written to {@code <game>.snapshot} together with the log length they
+ * cover, so start-up loads the snapshot and replays only the log tail.</p>
+ *
+ * <p>One instance lives as long as the plugin: a reload only {@link #configure reconfigures}
+ * it, so games still running on managers from before the reload keep recording into a live
+ * service. Recording and queries are main-thread only; the writer only sees immutable
+ * strings.</p>
+ */
+public class LeaderboardService {
+
+    /** Games that report results, in menu order. */
+    public static final List<String> GAMES = Arrays.asList("arena", "fishing", "cardbattle", "blackjack", "strategy");
+
+    private static final int[] ENTRY_SLOTS = {
+            19, 20, 21, 22, 23, 24, 25,
+            28, 29, 30, 31, 32, 33, 34,
+            37, 38, 39, 40, 41, 42, 43
+    };
+    private static final int[] GAME_SLOTS = {2, 3, 4, 5, 6};
+    private static final int[] WINDOW_SLOTS = {11, 13, 15};
+
+    private final JavaPlugin plugin;
+    private Messages messages;
+    // Written under ioLock, which the writer holds while it reads it.
+    private File dir;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private int topSize;
+    private long snapshotIntervalMs;
+    private final Map<String, Board> boards = new LinkedHashMap<String, Board>();
+    private long lastSnapshotAt;
+
+    /** Log lines and snapshots waiting for the writer, in order. */
+    private List<Object> pending = new ArrayList<Object>();
+    private final Object pendingLock = new Object();
+    private final Object ioLock = new Object();
+    private BukkitTask writerTask;
+
+    // Callback for opening games menu (set by plugin)
+    private java.util.function.Consumer<Player> openGamesMenuCallback;
+
+    public LeaderboardService(JavaPlugin plugin, Messages messages, File configFile) {
+        this.plugin = plugin;
+        configure(messages, configFile);
+    }
+
+    /**
+     * Apply the config and load the boards. On reload, every result recorded so far is written
+     * first and the boards are replayed from disk under the new settings.
+     */
+    public void configure(Messages messages, File configFile) {
+        shutdown();
+        this.messages = messages;
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+        File newDir = new File(plugin.getDataFolder(), config.getString("storage.dir", "leaderboards"));
+        if (!newDir.exists() && !newDir.mkdirs()) {
+            plugin.getLogger().warning("無法創建排行榜目錄: " + newDir.getAbsolutePath());
+        }
+        synchronized (ioLock) {
+            this.dir = newDir;
+        }
+        this.topSize = Math.max(1, Math.min(ENTRY_SLOTS.length, config.getInt("top_size", 10)));
+        this.snapshotIntervalMs = Math.max(10L, config.getLong("snapshot_interval_seconds", 300L)) * 1000L;
+        boards.clear();
+        for (String game : GAMES) {
+            if (!config.getBoolean("games." + game + ".enabled", true)) {
+                continue;
+            }
+            Metric metric = Metric.parse(config.getString("games." + game + ".metric", defaultMetric(game)));
+            boards.put(game, new Board(game, metric));
+        }
+        for (Board board : boards.values()) {
+            recover(board);
+        }
+        lastSnapshotAt = System.currentTimeMillis();
+        long flushTicks = Math.max(1L, config.getLong("flush_interval_ticks", 100L));
+        writerTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, new Runnable() {
+            public void run() {
+                flush();
+            }
+        }, flushTicks, flushTicks);
+    }
+
+    private static String defaultMetric(String game) {
+        if ("cardbattle".equals(game)) {
+            return "wins";
+        }
+        if ("blackjack".equals(game)) {
+            return "total";
+        }
+        return "best";
+    }
+
+    public void setOpenGamesMenuCallback(java.util.function.Consumer<Player> callback) {
+        this.openGamesMenuCallback = callback;
+    }
+
+    public List<String> getGames() {
+        return new ArrayList<String>(boards.keySet());
+    }
+
+    /**
+     * Stop the writer and write every pending line and a fresh snapshot synchronously. Call on
+     * disable; reloads go through {@link #configure}.
+     */
+    public void shutdown() {
+        if (writerTask != null) {
+            writerTask.cancel();
+            writerTask = null;
+        }
+        for (Board board : boards.values()) {
+            if (board.dirty) {
+                enqueue(snapshot(board));
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Record the result of one finished round.
+     *
+     * @param game   one of {@link #GAMES}
+     * @param player player name
+     * @param score  the round's score (net winnings for blackjack)
+     * @param won    whether the player won the round
+     */
+    public void record(String game, String player, long score, boolean won) {
+        Board board = boards.get(game);
+        if (board == null || player == null || player.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        apply(board, now, player, score, won);
+        enqueue(new LogLine(game, now + " " + player + " " + score + " " + (won ? 1 : 0)));
+        board.dirty = true;
+        if (now - lastSnapshotAt >= snapshotIntervalMs) {
+            lastSnapshotAt = now;
+            for (Board each : boards.values()) {
+                if (each.dirty) {
+                    enqueue(snapshot(each));
+                }
+            }
+        }
+    }
+
+    private void apply(Board board, long time, String player, long score, boolean won) {
+        LocalDate date = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+        for (Period period : Period.values()) {
+            board.windows[period.ordinal()].add(period.key(date), player, score, won, board.metric, topSize);
+        }
+    }
+
+    // ============ Queries ============
+
+    private Window window(String game, Period period) {
+        Board board = boards.get(game);
+        if (board == null) {
+            return null;
+        }
+        Window window = board.windows[period.ordinal()];
+        // Start a new day or week even if no result has come in yet.
+        window.roll(period.key(LocalDate.now(zone)));
+        return window;
+    }
+
+    /**
+     * Print a board to chat.
+     */
+    public void showTop(Player player, String game, String periodName) {
+        String gameId = game == null ? null : game.toLowerCase();
+        if (gameId == null || !boards.containsKey(gameId)) {
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("game", game == null ? "" : game);
+            player.sendMessage(messages.format(player, "leaderboard.unknown_game", map));
+            return;
+        }
+        Period period = Period.parse(periodName);
+        Board board = boards.get(gameId);
+        Window window = window(gameId, period);
+        List<String> names = window.top(board.metric, topSize);
+
+        Map<String, String> header = new HashMap<String, String>();
+        header.put("game", messages.format(player, "leaderboard.game." + gameId));
+        header.put("window", messages.format(player, "leaderboard.window." + period.id));
+        header.put("metric", messages.format(player, "leaderboard.metric." + board.metric.id));
+        player.sendMessage(messages.format(player, "leaderboard.header", header));
+        if (names.isEmpty()) {
+            player.sendMessage(messages.format(player, "leaderboard.empty"));
+            return;
+        }
+        for (int i = 0; i < names.size(); i++) {
+            Stats stats = window.stats.get(names.get(i));
+            Map<String, String> map = statsMap(names.get(i), stats, board.metric);
+            map.put("rank", String.valueOf(i + 1));
+            player.sendMessage(messages.format(player, "leaderboard.entry", map));
+        }
+        Stats own = window.stats.get(player.getName());
+        if (own != null) {
+            player.sendMessage(messages.format(player, "leaderboard.you", statsMap(player.getName(), own, board.metric)));
+        }
+    }
+
+    private static Map<String, String> statsMap(String name, Stats stats, Metric metric) {
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("player", name);
+        map.put("value", String.valueOf(metric.value(stats)));
+        map.put("games", String.valueOf(stats.games));
+        map.put("wins", String.valueOf(stats.wins));
+        return map;
+    }
+
+    // ============ Menu ============
+
+    public void openMenu(Player player) {
+        if (boards.isEmpty()) {
+            player.sendMessage(messages.format(player, "leaderboard.empty"));
+            return;
+        }
+        openMenu(player, boards.keySet().iterator().next(), Period.ALL_TIME);
+    }
+
+    public void openMenu(Player player, String game, Period period) {
+        Board board = boards.get(game);
+        if (board == null) {
+            openMenu(player);
+            return;
+        }
+        Inventory inv = Bukkit.createInventory(new LeaderboardMenuHolder(game, period), 54,
+                messages.format(player, "menu.leaderboard.title"));
+
+        int gameIndex = 0;
+        for (String id : boards.keySet()) {
+            if (gameIndex >= GAME_SLOTS.length) {
+                break;
+            }
+            List<String> lore = new ArrayList<String>();
+            Map<String, String> metricMap = new HashMap<String, String>();
+            metricMap.put("metric", messages.format(player, "leaderboard.metric." + boards.get(id).metric.id));
+            lore.add(messages.format(player, "menu.leaderboard.metric_lore", metricMap));
+            lore.add(id.equals(game) ? messages.format(player, "menu.leaderboard.selected") : messages.format(player, "menu.leaderboard.game_lore"));
+            lore.add("ID:game_" + id);
+            inv.setItem(GAME_SLOTS[gameIndex++], createItem(gameIcon(id), messages.format(player, "leaderboard.game." + id), lore));
+        }
+
+        Material[] windowIcons = {Material.SUNFLOWER, Material.CLOCK, Material.NETHER_STAR};
+        for (Period each : Period.values()) {
+            List<String> lore = new ArrayList<String>();
+            lore.add(each == period ? messages.format(player, "menu.leaderboard.selected") : messages.format(player, "menu.leaderboard.window_lore"));
+            lore.add("ID:window_" + each.id);
+            inv.setItem(WINDOW_SLOTS[each.ordinal()], createItem(windowIcons[each.ordinal()],
+                    messages.format(player, "leaderboard.window." + each.id), lore));
+        }
+
+        Window window = window(game, period);
+        List<String> names = window.top(board.metric, topSize);
+        String metricName = messages.format(player, "leaderboard.metric." + board.metric.id);
+        if (names.isEmpty()) {
+            inv.setItem(31, createItem(Material.PAPER, messages.format(player, "leaderboard.empty"), new ArrayList<String>()));
+        }
+        for (int i = 0; i < names.size() && i < ENTRY_SLOTS.length; i++) {
+            Map<String, String> map = statsMap(names.get(i), window.stats.get(names.get(i)), board.metric);
+            map.put("rank", String.valueOf(i + 1));
+            map.put("metric", metricName);
+            List<String> lore = new ArrayList<String>();
+            lore.add(messages.format(player, "menu.leaderboard.entry_value", map));
+            lore.add(messages.format(player, "menu.leaderboard.entry_stats", map));
+            inv.setItem(ENTRY_SLOTS[i], createItem(rankIcon(i), messages.format(player, "menu.leaderboard.entry_name", map), lore));
+        }
+
+        Stats own = window.stats.get(player.getName());
+        List<String> ownLore = new ArrayList<String>();
+        if (own != null) {
+            Map<String, String> map = statsMap(player.getName(), own, board.metric);
+            map.put("metric", metricName);
+            map.put("size", String.valueOf(topSize));
+            int rank = names.indexOf(player.getName());
+            map.put("rank", String.valueOf(rank + 1));
+            ownLore.add(rank >= 0 ? messages.format(player, "menu.leaderboard.you_rank", map) : messages.format(player, "menu.leaderboard.you_unranked", map));
+            ownLore.add(messages.format(player, "menu.leaderboard.entry_value", map));
+            ownLore.add(messages.format(player, "menu.leaderboard.entry_stats", map));
+        } else {
+            ownLore.add(messages.format(player, "leaderboard.empty"));
+        }
+        inv.setItem(49, createItem(Material.PLAYER_HEAD, messages.format(player, "menu.leaderboard.you_title"), ownLore));
+
+        List<String> backLore = new ArrayList<String>();
+        backLore.add(messages.format(player, "menu.leaderboard.back_lore"));
+        backLore.add("ID:back_games");
+        inv.setItem(45, createItem(Material.ARROW, messages.format(player, "menu.leaderboard.back"), backLore));
+        List<String> closeLore = new ArrayList<String>();
+        closeLore.add("ID:close");
+        inv.setItem(53, createItem(Material.BARRIER, messages.format(player, "menu.close"), closeLore));
+
+        player.openInventory(inv);
+    }
+
+    public void handleMenuClick(Player player, ItemStack clicked, LeaderboardMenuHolder holder) {
+        if (clicked == null || clicked.getType() == Material.AIR) {
+            return;
+        }
+        String id = extractId(clicked);
+        if (id == null) {
+            return;
+        }
+        if (id.startsWith("game_")) {
+            openMenu(player, id.substring(5), holder.getPeriod());
+        } else if (id.startsWith("window_")) {
+            openMenu(player, holder.getGame(), Period.parse(id.substring(7)));
+        } else if ("back_games".equals(id)) {
+            player.closeInventory();
+            if (openGamesMenuCallback != null) {
+                openGamesMenuCallback.accept(player);
+            }
+        } else if ("close".equals(id)) {
+            player.closeInventory();
+        }
+    }
+
+    private static Material gameIcon(String game) {
+        switch (game) {
+            case "arena":
+                return Material.IRON_SWORD;
+            case "fishing":
+                return Material.FISHING_ROD;
+            case "cardbattle":
+                return Material.PAPER;
+            case "blackjack":
+                return Material.GOLD_NUGGET;
+            case "strategy":
+                return Material.MAP;
+            default:
+                return Material.BOOK;
+        }
+    }
+
+    private static Material rankIcon(int index) {
+        if (index == 0) {
+            return Material.GOLD_BLOCK;
+        }
+        if (index == 1) {
+            return Material.IRON_BLOCK;
+        }
+        if (index == 2) {
+            return Material.BRICKS;
+        }
+        return Material.PAPER;
+    }
+
+    private String extractId(ItemStack item) {
+        if (item == null || !item.hasItemMeta()) {
+            return null;
+        }
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null || meta.getLore() == null) {
+            return null;
+        }
+        for (String line : meta.getLore()) {
+            if (line != null && line.contains("ID:")) {
+                String cleaned = ChatColor.stripColor(line);
+                return cleaned.substring(cleaned.indexOf("ID:") + 3).trim();
+            }
+        }
+        return null;
+    }
+
+    private ItemStack createItem(Material mat, String name, List<String> loreLines) {
+        ItemStack item = new ItemStack(mat == null ? Material.PAPER : mat, 1);
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(messages.colorize(name));
+            List<String> lore = new ArrayList<String>();
+            for (String line : loreLines) {
+                lore.add(line.startsWith("ID:") ? ChatColor.DARK_GRAY + line : messages.colorize(line));
+            }
+            meta.setLore(lore);
+            meta.addItemFlags(ItemFlag.HIDE_ATTRIBUTES, ItemFlag.HIDE_ENCHANTS);
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+
+    // ============ Persistence ============
+
+    private void enqueue(Object entry) {
+        synchronized (pendingLock) {
+            pending.add(entry);
+        }
+    }
+
+    private Snapshot snapshot(Board board) {
+        StringBuilder out = new StringBuilder();
+        for (Window window : board.windows) {
+            out.append("window ").append(window.period.id).append(' ').append(window.key).append('\n');
+            for (Map.Entry<String, Stats> entry : window.stats.entrySet()) {
+                Stats stats = entry.getValue();
+                out.append(entry.getKey()).append(' ').append(stats.best).append(' ').append(stats.total)
+                        .append(' ').append(stats.games).append(' ').append(stats.wins).append('\n');
+            }
+        }
+        out.append("end\n");
+        board.dirty = false;
+        return new Snapshot(board.game, out.toString());
+    }
+
+    /**
+     * Group commit: append queued lines per game; a snapshot is written once every line
+     * queued before it is in the log, tagged with the log length at that point.
+     */
+    private void flush() {
+        // Hold the io lock across the swap so concurrent flushes cannot reorder batches.
+        synchronized (ioLock) {
+            List<Object> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<Object>();
+            }
+            Map<String, StringBuilder> lines = new LinkedHashMap<String, StringBuilder>();
+            for (Object entry : batch) {
+                if (entry instanceof LogLine) {
+                    LogLine line = (LogLine) entry;
+                    StringBuilder builder = lines.get(line.game);
+                    if (builder == null) {
+                        builder = new StringBuilder();
+                        lines.put(line.game, builder);
+                    }
+                    builder.append(line.text).append('\n');
+                    continue;
+                }
+                Snapshot snapshot = (Snapshot) entry;
+                appendLog(snapshot.game, lines.remove(snapshot.game));
+                writeSnapshot(snapshot, logFile(snapshot.game).length());
+            }
+            for (Map.Entry<String, StringBuilder> entry : lines.entrySet()) {
+                appendLog(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private File logFile(String game) {
+        return new File(dir, game + ".log");
+    }
+
+    private File snapshotFile(String game) {
+        return new File(dir, game + ".snapshot");
+    }
+
+    private void appendLog(String game, StringBuilder lines) {
+        if (lines == null || lines.length() == 0) {
+            return;
+        }
+        try {
+            Files.write(logFile(game).toPath(), lines.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to append leaderboard log for " + game + ": " + e.getMessage());
+        }
+    }
+
+    private void writeSnapshot(Snapshot snapshot, long logLength) {
+        File target = snapshotFile(snapshot.game);
+        File tmp = new File(dir, target.getName() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                writer.write("offset " + logLength + "\n");
+                writer.write(snapshot.content);
+                writer.flush();
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to write leaderboard snapshot for " + snapshot.game + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load the snapshot and replay the log past the length it covers. If the snapshot is
+     * missing or does not match the log, the whole log is replayed instead.
+     */
+    private void recover(Board board) {
+        long offset = readSnapshot(board);
+        File log = logFile(board.game);
+        if (!log.exists()) {
+            return;
+        }
+        truncateTornTail(board.game, log);
+        if (offset < 0 || offset > log.length()) {
+            if (offset > log.length()) {
+                plugin.getLogger().warning("Leaderboard snapshot for " + board.game + " is ahead of its log; rebuilding from the log.");
+            }
+            board.reset();
+            offset = 0L;
+        }
+        int replayed = 0;
+        try {
+            FileInputStream in = new FileInputStream(log);
+            try {
+                long skipped = 0L;
+                while (skipped < offset) {
+                    long step = in.skip(offset - skipped);
+                    if (step <= 0) {
+                        break;
+                    }
+                    skipped += step;
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    if (parts.length != 4 || !("0".equals(parts[3]) || "1".equals(parts[3]))) {
+                        continue;
+                    }
+                    try {
+                        apply(board, Long.parseLong(parts[0]), parts[1], Long.parseLong(parts[2]), "1".equals(parts[3]));
+                        replayed++;
+                    } catch (NumberFormatException ignored) {
+                        // Torn line from a crash mid-append.
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to replay leaderboard log for " + board.game + ": " + e.getMessage());
+        }
+        if (replayed > 0) {
+            board.dirty = true;
+            enqueue(snapshot(board));
+        }
+    }
+
+    /**
+     * Cut a line left unfinished by a crash mid-append off the end of the log, so the next
+     * append starts on a fresh line instead of merging into it.
+     */
+    private void truncateTornTail(String game, File log) {
+        try {
+            RandomAccessFile file = new RandomAccessFile(log, "rw");
+            try {
+                long length = file.length();
+                long end = length;
+                byte[] buffer = new byte[4096];
+                while (end > 0) {
+                    int chunk = (int) Math.min(buffer.length, end);
+                    file.seek(end - chunk);
+                    file.readFully(buffer, 0, chunk);
+                    int i = chunk - 1;
+                    while (i >= 0 && buffer[i] != '\n') {
+                        i--;
+                    }
+                    if (i >= 0) {
+                        end = end - chunk + i + 1;
+                        break;
+                    }
+                    end -= chunk;
+                }
+                if (end < length) {
+                    file.setLength(end);
+                    plugin.getLogger().warning("Leaderboard log for " + game + " ended with a torn line; dropped "
+                            + (length - end) + " bytes.");
+                }
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to check leaderboard log for " + game + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the log length the snapshot covers, or -1 if there is no usable snapshot
+     */
+    private long readSnapshot(Board board) {
+        File file = snapshotFile(board.game);
+        if (!file.exists()) {
+            return -1L;
+        }
+        long offset = -1L;
+        boolean complete = false;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+            try {
+                Window window = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    if (line.startsWith("offset ")) {
+                        offset = Long.parseLong(parts[1]);
+                    } else if (line.startsWith("window ")) {
+                        window = board.windows[Period.parse(parts[1]).ordinal()];
+                        window.key = Long.parseLong(parts[2]);
+                    } else if ("end".equals(line)) {
+                        complete = true;
+                    } else if (window != null && parts.length == 5) {
+                        Stats stats = new Stats();
+                        stats.best = Long.parseLong(parts[1]);
+                        stats.total = Long.parseLong(parts[2]);
+                        stats.games = Integer.parseInt(parts[3]);
+                        stats.wins = Integer.parseInt(parts[4]);
+                        window.stats.put(parts[0], stats);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Failed to read leaderboard snapshot for " + board.game + ": " + e.getMessage());
+            complete = false;
+        }
+        if (!complete) {
+            board.reset();
+            return -1L;
+        }
+        return offset;
+    }
+
+    // ============ Inner Classes ============
+
+    /**
+     * Rolling windows; the key identifies the current day or week.
+     */
+    public enum Period {
+        DAILY("daily"), WEEKLY("weekly"), ALL_TIME("all");
+
+        private final String id;
+
+        Period(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        long key(LocalDate date) {
+            switch (this) {
+                case DAILY:
+                    return date.toEpochDay();
+                case WEEKLY:
+                    return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+                default:
+                    return 0L;
+            }
+        }
+
+        /**
+         * Parse a window name; anything unknown means all time.
+         */
+        public static Period parse(String name) {
+            if ("daily".equalsIgnoreCase(name) || "day".equalsIgnoreCase(name) || "today".equalsIgnoreCase(name)) {
+                return DAILY;
+            }
+            if ("weekly".equalsIgnoreCase(name) || "week".equalsIgnoreCase(name)) {
+                return WEEKLY;
+            }
+            return ALL_TIME;
+        }
+    }
+
+    /**
+     * What a board ranks players by.
+     */
+    enum Metric {
+        BEST("best"), TOTAL("total"), WINS("wins");
+
+        private final String id;
+
+        Metric(String id) {
+            this.id = id;
+        }
+
+        long value(Stats stats) {
+            switch (this) {
+                case TOTAL:
+                    return stats.total;
+                case WINS:
+                    return stats.wins;
+                default:
+                    return stats.best;
+            }
+        }
+
+        static Metric parse(String name) {
+            for (Metric metric : values()) {
+                if (metric.id.equalsIgnoreCase(name)) {
+                    return metric;
+                }
+            }
+            return BEST;
+        }
+    }
+
+    private static class Stats {
+        private long best;
+        private long total;
+        private int games;
+        private int wins;
+    }
+
+    private static class Board {
+        private final String game;
+        private final Metric metric;
+        private final Window[] windows = new Window[Period.values().length];
+        private boolean dirty;
+
+        Board(String game, Metric metric) {
+            this.game = game;
+            this.metric = metric;
+            reset();
+        }
+
+        void reset() {
+            for (Period period : Period.values()) {
+                windows[period.ordinal()] = new Window(period);
+            }
+        }
+    }
+
+    /**
+     * Aggregates for one period plus a sorted cache of the best {@code topSize} names.
+     */
+    private static class Window {
+        private final Period period;
+        private long key = Long.MIN_VALUE;
+        private final Map<String, Stats> stats = new HashMap<String, Stats>();
+        private final List<String> top = new ArrayList<String>();
+        // A cached entry got worse and someone outside the cache might now beat it.
+        private boolean topStale = true;
+
+        Window(Period period) {
+            this.period = period;
+        }
+
+        void roll(long currentKey) {
+            if (currentKey > key) {
+                key = currentKey;
+                stats.clear();
+                top.clear();
+                topStale = false;
+            }
+        }
+
+        void add(long resultKey, String player, long score, boolean won, Metric metric, int topSize) {
+            if (resultKey < key) {
+                // Result from an earlier day/week than this window already holds.
+                return;
+            }
+            roll(resultKey);
+            Stats entry = stats.get(player);
+            long before = Long.MIN_VALUE;
+            if (entry == null) {
+                entry = new Stats();
+                entry.best = score;
+                stats.put(player, entry);
+            } else {
+                before = metric.value(entry);
+            }
+            entry.best = Math.max(entry.best, score);
+            entry.total += score;
+            entry.games++;
+            if (won) {
+                entry.wins++;
+            }
+            long after = metric.value(entry);
+            if (after != before && !topStale) {
+                reposition(player, after, after < before, metric, topSize);
+            }
+        }
+
+        private void reposition(String player, long value, boolean dropped, Metric metric, int topSize) {
+            int at = top.indexOf(player);
+            if (at >= 0) {
+                top.remove(at);
+                if (dropped && stats.size() > top.size() + 1) {
+                    topStale = true;
+                    return;
+                }
+            }
+            int pos = top.size();
+            while (pos > 0 && better(player, value, top.get(pos - 1), metric)) {
+                pos--;
+            }
+            if (pos < topSize) {
+                top.add(pos, player);
+                if (top.size() > topSize) {
+                    top.remove(top.size() - 1);
+                }
+            }
+        }
+
+        private boolean better(String name, long value, String other, Metric metric) {
+            long otherValue = metric.value(stats.get(other));
+            if (value != otherValue) {
+                return value > otherValue;
+            }
+            return name.compareTo(other) < 0;
+        }
+
+        List<String> top(Metric metric, int topSize) {
+            if (topStale) {
+                top.clear();
+                topStale = false;
+                for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+                    reposition(entry.getKey(), metric.value(entry.getValue()), false, metric, topSize);
+                }
+            }
+            return top;
+        }
+    }
+
+    private static class LogLine {
+        private final String game;
+        private final String text;
+
+        LogLine(String game, String text) {
+            this.game = game;
+            this.text = text;
+        }
+    }
+
+    private static class Snapshot {
+        private final String game;
+        private final String content;
+
+        Snapshot(String game, String content) {
+            this.game = game;
+            this.content = content;
+        }
+    }
+
+    public static class LeaderboardMenuHolder implements InventoryHolder {
+        private final String game;
+        private final Period period;
+
+        public LeaderboardMenuHolder(String game, Period period) {
+            this.game = game;
+            this.period = period;
+        }
+
+        public String getGame() {
+            return game;
+        }
+
+        public Period getPeriod() {
+            return period;
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return null;
+        }
+    }
+}
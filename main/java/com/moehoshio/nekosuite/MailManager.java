@@ -16,9 +16,12 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +32,9 @@ import java.util.UUID;
  */
 public class MailManager {
 
+    /** Mail id prefix for shared broadcast mails; inbox ids are 8 hex chars and never contain '-'. */
+    private static final String BROADCAST_PREFIX = "bc-";
+
     private final JavaPlugin plugin;
     private final Messages messages;
     private final MenuLayout layout;
@@ -38,6 +44,13 @@ public class MailManager {
     private final boolean allowPlayerSending;
     private final List<String> blockedItems;
     private final File configFile;
+    private final File broadcastFile;
+    /** Shared broadcast records keyed by sequence number, oldest first. */
+    private final Map<Integer, BroadcastRecord> broadcasts = new LinkedHashMap<Integer, BroadcastRecord>();
+    private int nextBroadcastSeq = 1;
+    private final File summaryDir;
+    /** Mailbox summaries keyed by lower-case player name; evicted on quit. */
+    private final Map<String, MailSummary> summaries = new HashMap<String, MailSummary>();
 
     public MailManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout layout) {
         this.plugin = plugin;
@@ -54,6 +67,9 @@ public class MailManager {
         mailExpiryDays = config.getInt("settings.mail_expiry_days", 30);
         allowPlayerSending = config.getBoolean("settings.allow_player_sending", true);
         blockedItems = config.getStringList("settings.blocked_items");
+        broadcastFile = new File(plugin.getDataFolder(), config.getString("storage.broadcast_file", "mail_broadcasts.yml"));
+        summaryDir = new File(storageDir, config.getString("storage.summary_dir", "mail_index"));
+        loadBroadcasts();
     }
 
     /**
@@ -75,6 +91,30 @@ public class MailManager {
         return sendMail("SYSTEM", recipient, subject, content, commands);
     }
 
+    /**
+     * Send a system mail to every player with a single write to the shared broadcast store.
+     * Per-player read/claimed/deleted state is kept as bitsets indexed by broadcast sequence
+     * and merged into {@link #getMails(String)} when the mailbox is read.
+     */
+    public boolean sendBroadcastMail(String subject, String content, List<String> commands) {
+        purgeExpiredBroadcasts();
+        int seq = nextBroadcastSeq++;
+        BroadcastRecord record = new BroadcastRecord(seq, "SYSTEM", subject, content, System.currentTimeMillis(), commands);
+        broadcasts.put(seq, record);
+        if (!saveBroadcasts()) {
+            broadcasts.remove(seq);
+            return false;
+        }
+
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("sender", record.sender);
+        map.put("subject", subject);
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            online.sendMessage(messages.format(online, "mail.new_mail_notification", map));
+        }
+        return true;
+    }
+
     /**
      * Send mail from one player to another.
      */
@@ -130,6 +170,7 @@ public class MailManager {
         }
         
         saveUserData(recipient, data);
+        updateSummary(recipient, data);
         
         // Notify if online
         Player onlineRecipient = Bukkit.getPlayer(recipient);
@@ -148,35 +189,62 @@ public class MailManager {
      */
     public List<Mail> getMails(String playerName) {
         YamlConfiguration data = loadUserData(playerName);
-        return loadMails(data);
+        List<Mail> mails = loadMails(data);
+        mails.addAll(loadBroadcastMails(data));
+        return mails;
     }
 
     /**
      * Get unread mail count.
      */
     public int getUnreadCount(String playerName) {
-        List<Mail> mails = getMails(playerName);
-        int count = 0;
-        for (Mail mail : mails) {
-            if (!mail.isRead()) {
-                count++;
-            }
-        }
-        return count;
+        return getSummary(playerName).getUnread();
     }
 
     /**
      * Get unclaimed mail count (mails with commands that haven't been claimed).
      */
     public int getUnclaimedCount(String playerName) {
-        List<Mail> mails = getMails(playerName);
-        int count = 0;
-        for (Mail mail : mails) {
-            if (!mail.isClaimed() && mail.hasCommands()) {
-                count++;
+        return getSummary(playerName).getUnclaimed();
+    }
+
+    /**
+     * Get the mailbox summary without parsing the mailbox itself. The persisted summary is
+     * rebuilt from the mailbox only when missing or when its oldest counted mail has expired;
+     * broadcasts sent after the summary was written are folded in from memory.
+     */
+    public MailSummary getSummary(String playerName) {
+        String key = playerName.toLowerCase();
+        MailSummary summary = summaries.get(key);
+        if (summary == null) {
+            summary = loadSummary(playerName);
+        }
+        if (summary == null || (summary.expiresAt > 0 && System.currentTimeMillis() >= summary.expiresAt)) {
+            summary = updateSummary(playerName, loadUserData(playerName));
+        }
+        summaries.put(key, summary);
+
+        int unread = summary.unread;
+        int unclaimed = summary.unclaimed;
+        long newest = summary.newestTimestamp;
+        for (BroadcastRecord record : broadcasts.values()) {
+            if (record.seq <= summary.broadcastSeq || isExpired(record.timestamp)) {
+                continue;
+            }
+            unread++;
+            if (!record.commands.isEmpty()) {
+                unclaimed++;
             }
+            newest = Math.max(newest, record.timestamp);
         }
-        return count;
+        return new MailSummary(unread, unclaimed, newest, summary.expiresAt, summary.broadcastSeq);
+    }
+
+    /**
+     * Drop the cached summary of a player who left; the persisted copy stays valid.
+     */
+    public void forgetSummary(String playerName) {
+        summaries.remove(playerName.toLowerCase());
     }
 
     /**
@@ -184,8 +252,16 @@ public class MailManager {
      */
     public void markAsRead(String playerName, String mailId) {
         YamlConfiguration data = loadUserData(playerName);
+        int seq = parseBroadcastSeq(mailId);
+        if (seq > 0) {
+            setBroadcastFlag(data, "read", seq);
+            saveUserData(playerName, data);
+            updateSummary(playerName, data);
+            return;
+        }
         data.set("mail.inbox." + mailId + ".read", true);
         saveUserData(playerName, data);
+        updateSummary(playerName, data);
     }
 
     /**
@@ -193,6 +269,10 @@ public class MailManager {
      */
     public boolean claimMail(Player player, String mailId) throws MailException {
         YamlConfiguration data = loadUserData(player.getName());
+        int seq = parseBroadcastSeq(mailId);
+        if (seq > 0) {
+            return claimBroadcastMail(player, data, seq);
+        }
         ConfigurationSection mailSection = data.getConfigurationSection("mail.inbox." + mailId);
         
         if (mailSection == null) {
@@ -208,7 +288,40 @@ public class MailManager {
             throw new MailException(messages.format(player, "mail.no_rewards"));
         }
         
-        // Execute commands
+        dispatchRewards(player, commands);
+        
+        // Mark as claimed and read
+        mailSection.set("claimed", true);
+        mailSection.set("read", true);
+        saveUserData(player.getName(), data);
+        updateSummary(player.getName(), data);
+        
+        return true;
+    }
+
+    private boolean claimBroadcastMail(Player player, YamlConfiguration data, int seq) throws MailException {
+        BroadcastRecord record = broadcasts.get(seq);
+        if (record == null || isExpired(record.timestamp) || getBroadcastFlags(data, "deleted").get(seq)) {
+            throw new MailException(messages.format(player, "mail.not_found"));
+        }
+        if (getBroadcastFlags(data, "claimed").get(seq)) {
+            throw new MailException(messages.format(player, "mail.already_claimed"));
+        }
+        if (record.commands.isEmpty()) {
+            throw new MailException(messages.format(player, "mail.no_rewards"));
+        }
+
+        // Persist the claim before dispatching so a failed save cannot be replayed for duplicate rewards.
+        setBroadcastFlag(data, "claimed", seq);
+        setBroadcastFlag(data, "read", seq);
+        saveUserData(player.getName(), data);
+        updateSummary(player.getName(), data);
+
+        dispatchRewards(player, record.commands);
+        return true;
+    }
+
+    private void dispatchRewards(Player player, List<String> commands) {
         for (String command : commands) {
             if (command == null || command.trim().isEmpty()) {
                 continue;
@@ -222,13 +335,6 @@ public class MailManager {
             }
             Bukkit.dispatchCommand(Bukkit.getConsoleSender(), cmd);
         }
-        
-        // Mark as claimed and read
-        mailSection.set("claimed", true);
-        mailSection.set("read", true);
-        saveUserData(player.getName(), data);
-        
-        return true;
     }
 
     /**
@@ -236,6 +342,20 @@ public class MailManager {
      */
     public boolean deleteMail(Player player, String mailId) throws MailException {
         YamlConfiguration data = loadUserData(player.getName());
+        int seq = parseBroadcastSeq(mailId);
+        if (seq > 0) {
+            BroadcastRecord record = broadcasts.get(seq);
+            if (record == null || getBroadcastFlags(data, "deleted").get(seq)) {
+                throw new MailException(messages.format(player, "mail.not_found"));
+            }
+            if (!record.commands.isEmpty() && !getBroadcastFlags(data, "claimed").get(seq)) {
+                throw new MailException(messages.format(player, "mail.delete_unclaimed"));
+            }
+            setBroadcastFlag(data, "deleted", seq);
+            saveUserData(player.getName(), data);
+            updateSummary(player.getName(), data);
+            return true;
+        }
         ConfigurationSection mailSection = data.getConfigurationSection("mail.inbox." + mailId);
         
         if (mailSection == null) {
@@ -251,6 +371,7 @@ public class MailManager {
         
         data.set("mail.inbox." + mailId, null);
         saveUserData(player.getName(), data);
+        updateSummary(player.getName(), data);
         
         return true;
     }
@@ -310,8 +431,9 @@ public class MailManager {
             Map<String, String> infoMap = new HashMap<String, String>();
             infoMap.put("page", String.valueOf(page));
             infoMap.put("total_pages", String.valueOf(totalPages));
-            infoMap.put("unread", String.valueOf(getUnreadCount(player.getName())));
-            infoMap.put("unclaimed", String.valueOf(getUnclaimedCount(player.getName())));
+            MailSummary summary = getSummary(player.getName());
+            infoMap.put("unread", String.valueOf(summary.getUnread()));
+            infoMap.put("unclaimed", String.valueOf(summary.getUnclaimed()));
             String infoTitle = messages.format(player, "menu.mail.info_title", infoMap);
             List<String> infoLore = new ArrayList<String>();
             infoLore.add(messages.format(player, "menu.mail.info_lore", infoMap));
@@ -559,8 +681,9 @@ public class MailManager {
      * Notify player of unread mail on login.
      */
     public void notifyUnreadMail(Player player) {
-        int unread = getUnreadCount(player.getName());
-        int unclaimed = getUnclaimedCount(player.getName());
+        MailSummary summary = getSummary(player.getName());
+        int unread = summary.getUnread();
+        int unclaimed = summary.getUnclaimed();
         
         if (unread > 0 || unclaimed > 0) {
             Map<String, String> map = new HashMap<String, String>();
@@ -575,9 +698,22 @@ public class MailManager {
      */
     public void cleanupExpiredMails(String playerName) {
         YamlConfiguration data = loadUserData(playerName);
+        if (removeExpiredMails(data)) {
+            saveUserData(playerName, data);
+            updateSummary(playerName, data);
+        }
+    }
+
+    /**
+     * Remove expired inbox entries from an already-loaded user file. Only reads immutable
+     * settings, so the background userdata sweeper may call it off the main thread.
+     *
+     * @return true if any mail was removed
+     */
+    boolean removeExpiredMails(YamlConfiguration data) {
         ConfigurationSection inbox = data.getConfigurationSection("mail.inbox");
         if (inbox == null) {
-            return;
+            return false;
         }
         
         long now = System.currentTimeMillis();
@@ -596,9 +732,177 @@ public class MailManager {
                 changed = true;
             }
         }
-        
-        if (changed) {
-            saveUserData(playerName, data);
+        return changed;
+    }
+
+    private List<Mail> loadBroadcastMails(YamlConfiguration data) {
+        List<Mail> mails = new ArrayList<Mail>();
+        if (broadcasts.isEmpty()) {
+            return mails;
+        }
+        BitSet read = getBroadcastFlags(data, "read");
+        BitSet claimed = getBroadcastFlags(data, "claimed");
+        BitSet deleted = getBroadcastFlags(data, "deleted");
+        for (BroadcastRecord record : broadcasts.values()) {
+            if (deleted.get(record.seq) || isExpired(record.timestamp)) {
+                continue;
+            }
+            mails.add(new Mail(BROADCAST_PREFIX + record.seq, record.sender, record.subject, record.content,
+                    record.timestamp, read.get(record.seq), claimed.get(record.seq), record.commands));
+        }
+        return mails;
+    }
+
+    /**
+     * Recompute and persist the summary from an already-loaded mailbox.
+     */
+    private MailSummary updateSummary(String playerName, YamlConfiguration data) {
+        List<Mail> mails = loadMails(data);
+        mails.addAll(loadBroadcastMails(data));
+        int unread = 0;
+        int unclaimed = 0;
+        long newest = 0L;
+        long oldest = Long.MAX_VALUE;
+        for (Mail mail : mails) {
+            if (!mail.isRead()) {
+                unread++;
+            }
+            if (mail.hasCommands() && !mail.isClaimed()) {
+                unclaimed++;
+            }
+            newest = Math.max(newest, mail.getTimestamp());
+            oldest = Math.min(oldest, mail.getTimestamp());
+        }
+        long expiresAt = 0L;
+        if (mailExpiryDays > 0 && !mails.isEmpty()) {
+            expiresAt = oldest + mailExpiryDays * 24L * 60L * 60L * 1000L;
+        }
+        MailSummary summary = new MailSummary(unread, unclaimed, newest, expiresAt, nextBroadcastSeq - 1);
+        summaries.put(playerName.toLowerCase(), summary);
+
+        YamlConfiguration out = new YamlConfiguration();
+        out.set("unread", summary.unread);
+        out.set("unclaimed", summary.unclaimed);
+        out.set("newest", summary.newestTimestamp);
+        out.set("expires_at", summary.expiresAt);
+        out.set("broadcast_seq", summary.broadcastSeq);
+        if (!summaryDir.exists() && !summaryDir.mkdirs()) {
+            plugin.getLogger().warning("Failed to create mail summary directory: " + summaryDir.getAbsolutePath());
+        }
+        try {
+            out.save(new File(summaryDir, playerName + ".yml"));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save mail summary: " + e.getMessage());
+        }
+        return summary;
+    }
+
+    private MailSummary loadSummary(String playerName) {
+        File file = new File(summaryDir, playerName + ".yml");
+        if (!file.exists()) {
+            return null;
+        }
+        YamlConfiguration in = YamlConfiguration.loadConfiguration(file);
+        return new MailSummary(in.getInt("unread", 0), in.getInt("unclaimed", 0), in.getLong("newest", 0L),
+                in.getLong("expires_at", 0L), in.getInt("broadcast_seq", 0));
+    }
+
+    private boolean isExpired(long timestamp) {
+        long expiryMillis = mailExpiryDays * 24L * 60L * 60L * 1000L;
+        return expiryMillis > 0 && System.currentTimeMillis() - timestamp > expiryMillis;
+    }
+
+    private int parseBroadcastSeq(String mailId) {
+        if (mailId == null || !mailId.startsWith(BROADCAST_PREFIX)) {
+            return 0;
+        }
+        return parseInt(mailId.substring(BROADCAST_PREFIX.length()));
+    }
+
+    private BitSet getBroadcastFlags(YamlConfiguration data, String flag) {
+        List<Long> words = data.getLongList("mail.broadcast." + flag);
+        long[] raw = new long[words.size()];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = words.get(i);
+        }
+        return BitSet.valueOf(raw);
+    }
+
+    private void setBroadcastFlag(YamlConfiguration data, String flag, int seq) {
+        BitSet bits = getBroadcastFlags(data, flag);
+        bits.set(seq);
+        // Bits below the oldest live broadcast can never be looked up again.
+        int oldestLive = broadcasts.isEmpty() ? seq : broadcasts.keySet().iterator().next();
+        if (oldestLive > 0) {
+            bits.clear(0, Math.min(oldestLive, seq));
+        }
+        List<Long> words = new ArrayList<Long>();
+        for (long word : bits.toLongArray()) {
+            words.add(word);
+        }
+        data.set("mail.broadcast." + flag, words);
+    }
+
+    private void loadBroadcasts() {
+        broadcasts.clear();
+        if (!broadcastFile.exists()) {
+            return;
+        }
+        YamlConfiguration store = YamlConfiguration.loadConfiguration(broadcastFile);
+        nextBroadcastSeq = Math.max(1, store.getInt("next_seq", 1));
+        ConfigurationSection section = store.getConfigurationSection("broadcasts");
+        if (section == null) {
+            return;
+        }
+        List<BroadcastRecord> records = new ArrayList<BroadcastRecord>();
+        for (String key : section.getKeys(false)) {
+            ConfigurationSection entry = section.getConfigurationSection(key);
+            int seq = parseInt(key);
+            if (entry == null || seq <= 0) {
+                continue;
+            }
+            records.add(new BroadcastRecord(seq, entry.getString("sender", "SYSTEM"), entry.getString("subject", ""),
+                    entry.getString("content", ""), entry.getLong("timestamp", 0L), entry.getStringList("commands")));
+            nextBroadcastSeq = Math.max(nextBroadcastSeq, seq + 1);
+        }
+        Collections.sort(records, new Comparator<BroadcastRecord>() {
+            public int compare(BroadcastRecord a, BroadcastRecord b) {
+                return Integer.compare(a.seq, b.seq);
+            }
+        });
+        for (BroadcastRecord record : records) {
+            broadcasts.put(record.seq, record);
+        }
+    }
+
+    private void purgeExpiredBroadcasts() {
+        Iterator<BroadcastRecord> it = broadcasts.values().iterator();
+        while (it.hasNext()) {
+            if (isExpired(it.next().timestamp)) {
+                it.remove();
+            }
+        }
+    }
+
+    private boolean saveBroadcasts() {
+        YamlConfiguration store = new YamlConfiguration();
+        store.set("next_seq", nextBroadcastSeq);
+        for (BroadcastRecord record : broadcasts.values()) {
+            String path = "broadcasts." + record.seq;
+            store.set(path + ".sender", record.sender);
+            store.set(path + ".subject", record.subject);
+            store.set(path + ".content", record.content);
+            store.set(path + ".timestamp", record.timestamp);
+            if (!record.commands.isEmpty()) {
+                store.set(path + ".commands", record.commands);
+            }
+        }
+        try {
+            store.save(broadcastFile);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save broadcast mails: " + e.getMessage());
+            return false;
         }
     }
 
@@ -707,6 +1011,63 @@ public class MailManager {
         }
     }
 
+    /**
+     * Per-player mailbox counters persisted next to the mailbox.
+     */
+    public static class MailSummary {
+        private final int unread;
+        private final int unclaimed;
+        private final long newestTimestamp;
+        private final long expiresAt;
+        private final int broadcastSeq;
+
+        public MailSummary(int unread, int unclaimed, long newestTimestamp, long expiresAt, int broadcastSeq) {
+            this.unread = unread;
+            this.unclaimed = unclaimed;
+            this.newestTimestamp = newestTimestamp;
+            this.expiresAt = expiresAt;
+            this.broadcastSeq = broadcastSeq;
+        }
+
+        public int getUnread() {
+            return unread;
+        }
+
+        public int getUnclaimed() {
+            return unclaimed;
+        }
+
+        public long getNewestTimestamp() {
+            return newestTimestamp;
+        }
+
+        /** Instant the oldest counted mail expires, or 0 if nothing expires. */
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    /**
+     * Shared broadcast mail record, stored once in the broadcast file.
+     */
+    private static class BroadcastRecord {
+        private final int seq;
+        private final String sender;
+        private final String subject;
+        private final String content;
+        private final long timestamp;
+        private final List<String> commands;
+
+        BroadcastRecord(int seq, String sender, String subject, String content, long timestamp, List<String> commands) {
+            this.seq = seq;
+            this.sender = sender;
+            this.subject = subject;
+            this.content = content;
+            this.timestamp = timestamp;
+            this.commands = commands == null ? new ArrayList<String>() : new ArrayList<String>(commands);
+        }
+    }
+
     /**
      * Mail menu holder for inventory identification.
      */
@@ -50,6 +50,10 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
     private ExpManager expManager;
     private CdkManager cdkManager;
     private BuyManager buyManager;
+    private PermissionSyncService permissionSync;
+    private SafeLocationService locationService;
+    private LeaderboardService leaderboardService;
+    private GameLoopScheduler gameLoop;
     private MailManager mailManager;
     private MenuLayout menuLayout;
     private StrategyGameManager strategyGameManager;
@@ -66,6 +70,7 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
     private InventoryBackupManager inventoryBackupManager;
     private InventoryHistoryManager inventoryHistoryManager;
     private CommandConfig commandConfig;
+    private UserDataSweeper userDataSweeper;
 
     @Override
     public void onDisable() {
@@ -73,6 +78,45 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         if (strategyGameManager != null) {
             strategyGameManager.shutdown();
         }
+        if (userDataSweeper != null) {
+            userDataSweeper.shutdown();
+        }
+        if (expManager != null) {
+            expManager.shutdown();
+        }
+        if (cdkManager != null) {
+            cdkManager.shutdown();
+        }
+        if (eventManager != null) {
+            eventManager.shutdown();
+        }
+        if (buyManager != null) {
+            buyManager.shutdown();
+        }
+        if (randomTeleportGameManager != null) {
+            randomTeleportGameManager.shutdown();
+        }
+        if (survivalArenaManager != null) {
+            survivalArenaManager.shutdown();
+        }
+        if (cardBattleManager != null) {
+            cardBattleManager.shutdown();
+        }
+        if (leaderboardService != null) {
+            leaderboardService.shutdown();
+        }
+        if (gameLoop != null) {
+            gameLoop.shutdown();
+        }
+        if (teleportManager != null) {
+            teleportManager.shutdown();
+        }
+        if (locationService != null) {
+            locationService.shutdown();
+        }
+        if (permissionSync != null) {
+            permissionSync.shutdown();
+        }
     }
 
     @Override
@@ -100,6 +144,8 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         saveResource("blackjack_config.yml", false);
         saveResource("inventory_backup_config.yml", false);
         saveResource("command_config.yml", false);
+        saveResource("leaderboard_config.yml", false);
+        saveResource("game_loop_config.yml", false);
         setupEconomy();
         setupPermission();
         loadManagers();
@@ -702,6 +748,21 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
     }
 
     private boolean handleCdk(CommandSender sender, String[] args) {
+        if (args.length >= 1 && sender.hasPermission("nekosuite.cdk.admin")) {
+            // /cdk generate <template> <count> <batchId>, /cdk batches
+            if ("generate".equalsIgnoreCase(args[0])) {
+                if (args.length < 4) {
+                    sender.sendMessage(messages.format(sender, "cdk.generate.usage"));
+                    return true;
+                }
+                cdkManager.generateBatch(sender, args[3], args[1], (int) Math.min(Integer.MAX_VALUE, parseLong(args[2])));
+                return true;
+            }
+            if ("batches".equalsIgnoreCase(args[0])) {
+                cdkManager.listBatches(sender);
+                return true;
+            }
+        }
         if (!(sender instanceof Player)) {
             sender.sendMessage(messages.format(sender, "common.only_player"));
             return true;
@@ -888,6 +949,15 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 }
             }
             
+            if ("*".equals(recipient)) {
+                // Broadcast to everyone: one shared record instead of a write per mailbox.
+                if (mailManager.sendBroadcastMail(subject, contentBuilder.toString(), commands)) {
+                    sender.sendMessage(messages.format(sender, "mail.broadcast_sent"));
+                } else {
+                    sender.sendMessage(messages.format(sender, "mail.broadcast_failed"));
+                }
+                return true;
+            }
             boolean success = mailManager.sendSystemMail(recipient, subject, contentBuilder.toString(), commands);
             if (success) {
                 Map<String, String> map = new HashMap<String, String>();
@@ -941,6 +1011,16 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 finalContent = customContent.toString();
             }
             
+            if ("*".equals(templateRecipient)) {
+                // {player} stays in the commands and is resolved per player at claim time.
+                if (mailManager.sendBroadcastMail(subject, finalContent, templateCommands)) {
+                    sender.sendMessage(messages.format(sender, "mail.broadcast_sent"));
+                } else {
+                    sender.sendMessage(messages.format(sender, "mail.broadcast_failed"));
+                }
+                return true;
+            }
+            
             // Replace {player} placeholder in commands
             List<String> processedCommands = new ArrayList<String>();
             for (String cmd : templateCommands) {
@@ -1064,8 +1144,25 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 break;
             case "cdk":
                 if (args.length == 1) {
+                    if (sender.hasPermission("nekosuite.cdk.admin")) {
+                        List<String> options = new ArrayList<String>(Arrays.asList("generate", "batches"));
+                        options.add(messages.getRaw(sender, "tab.cdk.code"));
+                        return filter(options, args[0]);
+                    }
                     return Arrays.asList(messages.getRaw(sender, "tab.cdk.code"));
                 }
+                if ("generate".equalsIgnoreCase(args[0]) && sender.hasPermission("nekosuite.cdk.admin")) {
+                    if (args.length == 2) {
+                        return filter(new ArrayList<String>(cdkManager.getCodeIds()), args[1]);
+                    }
+                    if (args.length == 3) {
+                        return Arrays.asList(messages.getRaw(sender, "tab.cdk.count"));
+                    }
+                    if (args.length == 4) {
+                        return Arrays.asList(messages.getRaw(sender, "tab.cdk.batch"));
+                    }
+                    break;
+                }
                 if (args.length == 2) {
                     return Arrays.asList(messages.getRaw(sender, "tab.cdk.redeem"));
                 }
@@ -1204,6 +1301,7 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                         return filter(templates, args[1]);
                     }
                     List<String> players = new ArrayList<String>();
+                    players.add("*");
                     for (Player p : Bukkit.getOnlinePlayers()) {
                         players.add(p.getName());
                     }
@@ -1213,6 +1311,7 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 if (args.length == 3) {
                     if ("template".equalsIgnoreCase(args[0])) {
                         List<String> players = new ArrayList<String>();
+                        players.add("*");
                         for (Player p : Bukkit.getOnlinePlayers()) {
                             players.add(p.getName());
                         }
@@ -1239,8 +1338,26 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                     actions.add("menu");
                     actions.add("status");
                     actions.add("abandon");
+                    if (sender.hasPermission("nekosuite.sgame.admin")) {
+                        actions.add("simulate");
+                    }
                     return filter(actions, args[0]);
                 }
+                if ("simulate".equalsIgnoreCase(args[0]) && sender.hasPermission("nekosuite.sgame.admin")) {
+                    if (args.length == 2) {
+                        return Arrays.asList(messages.getRaw(sender, "tab.sgame.simulate_runs"));
+                    }
+                    if (args.length == 3) {
+                        List<String> policies = new ArrayList<String>();
+                        for (StrategyBalanceSimulator.Policy policy : StrategyBalanceSimulator.Policy.values()) {
+                            policies.add(policy.name().toLowerCase());
+                        }
+                        return filter(policies, args[2]);
+                    }
+                    if (args.length == 4) {
+                        return Arrays.asList(messages.getRaw(sender, "tab.sgame.simulate_stages"));
+                    }
+                }
                 if (args.length == 2) {
                     String sub = args[0].toLowerCase();
                     if ("menu".equals(sub)) {
@@ -1331,7 +1448,7 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 // Handle /neko game <subcommand> tab completion
                 if (args.length >= 2 && "game".equalsIgnoreCase(args[0])) {
                     if (args.length == 2) {
-                        return filter(Arrays.asList("rtp", "arena", "fishing", "cardbattle", "blackjack", "menu"), args[1]);
+                        return filter(Arrays.asList("rtp", "arena", "fishing", "cardbattle", "blackjack", "top", "menu"), args[1]);
                     }
                     if (args.length == 3) {
                         String gameType = args[1].toLowerCase();
@@ -1354,6 +1471,11 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                             }
                             return filter(options, args[2]);
                         }
+                        if ("top".equals(gameType)) {
+                            List<String> options = new ArrayList<String>(leaderboardService.getGames());
+                            options.add("menu");
+                            return filter(options, args[2]);
+                        }
                         if ("blackjack".equals(gameType) || "bj".equals(gameType)) {
                             List<String> options = new ArrayList<String>(Arrays.asList("menu", "bet", "hit", "stand", "double", "accept", "decline", "同意", "拒絕"));
                             // Add online players for invitation
@@ -1365,6 +1487,9 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                             return filter(options, args[2]);
                         }
                     }
+                    if (args.length == 4 && "top".equalsIgnoreCase(args[1])) {
+                        return filter(Arrays.asList("daily", "weekly", "all"), args[3]);
+                    }
                 }
                 break;
             case "skill":
@@ -1395,7 +1520,7 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 break;
             case "ngame":
                 if (args.length == 1) {
-                    return filter(Arrays.asList("rtp", "arena", "fishing", "cardbattle", "blackjack", "menu"), args[0]);
+                    return filter(Arrays.asList("rtp", "arena", "fishing", "cardbattle", "blackjack", "top", "menu"), args[0]);
                 }
                 if (args.length == 2) {
                     String sub = args[0].toLowerCase();
@@ -1418,6 +1543,11 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                         }
                         return filter(options, args[1]);
                     }
+                    if ("top".equals(sub)) {
+                        List<String> options = new ArrayList<String>(leaderboardService.getGames());
+                        options.add("menu");
+                        return filter(options, args[1]);
+                    }
                     if ("blackjack".equals(sub) || "bj".equals(sub)) {
                         List<String> options = new ArrayList<String>(Arrays.asList("menu", "bet", "hit", "stand", "double", "accept", "decline", "同意", "拒絕"));
                         // Add online players for invitation
@@ -1429,6 +1559,9 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                         return filter(options, args[1]);
                     }
                 }
+                if (args.length == 3 && "top".equalsIgnoreCase(args[0])) {
+                    return filter(Arrays.asList("daily", "weekly", "all"), args[2]);
+                }
                 break;
             case "invbackup":
             case "nekobp":
@@ -1546,17 +1679,79 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         menuLayout = new MenuLayout(this);
         commandConfig = new CommandConfig(this);
         wishManager = new WishManager(this, messages, new File(getDataFolder(), "wish_config.yml"), economy);
+        if (eventManager != null) {
+            eventManager.shutdown();
+        }
         eventManager = new EventManager(this, messages, new File(getDataFolder(), "event_config.yml"));
+        if (expManager != null) {
+            // Flush and release the ledger journal before the new manager recovers from it.
+            expManager.shutdown();
+        }
         expManager = new ExpManager(this, messages, new File(getDataFolder(), "exp_config.yml"), menuLayout);
+        if (cdkManager != null) {
+            cdkManager.shutdown();
+        }
         cdkManager = new CdkManager(this, messages, new File(getDataFolder(), "cdk_config.yml"));
-        buyManager = new BuyManager(this, messages, new File(getDataFolder(), "buy_config.yml"), menuLayout, economy, permission);
+        if (buyManager != null) {
+            buyManager.shutdown();
+        }
+        if (randomTeleportGameManager != null) {
+            randomTeleportGameManager.shutdown();
+        }
+        if (survivalArenaManager != null) {
+            survivalArenaManager.shutdown();
+        }
+        if (cardBattleManager != null) {
+            cardBattleManager.shutdown();
+        }
+        YamlConfiguration gameLoopConfig = YamlConfiguration.loadConfiguration(new File(getDataFolder(), "game_loop_config.yml"));
+        long loopBudgetNanos = (long) (gameLoopConfig.getDouble("budget_ms", 2.0) * 1000000L);
+        long loopMetricsTicks = gameLoopConfig.getLong("metrics_log_minutes", 0L) * 60L * 20L;
+        if (gameLoop == null) {
+            gameLoop = new GameLoopScheduler(this, loopBudgetNanos, loopMetricsTicks);
+        } else {
+            // Kept across reloads so timers of games still running on the old managers finish.
+            gameLoop.logMetrics();
+            gameLoop.configure(loopBudgetNanos, loopMetricsTicks);
+        }
+        if (permissionSync != null) {
+            permissionSync.shutdown();
+        }
+        File buyConfigFile = new File(getDataFolder(), "buy_config.yml");
+        permissionSync = new PermissionSyncService(this, permission,
+                YamlConfiguration.loadConfiguration(buyConfigFile).getInt("permission_sync.max_calls_per_tick", 20));
+        permissionSync.start();
+        buyManager = new BuyManager(this, messages, buyConfigFile, menuLayout, economy, permissionSync);
         mailManager = new MailManager(this, messages, new File(getDataFolder(), "mail_config.yml"), menuLayout);
+        if (leaderboardService == null) {
+            leaderboardService = new LeaderboardService(this, messages, new File(getDataFolder(), "leaderboard_config.yml"));
+        } else {
+            // Kept across reloads so games still running on the old managers record into a live service.
+            leaderboardService.configure(messages, new File(getDataFolder(), "leaderboard_config.yml"));
+        }
+        if (strategyGameManager != null) {
+            // Unsaved sessions must be on disk before the new manager reads them back.
+            strategyGameManager.flushSessions();
+        }
         strategyGameManager = new StrategyGameManager(this, messages, new File(getDataFolder(), "strategy_game_config.yml"), menuLayout);
         artifactRewardsManager = new ArtifactRewardsManager(this, messages, new File(getDataFolder(), "artifact_rewards_config.yml"));
-        teleportManager = new TeleportManager(this, messages, new File(getDataFolder(), "tp_config.yml"), economy);
+        if (teleportManager != null) {
+            teleportManager.shutdown();
+        }
+        if (locationService != null) {
+            locationService.shutdown();
+        }
+        File tpConfigFile = new File(getDataFolder(), "tp_config.yml");
+        YamlConfiguration tpConfig = YamlConfiguration.loadConfiguration(tpConfigFile);
+        locationService = new SafeLocationService(this,
+                tpConfig.getInt("location_service.chunks_per_tick", 2),
+                tpConfig.getInt("location_service.checks_per_tick", 16),
+                tpConfig.getInt("location_service.max_attempts", 24));
+        teleportManager = new TeleportManager(this, messages, tpConfigFile, economy);
+        teleportManager.setLocationService(locationService);
         skillManager = new SkillManager(this, messages, new File(getDataFolder(), "skill_config.yml"));
         announcementManager = new AnnouncementManager(this, messages, menuLayout);
-        joinQuitManager = new JoinQuitManager(this, messages, buyManager);
+        joinQuitManager = new JoinQuitManager(this, messages, buyManager, permissionSync);
         randomTeleportGameManager = new RandomTeleportGameManager(this, messages, new File(getDataFolder(), "random_teleport_config.yml"), menuLayout);
         survivalArenaManager = new SurvivalArenaManager(this, messages, new File(getDataFolder(), "survival_arena_config.yml"), menuLayout);
         fishingContestManager = new FishingContestManager(this, messages, new File(getDataFolder(), "fishing_contest_config.yml"), menuLayout);
@@ -1571,13 +1766,31 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 inventoryHistoryManager.runReconcileSweep();
             }
         }, reconcileTicks, reconcileTicks);
+        // Background pruning of offline players' userdata files (expired mail, old history).
+        if (userDataSweeper != null) {
+            userDataSweeper.shutdown();
+        }
+        userDataSweeper = new UserDataSweeper(this, new File(getDataFolder(), "mail_config.yml"), mailManager, inventoryHistoryManager);
+        userDataSweeper.start();
         
         // Set callbacks for opening games menu from game managers
         cardBattleManager.setOpenGamesMenuCallback(this::openGamesMenu);
         blackjackManager.setOpenGamesMenuCallback(this::openGamesMenu);
         randomTeleportGameManager.setOpenGamesMenuCallback(this::openGamesMenu);
+        randomTeleportGameManager.setLocationService(locationService);
+        survivalArenaManager.setLocationService(locationService);
         survivalArenaManager.setOpenGamesMenuCallback(this::openGamesMenu);
         fishingContestManager.setOpenGamesMenuCallback(this::openGamesMenu);
+        leaderboardService.setOpenGamesMenuCallback(this::openGamesMenu);
+        survivalArenaManager.setLeaderboardService(leaderboardService);
+        survivalArenaManager.setGameLoop(gameLoop);
+        fishingContestManager.setGameLoop(gameLoop);
+        randomTeleportGameManager.setGameLoop(gameLoop);
+        strategyGameManager.setGameLoop(gameLoop);
+        fishingContestManager.setLeaderboardService(leaderboardService);
+        cardBattleManager.setLeaderboardService(leaderboardService);
+        blackjackManager.setLeaderboardService(leaderboardService);
+        strategyGameManager.setLeaderboardService(leaderboardService);
     }
 
     private boolean handleReload(CommandSender sender) {
@@ -1591,6 +1804,9 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
     }
 
     private boolean handleStrategyGame(CommandSender sender, String[] args) {
+        if (args.length > 0 && "simulate".equalsIgnoreCase(args[0])) {
+            return handleStrategySimulate(sender, args);
+        }
         if (!(sender instanceof Player)) {
             sender.sendMessage(messages.format(sender, "common.only_player"));
             return true;
@@ -1620,6 +1836,39 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         return true;
     }
 
+    /**
+     * /sgame simulate [runs] [policy] [stages] - headless balance run (admin, console allowed).
+     */
+    private boolean handleStrategySimulate(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("nekosuite.sgame.admin")) {
+            sender.sendMessage(messages.format(sender, "common.no_permission"));
+            return true;
+        }
+        int runs = 1000;
+        int stages = 0;
+        StrategyBalanceSimulator.Policy policy = StrategyBalanceSimulator.Policy.CAUTIOUS;
+        try {
+            if (args.length > 1) {
+                runs = Integer.parseInt(args[1]);
+            }
+            if (args.length > 3) {
+                stages = Integer.parseInt(args[3]);
+            }
+        } catch (NumberFormatException e) {
+            sender.sendMessage(messages.format(sender, "sgame.simulate.usage"));
+            return true;
+        }
+        if (args.length > 2) {
+            policy = StrategyBalanceSimulator.Policy.parse(args[2]);
+        }
+        if (policy == null || runs < 1 || runs > 100000 || stages < 0 || stages > StrategyBalanceSimulator.MAX_STAGES) {
+            sender.sendMessage(messages.format(sender, "sgame.simulate.usage"));
+            return true;
+        }
+        strategyGameManager.simulate(sender, runs, policy, stages);
+        return true;
+    }
+
     private boolean handleStrategyGameMenu(CommandSender sender) {
         if (!(sender instanceof Player)) {
             sender.sendMessage(messages.format(sender, "common.only_player"));
@@ -1817,6 +2066,8 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
             case "blackjack":
             case "bj":
                 return handleBlackjackSubcommand(player, subArgs);
+            case "top":
+                return handleLeaderboardSubcommand(player, subArgs);
             default:
                 // Unknown game type - show usage
                 sender.sendMessage(messages.format(sender, "ngame.usage"));
@@ -2082,6 +2333,15 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         return true;
     }
 
+    private boolean handleLeaderboardSubcommand(Player player, String[] args) {
+        if (args.length == 0 || "menu".equalsIgnoreCase(args[0])) {
+            leaderboardService.openMenu(player);
+            return true;
+        }
+        leaderboardService.showTop(player, args[0], args.length > 1 ? args[1] : null);
+        return true;
+    }
+
     private boolean handleFishingSubcommand(Player player, String[] args) {
         if (args.length == 0) {
             fishingContestManager.openMenu(player);
@@ -2253,7 +2513,7 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         if (args.length == 0) {
             sender.sendMessage(messages.format(sender, "tp.usage"));
             // Show current TP status
-            if (teleportManager.isTpEnabled(player.getName())) {
+            if (teleportManager.isTpEnabled(player)) {
                 sender.sendMessage(messages.format(sender, "tp.status_on"));
             } else {
                 sender.sendMessage(messages.format(sender, "tp.status_off"));
@@ -2305,7 +2565,7 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 teleportManager.cancelTpRequest(player);
                 return true;
             case "status":
-                if (teleportManager.isTpEnabled(player.getName())) {
+                if (teleportManager.isTpEnabled(player)) {
                     player.sendMessage(messages.format(player, "tp.status_on"));
                 } else {
                     player.sendMessage(messages.format(player, "tp.status_off"));
@@ -2379,7 +2639,7 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 return true;
             case "status":
                 boolean isLocked = teleportManager.isLocked(target);
-                boolean tpEnabled = teleportManager.isTpEnabled(target.getName());
+                boolean tpEnabled = teleportManager.isTpEnabled(target);
                 map.put("locked", isLocked ? "true" : "false");
                 map.put("enabled", tpEnabled ? "true" : "false");
                 sender.sendMessage(messages.format(sender, "tp.admin_status", map));
@@ -2632,6 +2892,16 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                         lore.add(singleLore);
                     }
                 }
+                // Mail badge comes from the summary index, never the mailbox body
+                if (mailManager != null && "OPEN_MAIL".equals(item.getAction())) {
+                    MailManager.MailSummary summary = mailManager.getSummary(player.getName());
+                    if (summary.getUnread() > 0 || summary.getUnclaimed() > 0) {
+                        Map<String, String> badge = new HashMap<String, String>();
+                        badge.put("unread", String.valueOf(summary.getUnread()));
+                        badge.put("unclaimed", String.valueOf(summary.getUnclaimed()));
+                        lore.add(messages.format(player, "navigation.mail_badge", badge));
+                    }
+                }
                 if (item.hasAction()) {
                     lore.add(ChatColor.DARK_GRAY + "ACTION:" + item.getAction());
                 }
@@ -2910,6 +3180,9 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 case "OPEN_GAMES":
                     openGamesMenu(player);
                     return true;
+                case "OPEN_LEADERBOARD":
+                    leaderboardService.openMenu(player);
+                    return true;
                 case "OPEN_HELP":
                     openHelpMenu(player);
                     return true;
@@ -3532,6 +3805,9 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         if (randomTeleportGameManager != null) {
             randomTeleportGameManager.onPlayerQuit(player);
         }
+        if (teleportManager != null) {
+            teleportManager.onPlayerQuit(player);
+        }
         if (survivalArenaManager != null) {
             survivalArenaManager.onPlayerQuit(player);
         }
@@ -3544,6 +3820,16 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         if (strategyGameManager != null) {
             strategyGameManager.onPlayerQuit(player);
         }
+        if (mailManager != null) {
+            mailManager.forgetSummary(player.getName());
+        }
+        if (cdkManager != null) {
+            cdkManager.onPlayerQuit(player.getName());
+        }
+        // Last: flush the permission changes the managers above just requested.
+        if (permissionSync != null) {
+            permissionSync.onPlayerQuit(player);
+        }
     }
 
     @EventHandler
@@ -3559,9 +3845,14 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         if (survivalArenaManager == null) {
             return;
         }
-        Player killer = event.getEntity().getKiller();
-        if (killer != null) {
-            survivalArenaManager.onMobKill(killer, entity);
+        survivalArenaManager.onEntityDeath(entity, event.getEntity().getKiller());
+    }
+
+    @EventHandler
+    public void onChunkUnload(org.bukkit.event.world.ChunkUnloadEvent event) {
+        // Survival arena: arena mobs never stay in (or get saved with) unloaded chunks.
+        if (survivalArenaManager != null) {
+            survivalArenaManager.onChunkUnload(event.getChunk());
         }
     }
 
@@ -3625,23 +3916,6 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         }
     }
 
-    @EventHandler
-    public void onPlayerMove(org.bukkit.event.player.PlayerMoveEvent event) {
-        if (randomTeleportGameManager == null) {
-            return;
-        }
-        // Only check if the player actually moved to a different block
-        if (event.getTo() == null) {
-            return;
-        }
-        if (event.getFrom().getBlockX() == event.getTo().getBlockX()
-            && event.getFrom().getBlockY() == event.getTo().getBlockY()
-            && event.getFrom().getBlockZ() == event.getTo().getBlockZ()) {
-            return;
-        }
-        randomTeleportGameManager.checkPlayerLocation(event.getPlayer());
-    }
-
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event) {
         if (event.getInventory() == null) {
@@ -4082,6 +4356,16 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
             blackjackManager.handleMenuClick(player, clicked, bjHolder);
             return;
         }
+        if (holder instanceof LeaderboardService.LeaderboardMenuHolder) {
+            event.setCancelled(true);
+            if (event.getClickedInventory() != event.getView().getTopInventory()) {
+                return;
+            }
+            ItemStack clicked = event.getCurrentItem();
+            LeaderboardService.LeaderboardMenuHolder lbHolder = (LeaderboardService.LeaderboardMenuHolder) holder;
+            leaderboardService.handleMenuClick(player, clicked, lbHolder);
+            return;
+        }
     }
 
     @EventHandler
@@ -4092,6 +4376,10 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         if (joinQuitManager != null) {
             joinQuitManager.onPlayerJoin(player);
         }
+
+        if (teleportManager != null) {
+            teleportManager.onPlayerJoin(player);
+        }
         
         if (mailManager != null) {
             // Delay notification slightly to allow player to fully join
@@ -5449,6 +5737,14 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
             this.end = end;
         }
 
+        Instant getStart() {
+            return start;
+        }
+
+        Instant getEnd() {
+            return end;
+        }
+
         boolean contains(Instant now) {
             if (start != null && now.isBefore(start)) {
                 return false;
@@ -5492,6 +5788,9 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         private final File storageDir;
         private final Map<String, EventDefinition> events = new HashMap<String, EventDefinition>();
         private final Random random = new Random();
+        private final boolean notifyOnOpen;
+        private EventTimeline timeline;
+        private org.bukkit.scheduler.BukkitTask timelineTask;
 
         EventManager(JavaPlugin plugin, Messages messages, File configFile) {
             this.plugin = plugin;
@@ -5503,6 +5802,53 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 plugin.getLogger().warning("無法創建數據目錄: " + storageDir.getAbsolutePath());
             }
             loadEvents(config.getConfigurationSection("events"));
+            notifyOnOpen = config.getBoolean("timeline.notify_on_open", true);
+            timeline = EventTimeline.build(events.values(), System.currentTimeMillis());
+            long checkTicks = Math.max(1L, config.getLong("timeline.check_interval_ticks", 20L));
+            timelineTask = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+                public void run() {
+                    currentTimeline();
+                }
+            }, checkTicks, checkTicks);
+        }
+
+        void shutdown() {
+            if (timelineTask != null) {
+                timelineTask.cancel();
+                timelineTask = null;
+            }
+        }
+
+        /**
+         * The snapshot for right now. Rebuilt only once the next window boundary has passed,
+         * so callers between boundaries share the same immutable instance.
+         */
+        private EventTimeline currentTimeline() {
+            long now = System.currentTimeMillis();
+            EventTimeline current = timeline;
+            if (now < current.getNextTransition()) {
+                return current;
+            }
+            EventTimeline next = EventTimeline.build(events.values(), now);
+            timeline = next;
+            if (notifyOnOpen) {
+                announceOpened(current, next);
+            }
+            return next;
+        }
+
+        private void announceOpened(EventTimeline before, EventTimeline after) {
+            for (EventDefinition def : after.getOpen()) {
+                if (before.isOpen(def.getId())) {
+                    continue;
+                }
+                for (Player online : Bukkit.getOnlinePlayers()) {
+                    Map<String, String> map = new HashMap<String, String>();
+                    map.put("name", def.getDisplayName(messages, online));
+                    map.put("id", def.getId());
+                    online.sendMessage(messages.format(online, "event.opened", map));
+                }
+            }
         }
 
         private void loadEvents(ConfigurationSection section) {
@@ -5522,13 +5868,14 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
 
         List<EventAvailability> listAvailableEvents(Player player) {
             List<EventAvailability> result = new ArrayList<EventAvailability>();
+            EventTimeline snapshot = currentTimeline();
+            if (snapshot.getActive().isEmpty()) {
+                return result;
+            }
             long now = System.currentTimeMillis();
             YamlConfiguration data = loadUserData(player.getName());
-            for (EventDefinition def : events.values()) {
-                if (!def.isEnabled() || !def.isActive(now)) {
-                    continue;
-                }
-                boolean can = canParticipate(def, data, now);
+            for (EventDefinition def : snapshot.getActive()) {
+                boolean can = snapshot.isOpen(def.getId()) && canParticipate(def, data, now);
                 String displayName = def.getDisplayName(messages, player);
                 long refreshTime = getRefreshTimeRemaining(def, data, now);
                 result.add(new EventAvailability(def.getId(), displayName, can, refreshTime));
@@ -5568,16 +5915,16 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
             if (def == null) {
                 throw new EventException(messages.format(player, "event.error.not_found"));
             }
-            long now = System.currentTimeMillis();
-            if (!def.isEnabled() || !def.isActive(now)) {
+            EventTimeline snapshot = currentTimeline();
+            if (!snapshot.isActive(eventId)) {
                 throw new EventException(messages.format(player, "event.error.closed"));
             }
             
             // 檢查是否是允許的星期幾
-            EventLimit limit = def.getLimit();
-            if (limit != null && !limit.isScheduledDay()) {
+            if (!snapshot.isOpen(eventId)) {
                 throw new EventException(messages.format(player, "event.error.wrong_day"));
             }
+            long now = System.currentTimeMillis();
             
             YamlConfiguration data = loadUserData(player.getName());
             if (!canParticipate(def, data, now)) {
@@ -5614,17 +5961,13 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
             return rewardNames;
         }
 
+        // Callers check the event window and scheduled day against the timeline first.
         private boolean canParticipate(EventDefinition def, YamlConfiguration data, long nowMillis) {
             EventLimit limit = def.getLimit();
             if (limit == null || limit.getCount() <= 0 || limit.getWindowMillis() <= 0) {
                 return true;
             }
             
-            // 檢查是否是允許的星期幾
-            if (!limit.isScheduledDay()) {
-                return false;
-            }
-            
             String base = "event.limits." + def.getId();
             long windowStart = data.getLong(base + ".windowStart", 0L);
             int used = data.getInt(base + ".count", 0);
@@ -5680,15 +6023,88 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         }
 
         Set<String> getActiveEventIds() {
-            Set<String> active = new java.util.HashSet<String>();
-            long now = System.currentTimeMillis();
-            for (EventDefinition def : events.values()) {
-                if (def.isEnabled() && def.isActive(now)) {
-                    active.add(def.getId());
+            return currentTimeline().getActiveIds();
+        }
+    }
+
+    /**
+     * Immutable view of which events are inside their time window at one instant, which of
+     * those are open today (day-of-week schedule), and when that answer next changes.
+     */
+    private static class EventTimeline {
+        private final List<EventDefinition> active;
+        private final Set<String> activeIds;
+        private final List<EventDefinition> open;
+        private final Set<String> openIds;
+        private final long nextTransition;
+
+        private EventTimeline(List<EventDefinition> active, Set<String> activeIds, List<EventDefinition> open,
+                              Set<String> openIds, long nextTransition) {
+            this.active = active;
+            this.activeIds = activeIds;
+            this.open = open;
+            this.openIds = openIds;
+            this.nextTransition = nextTransition;
+        }
+
+        static EventTimeline build(java.util.Collection<EventDefinition> definitions, long nowMillis) {
+            List<EventDefinition> active = new ArrayList<EventDefinition>();
+            Set<String> activeIds = new java.util.HashSet<String>();
+            List<EventDefinition> open = new ArrayList<EventDefinition>();
+            Set<String> openIds = new java.util.HashSet<String>();
+            long next = Long.MAX_VALUE;
+            boolean dayScheduled = false;
+            for (EventDefinition def : definitions) {
+                if (!def.isEnabled()) {
+                    continue;
+                }
+                next = Math.min(next, def.nextBoundaryAfter(nowMillis));
+                EventLimit limit = def.getLimit();
+                if (limit != null && limit.getScheduleDayOfWeek() >= 1 && limit.getScheduleDayOfWeek() <= 7) {
+                    dayScheduled = true;
+                }
+                if (!def.isActive(nowMillis)) {
+                    continue;
+                }
+                active.add(def);
+                activeIds.add(def.getId());
+                if (limit == null || limit.isScheduledDay()) {
+                    open.add(def);
+                    openIds.add(def.getId());
                 }
             }
+            if (dayScheduled) {
+                long midnight = java.time.LocalDate.now().plusDays(1)
+                        .atStartOfDay(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+                next = Math.min(next, midnight);
+            }
+            return new EventTimeline(Collections.unmodifiableList(active), Collections.unmodifiableSet(activeIds),
+                    Collections.unmodifiableList(open), Collections.unmodifiableSet(openIds), next);
+        }
+
+        List<EventDefinition> getActive() {
             return active;
         }
+
+        Set<String> getActiveIds() {
+            return activeIds;
+        }
+
+        List<EventDefinition> getOpen() {
+            return open;
+        }
+
+        boolean isActive(String id) {
+            return activeIds.contains(id);
+        }
+
+        boolean isOpen(String id) {
+            return openIds.contains(id);
+        }
+
+        long getNextTransition() {
+            return nextTransition;
+        }
     }
 
     private static class EventDefinition {
@@ -5753,6 +6169,24 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
             return window == null || window.contains(Instant.ofEpochMilli(nowMillis));
         }
 
+        /**
+         * First instant after {@code nowMillis} at which {@link #isActive} changes, or Long.MAX_VALUE.
+         */
+        long nextBoundaryAfter(long nowMillis) {
+            if (window == null) {
+                return Long.MAX_VALUE;
+            }
+            long next = Long.MAX_VALUE;
+            if (window.getStart() != null && window.getStart().toEpochMilli() > nowMillis) {
+                next = window.getStart().toEpochMilli();
+            }
+            // The end instant itself is still inside the window.
+            if (window.getEnd() != null && window.getEnd().toEpochMilli() + 1 > nowMillis) {
+                next = Math.min(next, window.getEnd().toEpochMilli() + 1);
+            }
+            return next;
+        }
+
         EventLimit getLimit() {
             return limit;
         }
@@ -5866,6 +6300,22 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         private final File globalFile;
         private final Map<String, CdkCode> codes = new HashMap<String, CdkCode>();
         private final Random random = new Random();
+        // Global per-code redemption counters; the async flush reads them while the main thread increments.
+        private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicInteger> globalUsed =
+                new java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicInteger>();
+        // Per-player usage (lower-case name -> code -> count), loaded once and written back in batches.
+        private final Map<String, Map<String, Integer>> userUsed = new HashMap<String, Map<String, Integer>>();
+        // Lower-case key -> player name as used for the userdata file.
+        private final Map<String, String> dirtyUsers = new HashMap<String, String>();
+        private final java.util.concurrent.atomic.AtomicBoolean globalDirty = new java.util.concurrent.atomic.AtomicBoolean(false);
+        private final Object globalWriteLock = new Object();
+        // Version of the latest cdk.yml snapshot (main thread) and of the one on disk (under globalWriteLock).
+        private long globalSavedVersion;
+        private long globalWrittenVersion;
+        private org.bukkit.scheduler.BukkitTask flushTask;
+        private final CdkBatchStore batchStore;
+        private final int maxBatchSize;
+        private boolean generating;
 
         CdkManager(JavaPlugin plugin, Messages messages, File configFile) {
             this.plugin = plugin;
@@ -5878,6 +6328,221 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
             }
             globalFile = new File(storageDir, "cdk.yml");
             loadCodes(config.getConfigurationSection("codes"));
+            loadGlobalCounters();
+            batchStore = new CdkBatchStore(new File(plugin.getDataFolder(), config.getString("batches.dir", "cdk_batches")), plugin.getLogger());
+            batchStore.load();
+            maxBatchSize = Math.max(1, config.getInt("batches.max_size", 200000));
+            long flushTicks = Math.max(1L, config.getLong("storage.flush_interval_ticks", 100L));
+            flushTask = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+                public void run() {
+                    flush(false);
+                }
+            }, flushTicks, flushTicks);
+        }
+
+        private void loadGlobalCounters() {
+            globalUsed.clear();
+            ConfigurationSection section = loadGlobal().getConfigurationSection("codes");
+            if (section == null) {
+                return;
+            }
+            for (String codeKey : section.getKeys(false)) {
+                globalUsed.put(codeKey, new java.util.concurrent.atomic.AtomicInteger(section.getInt(codeKey + ".used", 0)));
+            }
+        }
+
+        /**
+         * Atomically take one global use of a code, or return false if the limit is reached.
+         */
+        private boolean tryReserveGlobal(String codeKey, int limit) {
+            java.util.concurrent.atomic.AtomicInteger counter = globalUsed.get(codeKey);
+            if (counter == null) {
+                globalUsed.putIfAbsent(codeKey, new java.util.concurrent.atomic.AtomicInteger());
+                counter = globalUsed.get(codeKey);
+            }
+            while (true) {
+                int used = counter.get();
+                if (limit > 0 && used >= limit) {
+                    return false;
+                }
+                if (counter.compareAndSet(used, used + 1)) {
+                    globalDirty.set(true);
+                    return true;
+                }
+            }
+        }
+
+        private Map<String, Integer> getUserUsage(String playerName) {
+            String key = playerName.toLowerCase();
+            Map<String, Integer> usage = userUsed.get(key);
+            if (usage == null) {
+                usage = new HashMap<String, Integer>();
+                ConfigurationSection section = loadUserData(playerName).getConfigurationSection("cdk.used");
+                if (section != null) {
+                    for (String codeKey : section.getKeys(false)) {
+                        usage.put(codeKey, section.getInt(codeKey, 0));
+                    }
+                }
+                userUsed.put(key, usage);
+            }
+            return usage;
+        }
+
+        /**
+         * Persist dirty counters: per-player usage is merged into userdata on the main thread,
+         * the shared cdk.yml is written once per batch (off the main thread unless {@code sync}).
+         * Snapshots are versioned and a writer that runs late skips a snapshot older than the
+         * file on disk; a synchronous flush also rewrites a snapshot still waiting for its writer.
+         */
+        void flush(boolean sync) {
+            for (Map.Entry<String, String> dirty : dirtyUsers.entrySet()) {
+                Map<String, Integer> usage = userUsed.get(dirty.getKey());
+                if (usage == null) {
+                    continue;
+                }
+                YamlConfiguration userData = loadUserData(dirty.getValue());
+                for (Map.Entry<String, Integer> entry : usage.entrySet()) {
+                    userData.set("cdk.used." + entry.getKey(), entry.getValue());
+                }
+                saveUserData(dirty.getValue(), userData);
+            }
+            dirtyUsers.clear();
+
+            final List<CdkBatchStore.BitmapSnapshot> bitmaps = batchStore.snapshotDirty(sync);
+            boolean globalChanged = globalDirty.getAndSet(false);
+            if (!globalChanged && sync) {
+                synchronized (globalWriteLock) {
+                    globalChanged = globalWrittenVersion < globalSavedVersion;
+                }
+            }
+            final boolean writeGlobal = globalChanged;
+            if (!writeGlobal && bitmaps.isEmpty()) {
+                return;
+            }
+            final Map<String, Integer> snapshot = new HashMap<String, Integer>();
+            for (Map.Entry<String, java.util.concurrent.atomic.AtomicInteger> entry : globalUsed.entrySet()) {
+                snapshot.put(entry.getKey(), entry.getValue().get());
+            }
+            final long version = writeGlobal ? ++globalSavedVersion : 0L;
+            Runnable write = new Runnable() {
+                public void run() {
+                    synchronized (globalWriteLock) {
+                        if (writeGlobal && version > globalWrittenVersion) {
+                            globalWrittenVersion = version;
+                            YamlConfiguration global = new YamlConfiguration();
+                            for (Map.Entry<String, Integer> entry : snapshot.entrySet()) {
+                                global.set("codes." + entry.getKey() + ".used", entry.getValue());
+                            }
+                            saveGlobal(global);
+                        }
+                        batchStore.write(bitmaps);
+                    }
+                }
+            };
+            if (sync) {
+                write.run();
+            } else {
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, write);
+            }
+        }
+
+        void onPlayerQuit(String playerName) {
+            String key = playerName.toLowerCase();
+            if (dirtyUsers.containsKey(key)) {
+                flush(false);
+            }
+            userUsed.remove(key);
+        }
+
+        /**
+         * Stop the batch timer and write everything synchronously. Call before reload and on disable.
+         */
+        void shutdown() {
+            if (flushTask != null) {
+                flushTask.cancel();
+                flushTask = null;
+            }
+            flush(true);
+            batchStore.close();
+        }
+
+        /**
+         * Mint a batch of single-use codes sharing the rewards of an existing code definition.
+         * Generation and file writing run off the main thread; the sender is told when done.
+         */
+        void generateBatch(final CommandSender sender, final String batchId, String templateRaw, final int count) {
+            final CdkCode template = codes.get(templateRaw.toLowerCase());
+            if (template == null) {
+                sender.sendMessage(messages.format(sender, "cdk.generate.unknown_template"));
+                return;
+            }
+            if (!batchId.matches("[A-Za-z0-9_-]+") || batchStore.hasBatch(batchId)) {
+                sender.sendMessage(messages.format(sender, "cdk.generate.batch_exists"));
+                return;
+            }
+            if (count < 1 || count > maxBatchSize) {
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("max", String.valueOf(maxBatchSize));
+                sender.sendMessage(messages.format(sender, "cdk.generate.invalid_count", map));
+                return;
+            }
+            if (generating) {
+                sender.sendMessage(messages.format(sender, "cdk.generate.busy"));
+                return;
+            }
+            generating = true;
+            final Map<String, String> map = new HashMap<String, String>();
+            map.put("batch", batchId);
+            map.put("template", template.getId());
+            map.put("count", String.valueOf(count));
+            sender.sendMessage(messages.format(sender, "cdk.generate.started", map));
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+                public void run() {
+                    File list = null;
+                    String error = null;
+                    try {
+                        list = batchStore.generate(batchId, template.getId(), count);
+                    } catch (IOException e) {
+                        error = e.getMessage();
+                    }
+                    final File listFile = list;
+                    final String failure = error;
+                    Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                        public void run() {
+                            generating = false;
+                            if (failure == null) {
+                                try {
+                                    batchStore.register(batchId);
+                                } catch (IOException e) {
+                                    map.put("reason", e.getMessage());
+                                    sender.sendMessage(messages.format(sender, "cdk.generate.failed", map));
+                                    return;
+                                }
+                                map.put("file", listFile.getPath());
+                                sender.sendMessage(messages.format(sender, "cdk.generate.done", map));
+                            } else {
+                                map.put("reason", failure);
+                                sender.sendMessage(messages.format(sender, "cdk.generate.failed", map));
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        void listBatches(CommandSender sender) {
+            if (batchStore.getBatches().isEmpty()) {
+                sender.sendMessage(messages.format(sender, "cdk.batches.empty"));
+                return;
+            }
+            for (CdkBatchStore.Batch batch : batchStore.getBatches()) {
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("batch", batch.getId());
+                map.put("template", batch.getTemplateId());
+                map.put("used", String.valueOf(batch.getRedeemedCount()));
+                map.put("count", String.valueOf(batch.getCount()));
+                sender.sendMessage(messages.format(sender, "cdk.batches.entry", map));
+            }
         }
 
         private void loadCodes(ConfigurationSection section) {
@@ -5898,7 +6563,10 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
         List<String> redeem(Player player, String codeRaw) throws CdkException {
             String codeKey = codeRaw.toLowerCase();
             CdkCode code = codes.get(codeKey);
-            if (code == null || !code.isEnabled()) {
+            if (code == null) {
+                return redeemGenerated(player, codeRaw);
+            }
+            if (!code.isEnabled()) {
                 throw new CdkException(messages.format(player, "cdk.invalid"));
             }
             Instant now = Instant.now();
@@ -5906,18 +6574,55 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 throw new CdkException(messages.format(player, "cdk.not_active"));
             }
 
-            YamlConfiguration userData = loadUserData(player.getName());
-            int usedByUser = userData.getInt("cdk.used." + codeKey, 0);
-            if (code.getPerUserLimit() > 0 && usedByUser >= code.getPerUserLimit()) {
+            Map<String, Integer> usage = getUserUsage(player.getName());
+            Integer usedByUser = usage.get(codeKey);
+            int userCount = usedByUser == null ? 0 : usedByUser;
+            if (code.getPerUserLimit() > 0 && userCount >= code.getPerUserLimit()) {
                 throw new CdkException(messages.format(player, "cdk.limit_user"));
             }
 
-            YamlConfiguration global = loadGlobal();
-            int used = global.getInt("codes." + codeKey + ".used", 0);
-            if (code.getLimit() > 0 && used >= code.getLimit()) {
+            // Check and take the global use in one step so bursts can never overshoot the limit.
+            if (!tryReserveGlobal(codeKey, code.getLimit())) {
                 throw new CdkException(messages.format(player, "cdk.limit"));
             }
+            usage.put(codeKey, userCount + 1);
+            dirtyUsers.put(player.getName().toLowerCase(), player.getName());
+            return grantRewards(player, code);
+        }
+
+        /**
+         * Redeem a code from a generated batch: each code works once, and the template's
+         * per-user limit counts across the whole batch.
+         */
+        private List<String> redeemGenerated(Player player, String codeRaw) throws CdkException {
+            CdkBatchStore.Hit hit = batchStore.find(codeRaw);
+            if (hit == null) {
+                throw new CdkException(messages.format(player, "cdk.invalid"));
+            }
+            CdkCode template = codes.get(hit.getBatch().getTemplateId().toLowerCase());
+            if (template == null || !template.isEnabled()) {
+                throw new CdkException(messages.format(player, "cdk.invalid"));
+            }
+            if (!template.isActive(Instant.now())) {
+                throw new CdkException(messages.format(player, "cdk.not_active"));
+            }
+            if (hit.isRedeemed()) {
+                throw new CdkException(messages.format(player, "cdk.code_used"));
+            }
+            String usageKey = "batch-" + hit.getBatch().getId().toLowerCase();
+            Map<String, Integer> usage = getUserUsage(player.getName());
+            Integer usedByUser = usage.get(usageKey);
+            int userCount = usedByUser == null ? 0 : usedByUser;
+            if (template.getPerUserLimit() > 0 && userCount >= template.getPerUserLimit()) {
+                throw new CdkException(messages.format(player, "cdk.limit_user"));
+            }
+            hit.markRedeemed();
+            usage.put(usageKey, userCount + 1);
+            dirtyUsers.put(player.getName().toLowerCase(), player.getName());
+            return grantRewards(player, template);
+        }
 
+        private List<String> grantRewards(Player player, CdkCode code) {
             List<String> rewardNames = new ArrayList<String>();
             WeightedList rewardList = code.getRewards();
             if (rewardList != null) {
@@ -5944,10 +6649,6 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
                 }
             }
 
-            userData.set("cdk.used." + codeKey, usedByUser + 1);
-            saveUserData(player.getName(), userData);
-            global.set("codes." + codeKey + ".used", used + 1);
-            saveGlobal(global);
             return rewardNames;
         }
 
@@ -6039,6 +6740,10 @@ public class NekoSuitePlugin extends JavaPlugin implements CommandExecutor, TabC
             return new CdkCode(id, enabled, limit, window, perUser, rewards, grantAll, rewardRolls);
         }
 
+        String getId() {
+            return id;
+        }
+
         boolean isEnabled() {
             return enabled;
         }
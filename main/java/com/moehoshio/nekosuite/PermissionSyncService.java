@@ -0,0 +1,228 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import net.milkbowl.vault.permission.Permission;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Shared front for Vault permission/group changes.
+ *
+ * <p>Callers state what a player should or should not have; the service remembers what it
+ * has already observed or applied for each online player and drops requests that would not
+ * change anything. The remaining changes are queued per player (a newer request for the same
+ * node replaces an older one) and applied by a tick task under a per-tick Vault call budget,
+ * so a burst of joins does not stall one tick on a slow permission backend.</p>
+ *
+ * <p>The cache is dropped on quit, so edits made by other plugins are picked up on the next
+ * login. Main thread only.</p>
+ */
+public class PermissionSyncService {
+
+    private final JavaPlugin plugin;
+    private final Permission permission;
+    private final int maxCallsPerTick;
+    private final boolean groupSupported;
+
+    // Player -> "n|world|node" or "g|world|group" -> last known state.
+    private final Map<UUID, Map<String, Boolean>> applied = new HashMap<UUID, Map<String, Boolean>>();
+    // Player -> pending changes in request order, coalesced by key.
+    private final Map<UUID, LinkedHashMap<String, Change>> pending = new LinkedHashMap<UUID, LinkedHashMap<String, Change>>();
+    private final Deque<UUID> queue = new ArrayDeque<UUID>();
+    private BukkitTask task;
+
+    private long callsMade;
+    private long callsSaved;
+
+    public PermissionSyncService(JavaPlugin plugin, Permission permission, int maxCallsPerTick) {
+        this.plugin = plugin;
+        this.permission = permission;
+        this.maxCallsPerTick = Math.max(1, maxCallsPerTick);
+        boolean groups = false;
+        if (permission != null) {
+            try {
+                groups = permission.hasGroupSupport();
+            } catch (UnsupportedOperationException e) {
+                groups = false;
+            }
+        }
+        this.groupSupported = groups;
+    }
+
+    public boolean isAvailable() {
+        return permission != null;
+    }
+
+    public void start() {
+        if (permission == null || task != null) {
+            return;
+        }
+        task = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+            public void run() {
+                drain(maxCallsPerTick);
+            }
+        }, 1L, 1L);
+    }
+
+    /**
+     * Apply everything still queued and stop the tick task.
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        drain(Integer.MAX_VALUE);
+        if (callsMade > 0 || callsSaved > 0) {
+            plugin.getLogger().info("Permission sync: " + callsMade + " Vault calls made, " + callsSaved + " saved.");
+        }
+    }
+
+    public void setNode(OfflinePlayer player, String world, String node, boolean present) {
+        request(player, new Change(player, false, world, node, present));
+    }
+
+    public void setGroup(OfflinePlayer player, String world, String group, boolean present) {
+        if (!groupSupported) {
+            return;
+        }
+        request(player, new Change(player, true, world, group, present));
+    }
+
+    /**
+     * Apply the player's queued changes right away and forget the cache. Call on quit after
+     * the managers have made their last requests.
+     */
+    public void onPlayerQuit(Player player) {
+        UUID id = player.getUniqueId();
+        LinkedHashMap<String, Change> changes = pending.remove(id);
+        if (changes != null) {
+            queue.remove(id);
+            for (Change change : changes.values()) {
+                apply(id, change);
+            }
+        }
+        applied.remove(id);
+    }
+
+    public long getCallsMade() {
+        return callsMade;
+    }
+
+    public long getCallsSaved() {
+        return callsSaved;
+    }
+
+    private void request(OfflinePlayer player, Change change) {
+        if (permission == null) {
+            return;
+        }
+        UUID id = player.getUniqueId();
+        LinkedHashMap<String, Change> changes = pending.get(id);
+        if (changes != null && changes.remove(change.key) != null) {
+            callsSaved++;
+        }
+        Map<String, Boolean> known = applied.get(id);
+        Boolean state = known == null ? null : known.get(change.key);
+        if (state != null && state == change.present) {
+            // Already in the wanted state: skip both the lookup and the write.
+            callsSaved++;
+            return;
+        }
+        if (changes == null) {
+            changes = new LinkedHashMap<String, Change>();
+            pending.put(id, changes);
+            queue.add(id);
+        }
+        changes.put(change.key, change);
+    }
+
+    private void drain(int budget) {
+        int calls = 0;
+        while (calls < budget && !queue.isEmpty()) {
+            UUID id = queue.peek();
+            LinkedHashMap<String, Change> changes = pending.get(id);
+            if (changes == null || changes.isEmpty()) {
+                queue.poll();
+                pending.remove(id);
+                continue;
+            }
+            Iterator<Change> it = changes.values().iterator();
+            Change change = it.next();
+            it.remove();
+            calls += apply(id, change);
+        }
+    }
+
+    /**
+     * Bring one node or group to the wanted state. Returns the number of Vault calls made.
+     */
+    private int apply(UUID id, Change change) {
+        Map<String, Boolean> known = applied.get(id);
+        if (known == null) {
+            known = new HashMap<String, Boolean>();
+            // Offline players keep no cache; their next login starts fresh.
+            if (Bukkit.getPlayer(id) != null) {
+                applied.put(id, known);
+            }
+        }
+        int calls = 0;
+        Boolean has = known.get(change.key);
+        if (has == null) {
+            has = change.group
+                    ? permission.playerInGroup(change.world, change.player, change.name)
+                    : permission.playerHas(change.world, change.player, change.name);
+            calls++;
+        } else {
+            callsSaved++;
+        }
+        boolean now = has;
+        if (has != change.present) {
+            boolean ok;
+            if (change.group) {
+                ok = change.present
+                        ? permission.playerAddGroup(change.world, change.player, change.name)
+                        : permission.playerRemoveGroup(change.world, change.player, change.name);
+            } else {
+                ok = change.present
+                        ? permission.playerAdd(change.world, change.player, change.name)
+                        : permission.playerRemove(change.world, change.player, change.name);
+            }
+            calls++;
+            if (ok) {
+                now = change.present;
+            }
+        }
+        known.put(change.key, now);
+        callsMade += calls;
+        return calls;
+    }
+
+    private static class Change {
+        private final OfflinePlayer player;
+        private final boolean group;
+        private final String world;
+        private final String name;
+        private final boolean present;
+        private final String key;
+
+        Change(OfflinePlayer player, boolean group, String world, String name, boolean present) {
+            this.player = player;
+            this.group = group;
+            this.world = world;
+            this.name = name;
+            this.present = present;
+            this.key = (group ? "g|" : "n|") + (world == null ? "" : world) + "|" + name;
+        }
+    }
+}
@@ -13,9 +13,8 @@ import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.permissions.PermissionAttachment;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
@@ -26,6 +25,8 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Random Teleport Game Module - Players are teleported to random locations
@@ -65,6 +66,20 @@ public class RandomTeleportGameManager {
 
     // Callback for opening games menu (set by plugin)
     private java.util.function.Consumer<Player> openGamesMenuCallback;
+    private GameLoopScheduler gameLoop;
+
+    // Set by shutdown(); searches the location service abandons then must not draw again
+    private boolean shutdown;
+
+    // Finds safe target/start spots across ticks (set by plugin)
+    private SafeLocationService locationService;
+    private final Set<String> preparingPlayers = new HashSet<String>();
+
+    // Pre-generated target/start pairs, refilled in the background
+    private RtpLocationPool locationPool;
+
+    // Movement goal checks; listens to moves only while games are running
+    private final RtpGoalTracker goalTracker;
 
     public RandomTeleportGameManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout menuLayout) {
         this.plugin = plugin;
@@ -78,6 +93,21 @@ public class RandomTeleportGameManager {
             plugin.getLogger().warning("無法創建數據目錄: " + storageDir.getAbsolutePath());
         }
         loadConfig(config);
+        goalTracker = new RtpGoalTracker(plugin, player -> completeGame(player, true));
+        if (config.getBoolean("pool.enabled", true)) {
+            List<String> poolWorlds = config.getStringList("pool.worlds");
+            if (poolWorlds.isEmpty()) {
+                poolWorlds.add(defaultWorld);
+            }
+            String signature = minDistance + "|" + maxDistance + "|" + worldBorderMin + "|" + worldBorderMax;
+            locationPool = new RtpLocationPool(plugin,
+                    new File(plugin.getDataFolder(), config.getString("pool.file", "rtp_pool.yml")),
+                    signature, poolWorlds,
+                    config.getInt("pool.min_size", 10),
+                    config.getInt("pool.refills_per_minute", 6),
+                    config.getDouble("pool.max_tick_ms", 55.0),
+                    world -> searchSpots(world, null, true));
+        }
     }
 
     private void loadConfig(YamlConfiguration config) {
@@ -104,6 +134,44 @@ public class RandomTeleportGameManager {
         this.openGamesMenuCallback = callback;
     }
 
+    /**
+     * Set the shared game loop that drives this game's timers.
+     */
+    public void setGameLoop(GameLoopScheduler gameLoop) {
+        this.gameLoop = gameLoop;
+    }
+
+    /**
+     * Set the service used to find safe spots; also starts refilling the location pool.
+     */
+    public void setLocationService(SafeLocationService locationService) {
+        this.locationService = locationService;
+        if (locationService != null && locationPool != null) {
+            locationPool.start();
+        }
+    }
+
+    /**
+     * Give back permissions of every running game. Called before reload and on disable so
+     * players are never left without their permissions.
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (locationPool != null) {
+            locationPool.shutdown();
+        }
+        goalTracker.clear();
+        for (GameSession session : activeSessions.values()) {
+            if (session.isEnded()) {
+                continue;
+            }
+            Player player = Bukkit.getPlayerExact(session.getPlayerName());
+            if (player != null) {
+                restorePlayerPermissions(player, session);
+            }
+        }
+    }
+
     // ============ Public API ============
 
     /**
@@ -116,31 +184,116 @@ public class RandomTeleportGameManager {
     /**
      * Start a new random teleport game with a specific target location.
      */
-    public void startGame(Player player, Location targetLocation, int timeLimit) {
+    public void startGame(Player player, Location targetLocation, final int timeLimit) {
         if (!enabled) {
             player.sendMessage(messages.format(player, "rtpgame.disabled"));
             return;
         }
 
-        String playerName = player.getName();
-        if (activeSessions.containsKey(playerName)) {
+        final String playerName = player.getName();
+        if (activeSessions.containsKey(playerName) || preparingPlayers.contains(playerName)) {
             player.sendMessage(messages.format(player, "rtpgame.already_in_game"));
             return;
         }
 
-        World world = player.getWorld();
-        if (targetLocation == null) {
-            targetLocation = generateTargetLocation(world);
+        final World world = player.getWorld();
+        if (targetLocation == null && locationPool != null) {
+            Location[] pooled = locationPool.poll(world);
+            if (pooled != null) {
+                if (locationService == null) {
+                    beginGame(player, pooled[0], pooled[1], timeLimit);
+                } else {
+                    startFromPool(player, pooled, timeLimit);
+                }
+                return;
+            }
+        }
+        if (locationService == null) {
+            if (targetLocation == null) {
+                targetLocation = generateTargetLocation(world);
+            }
+            beginGame(player, targetLocation, generateRandomStartLocation(world, targetLocation), timeLimit);
+            return;
         }
 
-        Location startLocation = generateRandomStartLocation(world, targetLocation);
-        
+        // Find both spots across ticks; the game starts once they are ready.
+        preparingPlayers.add(playerName);
+        player.sendMessage(messages.format(player, "rtpgame.preparing"));
+        final UUID playerId = player.getUniqueId();
+        searchSpots(world, targetLocation, false).thenAccept(spots -> {
+            preparingPlayers.remove(playerName);
+            Player online = Bukkit.getPlayer(playerId);
+            if (online == null || activeSessions.containsKey(playerName)) {
+                return;
+            }
+            if (spots == null) {
+                online.sendMessage(messages.format(online, "rtpgame.no_safe_location"));
+                return;
+            }
+            beginGame(online, spots[0], spots[1], timeLimit);
+        });
+    }
+
+    /**
+     * Start with a pooled pair once both spots pass the safety check again: the pool survives
+     * restarts and the world may have changed since the pair was found. An unsafe pair is
+     * dropped and the next one drawn (or searched on demand once the pool is empty).
+     */
+    private void startFromPool(Player player, Location[] pooled, final int timeLimit) {
+        final String playerName = player.getName();
+        final UUID playerId = player.getUniqueId();
+        preparingPlayers.add(playerName);
+        player.sendMessage(messages.format(player, "rtpgame.preparing"));
+        locationService.recheck(pooled[0]).thenCombine(locationService.recheck(pooled[1]),
+                (target, start) -> target == null || start == null ? null : new Location[]{target, start}
+        ).thenAccept(spots -> {
+            preparingPlayers.remove(playerName);
+            Player online = Bukkit.getPlayer(playerId);
+            if (shutdown || online == null || activeSessions.containsKey(playerName)) {
+                return;
+            }
+            if (spots == null) {
+                startGame(online, null, timeLimit);
+                return;
+            }
+            beginGame(online, spots[0], spots[1], timeLimit);
+        });
+    }
+
+    /**
+     * Find a safe target (unless given) and a safe start around it; completes with
+     * {target, start}, or null if either search gave up.
+     */
+    private CompletableFuture<Location[]> searchSpots(final World world, Location targetLocation, final boolean background) {
+        CompletableFuture<Location> targetFuture;
+        if (targetLocation != null) {
+            targetFuture = CompletableFuture.completedFuture(targetLocation);
+        } else if (background) {
+            targetFuture = locationService.findSafeInBackground(world, () -> randomTargetColumn());
+        } else {
+            targetFuture = locationService.findSafe(world, () -> randomTargetColumn());
+        }
+        return targetFuture.thenCompose(target -> {
+            if (target == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Location> startFuture = background
+                    ? locationService.findSafeInBackground(world, () -> randomStartColumn(target))
+                    : locationService.findSafe(world, () -> randomStartColumn(target));
+            return startFuture.thenApply(start -> start == null ? null : new Location[]{target, start});
+        });
+    }
+
+    private void beginGame(Player player, Location targetLocation, Location startLocation, int timeLimit) {
+        String playerName = player.getName();
+
         // Store original location for potential restoration
         Location originalLocation = player.getLocation().clone();
 
         // Create game session
         GameSession session = new GameSession(playerName, originalLocation, startLocation, targetLocation, timeLimit);
         activeSessions.put(playerName, session);
+        goalTracker.track(player.getUniqueId(), targetLocation, targetRadius);
 
         // Store and remove permissions
         removePlayerPermissions(player, session);
@@ -166,7 +319,8 @@ public class RandomTeleportGameManager {
     }
 
     /**
-     * Check if player has reached the target location.
+     * Check if player has reached the target location (horizontal distance). Movement is
+     * handled by the goal tracker; this is the once-per-second fallback from the game timer.
      */
     public void checkPlayerLocation(Player player) {
         String playerName = player.getName();
@@ -175,15 +329,8 @@ public class RandomTeleportGameManager {
             return;
         }
 
-        Location playerLoc = player.getLocation();
-        Location targetLoc = session.getTargetLocation();
-
-        if (playerLoc.getWorld() != null && targetLoc.getWorld() != null 
-            && playerLoc.getWorld().equals(targetLoc.getWorld())) {
-            double distance = playerLoc.distance(targetLoc);
-            if (distance <= targetRadius) {
-                completeGame(player, true);
-            }
+        if (goalTracker.isAtGoal(player.getUniqueId(), player.getLocation())) {
+            completeGame(player, true);
         }
     }
 
@@ -253,14 +400,26 @@ public class RandomTeleportGameManager {
 
     // ============ Internal Methods ============
 
+    /**
+     * Synchronous fallback used only when no location service is set.
+     */
     private Location generateTargetLocation(World world) {
-        int x = randomInRange(worldBorderMin, worldBorderMax);
-        int z = randomInRange(worldBorderMin, worldBorderMax);
-        int y = world.getHighestBlockYAt(x, z) + 1;
-        return new Location(world, x + 0.5, y, z + 0.5);
+        int[] column = randomTargetColumn();
+        int y = world.getHighestBlockYAt(column[0], column[1]) + 1;
+        return new Location(world, column[0] + 0.5, y, column[1] + 0.5);
     }
 
     private Location generateRandomStartLocation(World world, Location target) {
+        int[] column = randomStartColumn(target);
+        int y = world.getHighestBlockYAt(column[0], column[1]) + 1;
+        return new Location(world, column[0] + 0.5, y, column[1] + 0.5);
+    }
+
+    private int[] randomTargetColumn() {
+        return new int[]{randomInRange(worldBorderMin, worldBorderMax), randomInRange(worldBorderMin, worldBorderMax)};
+    }
+
+    private int[] randomStartColumn(Location target) {
         double angle = random.nextDouble() * 2 * Math.PI;
         int distance = minDistance + random.nextInt(maxDistance - minDistance);
         
@@ -270,9 +429,7 @@ public class RandomTeleportGameManager {
         // Clamp to world border
         x = Math.max(worldBorderMin, Math.min(worldBorderMax, x));
         z = Math.max(worldBorderMin, Math.min(worldBorderMax, z));
-        
-        int y = world.getHighestBlockYAt(x, z) + 1;
-        return new Location(world, x + 0.5, y, z + 0.5);
+        return new int[]{x, z};
     }
 
     private int randomInRange(int min, int max) {
@@ -282,81 +439,75 @@ public class RandomTeleportGameManager {
     /**
      * Remove permissions from player during the game.
      * 
-     * NOTE: This implementation tracks which permissions should be removed for restoration
-     * but actual permission removal requires integration with Vault or a similar permission
-     * management plugin. Administrators can alternatively use the TeleportManager's lock
-     * feature (/ntpadmin lock) to prevent teleportation during game sessions.
-     * 
-     * For full permission control, integrate with Vault's Permission API:
-     * <pre>
-     * Permission perms = getServer().getServicesManager().getRegistration(Permission.class).getProvider();
-     * perms.playerRemove(player, permission);
-     * </pre>
+     * The nodes are negated through a permission attachment owned by this plugin. It only
+     * lives in memory, so nothing is written to the permission backend and a crash, restart
+     * or disconnect can never leave the player without their permissions.
      */
     private void removePlayerPermissions(Player player, GameSession session) {
-        // Store original permissions that will be removed
+        PermissionAttachment attachment = null;
         for (String perm : permissionsToRemove) {
             if (player.hasPermission(perm)) {
+                if (attachment == null) {
+                    attachment = player.addAttachment(plugin);
+                }
+                attachment.setPermission(perm, false);
                 session.addRemovedPermission(perm);
-                // To implement actual permission removal, integrate with Vault:
-                // permission.playerRemove(player, perm);
             }
         }
+        session.setPermissionAttachment(attachment);
     }
 
     /**
      * Restore permissions to player after the game ends.
-     * 
-     * NOTE: This implementation clears the tracking list. Actual permission restoration
-     * requires integration with Vault or a similar permission management plugin.
-     * See removePlayerPermissions() for integration notes.
      */
     private void restorePlayerPermissions(Player player, GameSession session) {
-        // To implement actual permission restoration, integrate with Vault:
-        // for (String perm : session.getRemovedPermissions()) {
-        //     permission.playerAdd(player, perm);
-        // }
+        PermissionAttachment attachment = session.getPermissionAttachment();
+        if (attachment != null) {
+            try {
+                player.removeAttachment(attachment);
+            } catch (IllegalArgumentException e) {
+                // Already gone with the player's previous login.
+            }
+            session.setPermissionAttachment(null);
+        }
         session.getRemovedPermissions().clear();
     }
 
     private void startGameTimer(Player player, GameSession session) {
-        BukkitTask task = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!player.isOnline()) {
-                    completeGame(player, false);
-                    cancel();
-                    return;
-                }
+        GameLoopScheduler.Handle task = gameLoop.every("rtp", 20L, self -> {
+            if (!player.isOnline()) {
+                completeGame(player, false);
+                self.cancel();
+                return;
+            }
 
-                GameSession currentSession = activeSessions.get(player.getName());
-                if (currentSession == null || currentSession.isEnded()) {
-                    cancel();
-                    return;
-                }
+            GameSession currentSession = activeSessions.get(player.getName());
+            if (currentSession == null || currentSession.isEnded()) {
+                self.cancel();
+                return;
+            }
 
-                currentSession.decrementTime();
-                
-                // Check if player reached target
-                checkPlayerLocation(player);
-
-                // Check timeout
-                if (currentSession.getRemainingTime() <= 0) {
-                    completeGame(player, false);
-                    player.sendMessage(messages.format(player, "rtpgame.timeout"));
-                    cancel();
-                    return;
-                }
+            currentSession.decrementTime();
+            
+            // Check if player reached target
+            checkPlayerLocation(player);
+
+            // Check timeout
+            if (currentSession.getRemainingTime() <= 0) {
+                completeGame(player, false);
+                player.sendMessage(messages.format(player, "rtpgame.timeout"));
+                self.cancel();
+                return;
+            }
 
-                // Send periodic reminders
-                int remaining = currentSession.getRemainingTime();
-                if (remaining == 60 || remaining == 30 || remaining == 10) {
-                    Map<String, String> map = new HashMap<String, String>();
-                    map.put("time", formatTime(remaining));
-                    player.sendMessage(messages.format(player, "rtpgame.time_warning", map));
-                }
+            // Send periodic reminders
+            int remaining = currentSession.getRemainingTime();
+            if (remaining == 60 || remaining == 30 || remaining == 10) {
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("time", formatTime(remaining));
+                player.sendMessage(messages.format(player, "rtpgame.time_warning", map));
             }
-        }.runTaskTimer(plugin, 20L, 20L); // Run every second
+        });
 
         session.setTimerTask(task);
     }
@@ -386,6 +537,7 @@ public class RandomTeleportGameManager {
 
         // Remove session
         activeSessions.remove(playerName);
+        goalTracker.untrack(player.getUniqueId());
         clearSessionFile(playerName);
     }
 
@@ -631,6 +783,7 @@ public class RandomTeleportGameManager {
             }
             restorePlayerPermissions(player, session);
             activeSessions.remove(playerName);
+            goalTracker.untrack(player.getUniqueId());
             clearSessionFile(playerName);
         }
     }
@@ -665,8 +818,9 @@ public class RandomTeleportGameManager {
         private final Location targetLocation;
         private int remainingTime;
         private boolean ended;
-        private BukkitTask timerTask;
+        private GameLoopScheduler.Handle timerTask;
         private final Set<String> removedPermissions;
+        private PermissionAttachment permissionAttachment;
 
         GameSession(String playerName, Location originalLocation, Location startLocation, 
                    Location targetLocation, int timeLimit) {
@@ -687,9 +841,11 @@ public class RandomTeleportGameManager {
         void decrementTime() { remainingTime--; }
         boolean isEnded() { return ended; }
         void setEnded(boolean ended) { this.ended = ended; }
-        BukkitTask getTimerTask() { return timerTask; }
-        void setTimerTask(BukkitTask task) { this.timerTask = task; }
+        GameLoopScheduler.Handle getTimerTask() { return timerTask; }
+        void setTimerTask(GameLoopScheduler.Handle task) { this.timerTask = task; }
         Set<String> getRemovedPermissions() { return removedPermissions; }
         void addRemovedPermission(String perm) { removedPermissions.add(perm); }
+        PermissionAttachment getPermissionAttachment() { return permissionAttachment; }
+        void setPermissionAttachment(PermissionAttachment attachment) { this.permissionAttachment = attachment; }
     }
 }
@@ -0,0 +1,204 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Goal detection for running random teleport games.
+ *
+ * <p>Targets are kept in a small open-addressing table keyed by the player's UUID bits, with
+ * the target x/z and squared radius in parallel primitive arrays, so a move event costs one
+ * probe and a squared-distance compare on the event's own coordinates. The move listener is
+ * only registered while at least one target is tracked; with no game running the server
+ * never calls into this plugin on movement. Main thread only.</p>
+ */
+class RtpGoalTracker implements Listener {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final JavaPlugin plugin;
+    private final Consumer<Player> onReached;
+
+    private long[] most = new long[INITIAL_CAPACITY];
+    private long[] least = new long[INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private World[] worlds = new World[INITIAL_CAPACITY];
+    private double[] targetX = new double[INITIAL_CAPACITY];
+    private double[] targetZ = new double[INITIAL_CAPACITY];
+    private double[] radiusSq = new double[INITIAL_CAPACITY];
+    private int size;
+    private boolean registered;
+
+    RtpGoalTracker(JavaPlugin plugin, Consumer<Player> onReached) {
+        this.plugin = plugin;
+        this.onReached = onReached;
+    }
+
+    void track(UUID player, Location target, double radius) {
+        if ((size + 1) * 2 > used.length) {
+            resize(used.length * 2);
+        }
+        int slot = find(player.getMostSignificantBits(), player.getLeastSignificantBits());
+        if (!used[slot]) {
+            used[slot] = true;
+            most[slot] = player.getMostSignificantBits();
+            least[slot] = player.getLeastSignificantBits();
+            size++;
+        }
+        worlds[slot] = target.getWorld();
+        targetX[slot] = target.getX();
+        targetZ[slot] = target.getZ();
+        radiusSq[slot] = radius * radius;
+        if (!registered) {
+            plugin.getServer().getPluginManager().registerEvents(this, plugin);
+            registered = true;
+        }
+    }
+
+    void untrack(UUID player) {
+        int slot = find(player.getMostSignificantBits(), player.getLeastSignificantBits());
+        if (!used[slot]) {
+            return;
+        }
+        removeSlot(slot);
+        size--;
+        if (size == 0) {
+            unregister();
+        }
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(worlds, null);
+        size = 0;
+        unregister();
+    }
+
+    /**
+     * Whether this location is within the player's target radius.
+     */
+    boolean isAtGoal(UUID player, Location location) {
+        int slot = find(player.getMostSignificantBits(), player.getLeastSignificantBits());
+        return used[slot] && within(slot, location);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        Location to = event.getTo();
+        if (to == null) {
+            return;
+        }
+        UUID id = event.getPlayer().getUniqueId();
+        int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (used[slot] && within(slot, to)) {
+            onReached.accept(event.getPlayer());
+        }
+    }
+
+    private boolean within(int slot, Location location) {
+        if (location.getWorld() != worlds[slot]) {
+            return false;
+        }
+        double dx = location.getX() - targetX[slot];
+        double dz = location.getZ() - targetZ[slot];
+        return dx * dx + dz * dz <= radiusSq[slot];
+    }
+
+    private void unregister() {
+        if (registered) {
+            HandlerList.unregisterAll(this);
+            registered = false;
+        }
+    }
+
+    /**
+     * Slot holding this key, or the empty slot where it would go.
+     */
+    private int find(long hi, long lo) {
+        int mask = used.length - 1;
+        int slot = hash(hi, lo) & mask;
+        while (used[slot] && (most[slot] != hi || least[slot] != lo)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = hi ^ lo;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Linear-probing delete: shift later entries of the probe run back into the hole.
+     */
+    private void removeSlot(int slot) {
+        int mask = used.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (used[next]) {
+            int home = hash(most[next], least[next]) & mask;
+            // Move the entry if its home is not inside (hole, next].
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                copySlot(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole] = false;
+        worlds[hole] = null;
+    }
+
+    private void copySlot(int from, int to) {
+        used[to] = true;
+        most[to] = most[from];
+        least[to] = least[from];
+        worlds[to] = worlds[from];
+        targetX[to] = targetX[from];
+        targetZ[to] = targetZ[from];
+        radiusSq[to] = radiusSq[from];
+    }
+
+    private void resize(int capacity) {
+        long[] oldMost = most;
+        long[] oldLeast = least;
+        boolean[] oldUsed = used;
+        World[] oldWorlds = worlds;
+        double[] oldX = targetX;
+        double[] oldZ = targetZ;
+        double[] oldR = radiusSq;
+        most = new long[capacity];
+        least = new long[capacity];
+        used = new boolean[capacity];
+        worlds = new World[capacity];
+        targetX = new double[capacity];
+        targetZ = new double[capacity];
+        radiusSq = new double[capacity];
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldMost[i], oldLeast[i]);
+                used[slot] = true;
+                most[slot] = oldMost[i];
+                least[slot] = oldLeast[i];
+                worlds[slot] = oldWorlds[i];
+                targetX[slot] = oldX[i];
+                targetZ[slot] = oldZ[i];
+                radiusSq[slot] = oldR[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Pre-generated target/start pairs for the random teleport game, one pool per world.
+ *
+ * <p>A slow timer tops each pool up to {@code minSize}: at most one pair is searched per world
+ * at a time, new searches start no more often than {@code refillsPerMinute} allows, and none
+ * start while the server is running behind ({@code maxTickMs}). The search itself runs as a
+ * background job of the {@link SafeLocationService}, so it only uses chunk-load budget that
+ * players left over. Pools are saved to disk and reloaded on start; a pool generated with
+ * different distance or border settings is dropped. Main thread only.</p>
+ */
+class RtpLocationPool {
+
+    private static final long CHECK_INTERVAL_TICKS = 20L;
+    private static final long SAVE_INTERVAL_MS = 60000L;
+
+    private final JavaPlugin plugin;
+    private final File file;
+    private final String signature;
+    private final int minSize;
+    private final long refillIntervalMs;
+    private final double maxTickMs;
+    private final Function<World, CompletableFuture<Location[]>> generator;
+
+    // World name -> pairs of {tx, ty, tz, sx, sy, sz}.
+    private final Map<String, Deque<double[]>> pools = new LinkedHashMap<String, Deque<double[]>>();
+    private final Set<String> refilling = new HashSet<String>();
+    private BukkitTask task;
+    private long lastCheckAt;
+    private long nextRefillAt;
+    private long lastSaveAt;
+    private boolean dirty;
+    private boolean stopped;
+    // Guards against an older async save landing after a newer one.
+    private long savedVersion;
+    private long writtenVersion;
+
+    private int hits;
+    private int misses;
+
+    RtpLocationPool(JavaPlugin plugin, File file, String signature, List<String> worlds, int minSize,
+                    int refillsPerMinute, double maxTickMs, Function<World, CompletableFuture<Location[]>> generator) {
+        this.plugin = plugin;
+        this.file = file;
+        this.signature = signature;
+        this.minSize = Math.max(0, minSize);
+        this.refillIntervalMs = 60000L / Math.max(1, refillsPerMinute);
+        this.maxTickMs = maxTickMs;
+        this.generator = generator;
+        for (String world : worlds) {
+            pools.put(world, new ArrayDeque<double[]>());
+        }
+        load();
+    }
+
+    void start() {
+        if (task != null || minSize <= 0) {
+            return;
+        }
+        lastCheckAt = System.currentTimeMillis();
+        task = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+            public void run() {
+                refill();
+            }
+        }, CHECK_INTERVAL_TICKS, CHECK_INTERVAL_TICKS);
+    }
+
+    /**
+     * Stop refilling and write the pools synchronously.
+     */
+    void shutdown() {
+        stopped = true;
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        if (dirty) {
+            String content = snapshot();
+            write(content, savedVersion);
+        }
+        if (hits > 0 || misses > 0) {
+            plugin.getLogger().info("RTP location pool: " + hits + " games served from the pool, " + misses + " searched on demand.");
+        }
+    }
+
+    /**
+     * Take a pair for this world: {target, start}, or null if the pool is empty.
+     */
+    Location[] poll(World world) {
+        Deque<double[]> pool = pools.get(world.getName());
+        double[] pair = pool == null ? null : pool.poll();
+        if (pair == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        dirty = true;
+        return new Location[]{
+                new Location(world, pair[0], pair[1], pair[2]),
+                new Location(world, pair[3], pair[4], pair[5])
+        };
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        double tickMs = (now - lastCheckAt) / (double) CHECK_INTERVAL_TICKS;
+        lastCheckAt = now;
+        if (dirty && now - lastSaveAt >= SAVE_INTERVAL_MS) {
+            saveAsync();
+        }
+        // Only use idle time: skip while the server cannot keep 20 TPS.
+        if (tickMs > maxTickMs || now < nextRefillAt) {
+            return;
+        }
+        for (Map.Entry<String, Deque<double[]>> entry : pools.entrySet()) {
+            final String worldName = entry.getKey();
+            if (entry.getValue().size() >= minSize || refilling.contains(worldName)) {
+                continue;
+            }
+            World world = Bukkit.getWorld(worldName);
+            if (world == null) {
+                continue;
+            }
+            refilling.add(worldName);
+            nextRefillAt = now + refillIntervalMs;
+            generator.apply(world).thenAccept(spots -> {
+                refilling.remove(worldName);
+                if (stopped || spots == null) {
+                    return;
+                }
+                Location target = spots[0];
+                Location start = spots[1];
+                pools.get(worldName).add(new double[]{
+                        target.getX(), target.getY(), target.getZ(),
+                        start.getX(), start.getY(), start.getZ()});
+                dirty = true;
+            });
+            return;
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        YamlConfiguration data = YamlConfiguration.loadConfiguration(file);
+        if (!signature.equals(data.getString("signature"))) {
+            plugin.getLogger().info("RTP location pool settings changed, regenerating the pool.");
+            dirty = true;
+            return;
+        }
+        for (Map.Entry<String, Deque<double[]>> entry : pools.entrySet()) {
+            for (String line : data.getStringList("worlds." + entry.getKey())) {
+                double[] pair = parse(line);
+                if (pair != null) {
+                    entry.getValue().add(pair);
+                }
+            }
+        }
+    }
+
+    private static double[] parse(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 6) {
+            return null;
+        }
+        double[] pair = new double[6];
+        try {
+            for (int i = 0; i < 6; i++) {
+                pair[i] = Double.parseDouble(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return pair;
+    }
+
+    private String snapshot() {
+        YamlConfiguration data = new YamlConfiguration();
+        data.set("signature", signature);
+        for (Map.Entry<String, Deque<double[]>> entry : pools.entrySet()) {
+            List<String> lines = new ArrayList<String>();
+            for (double[] pair : entry.getValue()) {
+                lines.add(pair[0] + "," + pair[1] + "," + pair[2] + "," + pair[3] + "," + pair[4] + "," + pair[5]);
+            }
+            data.set("worlds." + entry.getKey(), lines);
+        }
+        dirty = false;
+        savedVersion++;
+        lastSaveAt = System.currentTimeMillis();
+        return data.saveToString();
+    }
+
+    private void saveAsync() {
+        final String content = snapshot();
+        final long version = savedVersion;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            public void run() {
+                write(content, version);
+            }
+        });
+    }
+
+    private synchronized void write(String content, long version) {
+        if (version <= writtenVersion) {
+            return;
+        }
+        writtenVersion = version;
+        try {
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save RTP location pool: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Finds safe teleport spots without stalling the main thread on chunk generation.
+ *
+ * <p>Callers submit a candidate generator; one tick task walks the queued searches, loads
+ * at most {@code chunksPerTick} new chunks per tick (through Paper's async chunk API when the
+ * server has it), checks each candidate column for solid ground with two free blocks above
+ * (no lava, water or void) and completes the search's future on the main thread with the
+ * spot, or null once {@code maxAttempts} candidates were rejected. A candidate whose chunk
+ * fails to load, or is unloaded again before it could be checked, counts as rejected after
+ * {@link #MAX_LOADS_PER_CANDIDATE} loads.</p>
+ *
+ * <p>Background searches (pool refills) only get the budget that player-facing searches
+ * left unused in a tick.</p>
+ */
+public class SafeLocationService {
+
+    private static final Set<Material> UNSAFE_GROUND = EnumSet.of(
+            Material.MAGMA_BLOCK, Material.CACTUS, Material.CAMPFIRE, Material.SOUL_CAMPFIRE);
+    private static final int MAX_LOADS_PER_CANDIDATE = 3;
+
+    private final JavaPlugin plugin;
+    private final int chunksPerTick;
+    private final int checksPerTick;
+    private final int maxAttempts;
+    private final Method asyncChunkLoader;
+
+    private final Deque<Search> searches = new ArrayDeque<Search>();
+    private final Deque<Search> backgroundSearches = new ArrayDeque<Search>();
+    private BukkitTask task;
+
+    // Budget left in the current tick.
+    private int loadsLeft;
+    private int checksLeft;
+
+    public SafeLocationService(JavaPlugin plugin, int chunksPerTick, int checksPerTick, int maxAttempts) {
+        this.plugin = plugin;
+        this.chunksPerTick = Math.max(1, chunksPerTick);
+        this.checksPerTick = Math.max(1, checksPerTick);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        Method loader = null;
+        try {
+            loader = World.class.getMethod("getChunkAtAsync", int.class, int.class, boolean.class);
+        } catch (NoSuchMethodException e) {
+            // Spigot: chunks are loaded synchronously, still limited per tick.
+        }
+        this.asyncChunkLoader = loader;
+    }
+
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        List<Search> pending = new ArrayList<Search>(searches);
+        pending.addAll(backgroundSearches);
+        searches.clear();
+        backgroundSearches.clear();
+        for (Search search : pending) {
+            search.future.complete(null);
+        }
+    }
+
+    /**
+     * Search for a safe spot among candidates from {@code candidates} (each an {x, z} pair).
+     */
+    public CompletableFuture<Location> findSafe(World world, Supplier<int[]> candidates) {
+        return submit(new Search(world, candidates, false));
+    }
+
+    /**
+     * Like {@link #findSafe}, but only runs on budget that player-facing searches left over.
+     */
+    public CompletableFuture<Location> findSafeInBackground(World world, Supplier<int[]> candidates) {
+        Search search = new Search(world, candidates, false);
+        search.background = true;
+        return submit(search);
+    }
+
+    /**
+     * Load the chunk of an exact location; completes with the location unchanged.
+     */
+    public CompletableFuture<Location> prepare(final Location location) {
+        final int[] column = new int[]{location.getBlockX(), location.getBlockZ()};
+        Search search = new Search(location.getWorld(), new Supplier<int[]>() {
+            public int[] get() {
+                return column;
+            }
+        }, true);
+        search.exact = location;
+        return submit(search);
+    }
+
+    /**
+     * Check a spot found earlier again, after loading its chunk; completes with the spot on
+     * the column's current ground, or null if the column is no longer safe.
+     */
+    public CompletableFuture<Location> recheck(Location spot) {
+        final int[] column = new int[]{spot.getBlockX(), spot.getBlockZ()};
+        Search search = new Search(spot.getWorld(), new Supplier<int[]>() {
+            public int[] get() {
+                return column;
+            }
+        }, false);
+        search.limit = 1;
+        return submit(search);
+    }
+
+    /**
+     * Validate a column right now without loading anything; null if its chunk is not loaded
+     * or the spot is unsafe.
+     */
+    public Location checkLoaded(World world, int x, int z) {
+        if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+            return null;
+        }
+        return validate(world, x, z);
+    }
+
+    private CompletableFuture<Location> submit(Search search) {
+        (search.background ? backgroundSearches : searches).add(search);
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+                public void run() {
+                    tick();
+                }
+            }, 1L, 1L);
+        }
+        return search.future;
+    }
+
+    private void tick() {
+        loadsLeft = chunksPerTick;
+        checksLeft = checksPerTick;
+        // Complete after the walk: callbacks may submit new searches.
+        List<Search> done = new ArrayList<Search>();
+        List<Location> results = new ArrayList<Location>();
+        walk(searches, done, results);
+        walk(backgroundSearches, done, results);
+        if (searches.isEmpty() && backgroundSearches.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (int i = 0; i < done.size(); i++) {
+            done.get(i).future.complete(results.get(i));
+        }
+    }
+
+    private void walk(Deque<Search> queue, List<Search> done, List<Location> results) {
+        Iterator<Search> it = queue.iterator();
+        while (it.hasNext() && checksLeft > 0) {
+            Search search = it.next();
+            if (search.waiting) {
+                continue;
+            }
+            int limit = search.limit > 0 ? search.limit : maxAttempts;
+            if (search.candidate == null) {
+                if (search.attempts >= limit) {
+                    // The last candidate was dropped without a check.
+                    it.remove();
+                    done.add(search);
+                    results.add(search.prepareOnly ? search.exact : null);
+                    continue;
+                }
+                search.candidate = search.candidates.get();
+                search.attempts++;
+                search.loads = 0;
+            }
+            int cx = search.candidate[0] >> 4;
+            int cz = search.candidate[1] >> 4;
+            if (!search.world.isChunkLoaded(cx, cz)) {
+                if (search.loads >= MAX_LOADS_PER_CANDIDATE) {
+                    search.candidate = null;
+                    continue;
+                }
+                if (loadsLeft <= 0) {
+                    continue;
+                }
+                loadsLeft--;
+                search.loads++;
+                if (loadChunk(search, cx, cz)) {
+                    continue;
+                }
+            }
+            checksLeft--;
+            Location found = search.prepareOnly
+                    ? search.exact
+                    : validate(search.world, search.candidate[0], search.candidate[1]);
+            search.candidate = null;
+            if (found != null || search.attempts >= limit) {
+                it.remove();
+                done.add(search);
+                results.add(found);
+            }
+        }
+    }
+
+    /**
+     * Start loading a chunk. Returns true if the load finishes later (the search waits).
+     */
+    private boolean loadChunk(final Search search, int cx, int cz) {
+        if (asyncChunkLoader != null) {
+            try {
+                Object result = asyncChunkLoader.invoke(search.world, cx, cz, true);
+                if (result instanceof CompletableFuture) {
+                    search.waiting = true;
+                    ((CompletableFuture<?>) result).whenComplete((chunk, error) -> Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                        public void run() {
+                            search.waiting = false;
+                            if (error != null || chunk == null) {
+                                // Failed load: draw the next candidate instead of retrying this one.
+                                search.candidate = null;
+                            }
+                        }
+                    }));
+                    return true;
+                }
+            } catch (ReflectiveOperationException e) {
+                plugin.getLogger().fine("Async chunk load failed, loading synchronously: " + e.getMessage());
+            }
+        }
+        search.world.loadChunk(cx, cz, true);
+        return false;
+    }
+
+    private Location validate(World world, int x, int z) {
+        int y = world.getHighestBlockYAt(x, z);
+        if (y <= 0) {
+            return null; // empty column: void
+        }
+        if (world.getEnvironment() == World.Environment.NETHER && y >= 127) {
+            return null; // bedrock roof
+        }
+        Block ground = world.getBlockAt(x, y, z);
+        if (ground.isLiquid() || !ground.getType().isSolid() || UNSAFE_GROUND.contains(ground.getType())) {
+            return null;
+        }
+        Block feet = ground.getRelative(BlockFace.UP);
+        Block head = feet.getRelative(BlockFace.UP);
+        if (feet.isLiquid() || !feet.isPassable() || head.isLiquid() || !head.isPassable()) {
+            return null;
+        }
+        return new Location(world, x + 0.5, y + 1, z + 0.5);
+    }
+
+    private static class Search {
+        private final World world;
+        private final Supplier<int[]> candidates;
+        private final boolean prepareOnly;
+        private final CompletableFuture<Location> future = new CompletableFuture<Location>();
+        private Location exact;
+        private int[] candidate;
+        private int attempts;
+        // Candidates to try before giving up; 0 = the service's maxAttempts
+        private int limit;
+        private int loads;
+        private boolean waiting;
+        private boolean background;
+
+        Search(World world, Supplier<int[]> candidates, boolean prepareOnly) {
+            this.world = world;
+            this.candidates = candidates;
+            this.prepareOnly = prepareOnly;
+        }
+    }
+}
@@ -0,0 +1,629 @@
+package com.moehoshio.nekosuite;
+
+import com.moehoshio.nekosuite.StrategyGameManager.BattleAction;
+import com.moehoshio.nekosuite.StrategyGameManager.BattleEnemy;
+import com.moehoshio.nekosuite.StrategyGameManager.ContentIndex;
+import com.moehoshio.nekosuite.StrategyGameManager.Equipment;
+import com.moehoshio.nekosuite.StrategyGameManager.EventChoice;
+import com.moehoshio.nekosuite.StrategyGameManager.GameEvent;
+import com.moehoshio.nekosuite.StrategyGameManager.GameSession;
+import com.moehoshio.nekosuite.StrategyGameManager.ShopItem;
+import com.moehoshio.nekosuite.StrategyGameManager.ShopOffering;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Headless balance simulator for the strategy game.
+ *
+ * <p>Plays whole runs with a bot policy against the same content model and the same rule
+ * helpers the {@link StrategyGameManager} uses (event selection, choices, battle rounds,
+ * fleeing, shops), but with no server, player, menu or persistence involved. Runs are split
+ * across a fork/join pool; each run gets its own seeded {@link Random}, so a report is
+ * reproducible for a given seed whatever the parallelism. Used by {@code /sgame simulate}
+ * and from the command line through {@link #main}.</p>
+ */
+public class StrategyBalanceSimulator {
+
+    static final String[] DIFFICULTIES = {"easy", "normal", "hard"};
+    // Runs per fork/join leaf
+    private static final int LEAF_RUNS = 32;
+    private static final int MAX_BATTLE_ROUNDS = 200;
+    // Event picks allowed within one stage (fleeing keeps the stage) before a run counts as stuck
+    private static final int MAX_PICKS_PER_STAGE = 20;
+    private static final int DEATH_BUCKETS = 10;
+    private static final int TOP_EVENTS = 15;
+    // Upper bound for the stages of a simulated run; the per-stage report arrays are sized by it
+    static final int MAX_STAGES = 1000;
+
+    /**
+     * How the bot plays.
+     */
+    public enum Policy {
+        /** Uniform choices everywhere; never flees or drinks potions. */
+        RANDOM,
+        /** Prefers battles, buys offence, only flees when nearly dead. */
+        AGGRESSIVE,
+        /** Counters the enemy's likeliest action, heals early, avoids fights when hurt. */
+        CAUTIOUS;
+
+        static Policy parse(String name) {
+            if (name != null) {
+                for (Policy policy : values()) {
+                    if (policy.name().equalsIgnoreCase(name)) {
+                        return policy;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ContentIndex content;
+    private final int startingGold;
+    private final int startingHealth;
+    private final int startingAttack;
+    private final int startingDefense;
+    private final int startingMagic;
+
+    StrategyBalanceSimulator(ContentIndex content, int startingGold, int startingHealth,
+                             int startingAttack, int startingDefense, int startingMagic) {
+        this.content = content;
+        this.startingGold = startingGold;
+        this.startingHealth = startingHealth;
+        this.startingAttack = startingAttack;
+        this.startingDefense = startingDefense;
+        this.startingMagic = startingMagic;
+    }
+
+    /**
+     * Build a simulator straight from a strategy game config.
+     */
+    static StrategyBalanceSimulator fromConfig(ConfigurationSection config) {
+        return new StrategyBalanceSimulator(StrategyGameManager.loadContent(config),
+                config.getInt("game.starting_gold", 100),
+                config.getInt("game.starting_health", 100),
+                config.getInt("game.starting_attack", 10),
+                config.getInt("game.starting_defense", 5),
+                config.getInt("game.starting_magic", 20));
+    }
+
+    /**
+     * Stage count of the config's default run length.
+     */
+    static int defaultStages(ConfigurationSection config) {
+        String key = config.getString("game.default_length", "medium");
+        int stages = config.getInt("game.lengths." + key, 0);
+        return stages > 0 ? stages : config.getInt("game.max_stages", 30);
+    }
+
+    /**
+     * Play {@code runs} runs per difficulty.
+     */
+    Report run(int runs, Policy policy, int stages, long seed, int parallelism) {
+        long start = System.nanoTime();
+        Report report = new Report(policy, runs, stages, content.idSlotById.size());
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            for (int d = 0; d < DIFFICULTIES.length; d++) {
+                report.byDifficulty.put(DIFFICULTIES[d],
+                        pool.invoke(new Batch(DIFFICULTIES[d], d, policy, stages, seed, 0, runs)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        report.elapsedMillis = (System.nanoTime() - start) / 1000000L;
+        return report;
+    }
+
+    /**
+     * Runs {@code [from, to)} of one difficulty, halving until a leaf is small enough.
+     */
+    private final class Batch extends RecursiveTask<Stats> {
+        private final String difficulty;
+        private final int difficultyIndex;
+        private final Policy policy;
+        private final int stages;
+        private final long seed;
+        private final int from;
+        private final int to;
+
+        Batch(String difficulty, int difficultyIndex, Policy policy, int stages, long seed, int from, int to) {
+            this.difficulty = difficulty;
+            this.difficultyIndex = difficultyIndex;
+            this.policy = policy;
+            this.stages = stages;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from <= LEAF_RUNS) {
+                Stats stats = new Stats(stages);
+                for (int i = from; i < to; i++) {
+                    long runSeed = seed * 31L + difficultyIndex * 0x9E3779B97F4A7C15L + i * 0xBF58476D1CE4E5B9L;
+                    playRun(stats, difficulty, policy, stages, new Random(runSeed));
+                }
+                return stats;
+            }
+            int mid = (from + to) >>> 1;
+            Batch left = new Batch(difficulty, difficultyIndex, policy, stages, seed, from, mid);
+            left.fork();
+            Stats right = new Batch(difficulty, difficultyIndex, policy, stages, seed, mid, to).compute();
+            return right.merge(left.join());
+        }
+    }
+
+    // ============ One run ============
+
+    private void playRun(Stats stats, String difficulty, Policy policy, int stages, Random random) {
+        GameSession session = StrategyGameManager.createSession("sim", difficulty,
+                startingGold, startingHealth, startingAttack, startingDefense, startingMagic);
+        session.setMaxStages(stages);
+        stats.runs++;
+
+        List<GameEvent> options = null;
+        int recordedStage = -1;
+        int picksThisStage = 0;
+        while (session.getCurrentStage() < session.getMaxStages()) {
+            int stage = session.getCurrentStage();
+            if (stage != recordedStage) {
+                recordedStage = stage;
+                stats.goldSum[stage] += session.getGold();
+                stats.goldSamples[stage]++;
+                // The menu keeps a stage's options until the stage advances, even after fleeing.
+                options = StrategyGameManager.selectEventsForStage(content, session, 3, random);
+                picksThisStage = 0;
+            }
+            GameEvent event = pickEvent(policy, options, session, random);
+            if (event == null || ++picksThisStage > MAX_PICKS_PER_STAGE) {
+                stats.stuck++;
+                stats.finish(session);
+                return;
+            }
+            if (event.hasRequirement()) {
+                event.getRequirement().applyGoldCost(session);
+            }
+            session.setCurrentEventId(event.getId());
+            session.addVisitedEvent(event.getId());
+            session.setLastEventId(event.getId());
+            stats.countPick(event.getId());
+
+            if ("battle".equals(event.getEventType())) {
+                playBattle(stats, policy, session, event, random);
+            } else if ("shop".equals(event.getEventType())) {
+                playShop(policy, session, random);
+                session.clearShopOfferings();
+                session.setCurrentEventId(null);
+                session.recordEventCompletion("shop");
+                session.incrementStage();
+            } else {
+                List<EventChoice> choices = event.getChoices();
+                if (!choices.isEmpty()) {
+                    StrategyGameManager.applyChoiceEffects(content, session, pickChoice(policy, choices, session, random));
+                }
+                session.setCurrentEventId(null);
+                session.recordEventCompletion(event.getEventType());
+                if (session.getHealth() > 0) {
+                    session.incrementStage();
+                }
+            }
+            if (session.getHealth() <= 0) {
+                stats.deathsByStage[Math.min(stage, stats.deathsByStage.length - 1)]++;
+                stats.finish(session);
+                return;
+            }
+        }
+        stats.wins++;
+        stats.finish(session);
+    }
+
+    private void playBattle(Stats stats, Policy policy, GameSession session, GameEvent event, Random random) {
+        BattleEnemy enemy = event.hasEnemyId() ? content.enemiesById.get(event.getEnemyId()) : null;
+        if (enemy == null) {
+            if (content.enemies.isEmpty()) {
+                session.setCurrentEventId(null);
+                return;
+            }
+            enemy = StrategyGameManager.pickEnemy(content, session.getCurrentStage(), random);
+        }
+        session.setCurrentEnemyId(enemy.getId());
+        session.setCurrentEnemyHp(enemy.getHealth());
+        session.setCurrentEnemyMaxHp(enemy.getHealth());
+        session.setBattleRound(1);
+        stats.battles++;
+
+        if (shouldFlee(policy, session, random)) {
+            stats.flees++;
+            StrategyGameManager.attemptFlee(session, enemy, random);
+            session.setCurrentEnemyId(null);
+            session.setCurrentEventId(null);
+            return;
+        }
+        for (int round = 0; round < MAX_BATTLE_ROUNDS; round++) {
+            drinkPotionIfNeeded(policy, session);
+            StrategyGameManager.playRound(content, session, enemy, pickAction(policy, session, enemy, random), random);
+            stats.rounds++;
+            if (session.getCurrentEnemyHp() <= 0) {
+                stats.battlesWon++;
+                StrategyGameManager.applyBattleVictory(session, enemy);
+                return;
+            }
+            if (session.getHealth() <= 0) {
+                return;
+            }
+            session.incrementBattleRound();
+        }
+        // A stalemate this long never happens in practice; treat it as a loss.
+        session.setHealth(0);
+    }
+
+    private void playShop(Policy policy, GameSession session, Random random) {
+        StrategyGameManager.generateShopOfferings(content, session, random);
+        List<ShopOffering> offerings = new ArrayList<ShopOffering>(session.getCurrentShopOfferings());
+        if (policy == Policy.RANDOM) {
+            Collections.shuffle(offerings, random);
+        }
+        for (ShopOffering offering : offerings) {
+            if (policy == Policy.RANDOM && random.nextBoolean()) {
+                continue;
+            }
+            if (offering.isEquipment()) {
+                Equipment equipment = content.equipmentsById.get(offering.getId());
+                if (equipment == null || (policy != Policy.RANDOM && !isUpgrade(policy, session, equipment))) {
+                    continue;
+                }
+                int price = offering.getDiscountedPrice(equipment.getPrice());
+                if (session.getGold() >= price) {
+                    session.addGold(-price);
+                    StrategyGameManager.equip(session, equipment);
+                }
+            } else {
+                ShopItem item = content.shopItemsById.get(offering.getId());
+                if (item == null || (policy != Policy.RANDOM && !wantsItem(policy, session, item))) {
+                    continue;
+                }
+                int price = offering.getDiscountedPrice(item.getPrice());
+                if (session.getGold() >= price) {
+                    session.addGold(-price);
+                    StrategyGameManager.applyShopItem(session, item);
+                }
+            }
+        }
+    }
+
+    // ============ Policies ============
+
+    private GameEvent pickEvent(Policy policy, List<GameEvent> options, GameSession session, Random random) {
+        List<GameEvent> eligible = new ArrayList<GameEvent>(options.size());
+        for (GameEvent event : options) {
+            if (!event.hasRequirement() || event.getRequirement().checkRequirements(session)) {
+                eligible.add(event);
+            }
+        }
+        if (eligible.isEmpty()) {
+            return null;
+        }
+        if (policy == Policy.RANDOM) {
+            return eligible.get(random.nextInt(eligible.size()));
+        }
+        boolean hurt = session.getHealth() * 2 < session.getMaxHealth();
+        GameEvent best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for (GameEvent event : eligible) {
+            int score;
+            if ("battle".equals(event.getEventType())) {
+                score = policy == Policy.AGGRESSIVE ? 3 : (hurt ? 0 : 2);
+            } else if ("shop".equals(event.getEventType())) {
+                score = hurt ? 3 : 1;
+            } else {
+                score = policy == Policy.AGGRESSIVE ? 2 : 3;
+            }
+            // Break ties randomly so the same event does not win every time.
+            score = score * 16 + random.nextInt(16);
+            if (score > bestScore) {
+                bestScore = score;
+                best = event;
+            }
+        }
+        return best;
+    }
+
+    private EventChoice pickChoice(Policy policy, List<EventChoice> choices, GameSession session, Random random) {
+        if (policy == Policy.RANDOM) {
+            return choices.get(random.nextInt(choices.size()));
+        }
+        int missingHealth = session.getMaxHealth() - session.getHealth();
+        int healthWeight = policy == Policy.CAUTIOUS ? 3 : 1;
+        EventChoice best = choices.get(0);
+        int bestScore = Integer.MIN_VALUE;
+        for (EventChoice choice : choices) {
+            if (choice.getItemCost() != null && !choice.getItemCost().isEmpty()
+                    && !session.hasItem(choice.getItemCost(), choice.getItemCostAmount()) && !choice.hasAltResult()) {
+                continue;
+            }
+            int heal = choice.isRestoreFull() ? missingHealth : Math.min(choice.getHealthChange(), missingHealth);
+            int score = choice.getGoldChange() + heal * healthWeight * 2
+                    + (choice.getAttackChange() + choice.getDefenseChange()) * 10
+                    + choice.getMaxHealthChange() * 3 + choice.getMaxMagicChange() + choice.getMagicChange()
+                    + (choice.hasEquipGrant() ? 100 : 0);
+            if (score > bestScore) {
+                bestScore = score;
+                best = choice;
+            }
+        }
+        return best;
+    }
+
+    private boolean shouldFlee(Policy policy, GameSession session, Random random) {
+        switch (policy) {
+            case RANDOM:
+                return random.nextInt(10) == 0;
+            case AGGRESSIVE:
+                return session.getHealth() * 10 < session.getMaxHealth();
+            default:
+                return session.getHealth() * 10 < session.getMaxHealth() * 3;
+        }
+    }
+
+    private BattleAction pickAction(Policy policy, GameSession session, BattleEnemy enemy, Random random) {
+        boolean canCast = session.getMagic() >= 10;
+        if (policy == Policy.RANDOM) {
+            int roll = random.nextInt(canCast ? 3 : 2);
+            return roll == 0 ? BattleAction.ATTACK : roll == 1 ? BattleAction.DEFENSE : BattleAction.SKILL;
+        }
+        if (policy == Policy.AGGRESSIVE) {
+            return canCast && enemy.getDefense() > session.getAttack() ? BattleAction.SKILL : BattleAction.ATTACK;
+        }
+        // Counter the enemy's likeliest action (same weights as StrategyGameManager.pickEnemyAction).
+        int attackWeight = enemy.getAttack() + 10;
+        int defenseWeight = enemy.getDefense() + 5;
+        int skillWeight = enemy.getMagic() > 0 ? enemy.getMagic() + 5 : 2;
+        if (attackWeight >= defenseWeight && attackWeight >= skillWeight) {
+            return BattleAction.DEFENSE;
+        }
+        if (defenseWeight >= skillWeight) {
+            return canCast ? BattleAction.SKILL : BattleAction.ATTACK;
+        }
+        return BattleAction.ATTACK;
+    }
+
+    private void drinkPotionIfNeeded(Policy policy, GameSession session) {
+        if (policy == Policy.RANDOM) {
+            return;
+        }
+        int threshold = policy == Policy.CAUTIOUS ? 35 : 20;
+        if (session.getHealth() * 100 >= session.getMaxHealth() * threshold) {
+            return;
+        }
+        if (session.hasItem("large_potion")) {
+            StrategyGameManager.consumeBattleItem(content, session, "large_potion");
+        } else if (session.hasItem("small_potion")) {
+            StrategyGameManager.consumeBattleItem(content, session, "small_potion");
+        }
+    }
+
+    private boolean isUpgrade(Policy policy, GameSession session, Equipment candidate) {
+        String current;
+        if ("weapon".equals(candidate.getSlot())) {
+            current = session.getEquippedWeapon();
+        } else if ("armor".equals(candidate.getSlot())) {
+            current = session.getEquippedArmor();
+        } else {
+            current = session.getEquippedAccessory();
+        }
+        Equipment equipped = current == null ? null : content.equipmentsById.get(current);
+        return equipped == null || gearValue(policy, candidate) > gearValue(policy, equipped);
+    }
+
+    private static int gearValue(Policy policy, Equipment equipment) {
+        int offence = equipment.getAttackBonus() * 2 + equipment.getMagicBonus();
+        int defence = equipment.getDefenseBonus() * 2 + equipment.getHealthBonus() / 2;
+        return policy == Policy.AGGRESSIVE ? offence * 2 + defence : offence + defence * 2;
+    }
+
+    private static boolean wantsItem(Policy policy, GameSession session, ShopItem item) {
+        String effect = item.getEffectType();
+        if ("heal".equals(effect)) {
+            return session.getMaxHealth() - session.getHealth() >= item.getEffectValue() / 2;
+        }
+        if ("item".equals(effect)) {
+            // Potions to carry into battles
+            return policy == Policy.CAUTIOUS || session.getGold() > item.getPrice() * 3;
+        }
+        return "max_health".equals(effect);
+    }
+
+    // ============ Results ============
+
+    /**
+     * Counters for one difficulty; merged up the fork/join tree.
+     */
+    static final class Stats {
+        long runs;
+        long wins;
+        long stuck;
+        long battles;
+        long battlesWon;
+        long flees;
+        long rounds;
+        long scoreSum;
+        final long[] deathsByStage;
+        final long[] goldSum;
+        final long[] goldSamples;
+        final Map<String, Long> eventPicks = new HashMap<String, Long>();
+
+        Stats(int stages) {
+            this.deathsByStage = new long[stages];
+            this.goldSum = new long[stages];
+            this.goldSamples = new long[stages];
+        }
+
+        void countPick(String eventId) {
+            Long count = eventPicks.get(eventId);
+            eventPicks.put(eventId, count == null ? 1L : count + 1L);
+        }
+
+        void finish(GameSession session) {
+            scoreSum += StrategyGameManager.calculateScore(session);
+        }
+
+        Stats merge(Stats other) {
+            runs += other.runs;
+            wins += other.wins;
+            stuck += other.stuck;
+            battles += other.battles;
+            battlesWon += other.battlesWon;
+            flees += other.flees;
+            rounds += other.rounds;
+            scoreSum += other.scoreSum;
+            for (int i = 0; i < deathsByStage.length; i++) {
+                deathsByStage[i] += other.deathsByStage[i];
+                goldSum[i] += other.goldSum[i];
+                goldSamples[i] += other.goldSamples[i];
+            }
+            for (Map.Entry<String, Long> entry : other.eventPicks.entrySet()) {
+                Long count = eventPicks.get(entry.getKey());
+                eventPicks.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+            }
+            return this;
+        }
+
+        long deaths() {
+            long total = 0;
+            for (long count : deathsByStage) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Results of one simulation, per difficulty.
+     */
+    static final class Report {
+        final Policy policy;
+        final int runsPerDifficulty;
+        final int stages;
+        // Distinct event ids in the content
+        final int eventCount;
+        final Map<String, Stats> byDifficulty = new java.util.LinkedHashMap<String, Stats>();
+        long elapsedMillis;
+
+        Report(Policy policy, int runsPerDifficulty, int stages, int eventCount) {
+            this.policy = policy;
+            this.runsPerDifficulty = runsPerDifficulty;
+            this.stages = stages;
+            this.eventCount = eventCount;
+        }
+
+        /**
+         * Plain-text summary: win rate, stage-of-death spread, gold curve and event frequency.
+         */
+        List<String> format() {
+            List<String> lines = new ArrayList<String>();
+            lines.add(String.format(Locale.ROOT, "Strategy balance: %d runs x %d difficulties, policy %s, %d stages, %d ms",
+                    runsPerDifficulty, byDifficulty.size(), policy.name().toLowerCase(Locale.ROOT), stages, elapsedMillis));
+            Stats all = new Stats(stages);
+            int bucket = Math.max(1, (stages + DEATH_BUCKETS - 1) / DEATH_BUCKETS);
+            for (Map.Entry<String, Stats> entry : byDifficulty.entrySet()) {
+                Stats s = entry.getValue();
+                all.merge(s);
+                lines.add(String.format(Locale.ROOT, "[%s] win %.1f%%, died %.1f%%, stuck %.1f%%, avg score %d, battles won %.1f%% (%.1f rounds), fled %.1f%%",
+                        entry.getKey(), pct(s.wins, s.runs), pct(s.deaths(), s.runs), pct(s.stuck, s.runs),
+                        s.runs == 0 ? 0 : s.scoreSum / s.runs, pct(s.battlesWon, s.battles),
+                        s.battles == 0 ? 0.0 : (double) s.rounds / s.battles, pct(s.flees, s.battles)));
+                StringBuilder deaths = new StringBuilder("  deaths by stage:");
+                StringBuilder gold = new StringBuilder("  avg gold at stage:");
+                for (int start = 0; start < stages; start += bucket) {
+                    int end = Math.min(stages, start + bucket);
+                    long died = 0;
+                    for (int i = start; i < end; i++) {
+                        died += s.deathsByStage[i];
+                    }
+                    deaths.append(String.format(Locale.ROOT, " %d-%d:%.1f%%", start, end - 1, pct(died, s.runs)));
+                    gold.append(' ').append(start).append(':')
+                            .append(s.goldSamples[start] == 0 ? "-" : String.valueOf(s.goldSum[start] / s.goldSamples[start]));
+                }
+                lines.add(deaths.toString());
+                lines.add(gold.toString());
+            }
+            long picks = 0;
+            List<Map.Entry<String, Long>> events = new ArrayList<Map.Entry<String, Long>>(all.eventPicks.entrySet());
+            for (Map.Entry<String, Long> entry : events) {
+                picks += entry.getValue();
+            }
+            Collections.sort(events, new java.util.Comparator<Map.Entry<String, Long>>() {
+                public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                    return b.getValue().compareTo(a.getValue());
+                }
+            });
+            StringBuilder top = new StringBuilder("Most picked events:");
+            for (int i = 0; i < Math.min(TOP_EVENTS, events.size()); i++) {
+                top.append(String.format(Locale.ROOT, " %s %.1f%%", events.get(i).getKey(), pct(events.get(i).getValue(), picks)));
+            }
+            lines.add(top.toString());
+            lines.add(String.format(Locale.ROOT, "Events never picked: %d of %d",
+                    Math.max(0, eventCount - all.eventPicks.size()), eventCount));
+            return lines;
+        }
+
+        private static double pct(long part, long whole) {
+            return whole == 0 ? 0.0 : part * 100.0 / whole;
+        }
+    }
+
+    // ============ Command line ============
+
+    /**
+     * {@code java -cp <plugin jar>:<spigot-api jar> com.moehoshio.nekosuite.StrategyBalanceSimulator
+     * <strategy_game_config.yml> [runs] [policy] [stages] [seed]}
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: StrategyBalanceSimulator <strategy_game_config.yml> [runs=1000] [policy=cautious|aggressive|random] [stages] [seed]");
+            System.exit(2);
+            return;
+        }
+        File file = new File(args[0]);
+        if (!file.isFile()) {
+            System.err.println("Config not found: " + file.getAbsolutePath());
+            System.exit(2);
+            return;
+        }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Policy policy = args.length > 2 ? Policy.parse(args[2]) : Policy.CAUTIOUS;
+        if (policy == null) {
+            System.err.println("Unknown policy: " + args[2]);
+            System.exit(2);
+            return;
+        }
+        int stages = args.length > 3 ? Integer.parseInt(args[3]) : defaultStages(config);
+        if (stages < 1 || stages > MAX_STAGES) {
+            System.err.println("Stages must be between 1 and " + MAX_STAGES);
+            System.exit(2);
+            return;
+        }
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        StrategyBalanceSimulator simulator = fromConfig(config);
+        Report report = simulator.run(runs, policy, stages, seed, Runtime.getRuntime().availableProcessors());
+        for (String line : report.format()) {
+            System.out.println(line);
+        }
+        System.out.println("seed " + seed);
+    }
+}
@@ -4,6 +4,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Entity;
@@ -21,12 +22,11 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +62,7 @@ public class StrategyGameManager {
     private final Messages messages;
     private final MenuLayout menuLayout;
     private final File storageDir;
+    private final StrategySessionStore sessionStore;
     private final Random random = new Random();
 
     // Default values for game configuration
@@ -93,11 +94,10 @@ public class StrategyGameManager {
     // Run-length tiers: key -> stage count (e.g. short=20, medium=30, long=50)
     private final Map<String, Integer> lengthOptions = new java.util.LinkedHashMap<String, Integer>();
     private String defaultLengthKey = "medium";
-    private final List<GameEvent> gameEvents = new ArrayList<GameEvent>();
-    private final List<ShopItem> shopItems = new ArrayList<ShopItem>();
-    private final List<BattleEnemy> enemies = new ArrayList<BattleEnemy>();
+    // Events, shop items, equipment and enemies, indexed once after loading
+    private ContentIndex content = new ContentIndex(new ArrayList<GameEvent>(), new ArrayList<ShopItem>(),
+            new ArrayList<Equipment>(), new ArrayList<BattleEnemy>());
     private final List<EndReward> endRewards = new ArrayList<EndReward>();
-    private final List<Equipment> equipments = new ArrayList<Equipment>();
 
     // Active game sessions
     private final Map<String, GameSession> activeSessions = new HashMap<String, GameSession>();
@@ -115,6 +115,12 @@ public class StrategyGameManager {
     // Active real battles keyed by player name (runtime-only, not persisted).
     private final Map<String, RealBattleState> realBattles = new HashMap<String, RealBattleState>();
 
+    private LeaderboardService leaderboardService;
+    private GameLoopScheduler gameLoop;
+    // Only one balance simulation at a time, on simulateThreads worker threads.
+    private boolean simulationRunning;
+    private final int simulateThreads;
+
     public StrategyGameManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout menuLayout) {
         this.plugin = plugin;
         this.messages = messages;
@@ -125,9 +131,35 @@ public class StrategyGameManager {
         if (!storageDir.exists() && !storageDir.mkdirs()) {
             plugin.getLogger().warning("無法創建數據目錄: " + storageDir.getAbsolutePath());
         }
+        sessionStore = new StrategySessionStore(plugin,
+                new File(plugin.getDataFolder(), config.getString("storage.session_dir", "sgame_sessions")),
+                config.getLong("storage.save_window_ticks", 40L),
+                new StrategySessionStore.Encoder() {
+                    public String encode(String playerName) {
+                        GameSession session = activeSessions.get(playerName);
+                        return session == null ? null : encodeSession(session);
+                    }
+                });
+        // Leave a core for the main thread unless configured otherwise.
+        int threads = config.getInt("simulate.threads", 0);
+        simulateThreads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
         loadConfig(config);
     }
 
+    /**
+     * Set the service that records finished rounds for the leaderboards.
+     */
+    public void setLeaderboardService(LeaderboardService leaderboardService) {
+        this.leaderboardService = leaderboardService;
+    }
+
+    /**
+     * Set the shared game loop that drives real-battle watchdogs and timeouts.
+     */
+    public void setGameLoop(GameLoopScheduler gameLoop) {
+        this.gameLoop = gameLoop;
+    }
+
     private void loadConfig(YamlConfiguration config) {
         startingGold = config.getInt("game.starting_gold", 100);
         startingHealth = config.getInt("game.starting_health", 100);
@@ -160,8 +192,36 @@ public class StrategyGameManager {
         // Keep the legacy single value in sync with the default tier.
         maxStages = lengthOptions.get(defaultLengthKey);
 
+        content = loadContent(config);
+
+        // Load real-battle mode settings
+        realBattleEnabled = config.getBoolean("battles.real_battle.enabled", false);
+        realBattleSpawnDistance = Math.max(1, config.getInt("battles.real_battle.spawn_distance", 3));
+        realBattleTimeout = Math.max(0, config.getInt("battles.real_battle.timeout", 120));
+        realBattleHighlight = config.getBoolean("battles.real_battle.highlight", true);
+        realBattleScaleHealth = config.getBoolean("battles.real_battle.scale_health", true);
+        realBattleAllowGriefing = config.getBoolean("battles.real_battle.allow_griefing", false);
+        realBattleDefaultEntityType = parseEntityType(
+            config.getString("battles.real_battle.default_entity_type", "ZOMBIE"), EntityType.ZOMBIE);
+
+        // Load end rewards
+        endRewards.clear();
+        List<Map<?, ?>> rewardList = config.getMapList("end_rewards");
+        for (Map<?, ?> raw : rewardList) {
+            EndReward reward = EndReward.fromMap(raw);
+            if (reward != null) {
+                endRewards.add(reward);
+            }
+        }
+    }
+
+    /**
+     * Parse events, shop items, equipment and enemies from a strategy game config. Shared
+     * with {@link StrategyBalanceSimulator}, which runs without a server.
+     */
+    static ContentIndex loadContent(ConfigurationSection config) {
         // Load events
-        gameEvents.clear();
+        List<GameEvent> gameEvents = new ArrayList<GameEvent>();
         ConfigurationSection eventSection = config.getConfigurationSection("events");
         if (eventSection != null) {
             for (String key : eventSection.getKeys(false)) {
@@ -176,7 +236,7 @@ public class StrategyGameManager {
         }
 
         // Load shop items
-        shopItems.clear();
+        List<ShopItem> shopItems = new ArrayList<ShopItem>();
         List<Map<?, ?>> shopList = config.getMapList("shop.items");
         for (Map<?, ?> raw : shopList) {
             ShopItem item = ShopItem.fromMap(raw);
@@ -186,7 +246,7 @@ public class StrategyGameManager {
         }
 
         // Load equipment
-        equipments.clear();
+        List<Equipment> equipments = new ArrayList<Equipment>();
         List<Map<?, ?>> equipList = config.getMapList("equipment.items");
         for (Map<?, ?> raw : equipList) {
             Equipment eq = Equipment.fromMap(raw);
@@ -196,7 +256,7 @@ public class StrategyGameManager {
         }
 
         // Load enemies
-        enemies.clear();
+        List<BattleEnemy> enemies = new ArrayList<BattleEnemy>();
         List<Map<?, ?>> enemyList = config.getMapList("battles.enemies");
         for (Map<?, ?> raw : enemyList) {
             BattleEnemy enemy = BattleEnemy.fromMap(raw);
@@ -204,26 +264,7 @@ public class StrategyGameManager {
                 enemies.add(enemy);
             }
         }
-
-        // Load real-battle mode settings
-        realBattleEnabled = config.getBoolean("battles.real_battle.enabled", false);
-        realBattleSpawnDistance = Math.max(1, config.getInt("battles.real_battle.spawn_distance", 3));
-        realBattleTimeout = Math.max(0, config.getInt("battles.real_battle.timeout", 120));
-        realBattleHighlight = config.getBoolean("battles.real_battle.highlight", true);
-        realBattleScaleHealth = config.getBoolean("battles.real_battle.scale_health", true);
-        realBattleAllowGriefing = config.getBoolean("battles.real_battle.allow_griefing", false);
-        realBattleDefaultEntityType = parseEntityType(
-            config.getString("battles.real_battle.default_entity_type", "ZOMBIE"), EntityType.ZOMBIE);
-
-        // Load end rewards
-        endRewards.clear();
-        List<Map<?, ?>> rewardList = config.getMapList("end_rewards");
-        for (Map<?, ?> raw : rewardList) {
-            EndReward reward = EndReward.fromMap(raw);
-            if (reward != null) {
-                endRewards.add(reward);
-            }
-        }
+        return new ContentIndex(gameEvents, shopItems, equipments, enemies);
     }
 
     // ============ Public API ============
@@ -243,6 +284,31 @@ public class StrategyGameManager {
      * Resolve a length key to a concrete stage count. The special key
      * "random" picks one of the configured tiers at random.
      */
+    /**
+     * A fresh session with starting stats scaled for the difficulty.
+     */
+    static GameSession createSession(String playerName, String difficulty, int startingGold, int startingHealth,
+                                     int startingAttack, int startingDefense, int startingMagic) {
+        // Calculate starting stats based on difficulty
+        int gold = startingGold;
+        int health = startingHealth;
+        if ("easy".equals(difficulty)) {
+            gold = (int)(startingGold * 1.5);
+            health = (int)(startingHealth * 1.3);
+        } else if ("hard".equals(difficulty)) {
+            gold = (int)(startingGold * 0.7);
+            health = (int)(startingHealth * 0.8);
+        }
+
+        GameSession session = new GameSession(playerName, gold, health);
+        // Initialize combat stats
+        session.setAttack(startingAttack);
+        session.setDefense(startingDefense);
+        session.setMagic(startingMagic);
+        session.setMaxMagic(startingMagic);
+        return session;
+    }
+
     private int resolveLengthStages(String lengthKey) {
         if (lengthKey == null) {
             return maxStages;
@@ -264,27 +330,8 @@ public class StrategyGameManager {
             return;
         }
 
-        // Calculate starting stats based on difficulty
-        int gold = startingGold;
-        int health = startingHealth;
-        int attack = startingAttack;
-        int defense = startingDefense;
-        int magic = startingMagic;
-        
-        if ("easy".equals(difficulty)) {
-            gold = (int)(startingGold * 1.5);
-            health = (int)(startingHealth * 1.3);
-        } else if ("hard".equals(difficulty)) {
-            gold = (int)(startingGold * 0.7);
-            health = (int)(startingHealth * 0.8);
-        }
-        
-        GameSession session = new GameSession(playerName, gold, health);
-        // Initialize combat stats
-        session.setAttack(attack);
-        session.setDefense(defense);
-        session.setMagic(magic);
-        session.setMaxMagic(magic);
+        GameSession session = createSession(playerName, difficulty,
+                startingGold, startingHealth, startingAttack, startingDefense, startingMagic);
         // Resolve and store the chosen run length for this session.
         int stages = resolveLengthStages(lengthKey);
         session.setMaxStages(stages);
@@ -349,6 +396,9 @@ public class StrategyGameManager {
 
         session.setEnded(true);
         saveSession(session);
+        if (leaderboardService != null) {
+            leaderboardService.record("strategy", playerName, calculateScore(session), session.getCurrentStage() >= session.getMaxStages());
+        }
 
         // Calculate and give rewards
         List<String> rewardNames = grantEndRewards(player, session);
@@ -638,7 +688,7 @@ public class StrategyGameManager {
             return;
         }
 
-        if (gameEvents.isEmpty()) {
+        if (content.events.isEmpty()) {
             player.sendMessage(messages.format(player, "sgame.no_events_available"));
             openMainMenu(player);
             return;
@@ -672,7 +722,7 @@ public class StrategyGameManager {
         // Only generate events if not already generated for this stage
         List<String> eventIds = session.getCurrentStageEvents();
         if (!session.isStageEventsGenerated() || eventIds.isEmpty()) {
-            List<GameEvent> selectedEvents = selectEventsForStage(session, 3);
+            List<GameEvent> selectedEvents = selectEventsForStage(content, session, 3, random);
             session.clearCurrentStageEvents();
             for (GameEvent evt : selectedEvents) {
                 session.addCurrentStageEvent(evt.getId());
@@ -882,7 +932,7 @@ public class StrategyGameManager {
             return;
         }
 
-        if (enemies.isEmpty()) {
+        if (content.enemies.isEmpty()) {
             player.sendMessage(messages.format(player, "sgame.no_enemies"));
             openMainMenu(player);
             return;
@@ -900,7 +950,7 @@ public class StrategyGameManager {
         
         // Fallback to random enemy based on stage if no specific enemy
         if (enemy == null) {
-            enemy = pickEnemy(session.getCurrentStage());
+            enemy = pickEnemy(content, session.getCurrentStage(), random);
         }
         
         session.setCurrentEnemyId(enemy.getId());
@@ -1171,7 +1221,7 @@ public class StrategyGameManager {
             return;
         }
 
-        if (shopItems.isEmpty() && equipments.isEmpty()) {
+        if (content.shopItems.isEmpty() && content.equipments.isEmpty()) {
             player.sendMessage(messages.format(player, "sgame.shop_empty"));
             openMainMenu(player);
             return;
@@ -1179,7 +1229,7 @@ public class StrategyGameManager {
 
         // Generate random shop offerings if not already generated for this shop visit
         if (session.getCurrentShopOfferings().isEmpty()) {
-            generateShopOfferings(session);
+            generateShopOfferings(content, session, random);
             saveSession(session);
         }
 
@@ -1226,15 +1276,15 @@ public class StrategyGameManager {
      * Generate random shop offerings from available items and equipment.
      * Each offering may have a random discount.
      */
-    private void generateShopOfferings(GameSession session) {
+    static void generateShopOfferings(ContentIndex content, GameSession session, Random random) {
         session.clearShopOfferings();
         
         // Combine all available items and equipment into a pool
         List<Object[]> pool = new ArrayList<Object[]>(); // [id, type]
-        for (ShopItem item : shopItems) {
+        for (ShopItem item : content.shopItems) {
             pool.add(new Object[]{item.getId(), "item"});
         }
-        for (Equipment eq : equipments) {
+        for (Equipment eq : content.equipments) {
             pool.add(new Object[]{eq.getId(), "equipment"});
         }
         
@@ -1443,7 +1493,7 @@ public class StrategyGameManager {
         // Available equipment to buy (bottom row)
         int[] equipSlots = {28, 29, 30, 31, 32, 33, 34};
         int slotIndex = 0;
-        for (Equipment eq : equipments) {
+        for (Equipment eq : content.equipments) {
             if (slotIndex >= equipSlots.length) break;
             
             boolean canAfford = session.getGold() >= eq.getPrice();
@@ -1863,36 +1913,50 @@ public class StrategyGameManager {
             return;
         }
         
-        // Get item config to use the correct effect values
-        ShopItem shopItem = findShopItem(itemId);
         Map<String, String> map = new HashMap<String, String>();
+        int restored = consumeBattleItem(content, session, itemId);
+        if (restored < 0) {
+            player.sendMessage(messages.format(player, "sgame.cannot_use_here"));
+            return;
+        }
+        if ("magic_potion".equals(itemId)) {
+            map.put("magic", String.valueOf(restored));
+            map.put("item", messages.format(player, "menu.sgame.magic_potion_name"));
+            player.sendMessage(messages.format(player, "sgame.used_magic_item", map));
+        } else {
+            map.put("heal", String.valueOf(restored));
+            map.put("item", messages.format(player, "menu.sgame." + itemId + "_name"));
+            player.sendMessage(messages.format(player, "sgame.used_heal_item", map));
+        }
         
+        saveSession(session);
+        // Return to battle action menu
+        openBattleActionMenu(player);
+    }
+
+    /**
+     * Use a potion from the session inventory mid-battle.
+     *
+     * @return health or magic actually restored, or -1 if the item cannot be used in battle
+     */
+    static int consumeBattleItem(ContentIndex content, GameSession session, String itemId) {
+        // Get item config to use the correct effect values
+        ShopItem shopItem = itemId == null ? null : content.shopItemsById.get(itemId);
         if ("small_potion".equals(itemId) || "large_potion".equals(itemId)) {
             session.removeItem(itemId, 1);
             int healAmount = shopItem != null ? shopItem.getEffectValue() : (itemId.equals("small_potion") ? 25 : 50);
             int oldHealth = session.getHealth();
             session.addHealth(healAmount);
-            int actualHeal = session.getHealth() - oldHealth;
-            map.put("heal", String.valueOf(actualHeal));
-            map.put("item", messages.format(player, "menu.sgame." + itemId.replace("_", "_") + "_name"));
-            player.sendMessage(messages.format(player, "sgame.used_heal_item", map));
-        } else if ("magic_potion".equals(itemId)) {
+            return session.getHealth() - oldHealth;
+        }
+        if ("magic_potion".equals(itemId)) {
             session.removeItem(itemId, 1);
             int manaRestore = shopItem != null ? shopItem.getEffectValue() : 15;
             int oldMagic = session.getMagic();
             session.addMagic(manaRestore);
-            int actualRestore = session.getMagic() - oldMagic;
-            map.put("magic", String.valueOf(actualRestore));
-            map.put("item", messages.format(player, "menu.sgame.magic_potion_name"));
-            player.sendMessage(messages.format(player, "sgame.used_magic_item", map));
-        } else {
-            player.sendMessage(messages.format(player, "sgame.cannot_use_here"));
-            return;
+            return session.getMagic() - oldMagic;
         }
-        
-        saveSession(session);
-        // Return to battle action menu
-        openBattleActionMenu(player);
+        return -1;
     }
 
     private void handleShopMenuClick(Player player, GameSession session, String id) {
@@ -1936,14 +2000,7 @@ public class StrategyGameManager {
                 
                 // Purchase and equip
                 session.addGold(-finalPrice);
-                
-                if ("weapon".equals(eq.getSlot())) {
-                    session.setEquippedWeapon(itemId);
-                } else if ("armor".equals(eq.getSlot())) {
-                    session.setEquippedArmor(itemId);
-                } else {
-                    session.setEquippedAccessory(itemId);
-                }
+                equip(session, eq);
                 
                 saveSession(session);
                 
@@ -1964,7 +2021,7 @@ public class StrategyGameManager {
                 }
                 
                 session.addGold(-finalPrice);
-                applyShopItem(player, session, item);
+                applyShopItem(session, item);
                 saveSession(session);
                 
                 Map<String, String> map = new HashMap<String, String>();
@@ -2041,6 +2098,47 @@ public class StrategyGameManager {
     // ============ Game Logic ============
 
     private void applyEventChoice(Player player, GameSession session, GameEvent event, EventChoice choice) {
+        ChoiceOutcome outcome = applyChoiceEffects(content, session, choice);
+        if (outcome == null) {
+            // Cannot afford item cost and no alt result
+            player.sendMessage(messages.format(player, "sgame.missing_item_cost"));
+            return;
+        }
+        if (outcome.granted != null) {
+            Map<String, String> artMap = new HashMap<String, String>();
+            artMap.put("item", resolveI18n(player, outcome.granted.getName()));
+            player.sendMessage(messages.format(player, "sgame.artifact_gained", artMap));
+        }
+        if (outcome.itemGained) {
+            Map<String, String> itemMap = new HashMap<String, String>();
+            itemMap.put("item", choice.getItemGain());
+            itemMap.put("amount", String.valueOf(choice.getItemGainAmount()));
+            player.sendMessage(messages.format(player, "sgame.item_gained", itemMap));
+        }
+
+        // Check for game over
+        if (session.getHealth() <= 0) {
+            handleGameOverDeath(player, session);
+            return;
+        }
+
+        // Show result - resolve i18n for result text
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("result", outcome.resultText != null ? resolveI18n(player, outcome.resultText) : "");
+        map.put("gold_change", formatChange(outcome.goldChange));
+        map.put("health_change", formatChange(outcome.healthChange));
+        player.sendMessage(messages.format(player, "sgame.choice_result", map));
+        
+        player.closeInventory();
+        openMainMenu(player);
+    }
+
+    /**
+     * Apply a choice's costs and effects to the session.
+     *
+     * @return what happened, or null if the item cost could not be paid and there is no alt result
+     */
+    static ChoiceOutcome applyChoiceEffects(ContentIndex content, GameSession session, EventChoice choice) {
         // Determine if using alternative outcome
         boolean useAltResult = false;
         if (choice.hasRequirement()) {
@@ -2053,19 +2151,18 @@ public class StrategyGameManager {
             if (session.hasItem(choice.getItemCost(), choice.getItemCostAmount())) {
                 session.removeItem(choice.getItemCost(), choice.getItemCostAmount());
             } else if (!useAltResult) {
-                // Cannot afford item cost and no alt result
-                player.sendMessage(messages.format(player, "sgame.missing_item_cost"));
-                return;
+                return null;
             }
         }
         
         // Apply rewards/penalties based on result type
-        int goldChange = useAltResult ? choice.getGoldChangeAlt() : choice.getGoldChange();
-        int healthChange = useAltResult ? choice.getHealthChangeAlt() : choice.getHealthChange();
-        String resultText = useAltResult ? choice.getResultTextAlt() : choice.getResultText();
+        ChoiceOutcome outcome = new ChoiceOutcome();
+        outcome.goldChange = useAltResult ? choice.getGoldChangeAlt() : choice.getGoldChange();
+        outcome.healthChange = useAltResult ? choice.getHealthChangeAlt() : choice.getHealthChange();
+        outcome.resultText = useAltResult ? choice.getResultTextAlt() : choice.getResultText();
         
-        session.addGold(goldChange);
-        session.addHealth(healthChange);
+        session.addGold(outcome.goldChange);
+        session.addHealth(outcome.healthChange);
 
         // Apply permanent progression rewards (only on the primary outcome).
         if (!useAltResult) {
@@ -2097,18 +2194,9 @@ public class StrategyGameManager {
             }
             // Grant (and auto-equip) a piece of equipment, e.g. a legendary artifact.
             if (choice.hasEquipGrant()) {
-                Equipment granted = findEquipment(choice.getEquipGrant());
-                if (granted != null) {
-                    if ("weapon".equals(granted.getSlot())) {
-                        session.setEquippedWeapon(granted.getId());
-                    } else if ("armor".equals(granted.getSlot())) {
-                        session.setEquippedArmor(granted.getId());
-                    } else {
-                        session.setEquippedAccessory(granted.getId());
-                    }
-                    Map<String, String> artMap = new HashMap<String, String>();
-                    artMap.put("item", resolveI18n(player, granted.getName()));
-                    player.sendMessage(messages.format(player, "sgame.artifact_gained", artMap));
+                outcome.granted = content.findEquipment(choice.getEquipGrant());
+                if (outcome.granted != null) {
+                    equip(session, outcome.granted);
                 }
             }
         }
@@ -2116,27 +2204,22 @@ public class StrategyGameManager {
         // Add gained items
         if (choice.getItemGain() != null && !choice.getItemGain().isEmpty() && !useAltResult) {
             session.addItem(choice.getItemGain(), choice.getItemGainAmount());
-            Map<String, String> itemMap = new HashMap<String, String>();
-            itemMap.put("item", choice.getItemGain());
-            itemMap.put("amount", String.valueOf(choice.getItemGainAmount()));
-            player.sendMessage(messages.format(player, "sgame.item_gained", itemMap));
+            outcome.itemGained = true;
         }
+        return outcome;
+    }
 
-        // Check for game over
-        if (session.getHealth() <= 0) {
-            handleGameOverDeath(player, session);
-            return;
+    /**
+     * Put a piece of equipment in its slot.
+     */
+    static void equip(GameSession session, Equipment equipment) {
+        if ("weapon".equals(equipment.getSlot())) {
+            session.setEquippedWeapon(equipment.getId());
+        } else if ("armor".equals(equipment.getSlot())) {
+            session.setEquippedArmor(equipment.getId());
+        } else {
+            session.setEquippedAccessory(equipment.getId());
         }
-
-        // Show result - resolve i18n for result text
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("result", resultText != null ? resolveI18n(player, resultText) : "");
-        map.put("gold_change", formatChange(goldChange));
-        map.put("health_change", formatChange(healthChange));
-        player.sendMessage(messages.format(player, "sgame.choice_result", map));
-        
-        player.closeInventory();
-        openMainMenu(player);
     }
 
     /**
@@ -2217,13 +2300,13 @@ public class StrategyGameManager {
         Map<String, String> resultMap = new HashMap<String, String>();
         resultMap.put("enemy", resolveI18n(player, enemy.getName()));
         resultMap.put("round", String.valueOf(session.getBattleRound()));
-        
-        // Process player's status effects at the start of the round
-        int statusDamage = session.processStatusEffects();
-        if (statusDamage > 0) {
-            session.addHealth(-statusDamage);
+
+        RoundOutcome outcome = playRound(content, session, enemy, playerAction, random);
+
+        // Player's status effects were processed at the start of the round
+        if (outcome.statusDamage > 0) {
             Map<String, String> statusMap = new HashMap<String, String>();
-            statusMap.put("damage", String.valueOf(statusDamage));
+            statusMap.put("damage", String.valueOf(outcome.statusDamage));
             player.sendMessage(messages.format(player, "sgame.status_damage", statusMap));
             
             // Check if player died from status damage
@@ -2233,17 +2316,12 @@ public class StrategyGameManager {
             }
         }
         
-        // Check if player is stunned or frozen
-        if (session.isStunned() || session.isFrozen()) {
-            String statusType = session.isStunned() ? "stun" : "freeze";
-            player.sendMessage(messages.format(player, "sgame.status_skip_turn_" + statusType));
-            
-            // Enemy gets a free attack
-            int freeDamage = Math.max(1, enemy.getAttack() / 2);
-            session.addHealth(-freeDamage);
+        // Stunned or frozen: the enemy got a free attack
+        if (outcome.skippedStatus != null) {
+            player.sendMessage(messages.format(player, "sgame.status_skip_turn_" + outcome.skippedStatus));
             
             Map<String, String> freeMap = new HashMap<String, String>();
-            freeMap.put("damage", String.valueOf(freeDamage));
+            freeMap.put("damage", String.valueOf(outcome.enemyDamage));
             player.sendMessage(messages.format(player, "sgame.enemy_free_attack", freeMap));
             
             if (session.getHealth() <= 0) {
@@ -2257,76 +2335,195 @@ public class StrategyGameManager {
             return;
         }
         
-        // Check if enemy uses a special skill
-        EnemySkill usedSkill = tryUseEnemySkill(enemy);
-        
-        // Determine enemy action
-        BattleAction enemyAction;
-        if (usedSkill != null) {
-            // Enemy is using a skill
-            enemyAction = BattleAction.SKILL;
-        } else {
-            enemyAction = pickEnemyAction(enemy);
+        if (outcome.statusApplied) {
+            Map<String, String> effectMap = new HashMap<String, String>();
+            effectMap.put("effect", messages.format(player, "sgame.status_" + outcome.usedSkill.getStatusEffect()));
+            effectMap.put("duration", String.valueOf(outcome.usedSkill.getStatusDuration()));
+            player.sendMessage(messages.format(player, "sgame.status_applied", effectMap));
         }
-        
-        // Calculate base damage values
-        int playerAttack = session.getAttack() + getEquipmentAttackBonus(session);
-        int playerDefense = session.getDefense() + getEquipmentDefenseBonus(session);
-        int playerMagic = session.getMagic() + getEquipmentMagicBonus(session);
-        
-        int enemyAttackStat = enemy.getAttack();
-        int enemyDefense = enemy.getDefense();
-        
-        // Consistent random damage variance for balance
-        int damageVariance = 6;
-        
-        // Determine round outcome based on RPS logic
-        int playerDamageDealt = 0;
-        int enemyDamageDealt = 0;
+
+        BattleAction enemyAction = outcome.enemyAction;
         String roundResult;
-        boolean playerCrit = false;
-        boolean enemyCrit = false;
-        boolean playerDodged = false;
-        boolean enemyDodged = false;
-        
-        // Check for player critical hit (10% base chance)
-        int playerCritChance = 10 + (playerMagic / 10);
-        playerCrit = random.nextInt(100) < playerCritChance;
-        
-        // Check for enemy critical hit
-        enemyCrit = random.nextInt(100) < enemy.getCritChance();
-        
-        // Check for enemy dodge
-        enemyDodged = random.nextInt(100) < enemy.getDodgeChance();
-        
-        // Player dodge based on defense stat
-        playerDodged = random.nextInt(100) < (playerDefense / 4);
-        
-        // Determine advantage: 0 = tie, 1 = player wins RPS, -1 = enemy wins RPS
-        int advantage = determineRpsAdvantage(playerAction, enemyAction);
-        
-        // Track enemy action for prediction hints
-        session.setLastEnemyAction(enemyAction);
-        
-        // Handle combo system
-        double comboMultiplier = 1.0;
-        if (advantage == 1) {
-            session.incrementCombo();
-            comboMultiplier = session.getComboMultiplier();
-        } else if (advantage == -1) {
-            session.resetCombo();
+        if (outcome.advantage == 1) {
+            if (playerAction == BattleAction.ATTACK) {
+                roundResult = messages.format(player, "sgame.round_attack_beats_skill");
+            } else if (playerAction == BattleAction.SKILL) {
+                roundResult = messages.format(player, "sgame.round_skill_beats_defense");
+            } else {
+                roundResult = messages.format(player, "sgame.round_defense_beats_attack");
+            }
+        } else if (outcome.advantage == -1) {
+            if (enemyAction == BattleAction.ATTACK) {
+                roundResult = messages.format(player, "sgame.round_enemy_attack_beats_skill");
+            } else if (enemyAction == BattleAction.SKILL) {
+                roundResult = messages.format(player, "sgame.round_enemy_skill_beats_defense");
+            } else {
+                roundResult = messages.format(player, "sgame.round_enemy_defense_beats_attack");
+            }
+        } else {
+            roundResult = messages.format(player, "sgame.round_tie");
         }
-        // Tie doesn't affect combo
-        
+
+        int playerDamageDealt = outcome.playerDamage;
+        int enemyDamageDealt = outcome.enemyDamage;
         resultMap.put("player_action", getActionName(player, playerAction));
         resultMap.put("enemy_action", getActionName(player, enemyAction));
+        resultMap.put("player_damage", String.valueOf(playerDamageDealt));
+        resultMap.put("enemy_damage", String.valueOf(enemyDamageDealt));
+        resultMap.put("result", roundResult);
         
-        if (advantage == 1) {
-            // Player wins RPS - deal increased damage, take reduced damage
-            if (playerAction == BattleAction.ATTACK) {
-                // Attack beats Skill - interrupt enemy and deal full damage
-                if (!enemyDodged) {
-                    playerDamageDealt = Math.max(1, playerAttack - (enemyDefense / 4) + random.nextInt(damageVariance));
+        // Add crit/dodge/combo info to message
+        StringBuilder extraInfo = new StringBuilder();
+        if (outcome.playerCrit && playerDamageDealt > 0) {
+            extraInfo.append(messages.format(player, "sgame.player_crit"));
+        } else if (outcome.enemyCrit && enemyDamageDealt > 0) {
+            extraInfo.append(messages.format(player, "sgame.enemy_crit"));
+        } else if (outcome.enemyDodged && playerDamageDealt == 0 && outcome.advantage >= 0) {
+            extraInfo.append(messages.format(player, "sgame.enemy_dodged"));
+        } else if (outcome.playerDodged && enemyDamageDealt == 0 && outcome.advantage <= 0) {
+            extraInfo.append(messages.format(player, "sgame.player_dodged"));
+        }
+        
+        // Add combo info if active
+        if (session.getComboCount() >= 2) {
+            Map<String, String> comboMap = new HashMap<String, String>();
+            comboMap.put("combo", String.valueOf(session.getComboCount()));
+            comboMap.put("multiplier", String.format("%.1f", session.getComboMultiplier()));
+            if (extraInfo.length() > 0) {
+                extraInfo.append(" ");
+            }
+            extraInfo.append(messages.format(player, "sgame.combo_bonus", comboMap));
+        }
+        resultMap.put("crit_info", extraInfo.toString());
+        
+        // Send round result message
+        player.sendMessage(messages.format(player, "sgame.battle_round_result", resultMap));
+        
+        // Check if battle ended
+        if (session.getCurrentEnemyHp() <= 0) {
+            int goldReward = applyBattleVictory(session, enemy);
+            saveSession(session);
+            
+            Map<String, String> victoryMap = new HashMap<String, String>();
+            victoryMap.put("enemy", resolveI18n(player, enemy.getName()));
+            victoryMap.put("gold", String.valueOf(goldReward));
+            victoryMap.put("rounds", String.valueOf(session.getBattleRound()));
+            player.sendMessage(messages.format(player, "sgame.battle_victory_multiround", victoryMap));
+            
+            player.closeInventory();
+            openMainMenu(player);
+            return;
+        }
+        
+        if (session.getHealth() <= 0) {
+            // Player died
+            handleGameOverDeath(player, session);
+            return;
+        }
+        
+        // Continue to next round
+        session.incrementBattleRound();
+        saveSession(session);
+        
+        // Refresh the battle action menu for next round
+        openBattleActionMenu(player);
+    }
+
+    /**
+     * Play the numbers of one Rock-Paper-Scissors round against the session: status ticks,
+     * stun/freeze, enemy skill and action, crits, dodges, combo and damage on both sides.
+     * Messages and end-of-battle handling are left to the caller. Returns early (with only
+     * {@code statusDamage} set) if status damage kills the player.
+     */
+    static RoundOutcome playRound(ContentIndex content, GameSession session, BattleEnemy enemy,
+                                  BattleAction playerAction, Random random) {
+        RoundOutcome outcome = new RoundOutcome();
+
+        // Process player's status effects at the start of the round
+        int statusDamage = session.processStatusEffects();
+        if (statusDamage > 0) {
+            session.addHealth(-statusDamage);
+            outcome.statusDamage = statusDamage;
+            if (session.getHealth() <= 0) {
+                return outcome;
+            }
+        }
+        
+        // Check if player is stunned or frozen
+        if (session.isStunned() || session.isFrozen()) {
+            outcome.skippedStatus = session.isStunned() ? "stun" : "freeze";
+            // Enemy gets a free attack
+            int freeDamage = Math.max(1, enemy.getAttack() / 2);
+            session.addHealth(-freeDamage);
+            outcome.enemyDamage = freeDamage;
+            return outcome;
+        }
+        
+        // Check if enemy uses a special skill
+        EnemySkill usedSkill = tryUseEnemySkill(enemy, random);
+        
+        // Determine enemy action
+        BattleAction enemyAction;
+        if (usedSkill != null) {
+            // Enemy is using a skill
+            enemyAction = BattleAction.SKILL;
+        } else {
+            enemyAction = pickEnemyAction(enemy, random);
+        }
+        outcome.usedSkill = usedSkill;
+        outcome.enemyAction = enemyAction;
+        
+        // Calculate base damage values
+        EquipmentBonus bonus = equipmentBonus(content, session);
+        int playerAttack = session.getAttack() + bonus.attack;
+        int playerDefense = session.getDefense() + bonus.defense;
+        int playerMagic = session.getMagic() + bonus.magic;
+        
+        int enemyAttackStat = enemy.getAttack();
+        int enemyDefense = enemy.getDefense();
+        
+        // Consistent random damage variance for balance
+        int damageVariance = 6;
+        
+        // Determine round outcome based on RPS logic
+        int playerDamageDealt = 0;
+        int enemyDamageDealt = 0;
+        
+        // Check for player critical hit (10% base chance)
+        int playerCritChance = 10 + (playerMagic / 10);
+        boolean playerCrit = random.nextInt(100) < playerCritChance;
+        
+        // Check for enemy critical hit
+        boolean enemyCrit = random.nextInt(100) < enemy.getCritChance();
+        
+        // Check for enemy dodge
+        boolean enemyDodged = random.nextInt(100) < enemy.getDodgeChance();
+        
+        // Player dodge based on defense stat
+        boolean playerDodged = random.nextInt(100) < (playerDefense / 4);
+        
+        // Determine advantage: 0 = tie, 1 = player wins RPS, -1 = enemy wins RPS
+        int advantage = determineRpsAdvantage(playerAction, enemyAction);
+        
+        // Track enemy action for prediction hints
+        session.setLastEnemyAction(enemyAction);
+        
+        // Handle combo system
+        double comboMultiplier = 1.0;
+        if (advantage == 1) {
+            session.incrementCombo();
+            comboMultiplier = session.getComboMultiplier();
+        } else if (advantage == -1) {
+            session.resetCombo();
+        }
+        // Tie doesn't affect combo
+        
+        if (advantage == 1) {
+            // Player wins RPS - deal increased damage, take reduced damage
+            if (playerAction == BattleAction.ATTACK) {
+                // Attack beats Skill - interrupt enemy and deal full damage
+                if (!enemyDodged) {
+                    playerDamageDealt = Math.max(1, playerAttack - (enemyDefense / 4) + random.nextInt(damageVariance));
                     if (playerCrit) {
                         playerDamageDealt = (int)(playerDamageDealt * 1.5);
                     }
@@ -2334,7 +2531,6 @@ public class StrategyGameManager {
                     playerDamageDealt = (int)(playerDamageDealt * comboMultiplier);
                 }
                 enemyDamageDealt = 0;
-                roundResult = messages.format(player, "sgame.round_attack_beats_skill");
             } else if (playerAction == BattleAction.SKILL) {
                 // Skill beats Defense - bypass defense and deal magic damage
                 session.addMagic(-10); // Consume magic
@@ -2347,7 +2543,6 @@ public class StrategyGameManager {
                     playerDamageDealt = (int)(playerDamageDealt * comboMultiplier);
                 }
                 enemyDamageDealt = 0;
-                roundResult = messages.format(player, "sgame.round_skill_beats_defense");
             } else {
                 // Defense beats Attack - block enemy and counter attack
                 if (!enemyDodged) {
@@ -2356,7 +2551,6 @@ public class StrategyGameManager {
                     playerDamageDealt = (int)(playerDamageDealt * comboMultiplier);
                 }
                 enemyDamageDealt = 0;
-                roundResult = messages.format(player, "sgame.round_defense_beats_attack");
             }
         } else if (advantage == -1) {
             // Enemy wins RPS - enemy deals increased damage
@@ -2372,7 +2566,6 @@ public class StrategyGameManager {
                 if (playerAction == BattleAction.SKILL) {
                     session.addMagic(-5); // Partial magic cost for interrupted skill
                 }
-                roundResult = messages.format(player, "sgame.round_enemy_attack_beats_skill");
             } else if (enemyAction == BattleAction.SKILL) {
                 // Enemy skill beats player defense
                 playerDamageDealt = 0;
@@ -2383,10 +2576,7 @@ public class StrategyGameManager {
                         if (usedSkill.hasStatusEffect()) {
                             session.addStatusEffect(usedSkill.getStatusEffect(), 
                                 usedSkill.getStatusDuration(), usedSkill.getStatusPower());
-                            Map<String, String> effectMap = new HashMap<String, String>();
-                            effectMap.put("effect", messages.format(player, "sgame.status_" + usedSkill.getStatusEffect()));
-                            effectMap.put("duration", String.valueOf(usedSkill.getStatusDuration()));
-                            player.sendMessage(messages.format(player, "sgame.status_applied", effectMap));
+                            outcome.statusApplied = true;
                         }
                     } else {
                         enemyDamageDealt = Math.max(1, (enemy.getMagic() / 2) + random.nextInt(damageVariance));
@@ -2395,14 +2585,12 @@ public class StrategyGameManager {
                         enemyDamageDealt = (int)(enemyDamageDealt * enemy.getCritMultiplier());
                     }
                 }
-                roundResult = messages.format(player, "sgame.round_enemy_skill_beats_defense");
             } else {
                 // Enemy defense beats player attack
                 playerDamageDealt = 0;
                 if (!playerDodged) {
                     enemyDamageDealt = Math.max(1, enemyDefense / 3);
                 }
-                roundResult = messages.format(player, "sgame.round_enemy_defense_beats_attack");
             }
         } else {
             // Tie - both deal reduced damage
@@ -2419,91 +2607,47 @@ public class StrategyGameManager {
             if (!playerDodged) {
                 enemyDamageDealt = Math.max(1, enemyAttackStat / 3 + random.nextInt(3));
             }
-            roundResult = messages.format(player, "sgame.round_tie");
         }
         
         // Apply damage
         session.addCurrentEnemyHp(-playerDamageDealt);
         session.addHealth(-enemyDamageDealt);
-        
-        resultMap.put("player_damage", String.valueOf(playerDamageDealt));
-        resultMap.put("enemy_damage", String.valueOf(enemyDamageDealt));
-        resultMap.put("result", roundResult);
-        
-        // Add crit/dodge/combo info to message
-        StringBuilder extraInfo = new StringBuilder();
-        if (playerCrit && playerDamageDealt > 0) {
-            extraInfo.append(messages.format(player, "sgame.player_crit"));
-        } else if (enemyCrit && enemyDamageDealt > 0) {
-            extraInfo.append(messages.format(player, "sgame.enemy_crit"));
-        } else if (enemyDodged && playerDamageDealt == 0 && advantage >= 0) {
-            extraInfo.append(messages.format(player, "sgame.enemy_dodged"));
-        } else if (playerDodged && enemyDamageDealt == 0 && advantage <= 0) {
-            extraInfo.append(messages.format(player, "sgame.player_dodged"));
-        }
-        
-        // Add combo info if active
-        if (session.getComboCount() >= 2) {
-            Map<String, String> comboMap = new HashMap<String, String>();
-            comboMap.put("combo", String.valueOf(session.getComboCount()));
-            comboMap.put("multiplier", String.format("%.1f", session.getComboMultiplier()));
-            if (extraInfo.length() > 0) {
-                extraInfo.append(" ");
-            }
-            extraInfo.append(messages.format(player, "sgame.combo_bonus", comboMap));
-        }
-        resultMap.put("crit_info", extraInfo.toString());
-        
-        // Send round result message
-        player.sendMessage(messages.format(player, "sgame.battle_round_result", resultMap));
-        
-        // Check if battle ended
-        if (session.getCurrentEnemyHp() <= 0) {
-            // Victory! Clear status effects and reset combo
-            session.clearStatusEffects();
-            session.resetCombo();
-            int goldReward = enemy.getGoldReward();
-            session.addGold(goldReward);
-            session.incrementBattleVictories();
-            // Record battle completion for avoidance algorithm
-            session.recordEventCompletion("battle");
-            session.incrementStage();
-            // Clear battle and event state - battle is complete
-            session.setCurrentEnemyId(null);
-            session.setCurrentEnemyHp(0);
-            session.setCurrentEventId(null);
-            saveSession(session);
-            
-            Map<String, String> victoryMap = new HashMap<String, String>();
-            victoryMap.put("enemy", resolveI18n(player, enemy.getName()));
-            victoryMap.put("gold", String.valueOf(goldReward));
-            victoryMap.put("rounds", String.valueOf(session.getBattleRound()));
-            player.sendMessage(messages.format(player, "sgame.battle_victory_multiround", victoryMap));
-            
-            player.closeInventory();
-            openMainMenu(player);
-            return;
-        }
-        
-        if (session.getHealth() <= 0) {
-            // Player died
-            handleGameOverDeath(player, session);
-            return;
-        }
-        
-        // Continue to next round
-        session.incrementBattleRound();
-        saveSession(session);
-        
-        // Refresh the battle action menu for next round
-        openBattleActionMenu(player);
+
+        outcome.advantage = advantage;
+        outcome.playerDamage = playerDamageDealt;
+        outcome.enemyDamage = enemyDamageDealt;
+        outcome.playerCrit = playerCrit;
+        outcome.enemyCrit = enemyCrit;
+        outcome.playerDodged = playerDodged;
+        outcome.enemyDodged = enemyDodged;
+        return outcome;
+    }
+
+    /**
+     * Rewards and state reset for a won battle; returns the gold awarded.
+     */
+    static int applyBattleVictory(GameSession session, BattleEnemy enemy) {
+        // Clear status effects and reset combo
+        session.clearStatusEffects();
+        session.resetCombo();
+        int goldReward = enemy.getGoldReward();
+        session.addGold(goldReward);
+        session.incrementBattleVictories();
+        // Record battle completion for avoidance algorithm
+        session.recordEventCompletion("battle");
+        session.incrementStage();
+        // Clear battle and event state - battle is complete
+        session.setCurrentEnemyId(null);
+        session.setCurrentEnemyHp(0);
+        session.setCurrentEventId(null);
+        return goldReward;
     }
 
     /**
      * Determine RPS advantage: 1 = player wins, -1 = enemy wins, 0 = tie
      * ATTACK beats SKILL, SKILL beats DEFENSE, DEFENSE beats ATTACK
      */
-    private int determineRpsAdvantage(BattleAction playerAction, BattleAction enemyAction) {
+    static int determineRpsAdvantage(BattleAction playerAction, BattleAction enemyAction) {
         if (playerAction == enemyAction) {
             return 0; // Tie
         }
@@ -2521,7 +2665,7 @@ public class StrategyGameManager {
      * Pick an enemy action based on enemy stats.
      * Enemies with more magic tend to use skill, more defense tends to use defense, etc.
      */
-    private BattleAction pickEnemyAction(BattleEnemy enemy) {
+    static BattleAction pickEnemyAction(BattleEnemy enemy, Random random) {
         int attackWeight = enemy.getAttack() + 10;
         int defenseWeight = enemy.getDefense() + 5;
         int skillWeight = enemy.getMagic() > 0 ? enemy.getMagic() + 5 : 2;
@@ -2542,7 +2686,7 @@ public class StrategyGameManager {
      * Try to use one of the enemy's special skills.
      * Returns the skill if one is used, null otherwise.
      */
-    private EnemySkill tryUseEnemySkill(BattleEnemy enemy) {
+    private static EnemySkill tryUseEnemySkill(BattleEnemy enemy, Random random) {
         if (!enemy.hasSkills()) {
             return null;
         }
@@ -2572,18 +2716,10 @@ public class StrategyGameManager {
     }
 
     private void resolveFlee(Player player, GameSession session, BattleEnemy enemy) {
-        // Flee success based on player speed (defense stat) vs enemy power
-        int fleeChance = 50 + (session.getDefense() * 2) - (enemy.getPower() / 3);
-        fleeChance = Math.min(90, Math.max(20, fleeChance)); // Clamp between 20-90%
-        
-        if (random.nextInt(100) < fleeChance) {
-            // Clear status effects on successful flee
-            session.clearStatusEffects();
+        int damage = attemptFlee(session, enemy, random);
+        if (damage == 0) {
             player.sendMessage(messages.format(player, "sgame.flee_success"));
         } else {
-            int damage = Math.max(1, enemy.getDamage() / 2 - session.getDefense() / 3);
-            session.addHealth(-damage);
-            
             Map<String, String> map = new HashMap<String, String>();
             map.put("damage", String.valueOf(damage));
             player.sendMessage(messages.format(player, "sgame.flee_failed", map));
@@ -2603,6 +2739,25 @@ public class StrategyGameManager {
         openMainMenu(player); // Will show new random event selection
     }
 
+    /**
+     * Roll a flee attempt. On success status effects are cleared and 0 is returned;
+     * on failure the player takes (and this returns) the parting blow's damage.
+     */
+    static int attemptFlee(GameSession session, BattleEnemy enemy, Random random) {
+        // Flee success based on player speed (defense stat) vs enemy power
+        int fleeChance = 50 + (session.getDefense() * 2) - (enemy.getPower() / 3);
+        fleeChance = Math.min(90, Math.max(20, fleeChance)); // Clamp between 20-90%
+
+        if (random.nextInt(100) < fleeChance) {
+            // Clear status effects on successful flee
+            session.clearStatusEffects();
+            return 0;
+        }
+        int damage = Math.max(1, enemy.getDamage() / 2 - session.getDefense() / 3);
+        session.addHealth(-damage);
+        return damage;
+    }
+
     // ============ Real Battle Mode ============
 
     /**
@@ -2720,54 +2875,52 @@ public class StrategyGameManager {
     }
 
     /**
-     * Start the periodic task that watches a real battle for the mob dying off
-     * (e.g. environmental death/despawn) and for the battle timing out.
+     * Watch a real battle for the mob dying off (e.g. environmental death/despawn)
+     * once a second, and schedule the battle timeout as a game-loop deadline.
      */
     private void startRealBattleTask(final Player player, final RealBattleState state) {
         final String playerName = player.getName();
-        BukkitTask task = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!player.isOnline()) {
-                    // The quit handler performs cleanup; just stop watching here.
-                    cancel();
-                    return;
-                }
-                RealBattleState current = realBattles.get(playerName);
-                if (current != state) {
-                    // Battle already resolved or replaced.
-                    cancel();
-                    return;
-                }
-                GameSession session = getOrLoadSession(playerName);
-                if (session == null || session.isEnded()) {
-                    cleanupRealBattle(playerName, true);
-                    cancel();
-                    return;
-                }
+        state.setTask(gameLoop.every("sgame", 20L, self -> {
+            if (!player.isOnline()) {
+                // The quit handler performs cleanup; just stop watching here.
+                self.cancel();
+                return;
+            }
+            RealBattleState current = realBattles.get(playerName);
+            if (current != state) {
+                // Battle already resolved or replaced.
+                self.cancel();
+                return;
+            }
+            GameSession session = getOrLoadSession(playerName);
+            if (session == null || session.isEnded()) {
+                cleanupRealBattle(playerName, true);
+                return;
+            }
 
-                Entity mob = Bukkit.getEntity(state.getMobId());
-                if (mob == null || mob.isDead()) {
-                    // Mob despawned or was lost without the death event firing.
-                    cancel();
-                    resolveRealBattleEscape(player, session, "sgame.real_battle_lost");
-                    return;
-                }
+            Entity mob = Bukkit.getEntity(state.getMobId());
+            if (mob == null || mob.isDead()) {
+                // Mob despawned or was lost without the death event firing.
+                resolveRealBattleEscape(player, session, "sgame.real_battle_lost");
+                return;
+            }
 
-                // Re-assert aggression so the mob keeps engaging the player.
-                if (mob instanceof Mob && ((Mob) mob).getTarget() == null) {
-                    ((Mob) mob).setTarget(player);
+            // Re-assert aggression so the mob keeps engaging the player.
+            if (mob instanceof Mob && ((Mob) mob).getTarget() == null) {
+                ((Mob) mob).setTarget(player);
+            }
+        }));
+        if (realBattleTimeout > 0) {
+            state.setTimeout(gameLoop.after("sgame", realBattleTimeout * 20L, self -> {
+                if (!player.isOnline() || realBattles.get(playerName) != state) {
+                    return;
                 }
-
-                // Handle battle timeout.
-                if (realBattleTimeout > 0
-                        && (System.currentTimeMillis() - state.getStartMillis()) >= realBattleTimeout * 1000L) {
-                    cancel();
+                GameSession session = getOrLoadSession(playerName);
+                if (session != null && !session.isEnded()) {
                     resolveRealBattleEscape(player, session, "sgame.real_battle_timeout");
                 }
-            }
-        }.runTaskTimer(plugin, 20L, 20L);
-        state.setTask(task);
+            }));
+        }
     }
 
     /** Whether real-battle mobs are allowed to damage terrain. */
@@ -2869,6 +3022,7 @@ public class StrategyGameManager {
             return;
         }
         cleanupRealBattle(player.getName(), true);
+        sessionStore.flush(player.getName());
     }
 
     /**
@@ -2880,20 +3034,9 @@ public class StrategyGameManager {
         if (state == null) {
             return; // Already resolved.
         }
-        if (state.getTask() != null) {
-            state.getTask().cancel();
-        }
+        state.cancelTasks();
 
-        session.clearStatusEffects();
-        session.resetCombo();
-        int goldReward = enemy.getGoldReward();
-        session.addGold(goldReward);
-        session.incrementBattleVictories();
-        session.recordEventCompletion("battle");
-        session.incrementStage();
-        session.setCurrentEnemyId(null);
-        session.setCurrentEnemyHp(0);
-        session.setCurrentEventId(null);
+        int goldReward = applyBattleVictory(session, enemy);
         saveSession(session);
 
         Map<String, String> map = new HashMap<String, String>();
@@ -2914,9 +3057,7 @@ public class StrategyGameManager {
         if (state == null) {
             return; // Already resolved.
         }
-        if (state.getTask() != null) {
-            state.getTask().cancel();
-        }
+        state.cancelTasks();
         // Despawn the lingering mob if it is still around (e.g. on timeout).
         Entity mob = Bukkit.getEntity(state.getMobId());
         if (mob != null && !mob.isDead()) {
@@ -2949,9 +3090,7 @@ public class StrategyGameManager {
         if (state == null) {
             return;
         }
-        if (state.getTask() != null) {
-            state.getTask().cancel();
-        }
+        state.cancelTasks();
         if (removeMob) {
             Entity mob = Bukkit.getEntity(state.getMobId());
             if (mob != null && !mob.isDead()) {
@@ -2960,18 +3099,76 @@ public class StrategyGameManager {
         }
     }
 
-    /** Despawn all active battle mobs (used on plugin disable). */
+    /** Despawn all active battle mobs and write unsaved sessions (used on plugin disable). */
     public void shutdown() {
         for (RealBattleState state : new ArrayList<RealBattleState>(realBattles.values())) {
-            if (state.getTask() != null) {
-                state.getTask().cancel();
-            }
+            state.cancelTasks();
             Entity mob = Bukkit.getEntity(state.getMobId());
             if (mob != null && !mob.isDead()) {
                 mob.remove();
             }
         }
         realBattles.clear();
+        sessionStore.flushAll();
+    }
+
+    /**
+     * Run the balance simulator against the loaded content off the main thread and send the
+     * report to {@code sender} when it is done.
+     *
+     * @param stages run length to simulate, or 0 for the default length
+     */
+    public void simulate(final CommandSender sender, final int runs, final StrategyBalanceSimulator.Policy policy, int stages) {
+        if (simulationRunning) {
+            sender.sendMessage(messages.format(sender, "sgame.simulate.busy"));
+            return;
+        }
+        simulationRunning = true;
+        final int runStages = stages > 0 ? stages : maxStages;
+        final StrategyBalanceSimulator simulator = new StrategyBalanceSimulator(content,
+                startingGold, startingHealth, startingAttack, startingDefense, startingMagic);
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("runs", String.valueOf(runs));
+        map.put("policy", policy.name().toLowerCase(java.util.Locale.ROOT));
+        map.put("stages", String.valueOf(runStages));
+        sender.sendMessage(messages.format(sender, "sgame.simulate.started", map));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            public void run() {
+                List<String> report;
+                try {
+                    report = simulator.run(runs, policy, runStages, System.nanoTime(), simulateThreads).format();
+                    for (String line : report) {
+                        plugin.getLogger().info(line);
+                    }
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(java.util.logging.Level.WARNING, "[sgame] 平衡模擬失敗", e);
+                    report = null;
+                }
+                if (!plugin.isEnabled()) {
+                    return;
+                }
+                final List<String> lines = report;
+                Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                    public void run() {
+                        simulationRunning = false;
+                        if (lines == null) {
+                            sender.sendMessage(messages.format(sender, "sgame.simulate.failed"));
+                            return;
+                        }
+                        for (String line : lines) {
+                            sender.sendMessage(messages.colorize("&7" + line));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Write every unsaved session now, e.g. before a reload creates a manager that reads them back.
+     */
+    public void flushSessions() {
+        sessionStore.flushAll();
     }
 
     private EntityType parseEntityType(String name, EntityType fallback) {
@@ -2986,7 +3183,7 @@ public class StrategyGameManager {
         }
     }
 
-    private void applyShopItem(Player player, GameSession session, ShopItem item) {
+    static void applyShopItem(GameSession session, ShopItem item) {
         switch (item.getEffectType()) {
             case "heal":
                 session.addHealth(item.getEffectValue());
@@ -3022,6 +3219,9 @@ public class StrategyGameManager {
         
         player.closeInventory();
         player.sendMessage(messages.format(player, "sgame.game_over_health"));
+        if (leaderboardService != null) {
+            leaderboardService.record("strategy", player.getName(), calculateScore(session), false);
+        }
         
         // Grant end rewards based on progress (even if died)
         List<String> rewardNames = grantEndRewards(player, session);
@@ -3059,7 +3259,7 @@ public class StrategyGameManager {
         return rewardNames;
     }
 
-    private int calculateScore(GameSession session) {
+    static int calculateScore(GameSession session) {
         // Score based on gold, health, stages, and victories
         int score = session.getGold() / 10;
         score += session.getHealth();
@@ -3070,122 +3270,71 @@ public class StrategyGameManager {
 
     // ============ Helper Methods ============
 
-    private BattleEnemy pickEnemy(int stage) {
-        // Filter enemies by stage if applicable
-        List<BattleEnemy> available = new ArrayList<BattleEnemy>();
-        for (BattleEnemy e : enemies) {
-            if (e.getMinStage() <= stage) {
-                available.add(e);
-            }
-        }
-        if (available.isEmpty()) {
-            available.addAll(enemies);
+    static BattleEnemy pickEnemy(ContentIndex content, int stage, Random random) {
+        // Enemies are sorted by min stage: the eligible ones are a prefix of the list.
+        List<BattleEnemy> byStage = content.enemiesByMinStage;
+        int eligible = content.enemiesUpToStage(stage);
+        if (eligible == 0) {
+            eligible = byStage.size();
         }
-        return available.get(random.nextInt(available.size()));
+        return byStage.get(random.nextInt(eligible));
     }
 
     private GameEvent findEvent(String id) {
-        if (id == null) {
-            return null;
-        }
-        for (GameEvent e : gameEvents) {
-            if (e.getId().equals(id)) {
-                return e;
-            }
-        }
-        return null;
+        return id == null ? null : content.eventsById.get(id);
     }
 
     private BattleEnemy findEnemy(String id) {
-        if (id == null) {
-            return null;
-        }
-        for (BattleEnemy e : enemies) {
-            if (e.getId().equals(id)) {
-                return e;
-            }
-        }
-        return null;
+        return id == null ? null : content.enemiesById.get(id);
     }
 
     private ShopItem findShopItem(String id) {
-        if (id == null) {
-            return null;
-        }
-        for (ShopItem item : shopItems) {
-            if (item.getId().equals(id)) {
-                return item;
-            }
-        }
-        return null;
+        return id == null ? null : content.shopItemsById.get(id);
     }
 
     private Equipment findEquipment(String id) {
-        if (id == null) {
-            return null;
-        }
-        for (Equipment eq : equipments) {
-            if (eq.getId().equals(id)) {
-                return eq;
-            }
+        return content.findEquipment(id);
+    }
+
+    /**
+     * Summed bonuses of the equipped items, cached on the session until its gear changes.
+     */
+    static EquipmentBonus equipmentBonus(ContentIndex content, GameSession session) {
+        EquipmentBonus bonus = session.getCachedEquipmentBonus();
+        if (bonus == null) {
+            bonus = new EquipmentBonus(content.findEquipment(session.getEquippedWeapon()),
+                    content.findEquipment(session.getEquippedArmor()), content.findEquipment(session.getEquippedAccessory()));
+            session.setCachedEquipmentBonus(bonus);
         }
-        return null;
+        return bonus;
     }
 
     /**
      * Calculate total attack bonus from equipped items.
      */
     private int getEquipmentAttackBonus(GameSession session) {
-        int bonus = 0;
-        Equipment weapon = findEquipment(session.getEquippedWeapon());
-        if (weapon != null) bonus += weapon.getAttackBonus();
-        Equipment armor = findEquipment(session.getEquippedArmor());
-        if (armor != null) bonus += armor.getAttackBonus();
-        Equipment accessory = findEquipment(session.getEquippedAccessory());
-        if (accessory != null) bonus += accessory.getAttackBonus();
-        return bonus;
+        return equipmentBonus(content, session).attack;
     }
 
     /**
      * Calculate total defense bonus from equipped items.
      */
     private int getEquipmentDefenseBonus(GameSession session) {
-        int bonus = 0;
-        Equipment weapon = findEquipment(session.getEquippedWeapon());
-        if (weapon != null) bonus += weapon.getDefenseBonus();
-        Equipment armor = findEquipment(session.getEquippedArmor());
-        if (armor != null) bonus += armor.getDefenseBonus();
-        Equipment accessory = findEquipment(session.getEquippedAccessory());
-        if (accessory != null) bonus += accessory.getDefenseBonus();
-        return bonus;
+        return equipmentBonus(content, session).defense;
     }
 
     /**
      * Calculate total health bonus from equipped items.
      */
     private int getEquipmentHealthBonus(GameSession session) {
-        int bonus = 0;
-        Equipment weapon = findEquipment(session.getEquippedWeapon());
-        if (weapon != null) bonus += weapon.getHealthBonus();
-        Equipment armor = findEquipment(session.getEquippedArmor());
-        if (armor != null) bonus += armor.getHealthBonus();
-        Equipment accessory = findEquipment(session.getEquippedAccessory());
-        if (accessory != null) bonus += accessory.getHealthBonus();
-        return bonus;
+        return equipmentBonus(content, session).health;
     }
 
     /**
      * Calculate total magic bonus from equipped items.
      */
     private int getEquipmentMagicBonus(GameSession session) {
-        int bonus = 0;
-        Equipment weapon = findEquipment(session.getEquippedWeapon());
-        if (weapon != null) bonus += weapon.getMagicBonus();
-        Equipment armor = findEquipment(session.getEquippedArmor());
-        if (armor != null) bonus += armor.getMagicBonus();
-        Equipment accessory = findEquipment(session.getEquippedAccessory());
-        if (accessory != null) bonus += accessory.getMagicBonus();
-        return bonus;
+        return equipmentBonus(content, session).magic;
     }
 
     /**
@@ -3197,120 +3346,82 @@ public class StrategyGameManager {
      * - Requirements check (excluded if prerequisites not met)
      * - Fixed stage events (must appear at specific stages)
      * - Exclusive events (only that event appears at the stage)
+     *
+     * The per-stage candidate list comes precompiled from {@link ContentIndex#stageTable};
+     * prerequisites are checked as bitsets against the session's visited events, and the
+     * draws go through a {@link WeightedSampler}.
      */
-    private List<GameEvent> selectEventsForStage(GameSession session, int count) {
-        int currentStage = session.getCurrentStage();
-        int runStages = session.getMaxStages();
-        
-        // First, check for exclusive fixed-stage events (like final boss)
-        for (GameEvent event : gameEvents) {
-            if (event.hasFixedStage() && event.getEffectiveFixedStage(runStages) == currentStage && event.isExclusive()) {
-                // This is an exclusive event for this stage - only return this event
-                List<GameEvent> exclusive = new ArrayList<GameEvent>();
-                exclusive.add(event);
-                return exclusive;
-            }
+    static List<GameEvent> selectEventsForStage(ContentIndex index, GameSession session, int count, Random random) {
+        StageTable table = index.stageTable(session.getCurrentStage(), session.getMaxStages());
+        List<GameEvent> selected = new ArrayList<GameEvent>();
+
+        // Exclusive fixed-stage events (like final boss) replace the whole selection
+        if (table.exclusive >= 0) {
+            selected.add(index.events.get(table.exclusive));
+            return selected;
         }
-        
-        List<GameEvent> available = new ArrayList<GameEvent>();
-        List<GameEvent> fixedForThisStage = new ArrayList<GameEvent>();
-        Map<GameEvent, Integer> weights = new HashMap<GameEvent, Integer>();
-        
+
         String lastEventId = session.getLastEventId();
-        GameEvent lastEvent = lastEventId != null ? findEvent(lastEventId) : null;
-        
+        GameEvent lastEvent = lastEventId != null ? index.eventsById.get(lastEventId) : null;
+        BitSet followups = lastEvent != null ? index.followupMasks[index.eventIndex(lastEvent.getId())] : null;
+        BitSet visited = visitedMask(session, index);
+
         // Ensure avoidance tracking is initialized
         session.initAvoidanceTracking();
-        
-        for (GameEvent event : gameEvents) {
-            // Skip events with fixed stages that don't match current stage
-            if (event.hasFixedStage() && event.getEffectiveFixedStage(runStages) != currentStage) {
+
+        int[] candidates = table.candidates;
+        int[] slots = new int[candidates.length];
+        long[] weights = new long[candidates.length];
+        int available = 0;
+        for (int candidate : candidates) {
+            if (!index.meetsPrerequisites(candidate, visited, session)) {
                 continue;
             }
-            
-            // Check prerequisites - must have visited all required events
-            if (event.hasPrerequisites()) {
-                boolean meetsPrereqs = true;
-                for (String prereqId : event.getPrerequisiteEvents()) {
-                    if (!session.hasVisitedEvent(prereqId)) {
-                        meetsPrereqs = false;
-                        break;
-                    }
-                }
-                if (!meetsPrereqs) {
-                    continue; // Skip this event
-                }
-            }
-            
-            // If this is a fixed-stage event for current stage, add to priority list
-            if (event.hasFixedStage() && event.getEffectiveFixedStage(runStages) == currentStage) {
-                fixedForThisStage.add(event);
-            }
-            
-            available.add(event);
-            
+            GameEvent event = index.events.get(candidate);
             // Calculate weight with avoidance multiplier
-            int baseWeight = event.getWeight();
             double avoidanceMultiplier = session.getAvoidanceMultiplier(event.getEventType());
-            int weight = (int) Math.ceil(baseWeight * avoidanceMultiplier);
-            
-            // Boost weight if this is a followup to the last event
-            if (lastEvent != null && lastEvent.getFollowupEvents().contains(event.getId())) {
-                weight *= 3; // Triple the weight for followup events
+            int weight = (int) Math.ceil(event.getWeight() * avoidanceMultiplier);
+            // Triple the weight for followups to the last event
+            if (followups != null && followups.get(index.idSlots[candidate])) {
+                weight *= 3;
             }
-            
-            weights.put(event, weight);
+            slots[available] = candidate;
+            weights[available] = weight;
+            available++;
         }
-        
-        // Start with fixed events for this stage (they must appear)
-        List<GameEvent> selected = new ArrayList<GameEvent>();
-        for (GameEvent fixed : fixedForThisStage) {
-            if (selected.size() < count) {
-                selected.add(fixed);
-                available.remove(fixed);
-            }
+
+        WeightedSampler sampler = new WeightedSampler(java.util.Arrays.copyOf(weights, available));
+        // Fixed events for this stage lead the candidate list and must appear
+        for (int i = 0; i < available && selected.size() < count && table.isFixed(slots[i]); i++) {
+            selected.add(index.events.get(slots[i]));
+            sampler.remove(i);
         }
-        
         // Fill remaining slots with weighted random selection
-        while (selected.size() < count && !available.isEmpty()) {
-            GameEvent chosen = weightedRandomSelect(available, weights);
-            if (chosen != null) {
-                selected.add(chosen);
-                available.remove(chosen);
-            }
+        while (selected.size() < count && sampler.remaining() > 0) {
+            selected.add(index.events.get(slots[sampler.take(random)]));
         }
-        
         return selected;
     }
 
     /**
-     * Weighted random selection from a list of events.
+     * The session's visited events as a bitset over the content's event ids, folding in
+     * events visited since the last call. Rebuilt if the content was reloaded.
      */
-    private GameEvent weightedRandomSelect(List<GameEvent> events, Map<GameEvent, Integer> weights) {
-        if (events.isEmpty()) {
-            return null;
-        }
-        
-        int totalWeight = 0;
-        for (GameEvent e : events) {
-            totalWeight += weights.getOrDefault(e, 10);
-        }
-        
-        if (totalWeight <= 0) {
-            return events.get(random.nextInt(events.size()));
-        }
-        
-        int randomValue = random.nextInt(totalWeight);
-        int currentWeight = 0;
-        
-        for (GameEvent e : events) {
-            currentWeight += weights.getOrDefault(e, 10);
-            if (randomValue < currentWeight) {
-                return e;
+    private static BitSet visitedMask(GameSession session, ContentIndex index) {
+        if (session.visitedMaskOwner != index) {
+            session.visitedMaskOwner = index;
+            session.visitedMask = new BitSet(index.events.size());
+            session.visitedMaskCount = 0;
+        }
+        List<String> visited = session.getVisitedEvents();
+        for (int i = session.visitedMaskCount; i < visited.size(); i++) {
+            Integer slot = index.idSlotById.get(visited.get(i));
+            if (slot != null) {
+                session.visitedMask.set(slot);
             }
         }
-        
-        return events.get(events.size() - 1);
+        session.visitedMaskCount = visited.size();
+        return session.visitedMask;
     }
 
     private String extractId(ItemStack item) {
@@ -3404,6 +3515,25 @@ public class StrategyGameManager {
     }
 
     private GameSession loadSession(String playerName) {
+        String record = sessionStore.read(playerName);
+        if (record != null) {
+            return decodeSession(playerName, record);
+        }
+        GameSession session = loadLegacySession(playerName);
+        if (session != null) {
+            // Move it to the session store and drop the old section from the shared data file.
+            activeSessions.put(playerName, session);
+            sessionStore.markDirty(playerName);
+            sessionStore.flush(playerName);
+            clearLegacySession(playerName);
+        }
+        return session;
+    }
+
+    /**
+     * Read a session saved by older versions under {@code sgame.*} in the player's data file.
+     */
+    private GameSession loadLegacySession(String playerName) {
         File file = new File(storageDir, playerName + ".yml");
         if (!file.exists()) {
             return null;
@@ -3472,67 +3602,19 @@ public class StrategyGameManager {
         return session;
     }
 
+    /**
+     * Persist the session. Writes are coalesced by the session store, so this is cheap to
+     * call after every change.
+     */
     private void saveSession(GameSession session) {
-        File file = new File(storageDir, session.getPlayerName() + ".yml");
-        YamlConfiguration data;
-        if (file.exists()) {
-            data = YamlConfiguration.loadConfiguration(file);
-        } else {
-            data = new YamlConfiguration();
-        }
-        
-        data.set("sgame.active", true);
-        data.set("sgame.gold", session.getGold());
-        data.set("sgame.health", session.getHealth());
-        data.set("sgame.max_health", session.getMaxHealth());
-        data.set("sgame.current_stage", session.getCurrentStage());
-        data.set("sgame.max_stages", session.getMaxStages());
-        data.set("sgame.length", session.getLengthKey());
-        data.set("sgame.battle_victories", session.getBattleVictories());
-        data.set("sgame.ended", session.isEnded());
-        data.set("sgame.current_event_id", session.getCurrentEventId());
-        data.set("sgame.current_enemy_id", session.getCurrentEnemyId());
-        
-        // Save combat stats
-        data.set("sgame.attack", session.getAttack());
-        data.set("sgame.defense", session.getDefense());
-        data.set("sgame.magic", session.getMagic());
-        data.set("sgame.max_magic", session.getMaxMagic());
-        
-        // Save equipment
-        data.set("sgame.equipped_weapon", session.getEquippedWeapon());
-        data.set("sgame.equipped_armor", session.getEquippedArmor());
-        data.set("sgame.equipped_accessory", session.getEquippedAccessory());
-        
-        // Save visited events
-        data.set("sgame.visited_events", session.getVisitedEvents());
-        data.set("sgame.last_event_id", session.getLastEventId());
-        
-        // Save multi-round battle state
-        data.set("sgame.current_enemy_hp", session.getCurrentEnemyHp());
-        data.set("sgame.current_enemy_max_hp", session.getCurrentEnemyMaxHp());
-        data.set("sgame.battle_round", session.getBattleRound());
-        
-        // Save current stage events
-        data.set("sgame.current_stage_events", session.getCurrentStageEvents());
-        data.set("sgame.stage_events_generated", session.isStageEventsGenerated());
-        
-        // Save inventory
-        data.set("sgame.inventory", null);
-        for (Map.Entry<String, Integer> entry : session.getInventory().entrySet()) {
-            if (entry.getValue() > 0) {
-                data.set("sgame.inventory." + entry.getKey(), entry.getValue());
-            }
-        }
-        
-        try {
-            data.save(file);
-        } catch (IOException e) {
-            plugin.getLogger().warning("無法保存遊戲會話: " + e.getMessage());
-        }
+        sessionStore.markDirty(session.getPlayerName());
     }
 
     private void clearSessionFile(String playerName) {
+        sessionStore.delete(playerName);
+    }
+
+    private void clearLegacySession(String playerName) {
         File file = new File(storageDir, playerName + ".yml");
         if (file.exists()) {
             YamlConfiguration data = YamlConfiguration.loadConfiguration(file);
@@ -3545,6 +3627,140 @@ public class StrategyGameManager {
         }
     }
 
+    /**
+     * Compact session record: one {@code key<TAB>value...} line per field, lists as extra
+     * tab-separated values, absent ids left out.
+     */
+    private String encodeSession(GameSession session) {
+        StringBuilder out = new StringBuilder(512);
+        appendField(out, "gold", session.getGold());
+        appendField(out, "health", session.getHealth());
+        appendField(out, "max_health", session.getMaxHealth());
+        appendField(out, "current_stage", session.getCurrentStage());
+        appendField(out, "max_stages", session.getMaxStages());
+        appendField(out, "length", session.getLengthKey());
+        appendField(out, "battle_victories", session.getBattleVictories());
+        appendField(out, "ended", session.isEnded());
+        appendField(out, "current_event_id", session.getCurrentEventId());
+        appendField(out, "current_enemy_id", session.getCurrentEnemyId());
+        appendField(out, "attack", session.getAttack());
+        appendField(out, "defense", session.getDefense());
+        appendField(out, "magic", session.getMagic());
+        appendField(out, "max_magic", session.getMaxMagic());
+        appendField(out, "equipped_weapon", session.getEquippedWeapon());
+        appendField(out, "equipped_armor", session.getEquippedArmor());
+        appendField(out, "equipped_accessory", session.getEquippedAccessory());
+        appendList(out, "visited_events", session.getVisitedEvents());
+        appendField(out, "last_event_id", session.getLastEventId());
+        appendField(out, "current_enemy_hp", session.getCurrentEnemyHp());
+        appendField(out, "current_enemy_max_hp", session.getCurrentEnemyMaxHp());
+        appendField(out, "battle_round", session.getBattleRound());
+        appendList(out, "current_stage_events", session.getCurrentStageEvents());
+        appendField(out, "stage_events_generated", session.isStageEventsGenerated());
+        out.append("inventory");
+        for (Map.Entry<String, Integer> entry : session.getInventory().entrySet()) {
+            if (entry.getValue() > 0) {
+                out.append('\t').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        out.append('\n');
+        return out.toString();
+    }
+
+    private static void appendField(StringBuilder out, String key, Object value) {
+        if (value != null) {
+            out.append(key).append('\t').append(value).append('\n');
+        }
+    }
+
+    private static void appendList(StringBuilder out, String key, List<String> values) {
+        out.append(key);
+        for (String value : values) {
+            out.append('\t').append(value);
+        }
+        out.append('\n');
+    }
+
+    private GameSession decodeSession(String playerName, String record) {
+        Map<String, String[]> fields = new HashMap<String, String[]>();
+        for (String line : record.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\t");
+            fields.put(parts[0], parts);
+        }
+        GameSession session = new GameSession(playerName,
+                intField(fields, "gold", startingGold), intField(fields, "health", startingHealth));
+        session.setMaxHealth(intField(fields, "max_health", startingHealth));
+        session.setCurrentStage(intField(fields, "current_stage", 0));
+        session.setMaxStages(intField(fields, "max_stages", maxStages));
+        String length = stringField(fields, "length");
+        session.setLengthKey(length != null ? length : defaultLengthKey);
+        session.setBattleVictories(intField(fields, "battle_victories", 0));
+        session.setEnded(Boolean.parseBoolean(stringField(fields, "ended")));
+        session.setCurrentEventId(stringField(fields, "current_event_id"));
+        session.setCurrentEnemyId(stringField(fields, "current_enemy_id"));
+        session.setAttack(intField(fields, "attack", startingAttack));
+        session.setDefense(intField(fields, "defense", startingDefense));
+        session.setMagic(intField(fields, "magic", startingMagic));
+        session.setMaxMagic(intField(fields, "max_magic", startingMagic));
+        session.setEquippedWeapon(stringField(fields, "equipped_weapon"));
+        session.setEquippedArmor(stringField(fields, "equipped_armor"));
+        session.setEquippedAccessory(stringField(fields, "equipped_accessory"));
+        String[] visited = fields.get("visited_events");
+        if (visited != null) {
+            for (int i = 1; i < visited.length; i++) {
+                session.addVisitedEvent(visited[i]);
+            }
+        }
+        session.setLastEventId(stringField(fields, "last_event_id"));
+        session.setCurrentEnemyHp(intField(fields, "current_enemy_hp", 0));
+        session.setCurrentEnemyMaxHp(intField(fields, "current_enemy_max_hp", 0));
+        session.setBattleRound(intField(fields, "battle_round", 1));
+        String[] stageEvents = fields.get("current_stage_events");
+        if (stageEvents != null) {
+            for (int i = 1; i < stageEvents.length; i++) {
+                session.addCurrentStageEvent(stageEvents[i]);
+            }
+        }
+        session.setStageEventsGenerated(Boolean.parseBoolean(stringField(fields, "stage_events_generated")));
+        String[] inventory = fields.get("inventory");
+        if (inventory != null) {
+            for (int i = 1; i < inventory.length; i++) {
+                int split = inventory[i].lastIndexOf('=');
+                if (split <= 0) {
+                    continue;
+                }
+                try {
+                    int amount = Integer.parseInt(inventory[i].substring(split + 1));
+                    if (amount > 0) {
+                        session.addItem(inventory[i].substring(0, split), amount);
+                    }
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return session;
+    }
+
+    private static String stringField(Map<String, String[]> fields, String key) {
+        String[] parts = fields.get(key);
+        return parts != null && parts.length > 1 ? parts[1] : null;
+    }
+
+    private static int intField(Map<String, String[]> fields, String key, int fallback) {
+        String value = stringField(fields, key);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
     // ============ Inner Classes ============
 
     public enum MenuType {
@@ -3585,23 +3801,329 @@ public class StrategyGameManager {
     private static class RealBattleState {
         private final String enemyId;
         private final UUID mobId;
-        private final long startMillis;
-        private BukkitTask task;
+        private GameLoopScheduler.Handle task;
+        private GameLoopScheduler.Handle timeout;
 
         RealBattleState(String enemyId, UUID mobId) {
             this.enemyId = enemyId;
             this.mobId = mobId;
-            this.startMillis = System.currentTimeMillis();
         }
 
         String getEnemyId() { return enemyId; }
         UUID getMobId() { return mobId; }
-        long getStartMillis() { return startMillis; }
-        BukkitTask getTask() { return task; }
-        void setTask(BukkitTask task) { this.task = task; }
+        void setTask(GameLoopScheduler.Handle task) { this.task = task; }
+        void setTimeout(GameLoopScheduler.Handle timeout) { this.timeout = timeout; }
+
+        void cancelTasks() {
+            if (task != null) {
+                task.cancel();
+            }
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+
+    /**
+     * Loaded content compiled for lookups: id maps, enemies sorted by the stage they unlock at,
+     * prerequisite/followup bitsets over events, and per-stage event candidate tables. Built
+     * once per config load; apart from the lazily filled stage tables it is never modified,
+     * so it can be shared across threads.
+     */
+    static final class ContentIndex {
+        final List<GameEvent> events;
+        final List<ShopItem> shopItems;
+        final List<Equipment> equipments;
+        final List<BattleEnemy> enemies;
+        final Map<String, GameEvent> eventsById;
+        final Map<String, ShopItem> shopItemsById;
+        final Map<String, Equipment> equipmentsById;
+        final Map<String, BattleEnemy> enemiesById;
+        private final List<BattleEnemy> enemiesByMinStage;
+        private final int[] enemyMinStages;
+        // Event ids map to the index of their first definition ("id slot"); visited,
+        // prerequisite and followup bitsets are all over id slots.
+        final Map<String, Integer> idSlotById;
+        private final int[] idSlots;
+        private final BitSet[] prerequisiteMasks;
+        // Prerequisite ids no event defines; rare, checked by name against the session
+        private final List<List<String>> unresolvedPrerequisites;
+        private final BitSet[] followupMasks;
+        private final int[] floatingEventIndexes;
+        // (stage, run length) -> candidate table; filled on first use (also from simulator threads)
+        private final Map<Long, StageTable> stageTables = new java.util.concurrent.ConcurrentHashMap<Long, StageTable>();
+
+        ContentIndex(List<GameEvent> events, List<ShopItem> shopItems, List<Equipment> equipments, List<BattleEnemy> enemies) {
+            this.events = java.util.Collections.unmodifiableList(new ArrayList<GameEvent>(events));
+            this.shopItems = java.util.Collections.unmodifiableList(new ArrayList<ShopItem>(shopItems));
+            this.equipments = java.util.Collections.unmodifiableList(new ArrayList<Equipment>(equipments));
+            this.enemies = java.util.Collections.unmodifiableList(new ArrayList<BattleEnemy>(enemies));
+
+            Map<String, GameEvent> eventMap = new HashMap<String, GameEvent>();
+            for (GameEvent event : events) {
+                // First definition wins, as the old linear scan did.
+                if (!eventMap.containsKey(event.getId())) {
+                    eventMap.put(event.getId(), event);
+                }
+            }
+            this.eventsById = java.util.Collections.unmodifiableMap(eventMap);
+
+            int eventCount = events.size();
+            Map<String, Integer> slotMap = new HashMap<String, Integer>();
+            this.idSlots = new int[eventCount];
+            int floatingCount = 0;
+            for (int i = 0; i < eventCount; i++) {
+                String id = events.get(i).getId();
+                Integer slot = slotMap.get(id);
+                if (slot == null) {
+                    slot = i;
+                    slotMap.put(id, slot);
+                }
+                idSlots[i] = slot;
+                if (!events.get(i).hasFixedStage()) {
+                    floatingCount++;
+                }
+            }
+            this.idSlotById = java.util.Collections.unmodifiableMap(slotMap);
+            this.floatingEventIndexes = new int[floatingCount];
+            this.prerequisiteMasks = new BitSet[eventCount];
+            this.followupMasks = new BitSet[eventCount];
+            List<List<String>> unresolved = new ArrayList<List<String>>(eventCount);
+            int nextFloating = 0;
+            for (int i = 0; i < eventCount; i++) {
+                GameEvent event = events.get(i);
+                if (!event.hasFixedStage()) {
+                    floatingEventIndexes[nextFloating++] = i;
+                }
+                List<String> missing = null;
+                if (event.hasPrerequisites()) {
+                    BitSet mask = new BitSet(eventCount);
+                    for (String prereqId : event.getPrerequisiteEvents()) {
+                        Integer slot = slotMap.get(prereqId);
+                        if (slot != null) {
+                            mask.set(slot);
+                        } else {
+                            if (missing == null) {
+                                missing = new ArrayList<String>();
+                            }
+                            missing.add(prereqId);
+                        }
+                    }
+                    prerequisiteMasks[i] = mask;
+                }
+                unresolved.add(missing);
+                BitSet followups = new BitSet(eventCount);
+                for (String followupId : event.getFollowupEvents()) {
+                    Integer slot = slotMap.get(followupId);
+                    if (slot != null) {
+                        followups.set(slot);
+                    }
+                }
+                followupMasks[i] = followups;
+            }
+            this.unresolvedPrerequisites = unresolved;
+
+            Map<String, ShopItem> itemMap = new HashMap<String, ShopItem>();
+            for (ShopItem item : shopItems) {
+                if (!itemMap.containsKey(item.getId())) {
+                    itemMap.put(item.getId(), item);
+                }
+            }
+            this.shopItemsById = java.util.Collections.unmodifiableMap(itemMap);
+
+            Map<String, Equipment> equipMap = new HashMap<String, Equipment>();
+            for (Equipment eq : equipments) {
+                if (!equipMap.containsKey(eq.getId())) {
+                    equipMap.put(eq.getId(), eq);
+                }
+            }
+            this.equipmentsById = java.util.Collections.unmodifiableMap(equipMap);
+
+            Map<String, BattleEnemy> enemyMap = new HashMap<String, BattleEnemy>();
+            for (BattleEnemy enemy : enemies) {
+                if (!enemyMap.containsKey(enemy.getId())) {
+                    enemyMap.put(enemy.getId(), enemy);
+                }
+            }
+            this.enemiesById = java.util.Collections.unmodifiableMap(enemyMap);
+
+            List<BattleEnemy> sorted = new ArrayList<BattleEnemy>(enemies);
+            sorted.sort((a, b) -> Integer.compare(a.getMinStage(), b.getMinStage()));
+            this.enemiesByMinStage = java.util.Collections.unmodifiableList(sorted);
+            this.enemyMinStages = new int[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                enemyMinStages[i] = sorted.get(i).getMinStage();
+            }
+        }
+
+        Equipment findEquipment(String id) {
+            return id == null ? null : equipmentsById.get(id);
+        }
+
+        int eventIndex(String id) {
+            Integer slot = idSlotById.get(id);
+            return slot == null ? -1 : slot;
+        }
+
+        /**
+         * Whether every prerequisite of the event at {@code index} has been visited.
+         */
+        boolean meetsPrerequisites(int index, BitSet visited, GameSession session) {
+            BitSet required = prerequisiteMasks[index];
+            if (required == null) {
+                return true;
+            }
+            for (int slot = required.nextSetBit(0); slot >= 0; slot = required.nextSetBit(slot + 1)) {
+                if (!visited.get(slot)) {
+                    return false;
+                }
+            }
+            List<String> missing = unresolvedPrerequisites.get(index);
+            if (missing != null) {
+                for (String prereqId : missing) {
+                    if (!session.hasVisitedEvent(prereqId)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Events that can be offered at {@code stage} of a run with {@code runStages} stages.
+         */
+        StageTable stageTable(int stage, int runStages) {
+            Long key = ((long) stage << 32) | (runStages & 0xffffffffL);
+            StageTable table = stageTables.get(key);
+            if (table == null) {
+                table = compileStage(stage, runStages);
+                stageTables.put(key, table);
+            }
+            return table;
+        }
+
+        private StageTable compileStage(int stage, int runStages) {
+            List<Integer> fixed = new ArrayList<Integer>();
+            for (int i = 0; i < events.size(); i++) {
+                GameEvent event = events.get(i);
+                if (event.hasFixedStage() && event.getEffectiveFixedStage(runStages) == stage) {
+                    if (event.isExclusive()) {
+                        return new StageTable(i, new int[0], 0);
+                    }
+                    fixed.add(i);
+                }
+            }
+            int[] candidates = new int[fixed.size() + floatingEventIndexes.length];
+            for (int i = 0; i < fixed.size(); i++) {
+                candidates[i] = fixed.get(i);
+            }
+            System.arraycopy(floatingEventIndexes, 0, candidates, fixed.size(), floatingEventIndexes.length);
+            return new StageTable(-1, candidates, fixed.size());
+        }
+
+        /**
+         * Number of enemies whose min stage is at most {@code stage}.
+         */
+        int enemiesUpToStage(int stage) {
+            int lo = 0;
+            int hi = enemyMinStages.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (enemyMinStages[mid] <= stage) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Events eligible at one (stage, run length): either a single exclusive event, or the
+     * stage's fixed events (in config order) followed by every floating event.
+     */
+    static final class StageTable {
+        private final int exclusive;
+        private final int[] candidates;
+        private final int fixedCount;
+
+        StageTable(int exclusive, int[] candidates, int fixedCount) {
+            this.exclusive = exclusive;
+            this.candidates = candidates;
+            this.fixedCount = fixedCount;
+        }
+
+        boolean isFixed(int eventIndex) {
+            for (int i = 0; i < fixedCount; i++) {
+                if (candidates[i] == eventIndex) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * What one battle round did; see {@link #playRound}.
+     */
+    static final class RoundOutcome {
+        int statusDamage;
+        // "stun" or "freeze" if the player lost the turn, else null
+        String skippedStatus;
+        EnemySkill usedSkill;
+        boolean statusApplied;
+        BattleAction enemyAction;
+        int advantage;
+        int playerDamage;
+        int enemyDamage;
+        boolean playerCrit;
+        boolean enemyCrit;
+        boolean playerDodged;
+        boolean enemyDodged;
+    }
+
+    /**
+     * What applying an event choice did; see {@link #applyChoiceEffects}.
+     */
+    static final class ChoiceOutcome {
+        int goldChange;
+        int healthChange;
+        String resultText;
+        Equipment granted;
+        boolean itemGained;
+    }
+
+    /**
+     * Summed stat bonuses of a set of equipped items.
+     */
+    static final class EquipmentBonus {
+        private final int attack;
+        private final int defense;
+        private final int health;
+        private final int magic;
+
+        EquipmentBonus(Equipment... items) {
+            int a = 0;
+            int d = 0;
+            int h = 0;
+            int m = 0;
+            for (Equipment item : items) {
+                if (item != null) {
+                    a += item.getAttackBonus();
+                    d += item.getDefenseBonus();
+                    h += item.getHealthBonus();
+                    m += item.getMagicBonus();
+                }
+            }
+            this.attack = a;
+            this.defense = d;
+            this.health = h;
+            this.magic = m;
+        }
     }
 
-    private static class GameSession {
+    static class GameSession {
         private final String playerName;
         private int gold;
         private int health;
@@ -3625,10 +4147,17 @@ public class StrategyGameManager {
         private String equippedWeapon;
         private String equippedArmor;
         private String equippedAccessory;
+        // Derived from the equipped ids; cleared whenever gear changes (not persisted)
+        private EquipmentBonus cachedEquipmentBonus;
         
         // Event tracking for weighted randomization
         private final List<String> visitedEvents;
+        private final java.util.Set<String> visitedEventSet = new java.util.HashSet<String>();
         private String lastEventId;
+        // Bitset view of visitedEvents for the content it was built against (see visitedMask)
+        private Object visitedMaskOwner;
+        private BitSet visitedMask;
+        private int visitedMaskCount;
         
         // Multi-round battle tracking
         private int currentEnemyHp;
@@ -3729,17 +4258,19 @@ public class StrategyGameManager {
         
         // Equipment management
         String getEquippedWeapon() { return equippedWeapon; }
-        void setEquippedWeapon(String weapon) { this.equippedWeapon = weapon; }
+        void setEquippedWeapon(String weapon) { this.equippedWeapon = weapon; this.cachedEquipmentBonus = null; }
         String getEquippedArmor() { return equippedArmor; }
-        void setEquippedArmor(String armor) { this.equippedArmor = armor; }
+        void setEquippedArmor(String armor) { this.equippedArmor = armor; this.cachedEquipmentBonus = null; }
         String getEquippedAccessory() { return equippedAccessory; }
-        void setEquippedAccessory(String accessory) { this.equippedAccessory = accessory; }
+        void setEquippedAccessory(String accessory) { this.equippedAccessory = accessory; this.cachedEquipmentBonus = null; }
+        EquipmentBonus getCachedEquipmentBonus() { return cachedEquipmentBonus; }
+        void setCachedEquipmentBonus(EquipmentBonus bonus) { this.cachedEquipmentBonus = bonus; }
         
         // Event tracking
         List<String> getVisitedEvents() { return visitedEvents; }
-        boolean hasVisitedEvent(String eventId) { return visitedEvents.contains(eventId); }
+        boolean hasVisitedEvent(String eventId) { return visitedEventSet.contains(eventId); }
         void addVisitedEvent(String eventId) { 
-            if (!visitedEvents.contains(eventId)) {
+            if (visitedEventSet.add(eventId)) {
                 visitedEvents.add(eventId);
             }
             this.lastEventId = eventId;
@@ -3933,7 +4464,7 @@ public class StrategyGameManager {
         }
     }
 
-    private static class GameEvent {
+    static class GameEvent {
         private final String id;
         private final String name;
         private final List<String> description;
@@ -4032,7 +4563,7 @@ public class StrategyGameManager {
      * Represents requirements for an event or choice.
      * Can require items, gold, or other conditions.
      */
-    private static class EventRequirement {
+    static class EventRequirement {
         private final String requiredItem;
         private final int requiredItemAmount;
         private final int requiredGold;
@@ -4111,7 +4642,7 @@ public class StrategyGameManager {
         }
     }
 
-    private static class EventChoice {
+    static class EventChoice {
         private final String text;
         private final String resultText;
         private final String resultTextAlt; // Alternative result when requirement not met
@@ -4218,7 +4749,7 @@ public class StrategyGameManager {
         boolean isRestoreFull() { return restoreFull; }
     }
 
-    private static class ShopItem {
+    static class ShopItem {
         private final String id;
         private final String name;
         private final int price;
@@ -4270,7 +4801,7 @@ public class StrategyGameManager {
      * Represents an item currently offered in the shop with potential discount.
      * Can be either a ShopItem (consumable) or Equipment.
      */
-    private static class ShopOffering {
+    static class ShopOffering {
         private final String id;
         private final String type; // "item" or "equipment"
         private final int discount; // Discount percentage
@@ -4295,7 +4826,7 @@ public class StrategyGameManager {
         }
     }
 
-    private static class BattleEnemy {
+    static class BattleEnemy {
         private final String id;
         private final String name;
         private final String description;
@@ -4397,7 +4928,7 @@ public class StrategyGameManager {
     /**
      * Represents an enemy special skill/ability.
      */
-    private static class EnemySkill {
+    static class EnemySkill {
         private final String id;
         private final String name;
         private final String description;
@@ -4450,7 +4981,7 @@ public class StrategyGameManager {
     /**
      * Represents an equippable item that provides stat bonuses.
      */
-    private static class Equipment {
+    static class Equipment {
         private final String id;
         private final String name;
         private final String slot; // weapon, armor, accessory
@@ -0,0 +1,217 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-behind store for strategy game sessions, one compact text file per player.
+ *
+ * <p>{@link #markDirty} only remembers the player. The first mark opens a coalescing
+ * window; when it closes, every session marked in the meantime is encoded once on the main
+ * thread and the records are written by an async task (temp file plus atomic move), so a
+ * burst of saves — a ten-round battle, a shopping spree — costs one write per player.
+ * {@link #flush(String)} and {@link #flushAll()} write synchronously for quit, reload and
+ * shutdown. Reads see records still waiting for the writer.</p>
+ *
+ * <p>Everything except the writer itself is main-thread only.</p>
+ */
+class StrategySessionStore {
+
+    private static final String SUFFIX = ".dat";
+
+    /**
+     * Encodes a player's session; {@code null} means the session is gone and the file should be deleted.
+     */
+    interface Encoder {
+        String encode(String playerName);
+    }
+
+    private final JavaPlugin plugin;
+    private final File dir;
+    private final long windowTicks;
+    private final Encoder encoder;
+
+    private final Set<String> dirty = new LinkedHashSet<String>();
+    private BukkitTask windowTask;
+
+    /** Encoded records waiting for the writer; a null value deletes the file. */
+    private Map<String, String> pending = new HashMap<String, String>();
+    private final Object pendingLock = new Object();
+    private final Object ioLock = new Object();
+
+    StrategySessionStore(JavaPlugin plugin, File dir, long windowTicks, Encoder encoder) {
+        this.plugin = plugin;
+        this.dir = dir;
+        this.windowTicks = Math.max(0L, windowTicks);
+        this.encoder = encoder;
+        if (!dir.exists() && !dir.mkdirs()) {
+            plugin.getLogger().warning("無法創建數據目錄: " + dir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * The stored record for a player, or null if there is none.
+     */
+    String read(String playerName) {
+        synchronized (pendingLock) {
+            if (pending.containsKey(playerName)) {
+                return pending.get(playerName);
+            }
+        }
+        synchronized (ioLock) {
+            File file = fileFor(playerName);
+            if (!file.isFile()) {
+                return null;
+            }
+            try {
+                return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                plugin.getLogger().warning("無法讀取遊戲會話: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Schedule the player's session to be written when the current window closes.
+     */
+    void markDirty(String playerName) {
+        if (!dirty.add(playerName) || windowTask != null) {
+            return;
+        }
+        if (windowTicks == 0L) {
+            encodeDirty();
+            writeAsync();
+            return;
+        }
+        windowTask = Bukkit.getScheduler().runTaskLater(plugin, new Runnable() {
+            public void run() {
+                windowTask = null;
+                encodeDirty();
+                writeAsync();
+            }
+        }, windowTicks);
+    }
+
+    /**
+     * Drop the player's record, superseding anything still waiting to be written.
+     */
+    void delete(String playerName) {
+        dirty.remove(playerName);
+        synchronized (pendingLock) {
+            pending.put(playerName, null);
+        }
+        writeAsync();
+    }
+
+    /**
+     * Write the player's record now if it has unsaved changes.
+     */
+    void flush(String playerName) {
+        if (dirty.remove(playerName)) {
+            String record = encoder.encode(playerName);
+            synchronized (pendingLock) {
+                pending.put(playerName, record);
+            }
+        }
+        write();
+    }
+
+    /**
+     * Write every unsaved record now.
+     */
+    void flushAll() {
+        if (windowTask != null) {
+            windowTask.cancel();
+            windowTask = null;
+        }
+        encodeDirty();
+        write();
+    }
+
+    private void encodeDirty() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Map<String, String> records = new HashMap<String, String>();
+        for (String playerName : dirty) {
+            records.put(playerName, encoder.encode(playerName));
+        }
+        dirty.clear();
+        synchronized (pendingLock) {
+            pending.putAll(records);
+        }
+    }
+
+    private void writeAsync() {
+        if (!plugin.isEnabled()) {
+            write();
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            public void run() {
+                write();
+            }
+        });
+    }
+
+    private void write() {
+        // Hold the io lock across the swap so an older batch can never overwrite a newer one.
+        synchronized (ioLock) {
+            Map<String, String> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new HashMap<String, String>();
+            }
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                File file = fileFor(entry.getKey());
+                if (entry.getValue() == null) {
+                    if (file.exists() && !file.delete()) {
+                        plugin.getLogger().warning("無法清除遊戲會話: " + file.getAbsolutePath());
+                    }
+                    continue;
+                }
+                writeRecord(file, entry.getValue());
+            }
+        }
+    }
+
+    private void writeRecord(File file, String record) {
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(record.getBytes(StandardCharsets.UTF_8));
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("無法保存遊戲會話: " + e.getMessage());
+        }
+    }
+
+    private File fileFor(String playerName) {
+        return new File(dir, playerName + SUFFIX);
+    }
+}
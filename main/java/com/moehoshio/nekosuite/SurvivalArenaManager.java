@@ -2,32 +2,35 @@ package com.moehoshio.nekosuite;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.entity.Monster;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
-import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -36,13 +39,26 @@ import java.util.UUID;
 
 /**
  * Survival Arena Game Module - Wave-based monster defense game.
- * 
+ *
  * Features:
  * - Multiple waves of progressively harder monsters
  * - Arena-based gameplay
  * - Score tracking and rewards
  * - Configurable wave composition
  * - Multi-player support
+ *
+ * Each configured arena runs at most one instance at a time. An instance holds its own
+ * players (up to the configured capacity), mobs, wave deadlines and per-player scores.
+ * Players queue for an arena and a matchmaker puts them into a waiting instance or opens
+ * one on a free arena. One engine callback on the shared {@link GameLoopScheduler} drives
+ * every instance: wave cooldowns and timeouts are tick deadlines instead of per-session
+ * BukkitRunnables, and the callback is dropped when no instance, queue entry or tracked
+ * mob is left. Without configured arenas a solo instance is opened at the player's
+ * position, as before.
+ *
+ * Arena mobs carry a persistent data tag and are indexed mob -> instance. Deaths and chunk
+ * unloads are reported by the plugin's listeners, so wave completion is event-driven; a slow
+ * sweep inside the engine tick only catches mobs removed without an event.
  */
 public class SurvivalArenaManager {
 
@@ -52,6 +68,9 @@ public class SurvivalArenaManager {
     private final File configFile;
     private final File storageDir;
     private final Random random = new Random();
+    private static final int SPAWN_ATTEMPTS = 8;
+    private static final String ANY_ARENA = "default";
+    private SafeLocationService locationService;
 
     // Game configuration
     private boolean enabled = true;
@@ -65,22 +84,50 @@ public class SurvivalArenaManager {
     private int arenaRadius = 20;
     private int waveTimeout = 120; // Seconds before wave times out (0 = no timeout)
     private boolean highlightMobs = true; // Make arena mobs glow
+    private int mobSafetyCheckSeconds = 15; // Safety-net sweep for mobs removed without an event
+    private int spawnPerTick = 4; // Mobs spawned per tick across all arenas
+    private int spawnPointCount = 24; // Pre-validated spawn points cached per arena
+    private int spawnRetries = 3; // Extra points tried when a spawn fails
+    private int instanceCapacity = 4; // Players per arena instance
+    private int joinWindowSeconds = 10; // Wait for more players before an instance starts
     private List<WaveConfig> waveConfigs = new ArrayList<WaveConfig>();
     private List<String> commandRewards = new ArrayList<String>();
 
-    // Active arena sessions
-    private final Map<String, ArenaSession> activeSessions = new HashMap<String, ArenaSession>();
     // Arena locations (configured spawn points)
-    private final Map<String, Location> arenaLocations = new HashMap<String, Location>();
+    private final Map<String, Location> arenaLocations = new LinkedHashMap<String, Location>();
+
+    // Instance engine: arena id -> running instance, player -> instance, queue of waiting players
+    private final Map<String, ArenaInstance> arenaInstances = new HashMap<String, ArenaInstance>();
+    private final List<ArenaInstance> instances = new ArrayList<ArenaInstance>();
+    private final Map<String, ArenaInstance> playerInstances = new HashMap<String, ArenaInstance>();
+    private final Deque<QueueEntry> queue = new ArrayDeque<QueueEntry>();
+    private GameLoopScheduler.Handle engineTask;
+    private long currentTick;
+    private int nextInstanceId = 1;
+
+    // Reverse index: arena mob -> owning instance
+    private final Map<UUID, ArenaInstance> mobOwners = new HashMap<UUID, ArenaInstance>();
+    private final NamespacedKey mobKey;
+    // Arena id -> validated spawn points, shared by every game in that arena
+    private final Map<String, List<Location>> spawnPointCache = new HashMap<String, List<Location>>();
+    // Waves being spawned a few mobs per tick
+    private final List<SpawnJob> spawnJobs = new ArrayList<SpawnJob>();
+    private int spawnedWaves;
+    private long spawnNanosTotal;
+    private long spawnNanosMax;
+    private int spawnFailures;
 
     // Callback for opening games menu (set by plugin)
     private java.util.function.Consumer<Player> openGamesMenuCallback;
+    private LeaderboardService leaderboardService;
+    private GameLoopScheduler gameLoop;
 
     public SurvivalArenaManager(JavaPlugin plugin, Messages messages, File configFile, MenuLayout menuLayout) {
         this.plugin = plugin;
         this.messages = messages;
         this.configFile = configFile;
         this.menuLayout = menuLayout;
+        this.mobKey = new NamespacedKey(plugin, "arena_mob");
         YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
         String dataDir = config.getString("storage.data_dir", "userdata");
         storageDir = new File(plugin.getDataFolder(), dataDir);
@@ -102,6 +149,12 @@ public class SurvivalArenaManager {
         arenaRadius = config.getInt("game.arena_radius", 20);
         waveTimeout = config.getInt("game.wave_timeout", 120);
         highlightMobs = config.getBoolean("game.highlight_mobs", true);
+        mobSafetyCheckSeconds = Math.max(1, config.getInt("game.mob_safety_check_seconds", 15));
+        spawnPerTick = Math.max(1, config.getInt("game.spawn_per_tick", 4));
+        spawnPointCount = Math.max(1, config.getInt("game.spawn_points", 24));
+        spawnRetries = Math.max(0, config.getInt("game.spawn_retries", 3));
+        instanceCapacity = Math.max(1, config.getInt("instances.capacity", 4));
+        joinWindowSeconds = Math.max(0, config.getInt("instances.join_window_seconds", 10));
         commandRewards = config.getStringList("rewards.commands");
 
         // Load wave configurations
@@ -150,6 +203,20 @@ public class SurvivalArenaManager {
         return enabled;
     }
 
+    /**
+     * Set the service used to validate mob spawn spots.
+     */
+    public void setLocationService(SafeLocationService locationService) {
+        this.locationService = locationService;
+    }
+
+    /**
+     * Set the shared game loop that runs the instance engine.
+     */
+    public void setGameLoop(GameLoopScheduler gameLoop) {
+        this.gameLoop = gameLoop;
+    }
+
     /**
      * Set callback for opening games menu.
      */
@@ -157,17 +224,45 @@ public class SurvivalArenaManager {
         this.openGamesMenuCallback = callback;
     }
 
+    /**
+     * Set the service that records finished rounds for the leaderboards.
+     */
+    public void setLeaderboardService(LeaderboardService leaderboardService) {
+        this.leaderboardService = leaderboardService;
+    }
+
+    /**
+     * End every running instance and remove its mobs. Called before reload and on disable.
+     */
+    public void shutdown() {
+        for (ArenaInstance instance : new ArrayList<ArenaInstance>(instances)) {
+            endInstance(instance, false);
+        }
+        queue.clear();
+        spawnJobs.clear();
+        if (engineTask != null) {
+            engineTask.cancel();
+            engineTask = null;
+        }
+        if (spawnedWaves > 0) {
+            plugin.getLogger().info("Arena spawning: " + spawnedWaves + " waves, avg "
+                    + (spawnNanosTotal / spawnedWaves / 1000L) + "us, max " + (spawnNanosMax / 1000L)
+                    + "us spawn work per wave, " + spawnFailures + " failed spawns.");
+        }
+    }
+
     // ============ Public API ============
 
     /**
-     * Start a new arena game for a player.
+     * Queue a player for any free arena.
      */
     public void startGame(Player player) {
-        startGame(player, "default");
+        startGame(player, ANY_ARENA);
     }
 
     /**
-     * Start a new arena game at a specific arena.
+     * Queue a player for a specific arena ("default" or an unknown id means any arena).
+     * Without configured arenas a solo game starts at the player's position.
      */
     public void startGame(Player player, String arenaId) {
         if (!enabled) {
@@ -176,64 +271,85 @@ public class SurvivalArenaManager {
         }
 
         String playerName = player.getName();
-        if (activeSessions.containsKey(playerName)) {
+        if (playerInstances.containsKey(playerName) || findQueueEntry(playerName) != null) {
             player.sendMessage(messages.format(player, "arena.already_in_game"));
             return;
         }
 
-        Location arenaLoc = arenaLocations.get(arenaId);
-        if (arenaLoc == null) {
+        if (arenaLocations.isEmpty()) {
             // Use player's current location as arena center
-            arenaLoc = player.getLocation().clone();
+            ArenaInstance instance = openInstance(null, player.getLocation().clone());
+            addPlayer(instance, player);
+            beginInstance(instance);
+            return;
         }
 
-        // Create game session
-        ArenaSession session = new ArenaSession(playerName, arenaLoc, maxWaves);
-        activeSessions.put(playerName, session);
-
-        // Teleport player to arena
-        player.teleport(arenaLoc);
-
-        // Send game start message
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("max_waves", String.valueOf(maxWaves));
-        map.put("cooldown", String.valueOf(waveCooldown));
-        player.sendMessage(messages.format(player, "arena.game_started", map));
-
-        // Start first wave after cooldown
-        startNextWave(player, session);
+        String wanted = arenaId != null && !ANY_ARENA.equals(arenaId) && arenaLocations.containsKey(arenaId) ? arenaId : null;
+        queue.add(new QueueEntry(playerName, wanted));
+        if (!matchmake()) {
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("position", String.valueOf(queue.size()));
+            player.sendMessage(messages.format(player, "arena.queued", map));
+        }
+        ensureEngine();
     }
 
     /**
-     * Handle mob kill by player in arena.
+     * Handle the death of any entity; only indexed arena mobs are counted. A kill by a player
+     * of the instance scores for that player; any other death (sunlight, outsiders) scores for
+     * every player of the instance.
      */
-    public void onMobKill(Player player, Entity entity) {
-        String playerName = player.getName();
-        ArenaSession session = activeSessions.get(playerName);
-        if (session == null || session.isEnded()) {
+    public void onEntityDeath(Entity entity, Player killer) {
+        ArenaInstance instance = mobOwners.remove(entity.getUniqueId());
+        if (instance == null) {
             return;
         }
-
-        // Check if this mob belongs to the arena
-        if (session.isArenaMob(entity.getUniqueId())) {
-            session.removeMob(entity.getUniqueId());
-            int points = calculateKillScore(session.getCurrentWave());
-            session.addScore(points);
-            session.incrementKills();
-
+        instance.removeMob(entity.getUniqueId());
+        if (instance.isEnded()) {
+            return;
+        }
+        int points = calculateKillScore(instance.getCurrentWave());
+        PlayerStats killerStats = killer == null ? null : instance.getStats(killer.getName());
+        if (killerStats != null) {
+            killerStats.score += points;
+            killerStats.kills++;
             Map<String, String> map = new HashMap<String, String>();
             map.put("points", String.valueOf(points));
-            map.put("total", String.valueOf(session.getScore()));
-            player.sendMessage(messages.format(player, "arena.mob_killed", map));
-
-            // Check if wave is complete
-            if (session.getMobCount() == 0) {
-                // Cancel mob check task to prevent duplicate completeWave call
-                if (session.getMobCheckTask() != null) {
-                    session.getMobCheckTask().cancel();
-                    session.setMobCheckTask(null);
+            map.put("total", String.valueOf(killerStats.score));
+            killer.sendMessage(messages.format(killer, "arena.mob_killed", map));
+        } else {
+            for (Player player : onlinePlayers(instance)) {
+                PlayerStats stats = instance.getStats(player.getName());
+                stats.score += points;
+                stats.kills++;
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("points", String.valueOf(points));
+                map.put("total", String.valueOf(stats.score));
+                map.put("count", "1");
+                player.sendMessage(messages.format(player, "arena.mob_died_environment", map));
+            }
+        }
+        checkWaveComplete(instance);
+    }
+
+    /**
+     * Remove arena mobs from a chunk that is being unloaded, so they are neither saved with
+     * the chunk nor left behind. Tagged mobs without an instance (left over from a crash) are
+     * removed as well. Escaped mobs give no score.
+     */
+    public void onChunkUnload(Chunk chunk) {
+        for (Entity entity : chunk.getEntities()) {
+            if (!(entity instanceof LivingEntity) || entity instanceof Player
+                    || !entity.getPersistentDataContainer().has(mobKey, PersistentDataType.STRING)) {
+                continue;
+            }
+            ArenaInstance instance = mobOwners.remove(entity.getUniqueId());
+            entity.remove();
+            if (instance != null) {
+                instance.removeMob(entity.getUniqueId());
+                if (!instance.isEnded()) {
+                    checkWaveComplete(instance);
                 }
-                completeWave(player, session);
             }
         }
     }
@@ -242,168 +358,435 @@ public class SurvivalArenaManager {
      * Handle player death in arena.
      */
     public void onPlayerDeath(Player player) {
-        String playerName = player.getName();
-        ArenaSession session = activeSessions.get(playerName);
-        if (session == null || session.isEnded()) {
+        ArenaInstance instance = playerInstances.get(player.getName());
+        if (instance == null || instance.isEnded()) {
             return;
         }
-
-        endGame(player, false);
+        leaveInstance(instance, player, false);
     }
 
     /**
-     * End the game.
+     * Leave the arena (or the queue).
      */
     public void endGame(Player player) {
-        endGame(player, false);
+        String playerName = player.getName();
+        QueueEntry entry = findQueueEntry(playerName);
+        if (entry != null) {
+            queue.remove(entry);
+            player.sendMessage(messages.format(player, "arena.queue_left"));
+            return;
+        }
+        ArenaInstance instance = playerInstances.get(playerName);
+        if (instance == null) {
+            player.sendMessage(messages.format(player, "arena.no_active_game"));
+            return;
+        }
+        leaveInstance(instance, player, false);
     }
 
-    private void endGame(Player player, boolean completed) {
-        String playerName = player.getName();
-        ArenaSession session = activeSessions.get(playerName);
-        if (session == null) {
+    /**
+     * Show game status.
+     */
+    public void showStatus(Player player) {
+        QueueEntry entry = findQueueEntry(player.getName());
+        if (entry != null) {
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("position", String.valueOf(queuePosition(entry)));
+            player.sendMessage(messages.format(player, "arena.queued", map));
+            return;
+        }
+        ArenaInstance instance = playerInstances.get(player.getName());
+        if (instance == null) {
             player.sendMessage(messages.format(player, "arena.no_active_game"));
             return;
         }
+        player.sendMessage(messages.format(player, "arena.status", statusMap(player, instance)));
+    }
+
+    /**
+     * Check if player is in an active game.
+     */
+    public boolean isInGame(String playerName) {
+        return playerInstances.containsKey(playerName);
+    }
+
+    /**
+     * Open the game menu.
+     */
+    public void openMenu(Player player) {
+        if (!enabled) {
+            player.sendMessage(messages.format(player, "arena.disabled"));
+            return;
+        }
 
-        session.setEnded(true);
+        ArenaInstance instance = playerInstances.get(player.getName());
+        if (instance != null && !instance.isEnded()) {
+            openStatusMenu(player, instance);
+        } else {
+            openStartMenu(player);
+        }
+    }
+
+    // ============ Instance Engine ============
+
+    private void ensureEngine() {
+        if (engineTask != null) {
+            return;
+        }
+        engineTask = gameLoop.every("arena", 1L, self -> tickEngine());
+    }
 
-        // Cancel any running tasks
-        if (session.getWaveTask() != null) {
-            session.getWaveTask().cancel();
+    /**
+     * One engine tick: deadlines of every instance, queued players, spawn jobs and, now and
+     * then, the mob safety sweep.
+     */
+    private void tickEngine() {
+        currentTick++;
+        if (!queue.isEmpty() && currentTick % 20L == 0) {
+            matchmake();
+        }
+        for (ArenaInstance instance : new ArrayList<ArenaInstance>(instances)) {
+            if (instance.isEnded() || currentTick < instance.getDeadline()) {
+                continue;
+            }
+            switch (instance.getState()) {
+                case WAITING:
+                    beginInstance(instance);
+                    break;
+                case COOLDOWN:
+                    spawnWave(instance);
+                    break;
+                case FIGHTING:
+                    timeoutWave(instance);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!spawnJobs.isEmpty()) {
+            runSpawnJobs();
         }
-        if (session.getMobCheckTask() != null) {
-            session.getMobCheckTask().cancel();
+        if (!mobOwners.isEmpty() && currentTick % (mobSafetyCheckSeconds * 20L) == 0) {
+            sweepMobs();
         }
-        if (session.getWaveTimeoutTask() != null) {
-            session.getWaveTimeoutTask().cancel();
+        if (instances.isEmpty() && queue.isEmpty() && spawnJobs.isEmpty() && mobOwners.isEmpty()) {
+            engineTask.cancel();
+            engineTask = null;
         }
+    }
 
-        // Remove all arena mobs
-        clearArenaMobs(session);
+    /**
+     * Place queued players into waiting instances or open instances on free arenas.
+     * Returns true if the most recently queued player was placed.
+     */
+    private boolean matchmake() {
+        QueueEntry last = queue.peekLast();
+        boolean lastPlaced = false;
+        Iterator<QueueEntry> it = queue.iterator();
+        while (it.hasNext()) {
+            QueueEntry entry = it.next();
+            Player player = Bukkit.getPlayerExact(entry.playerName);
+            if (player == null) {
+                it.remove();
+                continue;
+            }
+            ArenaInstance instance = findJoinable(entry.arenaId);
+            if (instance == null) {
+                String arenaId = findFreeArena(entry.arenaId);
+                if (arenaId == null) {
+                    continue;
+                }
+                instance = openInstance(arenaId, arenaLocations.get(arenaId));
+                instance.setDeadline(currentTick + joinWindowSeconds * 20L);
+            }
+            it.remove();
+            addPlayer(instance, player);
+            if (entry == last) {
+                lastPlaced = true;
+            }
+            if (instance.getPlayerCount() >= instanceCapacity) {
+                instance.setDeadline(currentTick);
+            }
+        }
+        return lastPlaced;
+    }
 
-        // Calculate and grant rewards
-        if (completed || session.getScore() > 0) {
-            grantRewards(player, session);
+    private ArenaInstance findJoinable(String arenaId) {
+        for (ArenaInstance instance : instances) {
+            if (instance.getState() == InstanceState.WAITING && instance.getPlayerCount() < instanceCapacity
+                    && (arenaId == null || arenaId.equals(instance.getArenaId()))) {
+                return instance;
+            }
         }
+        return null;
+    }
 
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("waves", String.valueOf(session.getCurrentWave()));
-        map.put("score", String.valueOf(session.getScore()));
-        map.put("kills", String.valueOf(session.getTotalKills()));
+    private String findFreeArena(String arenaId) {
+        if (arenaId != null) {
+            return arenaInstances.containsKey(arenaId) ? null : arenaId;
+        }
+        for (String id : arenaLocations.keySet()) {
+            if (!arenaInstances.containsKey(id)) {
+                return id;
+            }
+        }
+        return null;
+    }
 
-        if (completed) {
-            player.sendMessage(messages.format(player, "arena.game_completed", map));
-        } else {
-            player.sendMessage(messages.format(player, "arena.game_over", map));
+    private QueueEntry findQueueEntry(String playerName) {
+        for (QueueEntry entry : queue) {
+            if (entry.playerName.equals(playerName)) {
+                return entry;
+            }
         }
+        return null;
+    }
 
-        // Remove session
-        activeSessions.remove(playerName);
+    private int queuePosition(QueueEntry target) {
+        int position = 1;
+        for (QueueEntry entry : queue) {
+            if (entry == target) {
+                return position;
+            }
+            position++;
+        }
+        return position;
     }
 
-    /**
-     * Show game status.
-     */
-    public void showStatus(Player player) {
-        String playerName = player.getName();
-        ArenaSession session = activeSessions.get(playerName);
-        if (session == null) {
-            player.sendMessage(messages.format(player, "arena.no_active_game"));
-            return;
+    private ArenaInstance openInstance(String arenaId, Location center) {
+        ArenaInstance instance = new ArenaInstance(nextInstanceId++, arenaId, center, maxWaves);
+        instances.add(instance);
+        if (arenaId != null) {
+            arenaInstances.put(arenaId, instance);
         }
+        ensureEngine();
+        return instance;
+    }
 
+    private void addPlayer(ArenaInstance instance, Player player) {
+        instance.addPlayer(player.getName());
+        playerInstances.put(player.getName(), instance);
         Map<String, String> map = new HashMap<String, String>();
-        map.put("wave", String.valueOf(session.getCurrentWave()));
-        map.put("max_waves", String.valueOf(session.getMaxWaves()));
-        map.put("score", String.valueOf(session.getScore()));
-        map.put("kills", String.valueOf(session.getTotalKills()));
-        map.put("remaining", String.valueOf(session.getMobCount()));
-
-        player.sendMessage(messages.format(player, "arena.status", map));
+        map.put("player", player.getName());
+        map.put("arena", instance.getArenaId() == null ? "-" : instance.getArenaId());
+        map.put("players", String.valueOf(instance.getPlayerCount()));
+        map.put("capacity", String.valueOf(instanceCapacity));
+        map.put("seconds", String.valueOf(Math.max(0L, (instance.getDeadline() - currentTick) / 20L)));
+        if (instance.getArenaId() != null) {
+            for (Player member : onlinePlayers(instance)) {
+                String key = member == player ? "arena.matched" : "arena.player_joined";
+                member.sendMessage(messages.format(member, key, map));
+            }
+        }
     }
 
     /**
-     * Check if player is in an active game.
+     * Start a waiting instance: bring its players in and schedule the first wave.
      */
-    public boolean isInGame(String playerName) {
-        return activeSessions.containsKey(playerName);
+    private void beginInstance(ArenaInstance instance) {
+        List<Player> players = onlinePlayers(instance);
+        if (players.isEmpty()) {
+            endInstance(instance, false);
+            return;
+        }
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("max_waves", String.valueOf(maxWaves));
+        map.put("cooldown", String.valueOf(waveCooldown));
+        for (Player player : players) {
+            // Teleport player to arena
+            player.teleport(instance.getArenaCenter());
+            player.sendMessage(messages.format(player, "arena.game_started", map));
+        }
+        // Start first wave after cooldown
+        startNextWave(instance);
     }
 
     /**
-     * Open the game menu.
+     * Remove one player from an instance; the instance ends when its last player is gone.
+     * Players who quit the server get no rewards, as before.
      */
-    public void openMenu(Player player) {
-        if (!enabled) {
-            player.sendMessage(messages.format(player, "arena.disabled"));
+    private void leaveInstance(ArenaInstance instance, Player player, boolean quit) {
+        PlayerStats stats = instance.removePlayer(player.getName());
+        playerInstances.remove(player.getName());
+        if (stats != null && !quit && instance.getState() != InstanceState.WAITING) {
+            finishPlayer(instance, player, stats, false);
+        }
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("player", player.getName());
+        for (Player member : onlinePlayers(instance)) {
+            member.sendMessage(messages.format(member, "arena.player_left", map));
+        }
+        if (instance.getPlayerCount() == 0) {
+            endInstance(instance, false);
+        }
+    }
+
+    private void endInstance(ArenaInstance instance, boolean completed) {
+        if (instance.isEnded()) {
             return;
         }
+        instance.setState(InstanceState.ENDED);
+
+        // Remove all arena mobs
+        clearArenaMobs(instance);
+
+        for (String playerName : new ArrayList<String>(instance.getPlayerNames())) {
+            PlayerStats stats = instance.removePlayer(playerName);
+            playerInstances.remove(playerName);
+            Player player = Bukkit.getPlayerExact(playerName);
+            if (player != null && stats != null) {
+                finishPlayer(instance, player, stats, completed);
+            }
+        }
+        instances.remove(instance);
+        if (instance.getArenaId() != null) {
+            arenaInstances.remove(instance.getArenaId());
+        }
+        if (!queue.isEmpty()) {
+            matchmake();
+        }
+    }
+
+    private void finishPlayer(ArenaInstance instance, Player player, PlayerStats stats, boolean completed) {
+        // Calculate and grant rewards
+        if (completed || stats.score > 0) {
+            grantRewards(player, instance, stats);
+        }
+        if (leaderboardService != null) {
+            leaderboardService.record("arena", player.getName(), stats.score, completed);
+        }
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("waves", String.valueOf(instance.getCurrentWave()));
+        map.put("score", String.valueOf(stats.score));
+        map.put("kills", String.valueOf(stats.kills));
 
-        ArenaSession session = activeSessions.get(player.getName());
-        if (session != null && !session.isEnded()) {
-            openStatusMenu(player, session);
+        if (completed) {
+            player.sendMessage(messages.format(player, "arena.game_completed", map));
         } else {
-            openStartMenu(player);
+            player.sendMessage(messages.format(player, "arena.game_over", map));
+        }
+    }
+
+    private List<Player> onlinePlayers(ArenaInstance instance) {
+        List<Player> players = new ArrayList<Player>();
+        for (String name : instance.getPlayerNames()) {
+            Player player = Bukkit.getPlayerExact(name);
+            if (player != null) {
+                players.add(player);
+            }
         }
+        return players;
+    }
+
+    private Map<String, String> statusMap(Player player, ArenaInstance instance) {
+        PlayerStats stats = instance.getStats(player.getName());
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("wave", String.valueOf(instance.getCurrentWave()));
+        map.put("max_waves", String.valueOf(instance.getMaxWaves()));
+        map.put("score", String.valueOf(stats == null ? 0 : stats.score));
+        map.put("kills", String.valueOf(stats == null ? 0 : stats.kills));
+        map.put("remaining", String.valueOf(instance.getMobCount()));
+        return map;
     }
 
     // ============ Wave Management ============
 
-    private void startNextWave(Player player, ArenaSession session) {
-        if (session.getCurrentWave() >= session.getMaxWaves()) {
-            endGame(player, true);
+    private void startNextWave(ArenaInstance instance) {
+        if (instance.getCurrentWave() >= instance.getMaxWaves()) {
+            endInstance(instance, true);
             return;
         }
 
-        session.incrementWave();
-        int wave = session.getCurrentWave();
+        instance.incrementWave();
+        int wave = instance.getCurrentWave();
 
         Map<String, String> map = new HashMap<String, String>();
         map.put("wave", String.valueOf(wave));
         map.put("cooldown", String.valueOf(waveCooldown));
-        player.sendMessage(messages.format(player, "arena.wave_starting", map));
-
-        // Schedule wave start after cooldown
-        BukkitTask task = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!player.isOnline() || session.isEnded()) {
-                    return;
-                }
-                spawnWave(player, session);
-            }
-        }.runTaskLater(plugin, waveCooldown * 20L);
+        for (Player player : onlinePlayers(instance)) {
+            player.sendMessage(messages.format(player, "arena.wave_starting", map));
+        }
 
-        session.setWaveTask(task);
+        // Wave starts after cooldown
+        instance.setState(InstanceState.COOLDOWN);
+        instance.setDeadline(currentTick + waveCooldown * 20L);
     }
 
-    private void spawnWave(Player player, ArenaSession session) {
-        int wave = session.getCurrentWave();
+    private void spawnWave(ArenaInstance instance) {
+        int wave = instance.getCurrentWave();
         WaveConfig config = getWaveConfig(wave);
-
-        Location center = session.getArenaCenter();
         int mobCount = config.getMobCount();
 
-        // Apply wave scaling
-        double healthScale = Math.pow(healthMultiplier, wave - 1);
-        double damageScale = Math.pow(damageMultiplier, wave - 1);
-
         Map<String, String> map = new HashMap<String, String>();
         map.put("wave", String.valueOf(wave));
         map.put("count", String.valueOf(mobCount));
-        player.sendMessage(messages.format(player, "arena.wave_spawned", map));
+        for (Player player : onlinePlayers(instance)) {
+            player.sendMessage(messages.format(player, "arena.wave_spawned", map));
+        }
 
-        // Spawn mobs
-        for (int i = 0; i < mobCount; i++) {
-            EntityType type = config.getRandomMobType(random);
-            Location spawnLoc = getRandomSpawnLocation(center);
+        // Spawn a few mobs per tick instead of the whole wave at once
+        instance.setState(InstanceState.SPAWNING);
+        instance.setDeadline(Long.MAX_VALUE);
+        spawnJobs.add(new SpawnJob(instance, config, mobCount, Math.pow(healthMultiplier, wave - 1), getSpawnPoints(instance)));
+    }
+
+    /**
+     * Spawn up to {@code spawnPerTick} mobs, round-robin over the waves being spawned.
+     */
+    private void runSpawnJobs() {
+        int budget = spawnPerTick;
+        while (budget > 0 && !spawnJobs.isEmpty()) {
+            boolean progressed = false;
+            Iterator<SpawnJob> it = spawnJobs.iterator();
+            while (it.hasNext() && budget > 0) {
+                SpawnJob job = it.next();
+                if (job.instance.isEnded()) {
+                    it.remove();
+                    continue;
+                }
+                if (job.remaining <= 0) {
+                    it.remove();
+                    finishSpawnJob(job);
+                    continue;
+                }
+                long started = System.nanoTime();
+                spawnMob(job);
+                job.spawnNanos += System.nanoTime() - started;
+                job.remaining--;
+                budget--;
+                progressed = true;
+                if (job.remaining <= 0) {
+                    it.remove();
+                    finishSpawnJob(job);
+                }
+            }
+            if (!progressed) {
+                break;
+            }
+        }
+    }
 
-            Entity entity = center.getWorld().spawnEntity(spawnLoc, type);
+    private void spawnMob(SpawnJob job) {
+        EntityType type = job.config.getRandomMobType(random);
+        for (int attempt = 0; attempt <= spawnRetries; attempt++) {
+            // Without validated points, still keep spawnRadius away from the players at the center.
+            Location spawnLoc = job.points.isEmpty()
+                    ? ringSpot(job.instance.getArenaCenter())
+                    : job.points.get(random.nextInt(job.points.size()));
+            World world = spawnLoc.getWorld();
+            if (world == null || !world.isChunkLoaded(spawnLoc.getBlockX() >> 4, spawnLoc.getBlockZ() >> 4)) {
+                continue;
+            }
+            // Another plugin may cancel the spawn; the entity is then not valid.
+            Entity entity = world.spawnEntity(spawnLoc, type);
+            if (entity == null || !entity.isValid()) {
+                continue;
+            }
             if (entity instanceof LivingEntity) {
                 LivingEntity living = (LivingEntity) entity;
                 // Scale health
                 double baseHealth = living.getMaxHealth();
-                double newHealth = Math.min(baseHealth * healthScale, 2048);
+                double newHealth = Math.min(baseHealth * job.healthScale, 2048);
                 living.setMaxHealth(newHealth);
                 living.setHealth(newHealth);
                 // Highlight arena mobs with glowing effect (using both methods for maximum visibility)
@@ -412,127 +795,99 @@ public class SurvivalArenaManager {
                     // Also apply glowing potion effect for extended duration (10 minutes = 12000 ticks)
                     living.addPotionEffect(new PotionEffect(PotionEffectType.GLOWING, 12000, 0, false, false));
                 }
+                living.setRemoveWhenFarAway(false);
             }
+            trackMob(entity, job.instance);
+            return;
+        }
+        job.failures++;
+    }
 
-            session.addMob(entity.getUniqueId());
+    private void finishSpawnJob(SpawnJob job) {
+        ArenaInstance instance = job.instance;
+        spawnedWaves++;
+        spawnNanosTotal += job.spawnNanos;
+        spawnNanosMax = Math.max(spawnNanosMax, job.spawnNanos);
+        spawnFailures += job.failures;
+        if (job.failures > 0) {
+            plugin.getLogger().fine("Arena instance " + instance.getId() + " wave " + instance.getCurrentWave()
+                    + ": " + job.failures + " of " + job.total + " mobs failed to spawn.");
         }
 
-        // Start mob check task to handle mobs that die from non-player causes (e.g., sunlight)
-        startMobCheckTask(player, session);
+        // Deaths arrive as events; the engine sweep only covers mobs removed without one
+        instance.setState(InstanceState.FIGHTING);
+        // Wave timeout, if configured
+        instance.setDeadline(waveTimeout > 0 ? currentTick + waveTimeout * 20L : Long.MAX_VALUE);
+        // Every mob may already be dead (or none could spawn)
+        checkWaveComplete(instance);
+    }
 
-        // Start wave timeout task if configured
-        if (waveTimeout > 0) {
-            startWaveTimeoutTask(player, session);
-        }
+    private void trackMob(Entity entity, ArenaInstance instance) {
+        entity.getPersistentDataContainer().set(mobKey, PersistentDataType.STRING, String.valueOf(instance.getId()));
+        instance.addMob(entity);
+        mobOwners.put(entity.getUniqueId(), instance);
     }
 
     /**
-     * Start a periodic task to check for dead mobs that weren't killed by player.
-     * This handles cases like mobs burning in sunlight.
+     * Safety sweep: drop mobs that left the world without a death or unload event (another
+     * plugin removing them, for example).
      */
-    private void startMobCheckTask(Player player, ArenaSession session) {
-        // Cancel any existing mob check task
-        if (session.getMobCheckTask() != null) {
-            session.getMobCheckTask().cancel();
-        }
-
-        BukkitTask checkTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!player.isOnline() || session.isEnded()) {
-                    cancel();
-                    return;
-                }
-
-                // Check all tracked mobs and remove dead ones
-                List<UUID> deadMobs = new ArrayList<UUID>();
-                for (UUID mobId : session.getMobIds()) {
-                    Entity entity = Bukkit.getEntity(mobId);
-                    if (entity == null || entity.isDead()) {
-                        deadMobs.add(mobId);
-                    }
-                }
-
-                // Remove dead mobs from session and award points
-                // (Mobs killed by environment like sunlight are counted as successful kills)
-                for (UUID deadId : deadMobs) {
-                    session.removeMob(deadId);
-                    int points = calculateKillScore(session.getCurrentWave());
-                    session.addScore(points);
-                    session.incrementKills();
-                }
-
-                // Notify player of environmental kills if any
-                if (!deadMobs.isEmpty() && player.isOnline()) {
-                    Map<String, String> map = new HashMap<String, String>();
-                    int totalPoints = deadMobs.size() * calculateKillScore(session.getCurrentWave());
-                    map.put("points", String.valueOf(totalPoints));
-                    map.put("total", String.valueOf(session.getScore()));
-                    map.put("count", String.valueOf(deadMobs.size()));
-                    player.sendMessage(messages.format(player, "arena.mob_died_environment", map));
-                }
-
-                // Check if wave is complete
-                if (session.getMobCount() == 0) {
-                    cancel();
-                    completeWave(player, session);
-                }
+    private void sweepMobs() {
+        Set<ArenaInstance> touched = new HashSet<ArenaInstance>();
+        Iterator<Map.Entry<UUID, ArenaInstance>> it = mobOwners.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, ArenaInstance> entry = it.next();
+            ArenaInstance instance = entry.getValue();
+            Entity entity = instance.getMob(entry.getKey());
+            if (entity == null || !entity.isValid()) {
+                it.remove();
+                instance.removeMob(entry.getKey());
+                touched.add(instance);
             }
-        }.runTaskTimer(plugin, 20L, 20L); // Check every second
+        }
+        for (ArenaInstance instance : touched) {
+            if (!instance.isEnded()) {
+                checkWaveComplete(instance);
+            }
+        }
+    }
 
-        session.setMobCheckTask(checkTask);
+    private void checkWaveComplete(ArenaInstance instance) {
+        if (instance.getMobCount() == 0 && instance.getState() == InstanceState.FIGHTING) {
+            completeWave(instance);
+        }
     }
 
     /**
-     * Start a timeout task for the current wave.
-     * If the wave is not completed within the timeout, the game ends.
+     * The wave was not cleared in time: the instance ends.
      */
-    private void startWaveTimeoutTask(Player player, ArenaSession session) {
-        // Cancel any existing timeout task
-        if (session.getWaveTimeoutTask() != null) {
-            session.getWaveTimeoutTask().cancel();
+    private void timeoutWave(ArenaInstance instance) {
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("wave", String.valueOf(instance.getCurrentWave()));
+        map.put("remaining", String.valueOf(instance.getMobCount()));
+        map.put("timeout", String.valueOf(waveTimeout));
+        for (Player player : onlinePlayers(instance)) {
+            player.sendMessage(messages.format(player, "arena.wave_timeout", map));
         }
-
-        BukkitTask timeoutTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!player.isOnline() || session.isEnded() || session.getMobCount() == 0) {
-                    return;
-                }
-
-                // Wave timed out - end the game
-                Map<String, String> map = new HashMap<String, String>();
-                map.put("wave", String.valueOf(session.getCurrentWave()));
-                map.put("remaining", String.valueOf(session.getMobCount()));
-                map.put("timeout", String.valueOf(waveTimeout));
-                player.sendMessage(messages.format(player, "arena.wave_timeout", map));
-
-                endGame(player, false);
-            }
-        }.runTaskLater(plugin, waveTimeout * 20L);
-
-        session.setWaveTimeoutTask(timeoutTask);
+        endInstance(instance, false);
     }
 
-    private void completeWave(Player player, ArenaSession session) {
-        // Cancel timeout task when wave is completed
-        if (session.getWaveTimeoutTask() != null) {
-            session.getWaveTimeoutTask().cancel();
-            session.setWaveTimeoutTask(null);
-        }
-
-        int wave = session.getCurrentWave();
+    private void completeWave(ArenaInstance instance) {
+        int wave = instance.getCurrentWave();
         int bonus = wave * waveScoreMultiplier;
-        session.addScore(bonus);
 
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("wave", String.valueOf(wave));
-        map.put("bonus", String.valueOf(bonus));
-        map.put("total", String.valueOf(session.getScore()));
-        player.sendMessage(messages.format(player, "arena.wave_complete", map));
+        for (Player player : onlinePlayers(instance)) {
+            PlayerStats stats = instance.getStats(player.getName());
+            stats.score += bonus;
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("wave", String.valueOf(wave));
+            map.put("bonus", String.valueOf(bonus));
+            map.put("total", String.valueOf(stats.score));
+            player.sendMessage(messages.format(player, "arena.wave_complete", map));
+        }
 
         // Start next wave
-        startNextWave(player, session);
+        startNextWave(instance);
     }
 
     private WaveConfig getWaveConfig(int wave) {
@@ -554,39 +909,94 @@ public class SurvivalArenaManager {
         return new WaveConfig(wave, 5, new EntityType[]{EntityType.ZOMBIE});
     }
 
-    private Location getRandomSpawnLocation(Location center) {
+    /**
+     * Spawn points of the instance's arena, validated once and cached per configured arena.
+     */
+    private List<Location> getSpawnPoints(ArenaInstance instance) {
+        if (instance.getSpawnPoints() != null) {
+            return instance.getSpawnPoints();
+        }
+        List<Location> points = instance.getArenaId() == null ? null : spawnPointCache.get(instance.getArenaId());
+        if (points == null) {
+            points = findSpawnPoints(instance.getArenaCenter());
+            // An empty result usually means the chunks were not loaded yet (or the arena is all
+            // liquid); try again next wave, spawning on the unvalidated ring meanwhile.
+            if (points.isEmpty()) {
+                return points;
+            }
+            if (instance.getArenaId() != null) {
+                spawnPointCache.put(instance.getArenaId(), points);
+            }
+        }
+        instance.setSpawnPoints(points);
+        return points;
+    }
+
+    private List<Location> findSpawnPoints(Location center) {
+        // Only columns in already-loaded chunks are considered; spawning never loads chunks.
+        List<Location> points = new ArrayList<Location>();
+        int attempts = spawnPointCount * SPAWN_ATTEMPTS;
+        for (int attempt = 0; attempt < attempts && points.size() < spawnPointCount; attempt++) {
+            int[] column = ringColumn(center);
+            int x = column[0];
+            int z = column[1];
+            if (locationService == null) {
+                points.add(new Location(center.getWorld(), x + 0.5, center.getWorld().getHighestBlockYAt(x, z) + 1, z + 0.5));
+                continue;
+            }
+            Location spot = locationService.checkLoaded(center.getWorld(), x, z);
+            if (spot != null) {
+                points.add(spot);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * A random column between spawnRadius and arenaRadius from the center.
+     */
+    private int[] ringColumn(Location center) {
         double angle = random.nextDouble() * 2 * Math.PI;
         double distance = spawnRadius + random.nextDouble() * (arenaRadius - spawnRadius);
-        
-        double x = center.getX() + Math.cos(angle) * distance;
-        double z = center.getZ() + Math.sin(angle) * distance;
-        double y = center.getWorld().getHighestBlockYAt((int) x, (int) z) + 1;
+        return new int[]{
+                (int) Math.floor(center.getX() + Math.cos(angle) * distance),
+                (int) Math.floor(center.getZ() + Math.sin(angle) * distance)};
+    }
 
-        return new Location(center.getWorld(), x, y, z);
+    /**
+     * An unvalidated spot on the spawn ring, on top of the highest block like the old spawning.
+     */
+    private Location ringSpot(Location center) {
+        int[] column = ringColumn(center);
+        World world = center.getWorld();
+        if (world == null || !world.isChunkLoaded(column[0] >> 4, column[1] >> 4)) {
+            return new Location(world, column[0] + 0.5, center.getY(), column[1] + 0.5);
+        }
+        return new Location(world, column[0] + 0.5, world.getHighestBlockYAt(column[0], column[1]) + 1, column[1] + 0.5);
     }
 
-    private void clearArenaMobs(ArenaSession session) {
-        for (UUID mobId : session.getMobIds()) {
-            Entity entity = Bukkit.getEntity(mobId);
-            if (entity != null && !entity.isDead()) {
+    private void clearArenaMobs(ArenaInstance instance) {
+        for (Entity entity : instance.getMobs()) {
+            mobOwners.remove(entity.getUniqueId());
+            if (entity.isValid()) {
                 entity.remove();
             }
         }
-        session.clearMobs();
+        instance.clearMobs();
     }
 
     private int calculateKillScore(int wave) {
         return baseScore + (wave - 1) * 2;
     }
 
-    private void grantRewards(Player player, ArenaSession session) {
+    private void grantRewards(Player player, ArenaInstance instance, PlayerStats stats) {
         for (String command : commandRewards) {
             String cmd = command
                 .replace("{player}", player.getName())
                 .replace("%player%", player.getName())
-                .replace("{score}", String.valueOf(session.getScore()))
-                .replace("{waves}", String.valueOf(session.getCurrentWave()))
-                .replace("{kills}", String.valueOf(session.getTotalKills()));
+                .replace("{score}", String.valueOf(stats.score))
+                .replace("{waves}", String.valueOf(instance.getCurrentWave()))
+                .replace("{kills}", String.valueOf(stats.kills));
             if (cmd.startsWith("/")) {
                 cmd = cmd.substring(1);
             }
@@ -641,17 +1051,12 @@ public class SurvivalArenaManager {
         player.openInventory(inv);
     }
 
-    private void openStatusMenu(Player player, ArenaSession session) {
+    private void openStatusMenu(Player player, ArenaInstance instance) {
         String title = messages.format(player, "menu.arena.status_title");
         Inventory inv = Bukkit.createInventory(new ArenaMenuHolder(MenuType.STATUS), 27, title);
 
         // Status info
-        Map<String, String> statusMap = new HashMap<String, String>();
-        statusMap.put("wave", String.valueOf(session.getCurrentWave()));
-        statusMap.put("max_waves", String.valueOf(session.getMaxWaves()));
-        statusMap.put("score", String.valueOf(session.getScore()));
-        statusMap.put("kills", String.valueOf(session.getTotalKills()));
-        statusMap.put("remaining", String.valueOf(session.getMobCount()));
+        Map<String, String> statusMap = statusMap(player, instance);
 
         ItemStack statusItem = createItem(Material.CLOCK,
             messages.format(player, "menu.arena.wave_info", statusMap),
@@ -715,24 +1120,18 @@ public class SurvivalArenaManager {
         }
     }
 
+
     /**
-     * Handle player disconnect.
+     * Handle player disconnect: leave the queue or the instance.
      */
     public void onPlayerQuit(Player player) {
-        String playerName = player.getName();
-        ArenaSession session = activeSessions.get(playerName);
-        if (session != null && !session.isEnded()) {
-            if (session.getWaveTask() != null) {
-                session.getWaveTask().cancel();
-            }
-            if (session.getMobCheckTask() != null) {
-                session.getMobCheckTask().cancel();
-            }
-            if (session.getWaveTimeoutTask() != null) {
-                session.getWaveTimeoutTask().cancel();
-            }
-            clearArenaMobs(session);
-            activeSessions.remove(playerName);
+        QueueEntry entry = findQueueEntry(player.getName());
+        if (entry != null) {
+            queue.remove(entry);
+        }
+        ArenaInstance instance = playerInstances.get(player.getName());
+        if (instance != null && !instance.isEnded()) {
+            leaveInstance(instance, player, true);
         }
     }
 
@@ -800,54 +1199,97 @@ public class SurvivalArenaManager {
         }
     }
 
-    private static class ArenaSession {
+    private enum InstanceState {
+        WAITING, COOLDOWN, SPAWNING, FIGHTING, ENDED
+    }
+
+    private static class QueueEntry {
         private final String playerName;
+        private final String arenaId; // null = any arena
+
+        QueueEntry(String playerName, String arenaId) {
+            this.playerName = playerName;
+            this.arenaId = arenaId;
+        }
+    }
+
+    private static class PlayerStats {
+        private int score;
+        private int kills;
+    }
+
+    /**
+     * One running arena: its players, mobs, wave progress and the tick of its next deadline
+     * (join window end, cooldown end or wave timeout, depending on the state).
+     */
+    private static class ArenaInstance {
+        private final int id;
+        private final String arenaId;
         private final Location arenaCenter;
         private final int maxWaves;
+        private final Map<String, PlayerStats> players = new LinkedHashMap<String, PlayerStats>();
+        private final Map<UUID, Entity> mobs = new HashMap<UUID, Entity>();
+        private InstanceState state = InstanceState.WAITING;
+        private long deadline = Long.MAX_VALUE;
         private int currentWave;
-        private int score;
-        private int totalKills;
-        private boolean ended;
-        private BukkitTask waveTask;
-        private BukkitTask mobCheckTask;
-        private BukkitTask waveTimeoutTask;
-        private final Set<UUID> mobIds;
-
-        ArenaSession(String playerName, Location arenaCenter, int maxWaves) {
-            this.playerName = playerName;
+        private List<Location> spawnPoints;
+
+        ArenaInstance(int id, String arenaId, Location arenaCenter, int maxWaves) {
+            this.id = id;
+            this.arenaId = arenaId;
             this.arenaCenter = arenaCenter;
             this.maxWaves = maxWaves;
-            this.currentWave = 0;
-            this.score = 0;
-            this.totalKills = 0;
-            this.ended = false;
-            this.mobIds = new HashSet<UUID>();
         }
 
-        String getPlayerName() { return playerName; }
+        int getId() { return id; }
+        String getArenaId() { return arenaId; }
         Location getArenaCenter() { return arenaCenter; }
         int getMaxWaves() { return maxWaves; }
         int getCurrentWave() { return currentWave; }
         void incrementWave() { currentWave++; }
-        int getScore() { return score; }
-        void addScore(int points) { score += points; }
-        int getTotalKills() { return totalKills; }
-        void incrementKills() { totalKills++; }
-        boolean isEnded() { return ended; }
-        void setEnded(boolean ended) { this.ended = ended; }
-        BukkitTask getWaveTask() { return waveTask; }
-        void setWaveTask(BukkitTask task) { this.waveTask = task; }
-        BukkitTask getMobCheckTask() { return mobCheckTask; }
-        void setMobCheckTask(BukkitTask task) { this.mobCheckTask = task; }
-        BukkitTask getWaveTimeoutTask() { return waveTimeoutTask; }
-        void setWaveTimeoutTask(BukkitTask task) { this.waveTimeoutTask = task; }
-
-        void addMob(UUID id) { mobIds.add(id); }
-        void removeMob(UUID id) { mobIds.remove(id); }
-        boolean isArenaMob(UUID id) { return mobIds.contains(id); }
-        int getMobCount() { return mobIds.size(); }
-        Set<UUID> getMobIds() { return mobIds; }
-        void clearMobs() { mobIds.clear(); }
+        InstanceState getState() { return state; }
+        void setState(InstanceState state) { this.state = state; }
+        boolean isEnded() { return state == InstanceState.ENDED; }
+        long getDeadline() { return deadline; }
+        void setDeadline(long deadline) { this.deadline = deadline; }
+        List<Location> getSpawnPoints() { return spawnPoints; }
+        void setSpawnPoints(List<Location> spawnPoints) { this.spawnPoints = spawnPoints; }
+
+        void addPlayer(String name) { players.put(name, new PlayerStats()); }
+        PlayerStats removePlayer(String name) { return players.remove(name); }
+        PlayerStats getStats(String name) { return players.get(name); }
+        Set<String> getPlayerNames() { return players.keySet(); }
+        int getPlayerCount() { return players.size(); }
+
+        void addMob(Entity entity) { mobs.put(entity.getUniqueId(), entity); }
+        void removeMob(UUID id) { mobs.remove(id); }
+        Entity getMob(UUID id) { return mobs.get(id); }
+        int getMobCount() { return mobs.size(); }
+        List<Entity> getMobs() { return new ArrayList<Entity>(mobs.values()); }
+        void clearMobs() { mobs.clear(); }
+    }
+
+    /**
+     * A wave being spawned across ticks.
+     */
+    private static class SpawnJob {
+        private final ArenaInstance instance;
+        private final WaveConfig config;
+        private final int total;
+        private final double healthScale;
+        private final List<Location> points;
+        private int remaining;
+        private int failures;
+        private long spawnNanos;
+
+        SpawnJob(ArenaInstance instance, WaveConfig config, int total, double healthScale, List<Location> points) {
+            this.instance = instance;
+            this.config = config;
+            this.total = total;
+            this.healthScale = healthScale;
+            this.points = points;
+            this.remaining = total;
+        }
     }
 
     private static class WaveConfig {
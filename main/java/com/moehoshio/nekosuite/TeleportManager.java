@@ -6,13 +6,16 @@ import org.bukkit.World;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -26,6 +29,10 @@ import java.util.UUID;
  * - Admin lock system (completely prohibit TP and being TP'd to) - server controlled
  * - Pending request system with timeout
  * - Request accept/deny functionality
+ *
+ * TP toggles of online players are cached in memory (loaded on join, written on change).
+ * Each player has at most one incoming and one outgoing request, indexed both ways, and
+ * all timeouts are driven by one timer wheel that advances once per second.
  */
 public class TeleportManager {
 
@@ -39,8 +46,21 @@ public class TeleportManager {
     private int requestTimeout = 60; // seconds
     private boolean defaultTpStatus = true; // default: allow tp
 
-    // Pending TP requests: target UUID -> requester UUID
+    // Pending TP requests, indexed by target and by requester
     private final Map<UUID, TpRequest> pendingRequests = new HashMap<UUID, TpRequest>();
+    private final Map<UUID, TpRequest> outgoingRequests = new HashMap<UUID, TpRequest>();
+
+    // Timeout wheel: one bucket per second, the cursor advances every 20 ticks
+    private final List<List<TpRequest>> timeoutWheel = new ArrayList<List<TpRequest>>();
+    private int wheelCursor;
+    private BukkitTask wheelTask;
+
+    // Online players whose TP toggle is loaded, and those of them who allow TP
+    private final Set<UUID> tpStatusLoaded = new HashSet<UUID>();
+    private final Set<UUID> tpEnabledPlayers = new HashSet<UUID>();
+
+    // Loads target chunks across ticks (set by plugin); null means teleport directly
+    private SafeLocationService locationService;
     
     // Admin-controlled locked players (cannot TP or be TP'd to)
     // This is for dungeons, minigames, etc. - server controlled, not player controlled
@@ -57,6 +77,55 @@ public class TeleportManager {
             plugin.getLogger().warning("Unable to create data directory: " + storageDir.getAbsolutePath());
         }
         loadConfig(config);
+        // Requests expire after more than requestTimeout seconds, at most one second late.
+        int buckets = Math.max(1, requestTimeout) + 2;
+        for (int i = 0; i < buckets; i++) {
+            timeoutWheel.add(new ArrayList<TpRequest>());
+        }
+        wheelTask = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+            @Override
+            public void run() {
+                advanceWheel();
+            }
+        }, 20L, 20L);
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            loadTpStatus(online);
+        }
+    }
+
+    /**
+     * Stop the timeout wheel. Pending requests are dropped with the manager.
+     */
+    public void shutdown() {
+        if (wheelTask != null) {
+            wheelTask.cancel();
+            wheelTask = null;
+        }
+    }
+
+    public void setLocationService(SafeLocationService locationService) {
+        this.locationService = locationService;
+    }
+
+    public void onPlayerJoin(Player player) {
+        loadTpStatus(player);
+    }
+
+    public void onPlayerQuit(Player player) {
+        UUID id = player.getUniqueId();
+        tpStatusLoaded.remove(id);
+        tpEnabledPlayers.remove(id);
+        cancelAllRequestsForPlayer(id);
+    }
+
+    private void loadTpStatus(Player player) {
+        boolean enabled = loadUserData(player.getName()).getBoolean("tp.enabled", defaultTpStatus);
+        tpStatusLoaded.add(player.getUniqueId());
+        if (enabled) {
+            tpEnabledPlayers.add(player.getUniqueId());
+        } else {
+            tpEnabledPlayers.remove(player.getUniqueId());
+        }
     }
 
     private void loadConfig(YamlConfiguration config) {
@@ -149,37 +218,71 @@ public class TeleportManager {
      */
     private void cancelAllRequestsForPlayer(UUID playerId) {
         // Remove as target
-        pendingRequests.remove(playerId);
-        
+        removeRequest(pendingRequests.get(playerId));
         // Remove as requester
-        Set<UUID> toRemove = new HashSet<UUID>();
-        for (Map.Entry<UUID, TpRequest> entry : pendingRequests.entrySet()) {
-            if (entry.getValue().getRequesterId().equals(playerId)) {
-                toRemove.add(entry.getKey());
-            }
+        removeRequest(outgoingRequests.get(playerId));
+    }
+
+    /**
+     * Drop a request from both indexes. Its wheel entry is ignored when it comes due.
+     */
+    private void removeRequest(TpRequest request) {
+        if (request == null) {
+            return;
+        }
+        if (pendingRequests.get(request.getTargetId()) == request) {
+            pendingRequests.remove(request.getTargetId());
+        }
+        if (outgoingRequests.get(request.getRequesterId()) == request) {
+            outgoingRequests.remove(request.getRequesterId());
+        }
+    }
+
+    private void advanceWheel() {
+        wheelCursor = (wheelCursor + 1) % timeoutWheel.size();
+        List<TpRequest> due = timeoutWheel.get(wheelCursor);
+        if (due.isEmpty()) {
+            return;
         }
-        for (UUID targetId : toRemove) {
-            pendingRequests.remove(targetId);
+        for (TpRequest request : due) {
+            // Accepted, denied, cancelled or replaced requests are no longer indexed.
+            if (pendingRequests.get(request.getTargetId()) != request) {
+                continue;
+            }
+            removeRequest(request);
+            Player requesterPlayer = Bukkit.getPlayer(request.getRequesterId());
+            if (requesterPlayer != null && requesterPlayer.isOnline()) {
+                requesterPlayer.sendMessage(messages.format(requesterPlayer, "tp.request_expired"));
+            }
         }
+        due.clear();
     }
 
     /**
      * Check if a player allows teleportation to them (player-controlled toggle).
      */
     public boolean isTpEnabled(String playerName) {
+        Player online = Bukkit.getPlayerExact(playerName);
+        if (online != null) {
+            return isTpEnabled(online);
+        }
         YamlConfiguration data = loadUserData(playerName);
         return data.getBoolean("tp.enabled", defaultTpStatus);
     }
 
+    public boolean isTpEnabled(Player player) {
+        if (!tpStatusLoaded.contains(player.getUniqueId())) {
+            loadTpStatus(player);
+        }
+        return tpEnabledPlayers.contains(player.getUniqueId());
+    }
+
     /**
      * Toggle a player's TP status (whether others can tp to them).
      */
     public boolean toggleTpStatus(Player player) {
-        YamlConfiguration data = loadUserData(player.getName());
-        boolean current = data.getBoolean("tp.enabled", defaultTpStatus);
-        boolean newStatus = !current;
-        data.set("tp.enabled", newStatus);
-        saveUserData(player.getName(), data);
+        boolean newStatus = !isTpEnabled(player);
+        setTpStatus(player, newStatus);
         return newStatus;
     }
 
@@ -187,6 +290,12 @@ public class TeleportManager {
      * Set a player's TP status explicitly.
      */
     public void setTpStatus(Player player, boolean enabled) {
+        tpStatusLoaded.add(player.getUniqueId());
+        if (enabled) {
+            tpEnabledPlayers.add(player.getUniqueId());
+        } else {
+            tpEnabledPlayers.remove(player.getUniqueId());
+        }
         YamlConfiguration data = loadUserData(player.getName());
         data.set("tp.enabled", enabled);
         saveUserData(player.getName(), data);
@@ -212,7 +321,7 @@ public class TeleportManager {
         }
 
         // Check if target allows TP (player-controlled)
-        if (!isTpEnabled(target.getName())) {
+        if (!isTpEnabled(target)) {
             Map<String, String> map = new HashMap<String, String>();
             map.put("target", target.getName());
             requester.sendMessage(messages.format(requester, "tp.target_disabled", map));
@@ -231,9 +340,14 @@ public class TeleportManager {
             }
         }
 
-        // Create request
+        // Create request; it replaces the target's incoming and the requester's outgoing one
         TpRequest request = new TpRequest(requester.getUniqueId(), target.getUniqueId(), System.currentTimeMillis());
+        removeRequest(pendingRequests.get(target.getUniqueId()));
+        removeRequest(outgoingRequests.get(requester.getUniqueId()));
         pendingRequests.put(target.getUniqueId(), request);
+        outgoingRequests.put(requester.getUniqueId(), request);
+        int slot = (wheelCursor + timeoutWheel.size() - 1) % timeoutWheel.size();
+        timeoutWheel.get(slot).add(request);
 
         // Notify requester
         Map<String, String> requesterMap = new HashMap<String, String>();
@@ -291,24 +405,6 @@ public class TeleportManager {
         
         messages.sendMessage(target, mainMessage, acceptBtn, separator, denyBtn);
 
-        // Schedule timeout
-        final UUID targetId = target.getUniqueId();
-        final UUID requesterId = request.getRequesterId();
-        final long requestTimestamp = request.getTimestamp();
-        Bukkit.getScheduler().runTaskLater(plugin, new Runnable() {
-            @Override
-            public void run() {
-                TpRequest req = pendingRequests.get(targetId);
-                if (req != null && req.getRequesterId().equals(requesterId) && req.getTimestamp() == requestTimestamp) {
-                    pendingRequests.remove(targetId);
-                    Player requesterPlayer = Bukkit.getPlayer(requesterId);
-                    if (requesterPlayer != null && requesterPlayer.isOnline()) {
-                        requesterPlayer.sendMessage(messages.format(requesterPlayer, "tp.request_expired"));
-                    }
-                }
-            }
-        }, requestTimeout * 20L);
-
         return true;
     }
 
@@ -316,7 +412,8 @@ public class TeleportManager {
      * Accept a pending TP request.
      */
     public boolean acceptTpRequest(Player target) {
-        TpRequest request = pendingRequests.remove(target.getUniqueId());
+        TpRequest request = pendingRequests.get(target.getUniqueId());
+        removeRequest(request);
         if (request == null) {
             target.sendMessage(messages.format(target, "tp.no_pending_request"));
             return false;
@@ -375,7 +472,8 @@ public class TeleportManager {
      * Deny a pending TP request.
      */
     public boolean denyTpRequest(Player target) {
-        TpRequest request = pendingRequests.remove(target.getUniqueId());
+        TpRequest request = pendingRequests.get(target.getUniqueId());
+        removeRequest(request);
         if (request == null) {
             target.sendMessage(messages.format(target, "tp.no_pending_request"));
             return false;
@@ -396,15 +494,10 @@ public class TeleportManager {
      * Cancel an outgoing TP request.
      */
     public boolean cancelTpRequest(Player requester) {
-        UUID found = null;
-        for (Map.Entry<UUID, TpRequest> entry : pendingRequests.entrySet()) {
-            if (entry.getValue().getRequesterId().equals(requester.getUniqueId())) {
-                found = entry.getKey();
-                break;
-            }
-        }
-        if (found != null) {
-            pendingRequests.remove(found);
+        TpRequest request = outgoingRequests.get(requester.getUniqueId());
+        if (request != null) {
+            UUID found = request.getTargetId();
+            removeRequest(request);
             requester.sendMessage(messages.format(requester, "tp.cancel_success"));
             Player target = Bukkit.getPlayer(found);
             if (target != null && target.isOnline()) {
@@ -421,13 +514,46 @@ public class TeleportManager {
 
     /**
      * Directly teleport a player to a location (with optional cost).
+     * The target chunk is loaded first through the location service; the cost is charged
+     * and the player moved once it is ready.
      */
-    public boolean teleportToLocation(Player player, Location target) {
+    public boolean teleportToLocation(final Player player, final Location target) {
         if (target == null || target.getWorld() == null) {
             player.sendMessage(messages.format(player, "tp.world_not_found"));
             return false;
         }
+        if (!canAfford(player)) {
+            return false;
+        }
+        if (locationService == null || target.getWorld().isChunkLoaded(target.getBlockX() >> 4, target.getBlockZ() >> 4)) {
+            return completeTeleportToLocation(player, target);
+        }
+        player.sendMessage(messages.format(player, "tp.preparing"));
+        final UUID playerId = player.getUniqueId();
+        locationService.prepare(target).thenAccept(prepared -> {
+            Player online = Bukkit.getPlayer(playerId);
+            if (online != null && prepared != null) {
+                completeTeleportToLocation(online, prepared);
+            }
+        });
+        return true;
+    }
+
+    private boolean canAfford(Player player) {
+        if (tpCost > 0 && economy != null) {
+            double balance = economy.getBalance(player);
+            if (balance < tpCost) {
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("cost", String.valueOf((long) tpCost));
+                map.put("balance", String.valueOf((long) balance));
+                player.sendMessage(messages.format(player, "tp.insufficient_balance", map));
+                return false;
+            }
+        }
+        return true;
+    }
 
+    private boolean completeTeleportToLocation(Player player, Location target) {
         // Charge cost if configured
         if (tpCost > 0 && economy != null) {
             double balance = economy.getBalance(player);
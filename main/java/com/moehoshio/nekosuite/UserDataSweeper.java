@@ -0,0 +1,285 @@
+package com.moehoshio.nekosuite;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Low-priority background sweep over every file in the shared userdata directory.
+ *
+ * <p>Offline players never trigger the per-player cleanups, so their expired mails,
+ * old wish history and stale inventory history keep inflating every later load of
+ * their file. The sweeper walks the directory in small chunks: each chunk is parsed
+ * and pruned on an async thread under a bytes-per-second budget, and the rewritten
+ * file is committed back on the main thread only if the owner is still offline and
+ * nothing else touched the file in the meantime. Online players are skipped because
+ * their data is being written by the managers themselves.</p>
+ */
+public class UserDataSweeper {
+
+    private final JavaPlugin plugin;
+    private final File storageDir;
+    private final MailManager mailManager;
+    private final InventoryHistoryManager historyManager;
+
+    private final boolean enabled;
+    private final long intervalMs;
+    private final long chunkTicks;
+    private final int filesPerChunk;
+    private final long maxBytesPerSecond;
+    private final long wishHistoryMillis;
+
+    private BukkitTask task;
+    /** Files left in the current sweep; null while idle. Main thread only. */
+    private Deque<File> queue;
+    private long nextSweepAt;
+    private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private volatile boolean stopped;
+
+    // Report counters for the current sweep.
+    private long sweepStartedAt;
+    private final AtomicInteger scanned = new AtomicInteger();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private int rewritten;
+    private int skippedBusy;
+    private long bytesReclaimed;
+
+    public UserDataSweeper(JavaPlugin plugin, File configFile, MailManager mailManager, InventoryHistoryManager historyManager) {
+        this.plugin = plugin;
+        this.mailManager = mailManager;
+        this.historyManager = historyManager;
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+        storageDir = new File(plugin.getDataFolder(), config.getString("storage.data_dir", "userdata"));
+        enabled = config.getBoolean("sweeper.enabled", true);
+        intervalMs = Math.max(1L, config.getLong("sweeper.interval_minutes", 360L)) * 60L * 1000L;
+        chunkTicks = Math.max(1L, config.getLong("sweeper.chunk_interval_ticks", 40L));
+        filesPerChunk = Math.max(1, config.getInt("sweeper.files_per_chunk", 25));
+        maxBytesPerSecond = Math.max(0L, config.getLong("sweeper.max_bytes_per_second", 1048576L));
+        wishHistoryMillis = Math.max(0L, config.getLong("sweeper.wish_history_days", 90L)) * 24L * 60L * 60L * 1000L;
+        nextSweepAt = System.currentTimeMillis() + Math.max(0L, config.getLong("sweeper.initial_delay_minutes", 10L)) * 60L * 1000L;
+    }
+
+    public void start() {
+        if (!enabled || task != null) {
+            return;
+        }
+        task = Bukkit.getScheduler().runTaskTimer(plugin, new Runnable() {
+            public void run() {
+                tick();
+            }
+        }, chunkTicks, chunkTicks);
+    }
+
+    /**
+     * Stop sweeping. An in-flight chunk finishes its current file and its commits are dropped.
+     */
+    public void shutdown() {
+        stopped = true;
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue = null;
+    }
+
+    private void tick() {
+        if (stopped || inFlight.get()) {
+            return;
+        }
+        if (queue == null) {
+            if (System.currentTimeMillis() < nextSweepAt) {
+                return;
+            }
+            beginSweep();
+            return;
+        }
+        if (queue.isEmpty()) {
+            finishSweep();
+            return;
+        }
+        final List<File> chunk = new ArrayList<File>();
+        while (chunk.size() < filesPerChunk && !queue.isEmpty()) {
+            chunk.add(queue.poll());
+        }
+        // Snapshot online names on the main thread; the async side must never touch their files.
+        final Set<String> online = new HashSet<String>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            online.add(player.getName().toLowerCase());
+        }
+        inFlight.set(true);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            public void run() {
+                try {
+                    processChunk(chunk, online);
+                } finally {
+                    inFlight.set(false);
+                }
+            }
+        });
+    }
+
+    private void beginSweep() {
+        sweepStartedAt = System.currentTimeMillis();
+        scanned.set(0);
+        bytesRead.set(0L);
+        rewritten = 0;
+        skippedBusy = 0;
+        bytesReclaimed = 0L;
+        queue = new ArrayDeque<File>();
+        inFlight.set(true);
+        // Directory listing can be slow on large servers; do it off the main thread.
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            public void run() {
+                final List<File> found = new ArrayList<File>();
+                File[] files = storageDir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (file.isFile() && file.getName().endsWith(".yml")) {
+                            found.add(file);
+                        }
+                    }
+                }
+                Bukkit.getScheduler().runTask(plugin, new Runnable() {
+                    public void run() {
+                        if (queue != null) {
+                            queue.addAll(found);
+                        }
+                        inFlight.set(false);
+                    }
+                });
+            }
+        });
+    }
+
+    private void finishSweep() {
+        queue = null;
+        nextSweepAt = System.currentTimeMillis() + intervalMs;
+        long tookSeconds = (System.currentTimeMillis() - sweepStartedAt) / 1000L;
+        plugin.getLogger().info("Userdata sweep finished in " + tookSeconds + "s: scanned " + scanned.get()
+                + " files (" + bytesRead.get() + " bytes), rewrote " + rewritten + ", skipped " + skippedBusy
+                + " busy, reclaimed " + bytesReclaimed + " bytes.");
+    }
+
+    private void processChunk(List<File> chunk, Set<String> online) {
+        long started = System.currentTimeMillis();
+        long chunkBytes = 0L;
+        for (File file : chunk) {
+            if (stopped) {
+                return;
+            }
+            String playerName = file.getName().substring(0, file.getName().length() - 4);
+            if (online.contains(playerName.toLowerCase())) {
+                continue;
+            }
+            final long seenModified = file.lastModified();
+            final long seenLength = file.length();
+            scanned.incrementAndGet();
+            bytesRead.addAndGet(seenLength);
+            chunkBytes += seenLength;
+
+            YamlConfiguration data = YamlConfiguration.loadConfiguration(file);
+            boolean changed = false;
+            if (mailManager != null && mailManager.removeExpiredMails(data)) {
+                changed = true;
+            }
+            if (pruneWishHistory(data)) {
+                changed = true;
+            }
+            if (historyManager != null && historyManager.compactHistory(data)) {
+                changed = true;
+            }
+            if (changed) {
+                byte[] bytes = data.saveToString().getBytes(StandardCharsets.UTF_8);
+                chunkBytes += bytes.length;
+                scheduleCommit(file, playerName, seenModified, seenLength, bytes);
+            }
+            throttle(started, chunkBytes);
+        }
+    }
+
+    /**
+     * Sleep as needed so this chunk stays under the configured bytes-per-second budget.
+     */
+    private void throttle(long started, long bytes) {
+        if (maxBytesPerSecond <= 0) {
+            return;
+        }
+        long dueMs = bytes * 1000L / maxBytesPerSecond;
+        long elapsed = System.currentTimeMillis() - started;
+        if (dueMs > elapsed) {
+            try {
+                Thread.sleep(dueMs - elapsed);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void scheduleCommit(final File file, final String playerName, final long seenModified,
+                                final long seenLength, final byte[] bytes) {
+        Bukkit.getScheduler().runTask(plugin, new Runnable() {
+            public void run() {
+                if (stopped) {
+                    return;
+                }
+                // The owner logged in or a manager wrote the file since we read it: leave it for next sweep.
+                if (Bukkit.getPlayerExact(playerName) != null
+                        || file.lastModified() != seenModified || file.length() != seenLength) {
+                    skippedBusy++;
+                    return;
+                }
+                try {
+                    Files.write(file.toPath(), bytes);
+                    rewritten++;
+                    bytesReclaimed += seenLength - bytes.length;
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Failed to rewrite swept user data " + file.getName() + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private boolean pruneWishHistory(YamlConfiguration data) {
+        if (wishHistoryMillis <= 0 || !data.isList("wish.history")) {
+            return false;
+        }
+        long cutoff = System.currentTimeMillis() - wishHistoryMillis;
+        List<Map<?, ?>> history = data.getMapList("wish.history");
+        List<Map<?, ?>> kept = new ArrayList<Map<?, ?>>();
+        for (Map<?, ?> entry : history) {
+            Object time = entry.get("time");
+            long timestamp = 0L;
+            if (time != null) {
+                try {
+                    timestamp = Long.parseLong(time.toString());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            if (timestamp >= cutoff) {
+                kept.add(entry);
+            }
+        }
+        if (kept.size() == history.size()) {
+            return false;
+        }
+        data.set("wish.history", kept.isEmpty() ? null : kept);
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+package com.moehoshio.nekosuite;
+
+import java.util.Random;
+
+/**
+ * Weighted sampling without replacement over a fixed set of slots.
+ *
+ * <p>Weights sit in a Fenwick tree, so building it is O(n) and each draw or removal is
+ * O(log n); the total never has to be re-summed between draws. Slots with weight zero are
+ * only picked once every remaining slot has weight zero, and then uniformly. Not
+ * thread-safe.</p>
+ */
+class WeightedSampler {
+
+    private final long[] tree;
+    private final long[] weights;
+    private final boolean[] removed;
+    private final int size;
+    private long total;
+    private int remaining;
+
+    WeightedSampler(long[] weights) {
+        this.size = weights.length;
+        this.weights = new long[size];
+        this.removed = new boolean[size];
+        this.tree = new long[size + 1];
+        for (int i = 0; i < size; i++) {
+            long weight = Math.max(0L, weights[i]);
+            this.weights[i] = weight;
+            tree[i + 1] += weight;
+            int parent = (i + 1) + ((i + 1) & -(i + 1));
+            if (parent <= size) {
+                tree[parent] += tree[i + 1];
+            }
+            total += weight;
+        }
+        this.remaining = size;
+    }
+
+    int remaining() {
+        return remaining;
+    }
+
+    /**
+     * Take the slot out of future draws.
+     */
+    void remove(int slot) {
+        if (removed[slot]) {
+            return;
+        }
+        removed[slot] = true;
+        remaining--;
+        long weight = weights[slot];
+        if (weight != 0) {
+            weights[slot] = 0;
+            total -= weight;
+            for (int i = slot + 1; i <= size; i += i & -i) {
+                tree[i] -= weight;
+            }
+        }
+    }
+
+    /**
+     * Draw a remaining slot with probability proportional to its weight, or -1 if none are left.
+     */
+    int sample(Random random) {
+        if (remaining == 0) {
+            return -1;
+        }
+        if (total <= 0) {
+            int skip = random.nextInt(remaining);
+            for (int i = 0; i < size; i++) {
+                if (!removed[i] && skip-- == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        long target = (long) (random.nextDouble() * total);
+        if (target >= total) {
+            target = total - 1;
+        }
+        // Descend to the first slot whose prefix sum exceeds target.
+        int pos = 0;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= size && tree[next] <= target) {
+                pos = next;
+                target -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Draw a slot as {@link #sample} does and remove it.
+     */
+    int take(Random random) {
+        int slot = sample(random);
+        if (slot >= 0) {
+            remove(slot);
+        }
+        return slot;
+    }
+}
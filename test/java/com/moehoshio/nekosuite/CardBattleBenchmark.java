@@ -0,0 +1,109 @@
+package com.moehoshio.nekosuite;
+
+import com.moehoshio.nekosuite.CardBattleManager.BattleRules;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH throughput benchmark for {@link CardBattleState}, the moves-per-second figure the card
+ * battle AI search lives on.
+ *
+ * <p>Plays random games with the cards and rules of the bundled {@code card_battle_config.yml}:
+ * each side plays random affordable cards and ends its turn now and then, the same kind of
+ * playout the AI runs. {@link #move} measures single moves, {@link #game} whole games.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class CardBattleBenchmark {
+
+    private static final int MAX_PLAYS_PER_TURN = 8;
+    private static final int MAX_TURNS = 200;
+    private static final double PLAY_CHANCE = 0.85;
+
+    private BattleRules rules;
+    private CardBattleState start;
+    private CardBattleState state;
+    private Random random;
+    private int[] playable;
+
+    @Setup
+    public void setup() throws Exception {
+        YamlConfiguration config = new YamlConfiguration();
+        InputStream in = CardBattleBenchmark.class.getResourceAsStream("/card_battle_config.yml");
+        if (in == null) {
+            throw new IllegalStateException("card_battle_config.yml not on the classpath");
+        }
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        try {
+            config.load(reader);
+        } finally {
+            reader.close();
+        }
+        rules = BattleRules.load(config);
+        if (rules.cardCount() == 0) {
+            throw new IllegalStateException("No cards defined in card_battle_config.yml");
+        }
+        start = CardBattleState.start(rules, rules.startingHealth, rules.startingHealth,
+                config.getInt("game.starting_mana", 3), config.getInt("game.starting_hand_size", 5), new Random(7L));
+        state = start;
+        random = new Random(42L);
+        playable = new int[Math.max(rules.maxHandSize, Math.max(start.handSize(true), start.handSize(false))) + 1];
+    }
+
+    /**
+     * One random move; a finished game starts over from the opening state.
+     */
+    @Benchmark
+    public void move(Blackhole blackhole) {
+        CardBattleState next = state.apply(rules, randomMove(state), random);
+        state = next.isOver() || next.turn() >= MAX_TURNS ? start : next;
+        blackhole.consume(next);
+    }
+
+    /**
+     * One random game from the opening state to the end.
+     */
+    @Benchmark
+    public void game(Blackhole blackhole) {
+        CardBattleState current = start;
+        while (!current.isOver() && current.turn() < MAX_TURNS) {
+            current = current.apply(rules, randomMove(current), random);
+        }
+        blackhole.consume(current);
+    }
+
+    private int randomMove(CardBattleState current) {
+        if (current.playsThisTurn() >= MAX_PLAYS_PER_TURN || random.nextDouble() >= PLAY_CHANCE) {
+            return CardBattleState.END_TURN;
+        }
+        int count = 0;
+        int handSize = current.handSize(current.isPlayer1Turn());
+        for (int i = 0; i < handSize && count < playable.length; i++) {
+            if (current.canPlay(rules, i)) {
+                playable[count++] = i;
+            }
+        }
+        return count == 0 ? CardBattleState.END_TURN : playable[random.nextInt(count)];
+    }
+}